@@ -34,6 +34,7 @@ import com.google.mr4c.dataset.LogsDatasetBuilder;
 import com.google.mr4c.keys.DataKey;
 import com.google.mr4c.keys.DataKeyDimension;
 import com.google.mr4c.keys.DataKeyFilter;
+import com.google.mr4c.keys.IdentityDataKeyFilter;
 import com.google.mr4c.keys.Keyspace;
 import com.google.mr4c.message.Message;
 import com.google.mr4c.message.Messages;
@@ -47,6 +48,8 @@ import com.google.mr4c.sources.ExecutionSource;
 import com.google.mr4c.stats.MR4CStats;
 import com.google.mr4c.stats.StatsClient;
 import com.google.mr4c.stats.StatsTimer;
+import com.google.mr4c.stats.TaskStats;
+import com.google.mr4c.stats.TaskStats.PhaseTimer;
 import com.google.mr4c.util.MR4CLogging;
 import com.google.mr4c.util.CollectionUtils;
 
@@ -60,6 +63,8 @@ import java.util.HashSet;
 import java.util.Properties;
 import java.util.Set;
 
+import org.apache.commons.io.input.CountingInputStream;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -73,13 +78,18 @@ public class AlgoRunner {
 	private AlgorithmData m_logData = new AlgorithmData();
 	private boolean m_failed = false;
 	private String m_failureMsg;
+	private volatile long m_executeMillis;
 
 	public static void main(String argv[]) throws Exception {
 		AlgoRunnerConfig config = new AlgoRunnerConfig(true);
 		config.setCommandLineArguments(argv);
 		config.configure();
 		AlgoRunner runner = new AlgoRunner(config);
-		runner.executeStandalone();
+		try {
+			runner.executeStandalone();
+		} finally {
+			MR4CStats.flush();
+		}
 	}
 
 	public AlgoRunner(AlgoRunnerConfig runnerConfig) throws IOException {
@@ -205,8 +215,46 @@ public class AlgoRunner {
 
 
 
+	/**
+	  * Clears the data, logs and failure state of the previous execution so
+	  * the runner can be used again.  The execution source isn't validated
+	  * again, and the algorithm stays loaded.
+	*/
+	public void reset() {
+		m_algoData = new AlgorithmData();
+		m_logData = new AlgorithmData();
+		m_failed = false;
+		m_failureMsg = null;
+	}
+
+	/**
+	  * Time the last execution took, as recorded for its execute phase
+	*/
+	public long getExecuteMillis() {
+		return m_executeMillis;
+	}
+
 	public void loadInputData() throws IOException {
-		loadInputDatasets();
+		loadInputData(IdentityDataKeyFilter.INSTANCE);
+	}
+
+	/**
+	  * Loads only the part of the input datasets that passes the filter.
+	  * Equivalent to loadInputData() followed by slice(filter), without reading everything first.
+	*/
+	public void loadInputData(DataKeyFilter filter) throws IOException {
+		PhaseTimer timer = TaskStats.instance().startPhase("load");
+		boolean success = false;
+		try {
+			doLoadInputData(filter);
+			success = true;
+		} finally {
+			timer.done(success);
+		}
+	}
+
+	private void doLoadInputData(DataKeyFilter filter) throws IOException {
+		loadInputDatasets(filter);
 		for ( String excluded : m_exeSrc.getAlgorithm().getAlgorithmSchema().getExcludedInputDatasets() ) {
 			s_log.info("Excluding input dataset [{}] from keyspace", excluded);
 			m_algoData.excludeInputDatasetFromKeyspace(excluded);
@@ -217,15 +265,16 @@ public class AlgoRunner {
 		prepOutputDatasets();
 	}
 
-	private void loadInputDatasets() throws IOException {
+	private void loadInputDatasets(DataKeyFilter filter) throws IOException {
 		for ( String inputName : m_exeSrc.getInputDatasetNames() ) {
 			s_log.info("Begin loading input dataset [{}]", inputName);
 			DatasetSource datasetSource = m_exeSrc.getInputDatasetSource(inputName);
-			Dataset dataset = datasetSource.readDataset();
+			Dataset dataset = datasetSource.readDataset(filter);
 			dataset.setContext(new InputDatasetContext(datasetSource));
 			int fileKeyCount = dataset.getAllFileKeys().size();
 			int metaKeyCount = dataset.getAllMetadataKeys().size();
 			s_log.info("Input dataset [{}] has {} file keys and {} metadata keys", new Object[] {inputName, fileKeyCount, metaKeyCount});
+			TaskStats.instance().add(TaskStats.FILES_READ, fileKeyCount);
 			s_log.info("End loading input dataset [{}]", inputName);
 			m_algoData.addInputDataset(inputName, dataset);
 		}
@@ -280,6 +329,21 @@ public class AlgoRunner {
 	}
 
 	public void executeAlgorithm(AlgorithmContext context) throws IOException {
+		executeAlgorithm(m_algoData, context, true);
+	}
+
+	/**
+	  * Runs the algorithm on a slice of the loaded data, such as one from
+	  * getAlgorithmData().sliceInputs().  May be called from several threads
+	  * at once, if the algorithm allows it.  Unlike executeAlgorithm(), the
+	  * inputs aren't released, since other slices may share them, and the
+	  * caller checks the context for failure and collects the output.
+	*/
+	public void executeSlice(AlgorithmData slice, AlgorithmContext context) throws IOException {
+		executeAlgorithm(slice, context, false);
+	}
+
+	private void executeAlgorithm(AlgorithmData data, AlgorithmContext context, boolean whole) throws IOException {
 		String algoName = m_exeSrc.getAlgorithm().getAlgorithmConfig().getName();
 		String successName = String.format("mr4c.algorithm.%s.success", algoName);
 		String failureName = String.format("mr4c.algorithm.%s.failure", algoName);
@@ -288,20 +352,24 @@ public class AlgoRunner {
 			successName,
 			failureName
 		);
+		PhaseTimer phaseTimer = TaskStats.instance().startPhase("execute");
 		boolean success = false;
 		try {
-			doExecuteAlgorithm(context);
+			doExecuteAlgorithm(data, context, whole);
 			success = true;
 		} finally {
 			timer.done(success);
+			m_executeMillis = phaseTimer.done(success);
 		}
 	}
 
-	private void doExecuteAlgorithm(AlgorithmContext context) throws IOException {
+	private void doExecuteAlgorithm(AlgorithmData data, AlgorithmContext context, boolean whole) throws IOException {
 		s_log.info("Executing algorithm [{}]", m_exeSrc.getAlgorithmConfig().getName());
-		m_exeSrc.getAlgorithm().execute(m_algoData, context);
-		m_algoData.releaseInputs();
-		assertSuccess();
+		m_exeSrc.getAlgorithm().execute(data, context);
+		if ( whole ) {
+			data.releaseInputs();
+			assertSuccess();
+		}
 	}
 
 	private void assertSuccess() {
@@ -311,6 +379,17 @@ public class AlgoRunner {
 	}
 
 	public void saveOutputData(WriteMode writeMode) throws IOException {
+		PhaseTimer timer = TaskStats.instance().startPhase("save");
+		boolean success = false;
+		try {
+			doSaveOutputData(writeMode);
+			success = true;
+		} finally {
+			timer.done(success);
+		}
+	}
+
+	private void doSaveOutputData(WriteMode writeMode) throws IOException {
 		Set<String> fromData = m_algoData.getOutputDatasetNames();
 		Set<String> fromSrc = m_exeSrc.getOutputDatasetNames(SourceType.DATA);
 		// fromData should have all of fromSrc
@@ -345,6 +424,7 @@ public class AlgoRunner {
 		boolean writeSerialized = writeMode!=WriteMode.FILES_ONLY;
 
 		if ( writeFiles ) {
+			TaskStats.instance().add(TaskStats.FILES_WRITTEN, fileKeyCount);
 			handleRemainingFileWrites(name, src, dataset);
 			dataset.release();
 		}
@@ -373,8 +453,15 @@ public class AlgoRunner {
 
 	public void copyOutputToFinal(String name) throws IOException {
 		s_log.info("Begin copying output dataset [{}] to final storage", name);
-		DatasetSource src = m_exeSrc.getOutputDatasetSource(name);
-		src.copyToFinal();
+		PhaseTimer timer = TaskStats.instance().startPhase("copy");
+		boolean success = false;
+		try {
+			DatasetSource src = m_exeSrc.getOutputDatasetSource(name);
+			src.copyToFinal();
+			success = true;
+		} finally {
+			timer.done(success);
+		}
 		s_log.info("End copying output dataset [{}] to final storage", name);
 	}
 
@@ -384,9 +471,16 @@ public class AlgoRunner {
 	}
 
 	public void buildLogsDatasets() throws IOException {
-		for ( String name : m_exeSrc.getOutputDatasetNames(SourceType.LOGS) ) {
-			Dataset dataset = buildLogsDataset(name);
-			m_logData.addOutputDataset(name, dataset);
+		PhaseTimer timer = TaskStats.instance().startPhase("logs");
+		boolean success = false;
+		try {
+			for ( String name : m_exeSrc.getOutputDatasetNames(SourceType.LOGS) ) {
+				Dataset dataset = buildLogsDataset(name);
+				m_logData.addOutputDataset(name, dataset);
+			}
+			success = true;
+		} finally {
+			timer.done(success);
 		}
 	}
 
@@ -400,8 +494,15 @@ public class AlgoRunner {
 		
 	public void saveLogs(WriteMode writeMode) throws IOException {
 		s_log.info("Begin writing logs datasets");
-		for ( String name : m_exeSrc.getOutputDatasetNames(SourceType.LOGS) ) {
-			saveLogsDataset(name, writeMode);
+		PhaseTimer timer = TaskStats.instance().startPhase("saveLogs");
+		boolean success = false;
+		try {
+			for ( String name : m_exeSrc.getOutputDatasetNames(SourceType.LOGS) ) {
+				saveLogsDataset(name, writeMode);
+			}
+			success = true;
+		} finally {
+			timer.done(success);
 		}
 		s_log.info("End writing logs datasets");
 	}
@@ -472,7 +573,9 @@ public class AlgoRunner {
 		public void addFile(DataKey key, DataFile file) throws IOException {
 			DataFileSink fileSink = m_src.getDataFileSink(key);
 			if ( file.getFileSource()!=null ) {
-				fileSink.writeFile(file.getFileSource().getFileInputStream());
+				CountingInputStream input = new CountingInputStream(file.getFileSource().getFileInputStream());
+				fileSink.writeFile(input);
+				TaskStats.instance().writes(fileSink).add(input.getByteCount());
 				file.release();
 			} else {
 				file.setFileSink(fileSink);
@@ -488,7 +591,9 @@ public class AlgoRunner {
 
 	private void doFileWrite(DatasetSource src, DataKey key, DataFile file) throws IOException {
 		DataFileSink fileSink = src.getDataFileSink(key);
-		fileSink.writeFile(file.getBytes());
+		byte[] bytes = file.getBytes();
+		fileSink.writeFile(bytes);
+		TaskStats.instance().writes(fileSink).add(bytes.length);
 	}
 
 	public static class AlgoRunnerConfig extends MR4CRunnerConfig<ExecutionSource> {
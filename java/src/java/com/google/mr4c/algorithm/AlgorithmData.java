@@ -175,6 +175,29 @@ public class AlgorithmData {
 	}
 
 	public AlgorithmData slice(DataKeyFilter filter) {
+		return slice(filter, false);
+	}
+
+	/**
+	  * Slices only the inputs.  The slice gets its own empty output datasets,
+	  * writing to the same place as the ones of this data; add them back
+	  * with addOutputs() when the slice is done.
+	*/
+	public AlgorithmData sliceInputs(DataKeyFilter filter) {
+		return slice(filter, true);
+	}
+
+	/**
+	  * Adds the output of a slice from sliceInputs() to the output datasets
+	  * of this data
+	*/
+	public synchronized void addOutputs(AlgorithmData slice) {
+		for ( String name : slice.getOutputDatasetNames() ) {
+			getOutputDataset(name).addWrittenSlice(slice.getOutputDataset(name));
+		}
+	}
+
+	private AlgorithmData slice(DataKeyFilter filter, boolean emptyOutputs) {
 		AlgorithmData slice = new AlgorithmData();
 		for ( String excluded : m_excludedInputs ) {
 			slice.excludeInputDatasetFromKeyspace(excluded);
@@ -185,7 +208,7 @@ public class AlgorithmData {
 		}
 		for ( String name : getOutputDatasetNames() ) {
 			Dataset dataset = getOutputDataset(name);
-			slice.addOutputDataset(name, dataset.slice(filter));
+			slice.addOutputDataset(name, emptyOutputs ? dataset.toEmpty() : dataset.slice(filter));
 		}
 		Properties config = slice.getConfig();
 		config.putAll(getConfig());
@@ -32,6 +32,7 @@ public class AlgorithmConfig {
 	private List<String> optionalInputs = new ArrayList<String>();
 	private List<DimensionConfig> dimensions = new ArrayList<DimensionConfig>();
 	private List<String> extras = new ArrayList<String>();
+	private boolean threadSafe=false;
 
 
 	// for gson	
@@ -107,6 +108,19 @@ public class AlgorithmConfig {
 		this.extras.add(extra);
 	}
 
+	/**
+	  * True if the algorithm can execute on several threads at once in
+	  * one process.  Nothing runs it concurrently by default unless this
+	  * is set.
+	*/
+	public boolean isThreadSafe() {
+		return this.threadSafe;
+	}
+
+	public void setThreadSafe(boolean threadSafe) {
+		this.threadSafe = threadSafe;
+	}
+
 	public boolean equals(Object obj) {
 		if ( this==obj ) return true;
 		if ( !obj.getClass().equals(this.getClass()) ) return false;
@@ -120,6 +134,7 @@ public class AlgorithmConfig {
 		if ( !optionalInputs.equals(config.optionalInputs) ) return false;
 		if ( !dimensions.equals(config.dimensions) ) return false;
 		if ( !extras.equals(config.extras) ) return false;
+		if ( threadSafe!=config.threadSafe ) return false;
 		return true; 
 	}
 
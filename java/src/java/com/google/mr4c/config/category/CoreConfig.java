@@ -25,6 +25,22 @@ public class CoreConfig extends CategoryConfig {
 	public static final String PROP_SITE_CONF = "site.conf";
 	public static final String PROP_ROOT_DIR = "root.dir";
 	public static final String PROP_DUMP_PROPERTIES = "dump.properties";
+	public static final String PROP_NATIVE_BUFFER = "native.buffer";
+	public static final String PROP_CONTENT_CACHE_MB = "content.cache.mb";
+	public static final String PROP_PREFETCH_FILES = "prefetch.files";
+	public static final String PROP_PREFETCH_THREADS = "prefetch.threads";
+	public static final String PROP_PREFETCH_MB = "prefetch.mb";
+	public static final String PROP_LOCALIZE_THREADS = "localize.threads";
+	public static final String PROP_MBTILES_BATCH = "mbtiles.batch";
+	public static final String PROP_MBTILES_PAGE_SIZE = "mbtiles.page.size";
+	public static final String PROP_MBTILES_READERS = "mbtiles.readers";
+	public static final String PROP_RANDOM_POSITIONED = "random.positioned";
+	public static final String PROP_RANDOM_BLOCK_KB = "random.block.kb";
+	public static final String PROP_RANDOM_CACHE_BLOCKS = "random.cache.blocks";
+	public static final String PROP_COPY_THREADS = "copy.threads";
+	public static final String PROP_COPY_RETRIES = "copy.retries";
+	public static final String PROP_PACK_SHARD = "pack.shard";
+	public static final String PROP_LOCAL_THREADS = "local.threads";
 
 	// Deprecated Properties
 	public static final String PROP_LOG4J_CONF_OLD = "mr4c.log4j";
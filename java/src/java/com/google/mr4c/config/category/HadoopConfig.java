@@ -28,6 +28,14 @@ public class HadoopConfig extends CategoryConfig {
 	public static final String PROP_MIN_MEMORY = "memory.min";
 	public static final String PROP_MAX_MEMORY = "memory.max";
 	public static final String PROP_ALGORITHM_CLASSPATH = "algorithm.classpath";
+	public static final String PROP_SHUFFLE_FORMAT = "shuffle.format";
+	public static final String PROP_REDUCE_TASKS = "reduce.tasks";
+	public static final String PROP_DATASET_PARTS = "dataset.parts";
+	public static final String PROP_MERGE_DIR = "merge.dir";
+	public static final String PROP_SPLIT_COST = "split.cost";
+	public static final String PROP_SPLIT_PROFILE = "split.profile";
+	public static final String PROP_SPLITS_PER_TASK = "splits.per.task";
+	public static final String PROP_MAP_THREADS = "map.threads";
 
 	public HadoopConfig() {
 		super(Category.HADOOP);
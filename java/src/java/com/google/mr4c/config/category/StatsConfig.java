@@ -22,6 +22,7 @@ public class StatsConfig extends CategoryConfig {
 	public static final String PROP_STATSD_HOST = "statsd.host";
 	public static final String PROP_STATSD_PORT = "statsd.port";
 	public static final String PROP_STATSD_FLUSH = "statsd.flush";
+	public static final String PROP_STATSD_AGGREGATE = "statsd.aggregate";
 
 	// Deprecated Properties
 	public static final String PROP_CLIENT_OLD = "mr4c.stats.client";
@@ -67,6 +67,15 @@ public class ResourceConfig {
 		}
 	}
 	
+	/**
+	  * Multiplies every request by factor.  Call before adding limits.
+	*/
+	public synchronized void scaleRequests(int factor) {
+		for ( Map.Entry<String,ResourceRequest> entry : m_requests.entrySet() ) {
+			entry.setValue(entry.getValue().scale(factor));
+		}
+	}
+
 	public void addLimit(ResourceLimit limit) {
 		ResourceRequest request = getRequest(limit.getResource());
 		if ( request!=null ) {
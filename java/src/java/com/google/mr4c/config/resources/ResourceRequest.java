@@ -68,6 +68,18 @@ public class ResourceRequest {
 		}
 	}
 
+	/**
+	  * A request for factor times as much, for a task doing that many
+	  * things at once.  Limits are not carried over.
+	*/
+	public ResourceRequest scale(int factor) {
+		return new ResourceRequest(
+			m_resource,
+			m_min==null ? null : m_min * factor,
+			m_max==null ? null : m_max * factor
+		);
+	}
+
 	public ResourceLimit getLimit() {
 		return m_limit;
 	}
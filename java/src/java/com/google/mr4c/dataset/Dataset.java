@@ -30,18 +30,24 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+  * Files and metadata by key.  Safe for many threads to add to and read
+  * from at once: adds are atomic put-if-absent operations, writes to an
+  * output context happen outside any shared lock, and iteration sees a
+  * weakly consistent view that never blocks writers.
+*/
 public class Dataset {
 
-	private Map<DataKey,DataFile> m_files = Collections.synchronizedMap( new HashMap<DataKey,DataFile>() );
-	private Map<DataKey,MetadataMap> m_meta = Collections.synchronizedMap( new HashMap<DataKey,MetadataMap>() );
-	private DatasetContext m_context;
+	private ConcurrentMap<DataKey,DataFile> m_files = new ConcurrentHashMap<DataKey,DataFile>();
+	private ConcurrentMap<DataKey,MetadataMap> m_meta = new ConcurrentHashMap<DataKey,MetadataMap>();
+	private volatile DatasetContext m_context;
 	private Object m_token = new Object();
 
 	public Dataset() {
@@ -59,12 +65,19 @@ public class Dataset {
 		m_context = context;
 	}
 
-	public synchronized DataFile getFile(DataKey key) {
+	/**
+	  * If another thread finds the same file first, its copy is returned
+	*/
+	public DataFile getFile(DataKey key) {
 		DataFile file = m_files.get(key);
 		if ( file==null ) {
 			file = findFile(key);
 			if ( file!=null ) {
-				addFile(key,file);
+				DataFile existing = m_files.putIfAbsent(key,file);
+				if ( existing!=null ) {
+					return existing;
+				}
+				addToContext(key,file);
 			}
 		}
 		return file;
@@ -103,16 +116,31 @@ public class Dataset {
 		return !m_files.isEmpty();
 	}
 
-	public synchronized void addFile(DataKey key, DataFile file) {
-		if ( m_files.containsKey(key) ) {
+	public void addFile(DataKey key, DataFile file) {
+		if ( m_files.putIfAbsent(key,file)!=null ) {
 			throw new IllegalArgumentException(String.format("Tried to add two files for key [%s]", key));
 		}
-		m_files.put(key,file);
-		if ( m_context.isOutput() ) {
-			try {
-				m_context.addFile(key, file);
-			} catch ( IOException ioe ) {
-				throw new IllegalStateException(ioe);
+		addToContext(key,file);
+	}
+
+	/**
+	  * Writes to an output context.  If the write fails, the file is taken
+	  * back out so the key can be added again.
+	*/
+	private void addToContext(DataKey key, DataFile file) {
+		DatasetContext context = m_context;
+		if ( !context.isOutput() ) {
+			return;
+		}
+		boolean done = false;
+		try {
+			context.addFile(key, file);
+			done = true;
+		} catch ( IOException ioe ) {
+			throw new IllegalStateException(ioe);
+		} finally {
+			if ( !done ) {
+				m_files.remove(key, file);
 			}
 		}
 	}
@@ -129,18 +157,17 @@ public class Dataset {
 		return !m_meta.isEmpty();
 	}
 
-	public synchronized void addMetadata(DataKey key, MetadataMap meta) {
-		if ( m_meta.containsKey(key) ) {
+	public void addMetadata(DataKey key, MetadataMap meta) {
+		if ( m_meta.putIfAbsent(key,meta)!=null ) {
 			throw new IllegalArgumentException(String.format("Tried to add two metadata maps for key [%s]", key));
 		}
-		m_meta.put(key,meta);
 	}
 
 	public boolean isEmpty() {
 		return !hasMetadata() && !hasFiles();
 	}
 	
-	public synchronized void release() {
+	public void release() {
 		for ( DataFile file : m_files.values() ) {
 			file.release();
 		}
@@ -188,49 +215,60 @@ public class Dataset {
 	}
 
 	public void addSlice(Dataset slice) {
-		for ( DataKey key : slice.getAllFileKeys() ) {
-			DataFile file = slice.getFile(key);
-			addFile(key,file);
+		for ( Map.Entry<DataKey,DataFile> entry : slice.m_files.entrySet() ) {
+			addFile(entry.getKey(), entry.getValue());
+		}
+		for ( Map.Entry<DataKey,MetadataMap> entry : slice.m_meta.entrySet() ) {
+			addMetadata(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	  * Adds a slice whose files were already written through the same
+	  * context, such as one from toEmpty(), without writing them again
+	*/
+	public void addWrittenSlice(Dataset slice) {
+		for ( Map.Entry<DataKey,DataFile> entry : slice.m_files.entrySet() ) {
+			if ( m_files.putIfAbsent(entry.getKey(), entry.getValue())!=null ) {
+				throw new IllegalArgumentException(String.format("Tried to add two files for key [%s]", entry.getKey()));
+			}
 		}
-		for ( DataKey key : slice.getAllMetadataKeys() ) {
-			MetadataMap meta = slice.getMetadata(key);
-			addMetadata(key,meta);
+		for ( Map.Entry<DataKey,MetadataMap> entry : slice.m_meta.entrySet() ) {
+			addMetadata(entry.getKey(), entry.getValue());
 		}
 	}
 
 	public Dataset slice(DataKeyFilter filter) {
 		Dataset slice = new Dataset();
-		synchronized (m_files) {
-			for ( DataKey key : getAllFileKeys() ) {
-				DataFile file = getFile(key);
-				if ( filter.filter(key) ) {
-					slice.addFile(key,file);
-				}
+		for ( Map.Entry<DataKey,DataFile> entry : m_files.entrySet() ) {
+			if ( filter.filter(entry.getKey()) ) {
+				slice.addFile(entry.getKey(), entry.getValue());
 			}
 		}
-		synchronized (m_meta) {
-			for ( DataKey key : getAllMetadataKeys() ) {
-				MetadataMap meta = getMetadata(key);
-				if ( filter.filter(key) ) {
-					slice.addMetadata(key,meta);
-				}
+		for ( Map.Entry<DataKey,MetadataMap> entry : m_meta.entrySet() ) {
+			if ( filter.filter(entry.getKey()) ) {
+				slice.addMetadata(entry.getKey(), entry.getValue());
 			}
 		}
 		slice.setContext(m_context);
 		return slice;
 	}
 
+	/**
+	  * Returns an empty dataset with the same context as this one
+	*/
+	public Dataset toEmpty() {
+		Dataset dataset = new Dataset();
+		dataset.setContext(m_context);
+		return dataset;
+	}
+
 	/**
 	  * Returns only the data file part of this dataset
 	*/
 	public Dataset toFilesOnly() {
 		Dataset dataset = new Dataset();
-		synchronized (m_files) {
-			for ( DataKey key : getAllFileKeys() ) {
-				DataFile file = getFile(key);
-				dataset.addFile(key,file);
-			}
-		}
+		dataset.m_files.putAll(m_files);
 		dataset.setContext(m_context);
 		return dataset;
 	}
@@ -240,12 +278,7 @@ public class Dataset {
 	*/
 	public Dataset toMetadataOnly() {
 		Dataset dataset = new Dataset();
-		synchronized (m_meta) {
-			for ( DataKey key : getAllMetadataKeys() ) {
-				MetadataMap meta = getMetadata(key);
-				dataset.addMetadata(key,meta);
-			}
-		}
+		dataset.m_meta.putAll(m_meta);
 		dataset.setContext(m_context);
 		return dataset;
 	}
@@ -255,10 +288,8 @@ public class Dataset {
 	*/
 	public Set<DataKey> getDependentKeys(DataKeyDimension dim) {
 		Set<DataKey> metaKeys = new HashSet<DataKey>();
-		synchronized (m_meta) {
-			for ( MetadataMap map : m_meta.values() ) {
-				metaKeys.addAll(MetadataKeyExtractor.findKeys(map));
-			}
+		for ( MetadataMap map : m_meta.values() ) {
+			metaKeys.addAll(MetadataKeyExtractor.findKeys(map));
 		}
 		HasDimensionFilter filter = new HasDimensionFilter(dim);
 		return DataKeyUtils.filter(filter,metaKeys);
@@ -266,11 +297,9 @@ public class Dataset {
 
 	public Collection<DataFileSource> getDataFileSources() {
 		Collection<DataFileSource> sources = new ArrayList<DataFileSource>();
-		synchronized (m_files) {
-			for ( DataFile file : m_files.values() ) {
-				DataFileSource src = file.getFileSource();
-				sources.add(src);
-			}
+		for ( DataFile file : m_files.values() ) {
+			DataFileSource src = file.getFileSource();
+			sources.add(src);
 		}
 		return sources;
 	}
@@ -0,0 +1,360 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.dataset.DataFile;
+import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.metadata.MetadataArray;
+import com.google.mr4c.metadata.MetadataElement;
+import com.google.mr4c.metadata.MetadataElementType;
+import com.google.mr4c.metadata.MetadataField;
+import com.google.mr4c.metadata.MetadataKey;
+import com.google.mr4c.metadata.MetadataKeyExtractor;
+import com.google.mr4c.metadata.MetadataList;
+import com.google.mr4c.metadata.MetadataMap;
+import com.google.mr4c.metadata.PrimitiveFactory;
+import com.google.mr4c.metadata.PrimitiveType;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+  * Compact binary form of a Dataset, for passing datasets between map and
+  * reduce tasks.  Like the JSON form, only file content types are included,
+  * not file content.  Keys are written as indexes into a DataKeyDictionary,
+  * and metadata values are written with their primitive encodings.
+*/
+public class BinaryDatasetSerializer {
+
+	public void serializeDataset(Dataset dataset, DataOutput out) throws IOException {
+
+		List<DataKey> fileKeys = new ArrayList<DataKey>(dataset.getAllFileKeys());
+		List<DataKey> metaKeys = new ArrayList<DataKey>(dataset.getAllMetadataKeys());
+
+		DataKeyDictionary dict = new DataKeyDictionary();
+		dict.addKeys(fileKeys);
+		dict.addKeys(metaKeys);
+		for ( DataKey key : metaKeys ) {
+			dict.addKeys(MetadataKeyExtractor.findKeys(dataset.getMetadata(key)));
+		}
+		dict.write(out);
+
+		WritableUtils.writeVInt(out, fileKeys.size());
+		for ( DataKey key : fileKeys ) {
+			dict.writeKey(out, key);
+			writeNullableString(out, dataset.getFile(key).getContentType());
+		}
+
+		WritableUtils.writeVInt(out, metaKeys.size());
+		for ( DataKey key : metaKeys ) {
+			dict.writeKey(out, key);
+			writeMap(out, dict, dataset.getMetadata(key));
+		}
+	}
+
+	public Dataset deserializeDataset(DataInput in) throws IOException {
+
+		Dataset dataset = new Dataset();
+		DataKeyDictionary dict = new DataKeyDictionary();
+		dict.readFields(in);
+
+		int numFiles = WritableUtils.readVInt(in);
+		for ( int i=0; i<numFiles; i++ ) {
+			DataKey key = dict.readKey(in);
+			dataset.addFile(key, new DataFile(readNullableString(in)));
+		}
+
+		int numMeta = WritableUtils.readVInt(in);
+		for ( int i=0; i<numMeta; i++ ) {
+			DataKey key = dict.readKey(in);
+			dataset.addMetadata(key, readMap(in, dict));
+		}
+		return dataset;
+	}
+
+	private void writeElement(DataOutput out, DataKeyDictionary dict, MetadataElement element) throws IOException {
+		MetadataElementType type = element.getMetadataElementType();
+		out.writeByte(type.ordinal());
+		switch ( type ) {
+			case FIELD :
+				MetadataField field = (MetadataField) element;
+				out.writeByte(field.getType().ordinal());
+				writeValue(out, field.getType(), field.getValue());
+				break;
+			case ARRAY :
+				MetadataArray array = (MetadataArray) element;
+				out.writeByte(array.getType().ordinal());
+				WritableUtils.writeVInt(out, array.size());
+				if ( array.getPrimitiveArray()!=null ) {
+					writePrimitiveArray(out, array);
+				} else {
+					for ( Object val : array.getValues() ) {
+						writeValue(out, array.getType(), val);
+					}
+				}
+				break;
+			case LIST :
+				List<MetadataElement> list = ((MetadataList) element).getList();
+				WritableUtils.writeVInt(out, list.size());
+				for ( MetadataElement child : list ) {
+					writeElement(out, dict, child);
+				}
+				break;
+			case MAP :
+				writeMap(out, dict, (MetadataMap) element);
+				break;
+			case KEY :
+				dict.writeKey(out, ((MetadataKey) element).getKey());
+				break;
+			default :
+				throw new IllegalArgumentException(String.format("Unsupported metadata element type [%s]", type));
+		}
+	}
+
+	private MetadataElement readElement(DataInput in, DataKeyDictionary dict) throws IOException {
+		MetadataElementType type = readEnum(in, MetadataElementType.values());
+		switch ( type ) {
+			case FIELD :
+				PrimitiveType fieldType = readEnum(in, PrimitiveType.values());
+				return new MetadataField(readValue(in, fieldType), fieldType);
+			case ARRAY :
+				PrimitiveType arrayType = readEnum(in, PrimitiveType.values());
+				int numVals = WritableUtils.readVInt(in);
+				MetadataArray array = readPrimitiveArray(in, arrayType, numVals);
+				if ( array!=null ) {
+					return array;
+				}
+				List<Object> vals = new ArrayList<Object>(numVals);
+				for ( int i=0; i<numVals; i++ ) {
+					vals.add(readValue(in, arrayType));
+				}
+				return new MetadataArray(vals, arrayType);
+			case LIST :
+				int numElements = WritableUtils.readVInt(in);
+				List<MetadataElement> list = new ArrayList<MetadataElement>(numElements);
+				for ( int i=0; i<numElements; i++ ) {
+					list.add(readElement(in, dict));
+				}
+				return new MetadataList(list);
+			case MAP :
+				return readMap(in, dict);
+			case KEY :
+				return new MetadataKey(dict.readKey(in));
+			default :
+				throw new IOException(String.format("Unsupported metadata element type [%s]", type));
+		}
+	}
+
+	/**
+	  * Writes the whole array as one block.  The bytes are the same as
+	  * writing each value with DataOutput, so either form reads back.
+	*/
+	private void writePrimitiveArray(DataOutput out, MetadataArray array) throws IOException {
+		Object vals = array.getPrimitiveArray();
+		switch ( array.getType() ) {
+			case BYTE :
+				out.write((byte[]) vals);
+				return;
+			case INTEGER :
+				ByteBuffer intBuf = ByteBuffer.allocate(array.size() * 4);
+				intBuf.asIntBuffer().put((int[]) vals);
+				out.write(intBuf.array());
+				return;
+			case FLOAT :
+				ByteBuffer floatBuf = ByteBuffer.allocate(array.size() * 4);
+				floatBuf.asFloatBuffer().put((float[]) vals);
+				out.write(floatBuf.array());
+				return;
+			case DOUBLE :
+				ByteBuffer doubleBuf = ByteBuffer.allocate(array.size() * 8);
+				doubleBuf.asDoubleBuffer().put((double[]) vals);
+				out.write(doubleBuf.array());
+				return;
+			case SIZE_T :
+				ByteBuffer longBuf = ByteBuffer.allocate(array.size() * 8);
+				longBuf.asLongBuffer().put((long[]) vals);
+				out.write(longBuf.array());
+				return;
+			default :
+				throw new IllegalArgumentException(String.format("No primitive array for type [%s]", array.getType()));
+		}
+	}
+
+	// returns null for types that aren't stored as primitive arrays
+	private MetadataArray readPrimitiveArray(DataInput in, PrimitiveType type, int num) throws IOException {
+		switch ( type ) {
+			case BYTE :
+				byte[] bytes = new byte[num];
+				in.readFully(bytes);
+				return new MetadataArray(bytes);
+			case INTEGER :
+				int[] ints = new int[num];
+				readBlock(in, num * 4).asIntBuffer().get(ints);
+				return new MetadataArray(ints);
+			case FLOAT :
+				float[] floats = new float[num];
+				readBlock(in, num * 4).asFloatBuffer().get(floats);
+				return new MetadataArray(floats);
+			case DOUBLE :
+				double[] doubles = new double[num];
+				readBlock(in, num * 8).asDoubleBuffer().get(doubles);
+				return new MetadataArray(doubles);
+			case SIZE_T :
+				long[] longs = new long[num];
+				readBlock(in, num * 8).asLongBuffer().get(longs);
+				return new MetadataArray(longs);
+			default :
+				return null;
+		}
+	}
+
+	private ByteBuffer readBlock(DataInput in, int size) throws IOException {
+		byte[] bytes = new byte[size];
+		in.readFully(bytes);
+		return ByteBuffer.wrap(bytes);
+	}
+
+	private void writeMap(DataOutput out, DataKeyDictionary dict, MetadataMap map) throws IOException {
+		List<Map.Entry<String,MetadataElement>> entries = new ArrayList<Map.Entry<String,MetadataElement>>(map.getMap().entrySet());
+		WritableUtils.writeVInt(out, entries.size());
+		for ( Map.Entry<String,MetadataElement> entry : entries ) {
+			Text.writeString(out, entry.getKey());
+			writeElement(out, dict, entry.getValue());
+		}
+	}
+
+	private MetadataMap readMap(DataInput in, DataKeyDictionary dict) throws IOException {
+		int num = WritableUtils.readVInt(in);
+		Map<String,MetadataElement> map = new HashMap<String,MetadataElement>();
+		for ( int i=0; i<num; i++ ) {
+			String name = Text.readString(in);
+			map.put(name, readElement(in, dict));
+		}
+		return new MetadataMap(map);
+	}
+
+	private void writeValue(DataOutput out, PrimitiveType type, Object val) throws IOException {
+		val = coerce(type, val);
+		switch ( type ) {
+			case BOOLEAN :
+				out.writeBoolean((Boolean) val);
+				break;
+			case BYTE :
+				out.writeByte((Byte) val);
+				break;
+			case INTEGER :
+				out.writeInt((Integer) val);
+				break;
+			case FLOAT :
+				out.writeFloat((Float) val);
+				break;
+			case DOUBLE :
+				out.writeDouble((Double) val);
+				break;
+			case STRING :
+				Text.writeString(out, (String) val);
+				break;
+			case SIZE_T :
+				out.writeLong((Long) val);
+				break;
+			case LONG_DOUBLE :
+				Text.writeString(out, val.toString());
+				break;
+			default :
+				throw new IllegalArgumentException(String.format("Unsupported primitive type [%s]", type));
+		}
+	}
+
+	private Object readValue(DataInput in, PrimitiveType type) throws IOException {
+		switch ( type ) {
+			case BOOLEAN :
+				return in.readBoolean();
+			case BYTE :
+				return in.readByte();
+			case INTEGER :
+				return in.readInt();
+			case FLOAT :
+				return in.readFloat();
+			case DOUBLE :
+				return in.readDouble();
+			case STRING :
+				return Text.readString(in);
+			case SIZE_T :
+				return in.readLong();
+			case LONG_DOUBLE :
+				return PrimitiveFactory.parseField(Text.readString(in), type).getValue();
+			default :
+				throw new IOException(String.format("Unsupported primitive type [%s]", type));
+		}
+	}
+
+	/**
+	  * Metadata values aren't guaranteed to be the java type matching their
+	  * primitive type.  Convert the same way a JSON round trip would.
+	*/
+	private Object coerce(PrimitiveType type, Object val) {
+		if ( getJavaType(type).isInstance(val) ) {
+			return val;
+		}
+		return PrimitiveFactory.parseField(val.toString(), type).getValue();
+	}
+
+	private Class<?> getJavaType(PrimitiveType type) {
+		switch ( type ) {
+			case BOOLEAN : return Boolean.class;
+			case BYTE : return Byte.class;
+			case INTEGER : return Integer.class;
+			case FLOAT : return Float.class;
+			case DOUBLE : return Double.class;
+			case STRING : return String.class;
+			case SIZE_T : return Long.class;
+			case LONG_DOUBLE : return BigDecimal.class;
+			default : throw new IllegalArgumentException(String.format("Unsupported primitive type [%s]", type));
+		}
+	}
+
+	private void writeNullableString(DataOutput out, String str) throws IOException {
+		out.writeBoolean(str!=null);
+		if ( str!=null ) {
+			Text.writeString(out, str);
+		}
+	}
+
+	private String readNullableString(DataInput in) throws IOException {
+		return in.readBoolean() ? Text.readString(in) : null;
+	}
+
+	private <E extends Enum<E>> E readEnum(DataInput in, E[] values) throws IOException {
+		int ordinal = in.readByte();
+		if ( ordinal<0 || ordinal>=values.length ) {
+			throw new IOException(String.format("Invalid ordinal [%d] for %s", ordinal, values.getClass().getComponentType().getSimpleName()));
+		}
+		return values[ordinal];
+	}
+
+}
@@ -0,0 +1,150 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.keys.DataKeyDimension;
+import com.google.mr4c.keys.DataKeyElement;
+import com.google.mr4c.keys.DataKeyFactory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+  * Table of the dimensions and elements used by a group of keys.  The table
+  * is written once, after which each key is written as a list of element
+  * indexes into the table.
+*/
+public class DataKeyDictionary {
+
+	private List<DataKeyDimension> m_dims = new ArrayList<DataKeyDimension>();
+	private Map<DataKeyDimension,Integer> m_dimIndexes = new HashMap<DataKeyDimension,Integer>();
+	private List<DataKeyElement> m_elements = new ArrayList<DataKeyElement>();
+	private Map<DataKeyElement,Integer> m_elementIndexes = new HashMap<DataKeyElement,Integer>();
+
+	public DataKeyDictionary() {}
+
+	public DataKeyDictionary(Collection<DataKey> keys) {
+		addKeys(keys);
+	}
+
+	public void addKeys(Collection<DataKey> keys) {
+		for ( DataKey key : keys ) {
+			addKey(key);
+		}
+	}
+
+	public void addKey(DataKey key) {
+		for ( DataKeyElement element : key.getElements() ) {
+			addElement(element);
+		}
+	}
+
+	private void addElement(DataKeyElement element) {
+		if ( m_elementIndexes.containsKey(element) ) {
+			return;
+		}
+		DataKeyDimension dim = element.getDimension();
+		if ( !m_dimIndexes.containsKey(dim) ) {
+			m_dimIndexes.put(dim, m_dims.size());
+			m_dims.add(dim);
+		}
+		m_elementIndexes.put(element, m_elements.size());
+		m_elements.add(element);
+	}
+
+	public int getElementCount() {
+		return m_elements.size();
+	}
+
+	public void clear() {
+		m_dims.clear();
+		m_dimIndexes.clear();
+		m_elements.clear();
+		m_elementIndexes.clear();
+	}
+
+	public void write(DataOutput out) throws IOException {
+		WritableUtils.writeVInt(out, m_dims.size());
+		for ( DataKeyDimension dim : m_dims ) {
+			Text.writeString(out, dim.getName());
+		}
+		WritableUtils.writeVInt(out, m_elements.size());
+		for ( DataKeyElement element : m_elements ) {
+			WritableUtils.writeVInt(out, m_dimIndexes.get(element.getDimension()));
+			Text.writeString(out, element.getIdentifier());
+		}
+	}
+
+	public void readFields(DataInput in) throws IOException {
+		clear();
+		int numDims = WritableUtils.readVInt(in);
+		for ( int i=0; i<numDims; i++ ) {
+			DataKeyDimension dim = new DataKeyDimension(Text.readString(in));
+			m_dimIndexes.put(dim, i);
+			m_dims.add(dim);
+		}
+		int numElements = WritableUtils.readVInt(in);
+		for ( int i=0; i<numElements; i++ ) {
+			DataKeyDimension dim = m_dims.get(WritableUtils.readVInt(in));
+			DataKeyElement element = new DataKeyElement(Text.readString(in), dim);
+			m_elementIndexes.put(element, i);
+			m_elements.add(element);
+		}
+	}
+
+	public void writeKey(DataOutput out, DataKey key) throws IOException {
+		WritableUtils.writeVInt(out, key.getElements().size());
+		for ( DataKeyElement element : key.getElements() ) {
+			Integer index = m_elementIndexes.get(element);
+			if ( index==null ) {
+				throw new IllegalArgumentException(String.format("Element [%s] is not in the dictionary", element));
+			}
+			WritableUtils.writeVInt(out, index);
+		}
+	}
+
+	public DataKey readKey(DataInput in) throws IOException {
+		int num = WritableUtils.readVInt(in);
+		if ( num==1 ) {
+			return DataKeyFactory.newKey(readElement(in));
+		}
+		List<DataKeyElement> elements = new ArrayList<DataKeyElement>(num);
+		for ( int i=0; i<num; i++ ) {
+			elements.add(readElement(in));
+		}
+		return DataKeyFactory.newKey(elements);
+	}
+
+	private DataKeyElement readElement(DataInput in) throws IOException {
+		int index = WritableUtils.readVInt(in);
+		if ( index<0 || index>=m_elements.size() ) {
+			throw new IOException(String.format("Element index [%d] is out of range; dictionary has %d elements", index, m_elements.size()));
+		}
+		return m_elements.get(index);
+	}
+
+}
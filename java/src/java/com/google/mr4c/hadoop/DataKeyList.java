@@ -17,10 +17,9 @@
 package com.google.mr4c.hadoop;
 
 import com.google.mr4c.keys.DataKey;
-import com.google.mr4c.serialize.DatasetSerializer;
-import com.google.mr4c.serialize.SerializerFactories;
 
 import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
 
 import java.io.DataInput;
 import java.io.DataOutput;
@@ -29,10 +28,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
+/**
+  * The keys for a split.  Serialized as a DataKeyDictionary followed by
+  * the keys as element indexes, so each dimension and element name is only
+  * written once per split.
+*/
 public class DataKeyList implements Writable {
 
 	private List<DataKey> m_keys = new ArrayList<DataKey>();
-	private DatasetSerializer m_serializer = SerializerFactories.getSerializerFactory("application/json").createDatasetSerializer();
 
 	public DataKeyList() {}
 
@@ -50,19 +53,20 @@ public class DataKeyList implements Writable {
 
 	public void readFields(DataInput in) throws IOException {
 		m_keys.clear();
-		int num = in.readInt();
+		DataKeyDictionary dict = new DataKeyDictionary();
+		dict.readFields(in);
+		int num = WritableUtils.readVInt(in);
 		for ( int i=0; i<num; i++ ){
-			String serializedKey = in.readUTF();
-			DataKey key = m_serializer.deserializeDataKey(serializedKey);
-			m_keys.add(key);
+			m_keys.add(dict.readKey(in));
 		}
 	}
 
 	public void write(DataOutput out) throws IOException {
-		out.writeInt(m_keys.size());
+		DataKeyDictionary dict = new DataKeyDictionary(m_keys);
+		dict.write(out);
+		WritableUtils.writeVInt(out, m_keys.size());
 		for ( DataKey key : m_keys ) {
-			String serializedKey = m_serializer.serializeDataKey(key);
-			out.writeUTF(serializedKey);
+			dict.writeKey(out, key);
 		}
 	}
 
@@ -16,16 +16,43 @@
 
 package com.google.mr4c.hadoop;
 
+import com.google.mr4c.config.category.Category;
+import com.google.mr4c.config.category.CategoryConfig;
+import com.google.mr4c.config.category.CoreConfig;
+import com.google.mr4c.config.category.MR4CConfig;
+import com.google.mr4c.content.ContentFactories;
 import com.google.mr4c.sources.DataFileSource;
+import com.google.mr4c.sources.URIDataFileSource;
+import com.google.mr4c.util.MR4CLogging;
 
 import java.io.IOException;
 import java.net.URI;
-import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapred.FileInputFormat;
 import org.apache.hadoop.mapred.InputSplit;
@@ -34,22 +61,58 @@ import org.apache.hadoop.mapred.RecordReader;
 import org.apache.hadoop.mapred.Reporter;
 import org.apache.hadoop.net.NetworkTopology;
 
+import org.slf4j.Logger;
+
 /**
   * Computes the hosts that best localize a set of DataFiles.  The calculation is
   * delegated to Hadoop's FileInputFormat class.  A single instance should be
   * used for multiple localize calls.  The instance will cache information
-  * discovered about the network topology.
+  * discovered about the network topology, and the block locations of files.
+  * Locations for files from URIs are fetched a directory at a time, and
+  * any other lookups run on a bounded thread pool.  The same listings
+  * provide file sizes.
 */
 public class DataLocalizer {
 
+	protected static final Logger s_log = MR4CLogging.getLogger(DataLocalizer.class);
+
+	private static AtomicInteger s_threadCount = new AtomicInteger();
+
 	private NetworkTopology m_topo = new NetworkTopology();
 	private BlockCalc m_calc = new BlockCalc();
+	private Configuration m_conf;
+	private ExecutorService m_executor;
+	private Map<Path,BlockLocation[]> m_locations = new ConcurrentHashMap<Path,BlockLocation[]>();
+	private Map<Path,Long> m_sizes = new ConcurrentHashMap<Path,Long>();
+	private Set<Path> m_listedDirs = Collections.synchronizedSet(new HashSet<Path>());
+
+	public DataLocalizer() {
+		this(getThreadsFromConfig(), new Configuration());
+	}
+
+	private static int getThreadsFromConfig() {
+		CategoryConfig conf = MR4CConfig.getDefaultInstance().getCategory(Category.CORE);
+		return Integer.parseInt(conf.getProperty(CoreConfig.PROP_LOCALIZE_THREADS, "8"));
+	}
+
+	public DataLocalizer(int threads, Configuration conf) {
+		m_conf = conf;
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "mr4c-localize-" + s_threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		// idle threads go away between jobs
+		executor.allowCoreThreadTimeOut(true);
+		m_executor = executor;
+	}
 	
 	public List<String> localize(Collection<DataFileSource> sources) throws IOException {
 		List<BlockLocation> allBlocks = new ArrayList<BlockLocation>();
 		long totalSize=0;
-		for ( DataFileSource src : sources ) {	
-			BlockLocation[] blocks = src.getBlockLocation();
+		for ( BlockLocation[] blocks : getBlockLocations(new ArrayList<DataFileSource>(sources)) ) {
 			allBlocks.addAll(Arrays.asList(blocks));
 			for ( BlockLocation block : blocks ) {
 				totalSize+=block.getLength();
@@ -60,6 +123,146 @@ public class DataLocalizer {
 
 	}
 
+	/**
+	  * Sizes of the files, from the directory listings where possible.
+	  * Sources that can't be listed are asked for their size.
+	*/
+	public long[] getFileSizes(List<DataFileSource> sources) throws IOException {
+		Path[] paths = listDirectories(sources);
+		long[] sizes = new long[sources.size()];
+		for ( int i=0; i<sources.size(); i++ ) {
+			Long size = paths[i]==null ? null : m_sizes.get(paths[i]);
+			sizes[i] = size==null ? sources.get(i).getFileSize() : size;
+		}
+		return sizes;
+	}
+
+	private List<BlockLocation[]> getBlockLocations(List<DataFileSource> sources) throws IOException {
+		Path[] paths = listDirectories(sources);
+
+		List<Future<BlockLocation[]>> lookups = new ArrayList<Future<BlockLocation[]>>();
+		for ( int i=0; i<sources.size(); i++ ) {
+			BlockLocation[] blocks = paths[i]==null ? null : m_locations.get(paths[i]);
+			lookups.add(blocks==null ? m_executor.submit(new FileLookup(sources.get(i), paths[i])) : null);
+		}
+
+		List<BlockLocation[]> result = new ArrayList<BlockLocation[]>();
+		for ( int i=0; i<sources.size(); i++ ) {
+			Future<BlockLocation[]> lookup = lookups.get(i);
+			result.add(lookup==null ? m_locations.get(paths[i]) : waitFor(lookup));
+		}
+		return result;
+	}
+
+	/**
+	  * Lists the directories of the sources that haven't been listed yet.
+	  * Returns the path of each source, or null if it isn't from a URI.
+	*/
+	private Path[] listDirectories(List<DataFileSource> sources) throws IOException {
+		Path[] paths = new Path[sources.size()];
+		Map<Path,FileSystem> dirs = new LinkedHashMap<Path,FileSystem>();
+		for ( int i=0; i<sources.size(); i++ ) {
+			DataFileSource src = sources.get(i);
+			if ( !(src instanceof URIDataFileSource) ) {
+				continue;
+			}
+			URI uri = ContentFactories.scrubURI(((URIDataFileSource) src).getURI());
+			FileSystem fs = FileSystem.get(uri, m_conf);
+			Path path = fs.makeQualified(new Path(uri));
+			paths[i] = path;
+			Path dir = path.getParent();
+			boolean known = m_locations.containsKey(path) && m_sizes.containsKey(path);
+			if ( dir!=null && !known && m_listedDirs.add(dir) ) {
+				dirs.put(dir, fs);
+			}
+		}
+
+		List<Future<Void>> listings = new ArrayList<Future<Void>>();
+		for ( Map.Entry<Path,FileSystem> entry : dirs.entrySet() ) {
+			listings.add(m_executor.submit(new DirectoryLister(entry.getValue(), entry.getKey())));
+		}
+		for ( Future<Void> listing : listings ) {
+			try {
+				waitFor(listing);
+			} catch ( IOException ioe ) {
+				// the files will be looked up one at a time instead
+				s_log.warn("Couldn't list block locations of a directory", ioe);
+			}
+		}
+		return paths;
+	}
+
+	private <T> T waitFor(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch ( InterruptedException ie ) {
+			Thread.currentThread().interrupt();
+			throw new IOException(ie);
+		} catch ( ExecutionException ee ) {
+			Throwable cause = ee.getCause();
+			if ( cause instanceof IOException ) {
+				throw (IOException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	// Same blocks that getFileBlockLocations(status, 0, blockSize) returns
+	private static BlockLocation[] getFirstBlocks(LocatedFileStatus status) {
+		List<BlockLocation> blocks = new ArrayList<BlockLocation>();
+		for ( BlockLocation block : status.getBlockLocations() ) {
+			if ( block.getOffset() < status.getBlockSize() ) {
+				blocks.add(block);
+			}
+		}
+		return blocks.toArray(new BlockLocation[blocks.size()]);
+	}
+
+	private class DirectoryLister implements Callable<Void> {
+
+		private FileSystem m_fs;
+		private Path m_dir;
+
+		private DirectoryLister(FileSystem fs, Path dir) {
+			m_fs = fs;
+			m_dir = dir;
+		}
+
+		public Void call() throws IOException {
+			int count = 0;
+			RemoteIterator<LocatedFileStatus> iter = m_fs.listLocatedStatus(m_dir);
+			while ( iter.hasNext() ) {
+				LocatedFileStatus status = iter.next();
+				if ( status.isFile() ) {
+					m_locations.put(status.getPath(), getFirstBlocks(status));
+					m_sizes.put(status.getPath(), status.getLen());
+					count++;
+				}
+			}
+			s_log.debug("Found block locations for {} files in [{}]", count, m_dir);
+			return null;
+		}
+	}
+
+	private class FileLookup implements Callable<BlockLocation[]> {
+
+		private DataFileSource m_src;
+		private Path m_path;
+
+		private FileLookup(DataFileSource src, Path path) {
+			m_src = src;
+			m_path = path;
+		}
+
+		public BlockLocation[] call() throws IOException {
+			BlockLocation[] blocks = m_src.getBlockLocation();
+			if ( m_path!=null ) {
+				m_locations.put(m_path, blocks);
+			}
+			return blocks;
+		}
+	}
+
 	// Extending FileInputFormat so we can access its not so well located
 	// protected method for calculating hosts
 	private static class BlockCalc extends FileInputFormat<Text,Text> {
@@ -77,5 +280,3 @@ public class DataLocalizer {
 
 
 }
-
-
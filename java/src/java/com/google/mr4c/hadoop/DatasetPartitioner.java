@@ -0,0 +1,80 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.keys.DataKey;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Partitioner;
+
+/**
+  * Assigns map output to reducers by output dataset name and, for datasets
+  * the mapper split into several parts, by part.  All the keys in one part
+  * go to the same reducer.
+*/
+public class DatasetPartitioner implements Partitioner<Text,DatasetWritable> {
+
+	public void configure(JobConf job) {}
+
+	public int getPartition(Text key, DatasetWritable value, int numPartitions) {
+		int hash = 31 * key.hashCode() + value.getPart();
+		return (hash & Integer.MAX_VALUE) % numPartitions;
+	}
+
+	/**
+	  * Which of the parts a key belongs to.  Depends only on the key, so
+	  * every mapper makes the same choice.
+	*/
+	public static int getPart(DataKey key, int numParts) {
+		return (key.hashCode() & Integer.MAX_VALUE) % numParts;
+	}
+
+	/**
+	  * Splits the dataset by key into at most numParts slices.  Empty parts
+	  * are dropped, except that the first part is always returned so the
+	  * dataset still reaches a reducer when it has no keys.
+	*/
+	public static List<DatasetWritable> split(Dataset dataset, int numParts, DatasetWritable.Format format) {
+		List<DatasetWritable> result = new ArrayList<DatasetWritable>();
+		if ( numParts<=1 ) {
+			result.add(new DatasetWritable(dataset, format));
+			return result;
+		}
+		Dataset[] parts = new Dataset[numParts];
+		for ( int i=0; i<numParts; i++ ) {
+			parts[i] = new Dataset();
+		}
+		for ( DataKey key : dataset.getAllFileKeys() ) {
+			parts[getPart(key, numParts)].addFile(key, dataset.getFile(key));
+		}
+		for ( DataKey key : dataset.getAllMetadataKeys() ) {
+			parts[getPart(key, numParts)].addMetadata(key, dataset.getMetadata(key));
+		}
+		for ( int i=0; i<numParts; i++ ) {
+			if ( i==0 || !parts[i].isEmpty() ) {
+				result.add(new DatasetWritable(parts[i], format, i));
+			}
+		}
+		return result;
+	}
+
+}
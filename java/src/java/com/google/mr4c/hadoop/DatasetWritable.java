@@ -0,0 +1,127 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.serialize.DatasetSerializer;
+import com.google.mr4c.serialize.SerializerFactories;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+  * Dataset passed from map to reduce, and from reduce to the output format.
+  * Each record starts with a format byte, so readers accept either format
+  * regardless of how the job was configured.  The part identifies which
+  * slice of a split dataset this is; see DatasetPartitioner.
+*/
+public class DatasetWritable implements Writable {
+
+	public enum Format {
+		BINARY,
+		JSON
+	}
+
+	private static BinaryDatasetSerializer s_binarySerializer = new BinaryDatasetSerializer();
+
+	private Dataset m_dataset;
+	private Format m_format;
+	private int m_part;
+
+	public DatasetWritable() {
+		this(null, Format.BINARY);
+	}
+
+	public DatasetWritable(Dataset dataset) {
+		this(dataset, Format.BINARY);
+	}
+
+	public DatasetWritable(Dataset dataset, Format format) {
+		this(dataset, format, 0);
+	}
+
+	public DatasetWritable(Dataset dataset, Format format, int part) {
+		m_dataset = dataset;
+		m_format = format;
+		m_part = part;
+	}
+
+	public Dataset getDataset() {
+		return m_dataset;
+	}
+
+	public Format getFormat() {
+		return m_format;
+	}
+
+	public int getPart() {
+		return m_part;
+	}
+
+	public void write(DataOutput out) throws IOException {
+		out.writeByte(m_format.ordinal());
+		WritableUtils.writeVInt(out, m_part);
+		switch ( m_format ) {
+			case BINARY :
+				s_binarySerializer.serializeDataset(m_dataset, out);
+				break;
+			case JSON :
+				StringWriter writer = new StringWriter();
+				getJsonSerializer().serializeDataset(m_dataset, writer);
+				Text.writeString(out, writer.toString());
+				break;
+			default :
+				throw new IllegalStateException(String.format("Unsupported format [%s]", m_format));
+		}
+	}
+
+	/**
+	  * Always creates a new Dataset; Hadoop reuses the same Writable for
+	  * every value passed to a reducer.
+	*/
+	public void readFields(DataInput in) throws IOException {
+		int ordinal = in.readByte();
+		if ( ordinal<0 || ordinal>=Format.values().length ) {
+			throw new IOException(String.format("Invalid dataset format [%d]", ordinal));
+		}
+		m_format = Format.values()[ordinal];
+		m_part = WritableUtils.readVInt(in);
+		switch ( m_format ) {
+			case BINARY :
+				m_dataset = s_binarySerializer.deserializeDataset(in);
+				break;
+			case JSON :
+				StringReader reader = new StringReader(Text.readString(in));
+				m_dataset = getJsonSerializer().deserializeDataset(reader);
+				break;
+			default :
+				throw new IOException(String.format("Unsupported format [%s]", m_format));
+		}
+	}
+
+	private DatasetSerializer getJsonSerializer() {
+		return SerializerFactories.getSerializerFactory("application/json").createDatasetSerializer();
+	}
+
+}
@@ -0,0 +1,79 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.algorithm.AlgorithmData;
+import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.keys.DataKeyElement;
+import com.google.mr4c.sources.DataFileSource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+  * Cost of an element is the number of input bytes in files with keys
+  * that include it.  Datasets excluded from the keyspace don't count.
+*/
+public class FileSizeCostModel implements KeyCostModel {
+
+	private DataLocalizer m_localizer;
+
+	public FileSizeCostModel() {
+		this(new DataLocalizer());
+	}
+
+	/**
+	  * @param localizer sizes come from its directory listings, which it
+	  *   keeps for localizing the splits afterwards
+	*/
+	public FileSizeCostModel(DataLocalizer localizer) {
+		m_localizer = localizer;
+	}
+
+	public Map<DataKeyElement,Double> estimateCosts(AlgorithmData algoData) throws IOException {
+		Map<DataKeyElement,Double> costs = new HashMap<DataKeyElement,Double>();
+		Set<String> excluded = algoData.getExcludedInputDatasets();
+		for ( String name : algoData.getInputDatasetNames() ) {
+			if ( excluded.contains(name) ) {
+				continue;
+			}
+			Dataset dataset = algoData.getInputDataset(name);
+			List<DataKey> keys = new ArrayList<DataKey>(dataset.getAllFileKeys());
+			List<DataFileSource> sources = new ArrayList<DataFileSource>();
+			for ( DataKey key : keys ) {
+				sources.add(dataset.getFile(key).getFileSource());
+			}
+			long[] sizes = m_localizer.getFileSizes(sources);
+			for ( int i=0; i<keys.size(); i++ ) {
+				DataKey key = keys.get(i);
+				// size is -1 when unknown
+				long size = Math.max(0, sizes[i]);
+				for ( DataKeyElement element : key.getElements() ) {
+					Double cost = costs.get(element);
+					costs.put(element, cost==null ? size : cost + size);
+				}
+			}
+		}
+		return costs;
+	}
+
+}
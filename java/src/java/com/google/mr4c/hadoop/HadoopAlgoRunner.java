@@ -18,6 +18,7 @@ package com.google.mr4c.hadoop;
 
 import com.google.mr4c.AlgoRunner;
 import com.google.mr4c.AlgoRunner.AlgoRunnerConfig;
+import com.google.mr4c.config.algorithm.AlgorithmConfig;
 import com.google.mr4c.config.category.MR4CConfig;
 import com.google.mr4c.config.category.MR4CConfigBuilder;
 import com.google.mr4c.config.category.Category;
@@ -29,14 +30,17 @@ import com.google.mr4c.config.resources.ResourceRequest;
 import java.io.IOException;
 import java.net.URI;
 import java.util.Arrays;
+import java.util.UUID;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.RunningJob;
+import org.apache.hadoop.mapred.lib.MultithreadedMapRunner;
 import org.slf4j.Logger;
 
 public abstract class HadoopAlgoRunner {
@@ -49,6 +53,7 @@ public abstract class HadoopAlgoRunner {
 	protected MR4CGenericOptions m_genOpts;
 	private Logger m_log;
 	private AlgoRunner m_runner;
+	private Integer m_concurrentSplits;
 
 	/**
 	  * Default resource found in the mr4c jar
@@ -60,6 +65,11 @@ public abstract class HadoopAlgoRunner {
 	*/
 	public static final String MR4C_SITE_RESOURCE = "mr4c-hadoop-site.xml";
 
+	/**
+	  * Thread count for MultithreadedMapRunner; the old name works with both bindings
+	*/
+	private static final String MAP_RUNNER_THREADS = "mapred.map.multithreadedrunner.threads";
+
 	static {
 		Configuration.addDefaultResource(MR4C_DEFAULT_RESOURCE);
 		Configuration.addDefaultResource("hdfs-default.xml");
@@ -190,6 +200,11 @@ public abstract class HadoopAlgoRunner {
 	private void requestResources() throws IOException {
 		ResourceConfig resConf = new ResourceConfig();
 		resConf.addStandardResources(m_bbJob.getMR4CConfig());
+		int concurrent = getConcurrentSplits();
+		if ( concurrent>1 ) {
+			m_log.info("Scaling resource requests for {} concurrent splits per task", concurrent);
+			resConf.scaleRequests(concurrent);
+		}
 		// Not going to load the configured limits for now.  The defaults in yarn-default.xml are overriding the cluster derived limits.  Also not clear if what we are using was intended to be a client side config option
 		//resConf.addStandardLimits(m_jobConf);
 		addClusterLimits(resConf);
@@ -224,11 +239,64 @@ public abstract class HadoopAlgoRunner {
 		m_jobConf.setMapperClass(HadoopMapper.class);
 		m_jobConf.setReducerClass(HadoopReducer.class);
 		m_jobConf.setOutputKeyClass(Text.class);
-		m_jobConf.setOutputValueClass(Text.class);
+		m_jobConf.setOutputValueClass(DatasetWritable.class);
 		m_jobConf.setInputFormat(HadoopInputFormat.class);
 		m_jobConf.setOutputFormat(HadoopOutputFormat.class);
-		m_jobConf.setNumReduceTasks(1);
 		m_jobConf.setMaxMapAttempts(1);
+		configureMapThreads();
+		configureReducers();
+	}
+
+	private void configureMapThreads() throws IOException {
+		Integer perTask = m_bbJob.getSplitsPerTask();
+		if ( perTask!=null && perTask>1 ) {
+			m_log.info("Each map task will run {} splits", perTask);
+		}
+		int threads = getConcurrentSplits();
+		if ( threads<=1 ) {
+			return;
+		}
+		m_log.info("Map tasks will run {} splits at a time", threads);
+		m_jobConf.setMapRunnerClass(MultithreadedMapRunner.class);
+		m_jobConf.setInt(MAP_RUNNER_THREADS, threads);
+	}
+
+	/**
+	  * Concurrent splits share one algorithm instance in the task, so
+	  * there's only more than one if the algorithm is declared thread safe.
+	*/
+	private int getConcurrentSplits() throws IOException {
+		if ( m_concurrentSplits==null ) {
+			int threads = m_bbJob.getConcurrentSplits();
+			AlgorithmConfig algoConfig = getAlgoRunner().getAlgorithmConfig();
+			if ( threads>1 && !algoConfig.isThreadSafe() ) {
+				m_log.warn("Algorithm [{}] isn't declared thread safe; running one split at a time instead of {}", algoConfig.getName(), threads);
+				threads = 1;
+			}
+			m_concurrentSplits = threads;
+		}
+		return m_concurrentSplits;
+	}
+
+	private void configureReducers() throws IOException {
+		Integer reducers = m_bbJob.getNumReduceTasks();
+		if ( reducers==null || reducers<=1 ) {
+			m_jobConf.setNumReduceTasks(1);
+			return;
+		}
+		m_log.info("Output datasets will be assembled by {} reducers", reducers);
+		m_jobConf.setNumReduceTasks(reducers);
+		m_jobConf.setPartitionerClass(DatasetPartitioner.class);
+		m_jobConf.setOutputCommitter(HadoopOutputCommitter.class);
+		// partial datasets are named by reducer, two attempts would collide
+		m_jobConf.setReduceSpeculativeExecution(false);
+		if ( m_bbJob.getMergeDir()==null ) {
+			FileSystem fs = FileSystem.get(m_jobConf);
+			Path dir = new Path(fs.getHomeDirectory(), ".mr4c/merge/" + UUID.randomUUID());
+			m_bbJob.setMergeDir(fs.makeQualified(dir).toUri());
+			HadoopUtils.applyToJobConf(m_bbJob.getMR4CConfig().getProperties(), m_jobConf);
+		}
+		m_log.info("Partial datasets will be merged from [{}]", m_bbJob.getMergeDir());
 	}
 
 	/**
@@ -255,6 +323,7 @@ public abstract class HadoopAlgoRunner {
 	private void submitJob() throws IOException {
 		// most of this method copies JobClient.runJob()
 		// addition here is logging the job URI
+		clearSplitProfileParts();
 		JobClient client = new JobClient(m_jobConf);
 		RunningJob job = client.submitJob(m_jobConf);
 		m_log.info("Job URL is [{}]" , job.getTrackingURL());
@@ -262,11 +331,27 @@ public abstract class HadoopAlgoRunner {
 			if ( !client.monitorAndPrintJob(m_jobConf, job) ) {
 				throw new IOException("Job failed!");
 			}
+			saveSplitProfile();
 		} catch (InterruptedException ie ) {
 			Thread.currentThread().interrupt();
 		}
 	}	
 
+	private void clearSplitProfileParts() throws IOException {
+		URI profile = m_bbJob.getSplitProfile();
+		if ( profile!=null ) {
+			RuntimeProfileRecorder.clearParts(profile, m_jobConf);
+		}
+	}
+
+	// map tasks record the parts, see RuntimeProfileRecorder
+	private void saveSplitProfile() throws IOException {
+		URI profile = m_bbJob.getSplitProfile();
+		if ( profile!=null ) {
+			RuntimeProfileRecorder.mergeParts(profile, m_jobConf);
+		}
+	}
+
 	private void logConfiguration() {
 		m_log.info("BEGIN LOG CONFIGURATION");
 		logResource("core-default.xml");
@@ -48,6 +48,7 @@ public class HadoopContext implements AlgorithmContext {
 		m_log.info("Progress reported: {}", status);
 		m_reporter.progress(); // we are still alive!
 		m_reporter.setStatus(status);
+		publishCounters();
 	}
 
 	public String getEnvironmentDescription() {
@@ -72,5 +73,14 @@ public class HadoopContext implements AlgorithmContext {
 	public void sendMessage(Message msg) {
 		Messages.handleMessage(msg);
 	}
+
+	/**
+	  * Adds the task counters recorded since the last publish to the Hadoop
+	  * counters.  Also done on each progress report, so long running
+	  * algorithms show their counters before they finish.
+	*/
+	public void publishCounters() {
+		HadoopCounters.publish(m_reporter);
+	}
 	
 }
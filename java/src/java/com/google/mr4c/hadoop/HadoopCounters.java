@@ -0,0 +1,42 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.stats.TaskStats;
+
+import java.util.Map;
+
+import org.apache.hadoop.mapred.Reporter;
+
+/**
+  * Publishes the task counters from TaskStats as Hadoop counters in the
+  * MR4C group, so they show up with the job history.  Each call adds only
+  * what changed since the previous one.
+*/
+public abstract class HadoopCounters {
+
+	public static final String GROUP = "MR4C";
+
+	private static TaskStats.Deltas s_deltas = TaskStats.instance().newDeltas();
+
+	public static synchronized void publish(Reporter reporter) {
+		for ( Map.Entry<String,Long> entry : s_deltas.next().entrySet() ) {
+			reporter.incrCounter(GROUP, entry.getKey(), entry.getValue());
+		}
+	}
+
+}
@@ -33,12 +33,29 @@ public class HadoopInputFormat implements InputFormat<Text,DataKeyList> {
 
 	public RecordReader<Text,DataKeyList> getRecordReader(InputSplit split, JobConf job, Reporter reporter) throws IOException {
 		HadoopUtils.initFromJob(job, true);
+		if ( split instanceof MR4CCombinedSplit ) {
+			return MR4CInputFormat.getRecordReader((MR4CCombinedSplit)split);
+		}
 		return MR4CInputFormat.getRecordReader((MR4CInputSplit)split);
 	}
 
+	/**
+	  * With more than one split per task, numSplits is taken as the number
+	  * of tasks; that many times more splits are generated and then packed
+	  * into tasks by host.
+	*/
 	public InputSplit[] getSplits(JobConf job, int numSplits) throws IOException {
 		ExecutionSource exeSrc = HadoopUtils.initFromJobAndCreateSource(job, false);
-		return new MR4CInputFormat().getSplits(exeSrc, numSplits);
+		Integer perTask = new MR4CMRJob(false).getSplitsPerTask();
+		if ( perTask==null || perTask<=1 ) {
+			return new MR4CInputFormat().getSplits(exeSrc, numSplits);
+		}
+		InputSplit[] splits = new MR4CInputFormat().getSplits(exeSrc, numSplits * perTask);
+		MR4CInputSplit[] mr4cSplits = new MR4CInputSplit[splits.length];
+		for ( int i=0; i<splits.length; i++ ) {
+			mr4cSplits[i] = (MR4CInputSplit) splits[i];
+		}
+		return MR4CCombinedSplit.combine(mr4cSplits, perTask);
 
 	}
 
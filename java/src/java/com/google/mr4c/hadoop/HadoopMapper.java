@@ -20,6 +20,7 @@ import com.google.mr4c.algorithm.Algorithm;
 import com.google.mr4c.algorithm.AlgorithmEnvironment;
 import com.google.mr4c.sources.ExecutionSource;
 import com.google.mr4c.hadoop.HadoopUtils;
+import com.google.mr4c.stats.MR4CStats;
 
 import java.io.File;
 import java.io.IOException;
@@ -37,11 +38,11 @@ import org.apache.hadoop.io.Text;
 // K1 = identifier for split
 // V1 = list of keys for the split
 // K2 = output dataset name
-// V2 = serialized output dataset
-public class HadoopMapper implements Mapper<Text,DataKeyList,Text,Text> {
+// V2 = output dataset
+public class HadoopMapper implements Mapper<Text,DataKeyList,Text,DatasetWritable> {
 
 	private JobConf m_job;
-	private MR4CMapper m_mapper;
+	private volatile MR4CMapper m_mapper;
 
 	public void configure(JobConf job) {
 		m_job = job;
@@ -50,7 +51,9 @@ public class HadoopMapper implements Mapper<Text,DataKeyList,Text,Text> {
 			AlgorithmEnvironment env = new AlgorithmEnvironment();
 			// loading algo to push environment for log config
 			Algorithm algo = exeSrc.getAlgorithm( env );
-			m_mapper = new MR4CMapper(exeSrc);
+			m_mapper = buildMapper(exeSrc);
+			// validate once and keep the runner warm for every split in this task
+			m_mapper.init();
 		} catch ( IOException e ) {
 			// if an IO exception is thrown here, another chance in
 			// the map method, which is allowed to rethrow
@@ -58,16 +61,42 @@ public class HadoopMapper implements Mapper<Text,DataKeyList,Text,Text> {
 		
 	}
 
-	public void map(Text key, DataKeyList value, OutputCollector<Text,Text> output, Reporter reporter) throws IOException {
+	// called from several threads at once when the task runs its splits concurrently
+	public void map(Text key, DataKeyList value, OutputCollector<Text,DatasetWritable> output, Reporter reporter) throws IOException {
+		getMapper().map(key, value, output, reporter);
+	}
+
+	private synchronized MR4CMapper getMapper() throws IOException {
 		if ( m_mapper==null ) {
 			ExecutionSource exeSrc = HadoopUtils.initFromJobAndCreateSource(m_job, true);
-			m_mapper = new MR4CMapper(exeSrc);
+			m_mapper = buildMapper(exeSrc);
 		}
-		m_mapper.map(key, value, output, reporter);
+		return m_mapper;
 	}
 
-	public void close() {
-		// no-op
+	// config was just initialized from the job
+	private MR4CMapper buildMapper(ExecutionSource exeSrc) {
+		MR4CMRJob bbJob = new MR4CMRJob(true);
+		Integer parts = bbJob.getDatasetParts();
+		Integer perTask = bbJob.getSplitsPerTask();
+		boolean packed = perTask!=null && perTask>1;
+		MR4CMapper mapper = new MR4CMapper(exeSrc, bbJob.getShuffleFormat(), parts==null ? 1 : parts, packed);
+		URI profile = bbJob.getSplitProfile();
+		if ( profile!=null ) {
+			String partName = String.format("map-%05d", m_job.getInt(MR4CMRJob.PROP_MAPRED_PARTITION, 0));
+			mapper.setProfileRecorder(new RuntimeProfileRecorder(profile, partName));
+		}
+		return mapper;
+	}
+
+	public void close() throws IOException {
+		try {
+			if ( m_mapper!=null ) {
+				m_mapper.close();
+			}
+		} finally {
+			MR4CStats.flush();
+		}
 	}
 }
 
@@ -0,0 +1,68 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.sources.ExecutionSource;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.JobContext;
+import org.apache.hadoop.mapred.OutputCommitter;
+import org.apache.hadoop.mapred.TaskAttemptContext;
+
+/**
+  * Used when there are several reducers; merges their partial output
+  * datasets once the whole job has succeeded.
+*/
+public class HadoopOutputCommitter extends OutputCommitter {
+
+	public void setupJob(JobContext context) throws IOException {}
+
+	public void commitJob(JobContext context) throws IOException {
+		JobConf job = context.getJobConf();
+		ExecutionSource exeSrc = HadoopUtils.initFromJobAndCreateSource(job, true);
+		new MR4COutputMerger(exeSrc, getPartialDatasetStore(job)).merge();
+	}
+
+	public void abortJob(JobContext context, int runState) throws IOException {
+		JobConf job = context.getJobConf();
+		HadoopUtils.initFromJob(job, true);
+		getPartialDatasetStore(job).delete();
+	}
+
+	public void setupTask(TaskAttemptContext context) throws IOException {}
+
+	public boolean needsTaskCommit(TaskAttemptContext context) throws IOException {
+		return false;
+	}
+
+	public void commitTask(TaskAttemptContext context) throws IOException {}
+
+	public void abortTask(TaskAttemptContext context) throws IOException {}
+
+	// config was just initialized from the job
+	static PartialDatasetStore getPartialDatasetStore(JobConf job) throws IOException {
+		URI dir = new MR4CMRJob(true).getMergeDir();
+		if ( dir==null ) {
+			throw new IllegalStateException("No merge directory configured for partial datasets");
+		}
+		return new PartialDatasetStore(dir, job);
+	}
+
+}
@@ -16,7 +16,10 @@
 
 package com.google.mr4c.hadoop;
 
+import com.google.mr4c.config.category.Category;
+import com.google.mr4c.config.category.CoreConfig;
 import com.google.mr4c.sources.ExecutionSource;
+import com.google.mr4c.util.MR4CLogging;
 
 import java.io.IOException;
 
@@ -27,13 +30,36 @@ import org.apache.hadoop.mapred.RecordWriter;
 import org.apache.hadoop.util.Progressable;
 import org.apache.hadoop.io.Text;
 
-public class HadoopOutputFormat implements OutputFormat<Text,Text> {
+import org.slf4j.Logger;
 
-	public RecordWriter<Text,Text> getRecordWriter(FileSystem ignored, JobConf job, String name, Progressable progress) throws IOException {
-		ExecutionSource exeSrc = HadoopUtils.initFromJobAndCreateSource(job, true);
+public class HadoopOutputFormat implements OutputFormat<Text,DatasetWritable> {
+
+	protected static final Logger s_log = MR4CLogging.getLogger(HadoopOutputFormat.class);
+
+	public RecordWriter<Text,DatasetWritable> getRecordWriter(FileSystem ignored, JobConf job, String name, Progressable progress) throws IOException {
+		MR4CMRJob bbJob = HadoopUtils.initFromJob(job, true);
+		String partName = getPartName(job, name);
+		if ( job.getNumReduceTasks()>1 ) {
+			// each reducer writes its own shard of any packed output
+			bbJob.getMR4CConfig().getCategory(Category.CORE).setProperty(CoreConfig.PROP_PACK_SHARD, partName);
+		}
+		bbJob.getMR4CConfig().dumpConfig(s_log, false);
+		ExecutionSource exeSrc = HadoopUtils.createSource(bbJob);
+		if ( job.getNumReduceTasks()>1 ) {
+			PartialDatasetStore partials = HadoopOutputCommitter.getPartialDatasetStore(job);
+			return MR4COutputFormat.getRecordWriter(exeSrc, partials, partName);
+		}
 		return MR4COutputFormat.getRecordWriter(exeSrc);
 	}
 
+	/**
+	  * Named for the reduce partition when it is known
+	*/
+	static String getPartName(JobConf job, String name) {
+		int partition = job.getInt(MR4CMRJob.PROP_MAPRED_PARTITION, -1);
+		return partition<0 ? name : String.format("part-%05d", partition);
+	}
+
 	public void checkOutputSpecs(FileSystem ignored, JobConf job) throws IOException {
 	}
 
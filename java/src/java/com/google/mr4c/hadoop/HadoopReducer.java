@@ -25,6 +25,7 @@ import com.google.mr4c.serialize.DatasetSerializer;
 import com.google.mr4c.serialize.SerializerFactories;
 import com.google.mr4c.sources.DatasetSource.WriteMode;
 import com.google.mr4c.sources.ExecutionSource;
+import com.google.mr4c.stats.MR4CStats;
 
 import java.io.IOException;
 import java.io.StringReader;
@@ -39,10 +40,10 @@ import org.apache.hadoop.mapred.Reporter;
 import org.apache.hadoop.io.Text;
 
 // K2 = output dataset name
-// V2 = serialized dataset slice
+// V2 = dataset slice
 // K3 = output dataset name (same as K2)
-// V3 = serialized output dataset (slices all combined!)
-public class HadoopReducer implements Reducer<Text,Text,Text,Text> {
+// V3 = output dataset (slices all combined!)
+public class HadoopReducer implements Reducer<Text,DatasetWritable,Text,DatasetWritable> {
 
 	private JobConf m_job;
 	private MR4CMRJob m_bbJob;
@@ -55,7 +56,7 @@ public class HadoopReducer implements Reducer<Text,Text,Text,Text> {
 		m_reducer = null; // clear in case we get reconfigured
 	}
 
-	public void reduce(Text key, Iterator<Text> values, OutputCollector<Text,Text> output, Reporter reporter) throws IOException {
+	public void reduce(Text key, Iterator<DatasetWritable> values, OutputCollector<Text,DatasetWritable> output, Reporter reporter) throws IOException {
 
 		if ( m_reducer==null ) {
 			ExecutionSource exeSrc = HadoopUtils.initFromJobAndCreateSource(m_job, true);
@@ -67,7 +68,7 @@ public class HadoopReducer implements Reducer<Text,Text,Text,Text> {
 	}
 
 	public void close() {
-		// no-op
+		MR4CStats.flush();
 	}
 }
 
@@ -0,0 +1,38 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.algorithm.AlgorithmData;
+import com.google.mr4c.keys.DataKeyElement;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+  * Estimates how much work the input for each key element is, so the
+  * keyspace can be split into partitions of about equal cost rather than
+  * equal element count.
+*/
+public interface KeyCostModel {
+
+	/**
+	  * Returns the estimated cost of every element, in every dimension of
+	  * the keyspace.  Only relative values matter.
+	*/
+	Map<DataKeyElement,Double> estimateCosts(AlgorithmData algoData) throws IOException;
+
+}
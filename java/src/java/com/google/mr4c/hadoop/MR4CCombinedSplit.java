@@ -0,0 +1,182 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.mapred.InputSplit;
+
+/**
+  * Several MR4C input splits run by a single map task.  Each split is still
+  * handed to the mapper as its own record.
+*/
+public class MR4CCombinedSplit implements InputSplit {
+
+	private List<MR4CInputSplit> m_splits = new ArrayList<MR4CInputSplit>();
+	private String[] m_locs;
+
+	public MR4CCombinedSplit() {}
+
+	public MR4CCombinedSplit(List<MR4CInputSplit> splits) {
+		m_splits = new ArrayList<MR4CInputSplit>(splits);
+		m_locs = rankLocations(splits);
+	}
+
+	public List<MR4CInputSplit> getSplits() {
+		return m_splits;
+	}
+
+	public long getLength() {
+		long length = 0;
+		for ( MR4CInputSplit split : m_splits ) {
+			length += split.getLength();
+		}
+		return length;
+	}
+
+	/**
+	  * Hosts of the member splits, most shared first
+	*/
+	public String[] getLocations() {
+		return m_locs;
+	}
+
+	public void readFields(DataInput in) throws IOException {
+		int count = in.readInt();
+		m_splits = new ArrayList<MR4CInputSplit>(count);
+		for ( int i=0; i<count; i++ ) {
+			MR4CInputSplit split = new MR4CInputSplit();
+			split.readFields(in);
+			m_splits.add(split);
+		}
+		m_locs = rankLocations(m_splits);
+	}
+
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(m_splits.size());
+		for ( MR4CInputSplit split : m_splits ) {
+			split.write(out);
+		}
+	}
+
+	/**
+	  * Packs the splits into groups of up to perTask.  Splits sharing a host
+	  * are grouped first, taking from the host with the most splits left;
+	  * whatever can't fill a group that way is grouped in sequence order.
+	*/
+	public static MR4CCombinedSplit[] combine(MR4CInputSplit[] splits, int perTask) {
+		if ( perTask<1 ) {
+			throw new IllegalArgumentException(String.format("Splits per task must be positive; got %d", perTask));
+		}
+		Map<String,List<Integer>> byHost = new LinkedHashMap<String,List<Integer>>();
+		Map<String,Integer> remaining = new HashMap<String,Integer>();
+		for ( int i=0; i<splits.length; i++ ) {
+			for ( String host : getLocations(splits[i]) ) {
+				List<Integer> indexes = byHost.get(host);
+				if ( indexes==null ) {
+					indexes = new ArrayList<Integer>();
+					byHost.put(host, indexes);
+					remaining.put(host, 0);
+				}
+				indexes.add(i);
+				remaining.put(host, remaining.get(host)+1);
+			}
+		}
+
+		boolean[] assigned = new boolean[splits.length];
+		List<MR4CCombinedSplit> result = new ArrayList<MR4CCombinedSplit>();
+		while ( true ) {
+			String best = null;
+			for ( String host : byHost.keySet() ) {
+				if ( best==null || remaining.get(host) > remaining.get(best) ) {
+					best = host;
+				}
+			}
+			if ( best==null || remaining.get(best) < perTask ) {
+				break;
+			}
+			List<MR4CInputSplit> group = new ArrayList<MR4CInputSplit>();
+			for ( int i : byHost.get(best) ) {
+				if ( group.size()==perTask ) {
+					break;
+				}
+				if ( !assigned[i] ) {
+					assign(splits, i, assigned, remaining);
+					group.add(splits[i]);
+				}
+			}
+			result.add(new MR4CCombinedSplit(group));
+		}
+
+		List<MR4CInputSplit> group = new ArrayList<MR4CInputSplit>();
+		for ( int i=0; i<splits.length; i++ ) {
+			if ( assigned[i] ) {
+				continue;
+			}
+			group.add(splits[i]);
+			if ( group.size()==perTask ) {
+				result.add(new MR4CCombinedSplit(group));
+				group.clear();
+			}
+		}
+		if ( !group.isEmpty() ) {
+			result.add(new MR4CCombinedSplit(group));
+		}
+		return result.toArray(new MR4CCombinedSplit[result.size()]);
+	}
+
+	private static void assign(MR4CInputSplit[] splits, int index, boolean[] assigned, Map<String,Integer> remaining) {
+		assigned[index] = true;
+		for ( String host : getLocations(splits[index]) ) {
+			remaining.put(host, remaining.get(host)-1);
+		}
+	}
+
+	private static List<String> getLocations(MR4CInputSplit split) {
+		String[] locs = split.getLocations();
+		return locs==null ? Collections.<String>emptyList() : Arrays.asList(locs);
+	}
+
+	private static String[] rankLocations(List<MR4CInputSplit> splits) {
+		final Map<String,Integer> counts = new LinkedHashMap<String,Integer>();
+		for ( MR4CInputSplit split : splits ) {
+			for ( String host : getLocations(split) ) {
+				Integer count = counts.get(host);
+				counts.put(host, count==null ? 1 : count+1);
+			}
+		}
+		List<String> hosts = new ArrayList<String>(counts.keySet());
+		// stable, so ties keep the order the hosts were first seen
+		Collections.sort(hosts, new Comparator<String>() {
+			public int compare(String host1, String host2) {
+				return counts.get(host2).compareTo(counts.get(host1));
+			}
+		});
+		return hosts.toArray(new String[hosts.size()]);
+	}
+
+}
@@ -19,19 +19,13 @@ package com.google.mr4c.hadoop;
 import com.google.mr4c.AlgoRunner;
 import com.google.mr4c.algorithm.AlgorithmData;
 import com.google.mr4c.config.algorithm.AlgorithmConfig;
-import com.google.mr4c.config.algorithm.DimensionConfig;
-import com.google.mr4c.keys.DataKey;
 import com.google.mr4c.keys.DataKeyDimension;
 import com.google.mr4c.keys.DataKeyElement;
-import com.google.mr4c.keys.DataKeyFilter;
 import com.google.mr4c.keys.DataKeyUtils;
-import com.google.mr4c.keys.DimensionPartition;
-import com.google.mr4c.keys.KeyDimensionPartitioner;
 import com.google.mr4c.keys.Keyspace;
 import com.google.mr4c.keys.KeyspaceDimension;
 import com.google.mr4c.keys.KeyspacePartition;
 import com.google.mr4c.keys.KeyspacePartitioner;
-import com.google.mr4c.sources.DataFileSource;
 import com.google.mr4c.sources.DatasetSource.WriteMode;
 import com.google.mr4c.sources.ExecutionSource;
 import com.google.mr4c.stats.MR4CStats;
@@ -42,9 +36,8 @@ import com.google.mr4c.util.MR4CLogging;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 import org.apache.hadoop.mapred.InputSplit;
 import org.apache.hadoop.mapred.RecordReader;
@@ -58,12 +51,53 @@ public class MR4CInputFormat {
 
 	protected StatsClient m_statsClient = MR4CStats.getClient();
 
-	private DataLocalizer m_localizer = new DataLocalizer();
+	private DataLocalizer m_localizer;
+
+	private KeyCostModel m_costModel;
+
+	public MR4CInputFormat() {
+		this(new DataLocalizer(), new MR4CMRJob(false));
+	}
+
+	private MR4CInputFormat(DataLocalizer localizer, MR4CMRJob job) {
+		m_localizer = localizer;
+		m_costModel = createCostModel(job, localizer);
+	}
+
+	/**
+	  * @param costModel null to balance splits by element count
+	*/
+	public MR4CInputFormat(KeyCostModel costModel) {
+		m_localizer = new DataLocalizer();
+		m_costModel = costModel;
+	}
+
+	// sizes share the directory listings used to localize the splits
+	private static KeyCostModel createCostModel(MR4CMRJob job, DataLocalizer localizer) {
+		String cost = job.getSplitCost();
+		if ( cost.equals("count") ) {
+			return null;
+		} else if ( cost.equals("size") ) {
+			return new FileSizeCostModel(localizer);
+		} else if ( cost.equals("profile") ) {
+			URI profile = job.getSplitProfile();
+			if ( profile==null ) {
+				throw new IllegalStateException("Split cost is [profile], but no split profile was given");
+			}
+			return new RuntimeProfileCostModel(profile);
+		} else {
+			throw new IllegalArgumentException(String.format("Unknown split cost [%s]; should be count, size, or profile", cost));
+		}
+	}
 
 	public static RecordReader<Text,DataKeyList> getRecordReader(MR4CInputSplit split) throws IOException {
 		return new MR4CRecordReader(split);
 	}
 
+	public static RecordReader<Text,DataKeyList> getRecordReader(MR4CCombinedSplit split) throws IOException {
+		return new MR4CRecordReader(split.getSplits());
+	}
+
 	public InputSplit[] getSplits(ExecutionSource exeSrc, int numSplits) throws IOException {
 		StatsTimer timer = new StatsTimer(
 			m_statsClient, 
@@ -109,7 +143,9 @@ public class MR4CInputFormat {
 	
 	private InputSplit[] doGetSplits(AlgoRunner runner, int numSplits) throws IOException {
 
+		StatsTimer timer = new StatsTimer(m_statsClient, "mr4c.hadoop.splits.load");
 		runner.loadInputData();
+		timer.success();
 
 		AlgorithmData algoData = runner.getAlgorithmData();
 
@@ -119,91 +155,51 @@ public class MR4CInputFormat {
 
 		AlgorithmConfig algoConfig = runner.getAlgorithmConfig();
 
-		List<KeyspacePartition> partitions = generatePartitions(algoConfig, keyspace, numSplits);
+		timer = new StatsTimer(m_statsClient, "mr4c.hadoop.splits.partition");
+		KeyspacePartitioner partitioner = generatePartitions(algoConfig, algoData, keyspace, numSplits);
+		List<KeyspacePartition> partitions = partitioner.getKeyPartitions();
+		timer.success();
 
 		m_log.info("Generated {} partitions", partitions.size() );
 
-		for ( KeyspacePartition partition : partitions ) {
-			handleDependentDimensions(partition, algoConfig, algoData);
-		}
+		timer = new StatsTimer(m_statsClient, "mr4c.hadoop.splits.plan");
+		SplitPlanner planner = new SplitPlanner(partitioner, SplitPlanner.getDependentDimensions(algoConfig));
+		planner.plan(algoData);
+		timer.success();
 
+		timer = new StatsTimer(m_statsClient, "mr4c.hadoop.splits.localize");
 		MR4CInputSplit[] splits = new MR4CInputSplit[partitions.size()];
-
 		for ( int i=0; i<partitions.size(); i++ ) {
-			splits[i] = generateSplit(i+1, partitions.get(i), algoConfig, algoData);
+			splits[i] = generateSplit(i+1, partitions.get(i), planner.getSplits().get(i));
 		}
+		timer.success();
+
+		m_statsClient.gauge("mr4c.hadoop.splits.count", splits.length);
 
 		return splits;
 	}
 
 
-	private List<KeyspacePartition> generatePartitions(AlgorithmConfig algoConfig, Keyspace keyspace, int numSplits) {
-		KeyDimensionPartitioner dimPartitioner = new KeyDimensionPartitioner(keyspace, numSplits);
-		for ( DimensionConfig dimConfig : algoConfig.getDimensions() ) {
-			DataKeyDimension dim = new DataKeyDimension(dimConfig.getName());
-			if ( dimConfig.canSplit() ) {
-				dimPartitioner.canSplit(dim);
-			}
-			if ( dimConfig.isDependent() ) {
-				dimPartitioner.dependent(dim);
-			}
-		}
-		dimPartitioner.partition();
-
-		m_log.info("Dim partition is {}", dimPartitioner.getComputedPartitions());
-
-		KeyspacePartitioner keyspacePartitioner = new KeyspacePartitioner(keyspace, dimPartitioner.getComputedPartitions());
-		for ( DimensionConfig dimConfig : algoConfig.getDimensions() ) {
-			DataKeyDimension dim = new DataKeyDimension(dimConfig.getName());
-			if ( !keyspace.hasDimension(dim) ) {
-				throw new IllegalStateException(String.format("Dimension [%s] is not in the keyspace. It should not have a splitting configuration.  If you haven't specified queryOnly in a dataset config, or registered the algorithm with a dataset excluded from the keyspace, then there is probably a typo somewhere.", dim));
-			}
-			if ( !dimConfig.isDependent() ) {
-				keyspacePartitioner.addOverlaps(dim, dimConfig.getOverlapBefore(), dimConfig.getOverlapAfter());
-				if ( dimConfig.getChunkSize()!=null ) {
-					keyspacePartitioner.specifyChunkSize(dim, dimConfig.getChunkSize());
-				}
-			}
+	private KeyspacePartitioner generatePartitions(AlgorithmConfig algoConfig, AlgorithmData algoData, Keyspace keyspace, int numSplits) throws IOException {
+		Map<DataKeyElement,Double> costs = null;
+		if ( m_costModel!=null ) {
+			StatsTimer timer = new StatsTimer(m_statsClient, "mr4c.hadoop.splits.cost");
+			costs = m_costModel.estimateCosts(algoData);
+			timer.success();
 		}
-		keyspacePartitioner.partition();
-
-		return keyspacePartitioner.getKeyPartitions();
+		return SplitPlanner.partition(algoConfig, keyspace, numSplits, costs);
 	}
 
-	// finds all the elements needed from dependent dimensions
-	private void handleDependentDimensions(KeyspacePartition partition, AlgorithmConfig algoConfig, AlgorithmData algoData) throws IOException {
-		DataKeyFilter filter = partition.getIndependentFilter();
-		algoData = algoData.slice(filter);
-		for ( DimensionConfig dimConfig : algoConfig.getDimensions() ) {
-			if ( dimConfig.isDependent() ) {
-				DataKeyDimension dim = new DataKeyDimension(dimConfig.getName());
-				Set<DataKey> depKeys = algoData.getDependentKeys(dim);
-				DimensionPartition dimPart = new DimensionPartition(dim);
-				for ( DataKey key : depKeys ) {
-					DataKeyElement ele = key.getElement(dim);
-					dimPart.addElement(ele);
-				}
-				partition.addDependentDimension(dimPart);
-				
-			}
-		}
-	}
-
-	private MR4CInputSplit generateSplit(int seqNum, KeyspacePartition partition, AlgorithmConfig algoConfig, AlgorithmData algoData) throws IOException {
-		DataKeyFilter filter = partition.getExtraDimensionsFilter();
-		algoData = algoData.slice(filter);
-		logKeyspace(seqNum, algoData, partition);
-		Set<DataKey> keys = algoData.getAllInputKeys();
-		Collection<DataFileSource> sources = algoData.getInputDataFileSources(true);
-		List<String> hosts = m_localizer.localize(sources);
+	private MR4CInputSplit generateSplit(int seqNum, KeyspacePartition partition, SplitPlanner.Split split) throws IOException {
+		logKeyspace(seqNum, split.getKeyspace(), partition);
+		List<String> hosts = m_localizer.localize(split.getFileSources());
 		m_log.info("Hosts for split #{} are {}" , seqNum, hosts);
-		return new MR4CInputSplit(seqNum, keys, hosts);
+		return new MR4CInputSplit(seqNum, split.getKeys(), hosts);
 	}
 
-	private void logKeyspace(int seqNum, AlgorithmData algoData, KeyspacePartition partition) {
+	private void logKeyspace(int seqNum, Keyspace keyspace, KeyspacePartition partition) {
 		// for each dim, just list the elements
 		m_log.info("Begin keyspace for split #{}", seqNum);
-		Keyspace keyspace = algoData.getKeyspace();
 		for ( DataKeyDimension dim : keyspace.getDimensions() ) {
 			KeyspaceDimension ksd = keyspace.getKeyspaceDimension(dim);
 			List<String> foundIDs = new ArrayList<String>();
@@ -40,6 +40,7 @@ public class MR4CMRJob {
 	public static final String PROP_TASKS = "mapred.map.tasks";
 	public static final String PROP_MAPRED_TASKID = "mapred.task.id";
 	public static final String PROP_MAPRED_JOBID = "mapred.job.id";
+	public static final String PROP_MAPRED_PARTITION = "mapred.task.partition";
 	public static final String PROP_LAUNCHER_TASKID = "launcher.task.id";
 	public static final String PROP_LAUNCHER_JOBID = "launcher.job.id";
 
@@ -173,6 +174,210 @@ public class MR4CMRJob {
 		}
 	}
 
+	public DatasetWritable.Format getShuffleFormat() {
+		return getShuffleFormat(m_config);
+	}
+
+	private DatasetWritable.Format getShuffleFormat(MR4CConfig bbConf) {
+		String strFormat = getProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_SHUFFLE_FORMAT);
+		return StringUtils.isEmpty(strFormat) ? DatasetWritable.Format.BINARY : DatasetWritable.Format.valueOf(strFormat.toUpperCase());
+	}
+
+	public void setShuffleFormat(DatasetWritable.Format format) {
+		setShuffleFormat(m_config, format);
+	}
+
+	private void setShuffleFormat(MR4CConfig bbConf, DatasetWritable.Format format) {
+		if ( format!=null ) {
+			setProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_SHUFFLE_FORMAT, format.name().toLowerCase());
+		} else {
+			clearProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_SHUFFLE_FORMAT);
+		}
+	}
+
+	public Integer getNumReduceTasks() {
+		return getNumReduceTasks(m_config);
+	}
+
+	private Integer getNumReduceTasks(MR4CConfig bbConf) {
+		String strTasks = getProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_REDUCE_TASKS);
+		return StringUtils.isEmpty(strTasks) ? null : Integer.parseInt(strTasks);
+	}
+
+	public void setNumReduceTasks(Integer tasks) {
+		setNumReduceTasks(m_config, tasks);
+	}
+
+	private void setNumReduceTasks(MR4CConfig bbConf, Integer tasks) {
+		if ( tasks!=null ) {
+			setProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_REDUCE_TASKS, tasks.toString());
+		} else {
+			clearProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_REDUCE_TASKS);
+		}
+	}
+
+	/**
+	  * Number of parts each output dataset is split into by the mappers, so
+	  * a single large dataset can be assembled by several reducers
+	*/
+	public Integer getDatasetParts() {
+		return getDatasetParts(m_config);
+	}
+
+	private Integer getDatasetParts(MR4CConfig bbConf) {
+		String strParts = getProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_DATASET_PARTS);
+		return StringUtils.isEmpty(strParts) ? null : Integer.parseInt(strParts);
+	}
+
+	public void setDatasetParts(Integer parts) {
+		setDatasetParts(m_config, parts);
+	}
+
+	private void setDatasetParts(MR4CConfig bbConf, Integer parts) {
+		if ( parts!=null ) {
+			setProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_DATASET_PARTS, parts.toString());
+		} else {
+			clearProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_DATASET_PARTS);
+		}
+	}
+
+	/**
+	  * Where reducers leave partial datasets to be merged at job commit
+	*/
+	public URI getMergeDir() {
+		return getMergeDir(m_config);
+	}
+
+	private URI getMergeDir(MR4CConfig bbConf) {
+		String strDir = getProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_MERGE_DIR);
+		return StringUtils.isEmpty(strDir) ? null : URI.create(strDir);
+	}
+
+	public void setMergeDir(URI dir) {
+		setMergeDir(m_config, dir);
+	}
+
+	private void setMergeDir(MR4CConfig bbConf, URI dir) {
+		if ( dir!=null ) {
+			setProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_MERGE_DIR, dir.toString());
+		} else {
+			clearProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_MERGE_DIR);
+		}
+	}
+
+	/**
+	  * How input splits are balanced: "count" for the same number of
+	  * elements in each split, "size" for the same number of input bytes,
+	  * or "profile" for the same cost in the split profile
+	*/
+	public String getSplitCost() {
+		return getSplitCost(m_config);
+	}
+
+	private String getSplitCost(MR4CConfig bbConf) {
+		String strCost = getProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_SPLIT_COST);
+		return StringUtils.isEmpty(strCost) ? "count" : strCost;
+	}
+
+	public void setSplitCost(String cost) {
+		setSplitCost(m_config, cost);
+	}
+
+	private void setSplitCost(MR4CConfig bbConf, String cost) {
+		if ( cost!=null ) {
+			setProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_SPLIT_COST, cost);
+		} else {
+			clearProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_SPLIT_COST);
+		}
+	}
+
+	/**
+	  * Element costs from earlier runs, see RuntimeProfileCostModel
+	*/
+	public URI getSplitProfile() {
+		return getSplitProfile(m_config);
+	}
+
+	private URI getSplitProfile(MR4CConfig bbConf) {
+		String strProfile = getProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_SPLIT_PROFILE);
+		return StringUtils.isEmpty(strProfile) ? null : URI.create(strProfile);
+	}
+
+	public void setSplitProfile(URI profile) {
+		setSplitProfile(m_config, profile);
+	}
+
+	private void setSplitProfile(MR4CConfig bbConf, URI profile) {
+		if ( profile!=null ) {
+			setProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_SPLIT_PROFILE, profile.toString());
+		} else {
+			clearProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_SPLIT_PROFILE);
+		}
+	}
+
+	/**
+	  * Number of input splits packed into each map task
+	*/
+	public Integer getSplitsPerTask() {
+		return getSplitsPerTask(m_config);
+	}
+
+	private Integer getSplitsPerTask(MR4CConfig bbConf) {
+		String strSplits = getProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_SPLITS_PER_TASK);
+		return StringUtils.isEmpty(strSplits) ? null : Integer.parseInt(strSplits);
+	}
+
+	public void setSplitsPerTask(Integer splits) {
+		setSplitsPerTask(m_config, splits);
+	}
+
+	private void setSplitsPerTask(MR4CConfig bbConf, Integer splits) {
+		if ( splits!=null ) {
+			setProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_SPLITS_PER_TASK, splits.toString());
+		} else {
+			clearProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_SPLITS_PER_TASK);
+		}
+	}
+
+	/**
+	  * Number of splits each map task runs at the same time
+	*/
+	public Integer getMapThreads() {
+		return getMapThreads(m_config);
+	}
+
+	private Integer getMapThreads(MR4CConfig bbConf) {
+		String strThreads = getProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_MAP_THREADS);
+		return StringUtils.isEmpty(strThreads) ? null : Integer.parseInt(strThreads);
+	}
+
+	public void setMapThreads(Integer threads) {
+		setMapThreads(m_config, threads);
+	}
+
+	private void setMapThreads(MR4CConfig bbConf, Integer threads) {
+		if ( threads!=null ) {
+			setProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_MAP_THREADS, threads.toString());
+		} else {
+			clearProperty(bbConf, Category.HADOOP, HadoopConfig.PROP_MAP_THREADS);
+		}
+	}
+
+	/**
+	  * Splits each map task runs at the same time: the configured map
+	  * threads, defaulting to one, and never more than the splits in the
+	  * task.
+	*/
+	public int getConcurrentSplits() {
+		Integer splits = getSplitsPerTask();
+		Integer threads = getMapThreads();
+		if ( threads==null || threads<1 ) {
+			return 1;
+		}
+		int perTask = splits==null || splits<1 ? 1 : splits;
+		return Math.min(threads, perTask);
+	}
+
 	public List<String> getIncludedEnvironmentVariables() {
 		return m_envVars;
 	}
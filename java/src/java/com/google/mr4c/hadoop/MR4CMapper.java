@@ -22,16 +22,15 @@ import com.google.mr4c.dataset.Dataset;
 import com.google.mr4c.keys.BasicDataKeyFilter;
 import com.google.mr4c.keys.DataKey;
 import com.google.mr4c.keys.Keyspace;
-import com.google.mr4c.serialize.DatasetSerializer;
-import com.google.mr4c.serialize.SerializerFactories;
 import com.google.mr4c.sources.DatasetSource.WriteMode;
 import com.google.mr4c.sources.ExecutionSource;
 import com.google.mr4c.util.MR4CLogging;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.StringWriter;
 import java.net.URI;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.filecache.DistributedCache;
@@ -46,20 +45,72 @@ import org.slf4j.Logger;
 // K1 = identifier for split
 // V1 = list of keys for the split
 // K2 = output dataset name
-// V2 = serialized output dataset
+// V2 = output dataset
 public class MR4CMapper {
 
 	protected final Logger m_log = MR4CLogging.getLogger(MR4CMapper.class);
 
 	private ExecutionSource m_exeSrc;
-	private DatasetSerializer m_serializer = SerializerFactories.getSerializerFactory("application/json").createDatasetSerializer();
+	private DatasetWritable.Format m_format;
+	private int m_parts;
+	private boolean m_perTask;
+	private Queue<AlgoRunner> m_idle = new ConcurrentLinkedQueue<AlgoRunner>();
+	private volatile OutputCollector<Text,DatasetWritable> m_output;
+	private volatile Reporter m_reporter;
+	private RuntimeProfileRecorder m_profile;
 
 	public MR4CMapper(ExecutionSource exeSrc) {
+		this(exeSrc, DatasetWritable.Format.BINARY, 1);
+	}
+
+	/**
+	  * @param parts number of parts to split each output dataset into
+	*/
+	public MR4CMapper(ExecutionSource exeSrc, DatasetWritable.Format format, int parts) {
+		this(exeSrc, format, parts, false);
+	}
+
+	/**
+	  * @param perTask true to emit the logs and clean up the algorithm once
+	  * per task, from close(), instead of after every split.  Needed when a
+	  * task runs several splits: the logs are keyed by task, and cleanup
+	  * removes temp files that splits still running may be using.
+	*/
+	public MR4CMapper(ExecutionSource exeSrc, DatasetWritable.Format format, int parts, boolean perTask) {
 		m_exeSrc = exeSrc;
+		m_format = format;
+		m_parts = parts;
+		m_perTask = perTask;
 	}
 
-	public void map(Text key, DataKeyList value, OutputCollector<Text,Text> output, Reporter reporter) throws IOException {
-		AlgoRunner runner = new AlgoRunner(m_exeSrc);
+	/**
+	  * Records the execute time of each split; saved by close()
+	*/
+	public void setProfileRecorder(RuntimeProfileRecorder profile) {
+		m_profile = profile;
+	}
+
+	/**
+	  * Creates a runner for the map() calls of this task.  Runners are
+	  * reused by later calls; calls running at the same time each get their
+	  * own.
+	*/
+	public void init() throws IOException {
+		if ( m_idle.isEmpty() ) {
+			m_idle.offer(new AlgoRunner(m_exeSrc));
+		}
+	}
+
+	/**
+	  * Safe to call from several threads at once.  The runners share one
+	  * algorithm instance, so the job only does that for algorithms
+	  * declared thread safe.
+	*/
+	public void map(Text key, DataKeyList value, OutputCollector<Text,DatasetWritable> output, Reporter reporter) throws IOException {
+		AlgoRunner runner = takeRunner();
+		runner.reset();
+		m_output = output;
+		m_reporter = reporter;
 		boolean success = false;
 		try {
 			doMap(runner, key, value, output, reporter);
@@ -69,25 +120,63 @@ public class MR4CMapper {
 			throw new IOException(e);
 		} finally {
 			try {
-				handleLogs(runner, key, value, output, reporter);
+				if ( !m_perTask ) {
+					handleLogs(runner, output);
+				}
 			} catch ( Exception e ) {
 				m_log.error("Error saving logs", e);
 				// Only throw log failure if it won't mask another exception
 				if ( success ) {
 					throw new IOException(e);
 				}
+			} finally {
+				m_idle.offer(runner);
+				HadoopCounters.publish(reporter);
+			}
+		}
+	}
+
+	/**
+	  * Saves the runtime profile, then emits the logs for the task and cleans
+	  * up the algorithm, if that wasn't done after each split.  Call once
+	  * every map() has returned.
+	*/
+	public void close() throws IOException {
+		if ( m_profile!=null ) {
+			m_profile.save();
+		}
+		if ( !m_perTask ) {
+			return;
+		}
+		AlgoRunner runner = takeRunner();
+		try {
+			if ( m_output!=null ) {
+				runner.reset();
+				handleLogs(runner, m_output);
+			}
+		} finally {
+			try {
+				runner.cleanupAlgorithm();
+			} finally {
+				m_idle.offer(runner);
+				if ( m_reporter!=null ) {
+					HadoopCounters.publish(m_reporter);
+				}
 			}
 		}
 	}
 
-	private void doMap(AlgoRunner runner, Text key, DataKeyList value, OutputCollector<Text,Text> output, Reporter reporter) throws IOException {
+	private AlgoRunner takeRunner() throws IOException {
+		AlgoRunner runner = m_idle.poll();
+		return runner!=null ? runner : new AlgoRunner(m_exeSrc);
+	}
 
-		runner.loadInputData();
+	private void doMap(AlgoRunner runner, Text key, DataKeyList value, OutputCollector<Text,DatasetWritable> output, Reporter reporter) throws IOException {
 
-		// slice down to only the part for this split
+		// only load the part for this split
 		BasicDataKeyFilter filter = new BasicDataKeyFilter();
 		filter.addKeys(value.getKeys());
-		runner.slice(filter);
+		runner.loadInputData(filter);
 		
 		HadoopContext context = new HadoopContext(reporter);
 
@@ -97,6 +186,10 @@ public class MR4CMapper {
 			throw new RuntimeException(String.format("Algorithm failed with message [%s]", context.getFailureMessage()));
 		}
 
+		if ( m_profile!=null ) {
+			m_profile.record(runner.getAlgorithmData().getKeyspace(), runner.getExecuteMillis());
+		}
+
 		// Files should have been written as they were added, get any that weren't
 		runner.saveOutputData(WriteMode.FILES_ONLY);
 	
@@ -106,11 +199,13 @@ public class MR4CMapper {
 			collectOutput(output, name, dataset);
 		}
 
-		runner.cleanupAlgorithm();
+		if ( !m_perTask ) {
+			runner.cleanupAlgorithm();
+		}
 			
 	}
 
-	private void handleLogs(AlgoRunner runner, Text key, DataKeyList value, OutputCollector<Text,Text> output, Reporter reporter) throws IOException {
+	private void handleLogs(AlgoRunner runner, OutputCollector<Text,DatasetWritable> output) throws IOException {
 		runner.buildLogsDatasets();
 		runner.saveLogs(WriteMode.FILES_ONLY);
 		AlgorithmData logData = runner.getLogsData();
@@ -120,12 +215,11 @@ public class MR4CMapper {
 		}
 	}
 
-	private void collectOutput(OutputCollector<Text,Text> output, String name, Dataset dataset) throws IOException {
-		StringWriter writer = new StringWriter();
-		m_serializer.serializeDataset(dataset,writer);
+	private void collectOutput(OutputCollector<Text,DatasetWritable> output, String name, Dataset dataset) throws IOException {
 		Text outKey = new Text(name);
-		Text outValue = new Text(writer.toString());
-		output.collect(outKey,outValue);
+		for ( DatasetWritable outValue : DatasetPartitioner.split(dataset, m_parts, m_format) ) {
+			output.collect(outKey,outValue);
+		}
 	}
 
 }
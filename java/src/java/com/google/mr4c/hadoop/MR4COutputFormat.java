@@ -25,10 +25,18 @@ import org.apache.hadoop.io.Text;
 
 public class MR4COutputFormat {
 
-	public static RecordWriter<Text,Text> getRecordWriter(ExecutionSource exeSrc) throws IOException {
+	public static RecordWriter<Text,DatasetWritable> getRecordWriter(ExecutionSource exeSrc) throws IOException {
 		return new MR4CRecordWriter(exeSrc);
 
 	}
 
+	/**
+	  * Record writer for one of several reducers; output goes to partials
+	  * to be merged when the job commits
+	*/
+	public static RecordWriter<Text,DatasetWritable> getRecordWriter(ExecutionSource exeSrc, PartialDatasetStore partials, String partName) throws IOException {
+		return new MR4CRecordWriter(exeSrc, partials, partName);
+	}
+
 }
 
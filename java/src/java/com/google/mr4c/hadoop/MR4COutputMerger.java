@@ -0,0 +1,71 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.AlgoRunner;
+import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.sources.ExecutionSource;
+import com.google.mr4c.stats.TaskStats;
+import com.google.mr4c.stats.TaskStats.PhaseTimer;
+import com.google.mr4c.util.MR4CLogging;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+
+/**
+  * Final step when output datasets were assembled by several reducers:
+  * combines the partial datasets and writes them as a single reducer would
+  * have.  Sources that take their files in parts only have their metadata
+  * concatenated here; other datasets are read back and written whole.
+*/
+public class MR4COutputMerger {
+
+	protected static final Logger s_log = MR4CLogging.getLogger(MR4COutputMerger.class);
+
+	private AlgoRunner m_algoRunner;
+	private PartialDatasetStore m_partials;
+
+	public MR4COutputMerger(ExecutionSource exeSrc, PartialDatasetStore partials) throws IOException {
+		m_algoRunner = new AlgoRunner(exeSrc);
+		m_partials = partials;
+	}
+
+	public void merge() throws IOException {
+		s_log.info("Begin merging partial datasets from [{}]", m_partials);
+		PhaseTimer timer = TaskStats.instance().startPhase("finalMerge");
+		boolean success = false;
+		try {
+			for ( String name : m_partials.getDatasetNames() ) {
+				if ( MR4CRecordWriter.canWriteParts(m_algoRunner, name) ) {
+					// files are already in place, only the metadata is concatenated
+					MR4CRecordWriter.getMergeableSource(m_algoRunner, name).mergeParts(m_partials.getMetadataParts(name));
+				} else {
+					Dataset dataset = m_partials.readDataset(name);
+					MR4CRecordWriter.writeFinal(m_algoRunner, name, dataset);
+				}
+			}
+			m_algoRunner.copyLogsToFinal();
+			m_partials.delete();
+			success = true;
+		} finally {
+			timer.done(success);
+		}
+		s_log.info("End merging partial datasets");
+	}
+
+}
@@ -17,6 +17,7 @@
 package com.google.mr4c.hadoop;
 
 import java.io.StringWriter;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.hadoop.mapred.InputSplit;
@@ -25,14 +26,21 @@ import org.apache.hadoop.io.Text;
 
 public class MR4CRecordReader implements RecordReader<Text,DataKeyList> {
 
-	private MR4CInputSplit m_split;
-	private boolean m_done=false;
+	private List<MR4CInputSplit> m_splits;
+	private int m_next=0;
 
-	// NOTE: treating the entire split as a single hadoop "record"
-	// would need additional splitting logic to generate multiple records
+	// NOTE: treating each entire split as a single hadoop "record"
+	// would need additional splitting logic to generate multiple records per split
 
 	public MR4CRecordReader(MR4CInputSplit split) {
-		m_split=split;
+		this(Collections.singletonList(split));
+	}
+
+	/**
+	  * One record per split, for a task running several splits
+	*/
+	public MR4CRecordReader(List<MR4CInputSplit> splits) {
+		m_splits=splits;
 	}
 
 	public void close() {
@@ -47,24 +55,24 @@ public class MR4CRecordReader implements RecordReader<Text,DataKeyList> {
 		return new DataKeyList();
 	}
 
-	// NOTE: Position and progress are of limited usefulness as long as we send all the keys as a single record
+	// NOTE: Position and progress are of limited usefulness as long as we send all the keys of a split as a single record
 	// Doing the best we can for now
 
 	public long getPos() {
-		return m_done ? 1 : 0; // this could also be number of keys
+		return m_next; // this could also be number of keys
 	}
 
 	public float getProgress() {
-		return m_done ? 1.0f : 0.0f;
+		return m_splits.isEmpty() ? 1.0f : (float) m_next / m_splits.size();
 	}
 
 	public boolean next(Text key, DataKeyList value) {
-		if ( m_done ) {
+		if ( m_next>=m_splits.size() ) {
 			return false;
 		}
-		key.set(""+ m_split.getSequenceNumber());
-		value.setKeys(m_split.getKeys().getKeys());
-		m_done=true;
+		MR4CInputSplit split = m_splits.get(m_next++);
+		key.set(""+ split.getSequenceNumber());
+		value.setKeys(split.getKeys().getKeys());
 		return true;
 	}
   
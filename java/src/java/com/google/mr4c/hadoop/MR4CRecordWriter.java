@@ -19,15 +19,16 @@ package com.google.mr4c.hadoop;
 import com.google.mr4c.AlgoRunner;
 import com.google.mr4c.algorithm.AlgorithmData;
 import com.google.mr4c.dataset.Dataset;
-import com.google.mr4c.serialize.DatasetSerializer;
-import com.google.mr4c.serialize.SerializerFactories;
+import com.google.mr4c.sources.DatasetSource;
 import com.google.mr4c.sources.DatasetSource.SourceType;
 import com.google.mr4c.sources.DatasetSource.WriteMode;
 import com.google.mr4c.sources.ExecutionSource;
+import com.google.mr4c.sources.MergeableDatasetSource;
+import com.google.mr4c.stats.TaskStats;
+import com.google.mr4c.stats.TaskStats.PhaseTimer;
 import com.google.mr4c.util.MR4CLogging;
 
 import java.io.IOException;
-import java.io.StringReader;
 
 import org.apache.hadoop.mapred.RecordWriter;
 import org.apache.hadoop.mapred.Reporter;
@@ -35,64 +36,119 @@ import org.apache.hadoop.io.Text;
 
 import org.slf4j.Logger;
 
-public class MR4CRecordWriter implements RecordWriter<Text,Text> {
+public class MR4CRecordWriter implements RecordWriter<Text,DatasetWritable> {
 
 	protected Logger m_log = MR4CLogging.getLogger(MR4CRecordWriter.class);
 
 	private AlgoRunner m_algoRunner;
-	private DatasetSerializer m_serializer;
+	private PartialDatasetStore m_partials;
+	private String m_partName;
 
 	public MR4CRecordWriter(ExecutionSource  exeSrc) throws IOException {
+		this(exeSrc, null, null);
+	}
+
+	/**
+	  * When partials is provided, datasets are written there to be merged
+	  * later, instead of being written to their final location
+	*/
+	public MR4CRecordWriter(ExecutionSource  exeSrc, PartialDatasetStore partials, String partName) throws IOException {
 		m_algoRunner = new AlgoRunner(exeSrc);
-		m_serializer = SerializerFactories.getSerializerFactory("application/json").createDatasetSerializer();
+		m_partials = partials;
+		m_partName = partName;
 	}
 
-	public void write(Text key, Text value) throws IOException {
+	public void write(Text key, DatasetWritable value) throws IOException {
+		PhaseTimer timer = TaskStats.instance().startPhase("write");
+		boolean success = false;
 		try {
 			doWrite(key,value);
+			success = true;
 		} catch ( Exception e ) {
 			m_log.error("Error in record writer", e);
 			throw new IOException(e);
+		} finally {
+			timer.done(success);
 		}
 	}
 
-	private void doWrite(Text key, Text value) throws IOException {
+	private void doWrite(Text key, DatasetWritable value) throws IOException {
 		String name = key.toString();
-		StringReader reader = new StringReader(value.toString());
-		Dataset dataset = m_serializer.deserializeDataset(reader);
-		if ( m_algoRunner.getExecutionSource().getOutputDatasetNames(SourceType.LOGS).contains(name) ) {
-			writeLogs(name, dataset);
+		Dataset dataset = value.getDataset();
+		if ( isLogs(m_algoRunner, name) ) {
+			Dataset slice = m_algoRunner.buildLogsDataset(name); // should be the reducer logs
+			dataset.addSlice(slice);
+		}
+		if ( m_partials==null ) {
+			writeFinal(m_algoRunner, name, dataset);
+		} else if ( canWriteParts(m_algoRunner, name) ) {
+			// files go to their final place now, only the metadata waits for the merge
+			getMergeableSource(m_algoRunner, name).writePart(dataset, m_partName);
+			m_partials.writeMetadataPart(name, m_partName, dataset);
 		} else {
-			writeData(name, dataset);
+			m_partials.writePartial(name, m_partName, dataset);
+		}
+	}
+
+	/**
+	  * True if the parts of an output dataset can be written by each reducer
+	  * and combined without reading them back
+	*/
+	static boolean canWriteParts(AlgoRunner runner, String name) throws IOException {
+		if ( isLogs(runner, name) ) {
+			return false;
 		}
+		DatasetSource src = runner.getExecutionSource().getOutputDatasetSource(name);
+		return src instanceof MergeableDatasetSource && ((MergeableDatasetSource) src).canWriteParts();
+	}
+
+	static MergeableDatasetSource getMergeableSource(AlgoRunner runner, String name) throws IOException {
+		return (MergeableDatasetSource) runner.getExecutionSource().getOutputDatasetSource(name);
 	}
 
-	private void writeData(String name, Dataset dataset) throws IOException {
-		AlgorithmData algoData = m_algoRunner.getAlgorithmData();
+	/**
+	  * Writes a fully assembled output dataset
+	*/
+	static void writeFinal(AlgoRunner runner, String name, Dataset dataset) throws IOException {
+		if ( isLogs(runner, name) ) {
+			writeLogs(runner, name, dataset);
+		} else {
+			writeData(runner, name, dataset);
+		}
+	}
+
+	private static boolean isLogs(AlgoRunner runner, String name) {
+		return runner.getExecutionSource().getOutputDatasetNames(SourceType.LOGS).contains(name);
+	}
+
+	private static void writeData(AlgoRunner runner, String name, Dataset dataset) throws IOException {
+		AlgorithmData algoData = runner.getAlgorithmData();
 		algoData.addOutputDataset(name,dataset);
-		m_algoRunner.saveOutputDataset(name, WriteMode.SERIALIZED_ONLY);
-		m_algoRunner.copyOutputToFinal(name);
+		runner.saveOutputDataset(name, WriteMode.SERIALIZED_ONLY);
+		runner.copyOutputToFinal(name);
 	}
 
-	private void writeLogs(String name, Dataset dataset) throws IOException {
-		Dataset slice = m_algoRunner.buildLogsDataset(name); // should be the reducer logs
-		dataset.addSlice(slice);
-		AlgorithmData logData = m_algoRunner.getLogsData();
+	private static void writeLogs(AlgoRunner runner, String name, Dataset dataset) throws IOException {
+		AlgorithmData logData = runner.getLogsData();
 		logData.addOutputDataset(name,dataset);
-		m_algoRunner.saveLogsDataset(name, WriteMode.SERIALIZED_ONLY);
+		runner.saveLogsDataset(name, WriteMode.SERIALIZED_ONLY);
 	}
 	
 	public void close(Reporter reporter) throws IOException {
 		if ( m_algoRunner!=null ) {
 			saveReducerLogFiles();
 		}
+		HadoopCounters.publish(reporter);
 	}
 
 	private void saveReducerLogFiles() throws IOException {
 		// rebuild logs datasets to be reducer only
 		m_algoRunner.rebuildLogsDatasets();
 		m_algoRunner.saveLogs(WriteMode.FILES_ONLY);
-		m_algoRunner.copyLogsToFinal();
+		if ( m_partials==null ) {
+			// otherwise done after the merge
+			m_algoRunner.copyLogsToFinal();
+		}
 	}
 
 }
@@ -21,15 +21,13 @@ import com.google.mr4c.dataset.Dataset;
 import com.google.mr4c.keys.DataKey;
 import com.google.mr4c.keys.Keyspace;
 import com.google.mr4c.metadata.MetadataMap;
-import com.google.mr4c.serialize.DatasetSerializer;
-import com.google.mr4c.serialize.SerializerFactories;
 import com.google.mr4c.sources.DatasetSource.WriteMode;
 import com.google.mr4c.sources.ExecutionSource;
+import com.google.mr4c.stats.TaskStats;
+import com.google.mr4c.stats.TaskStats.PhaseTimer;
 import com.google.mr4c.util.MR4CLogging;
 
 import java.io.IOException;
-import java.io.StringReader;
-import java.io.StringWriter;
 import java.net.URI;
 import java.util.Iterator;
 
@@ -42,45 +40,45 @@ import org.apache.hadoop.io.Text;
 import org.slf4j.Logger;
 
 // K2 = output dataset name
-// V2 = serialized dataset slice
+// V2 = dataset slice
 // K3 = output dataset name (same as K2)
-// V3 = serialized output dataset (slices all combined!)
+// V3 = output dataset (slices all combined!)
 public class MR4CReducer {
 
 	protected final Logger m_log = MR4CLogging.getLogger(MR4CReducer.class);
 
 	private ExecutionSource m_exeSrc;
-	private DatasetSerializer m_serializer = SerializerFactories.getSerializerFactory("application/json").createDatasetSerializer();
 
 	public MR4CReducer(ExecutionSource exeSrc) {
 		m_exeSrc = exeSrc;
 	}
 
 
-	public void reduce(Text key, Iterator<Text> values, OutputCollector<Text,Text> output, Reporter reporter) throws IOException {
+	public void reduce(Text key, Iterator<DatasetWritable> values, OutputCollector<Text,DatasetWritable> output, Reporter reporter) throws IOException {
+		PhaseTimer timer = TaskStats.instance().startPhase("merge");
+		boolean success = false;
 		try {
 			doReduce(key, values, output, reporter);
+			success = true;
 		} catch (Exception e) {
 			m_log.error("Error in reducer", e);
 			throw new IOException(e);
+		} finally {
+			timer.done(success);
+			HadoopCounters.publish(reporter);
 		}
 	}
 
-	private void doReduce(Text key, Iterator<Text> values, OutputCollector<Text,Text> output, Reporter reporter) throws IOException {
+	private void doReduce(Text key, Iterator<DatasetWritable> values, OutputCollector<Text,DatasetWritable> output, Reporter reporter) throws IOException {
 
 		Dataset dataset = new Dataset();
 
 		while ( values.hasNext() ) {
-			Text value = values.next();
-			StringReader reader = new StringReader(value.toString());
-			Dataset slice = m_serializer.deserializeDataset(reader);
+			Dataset slice = values.next().getDataset();
 			dataset.addSlice(slice);
 		}
 
-		StringWriter writer = new StringWriter();
-		m_serializer.serializeDataset(dataset, writer);
-		Text value = new Text(writer.toString());
-		output.collect(key,value);
+		output.collect(key, new DatasetWritable(dataset));
 	}
 
 }
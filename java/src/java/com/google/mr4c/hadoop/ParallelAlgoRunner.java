@@ -0,0 +1,304 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.AlgoRunner;
+import com.google.mr4c.AlgoRunner.AlgoRunnerConfig;
+import com.google.mr4c.algorithm.AlgorithmContext;
+import com.google.mr4c.algorithm.AlgorithmData;
+import com.google.mr4c.algorithm.LogLevel;
+import com.google.mr4c.config.algorithm.AlgorithmConfig;
+import com.google.mr4c.config.category.Category;
+import com.google.mr4c.config.category.CategoryConfig;
+import com.google.mr4c.config.category.CoreConfig;
+import com.google.mr4c.config.category.MR4CConfig;
+import com.google.mr4c.dataset.DataFile;
+import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.keys.BasicDataKeyFilter;
+import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.keys.KeyspacePartitioner;
+import com.google.mr4c.message.Message;
+import com.google.mr4c.message.Messages;
+import com.google.mr4c.sources.DatasetSource.WriteMode;
+import com.google.mr4c.stats.MR4CStats;
+import com.google.mr4c.util.MR4CLogging;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+
+/**
+  * Runs an algorithm on several threads in one process, without Hadoop.
+  * The keyspace is partitioned the same way MR4CInputFormat splits it, and
+  * each thread runs the algorithm on one slice of the input.  Each slice
+  * has its own output datasets, added to the overall output as it
+  * finishes, which is then written as a standalone AlgoRunner would.
+  *
+  * The algorithm must be safe to run on several threads at once; main()
+  * only uses more than one thread if the algorithm config declares it
+  * thread safe or local.threads is set.  The output dataset sources must
+  * accept files from several threads at once.
+  * An input file shared by overlapping slices is released after the last
+  * of them finishes.
+*/
+public class ParallelAlgoRunner {
+
+	protected static final Logger s_log = MR4CLogging.getLogger(ParallelAlgoRunner.class);
+
+	private static final AtomicInteger s_threadCount = new AtomicInteger();
+
+	private AlgoRunner m_runner;
+	private int m_threads;
+	private int m_slices;
+
+	public static void main(String argv[]) throws Exception {
+		AlgoRunnerConfig config = new AlgoRunnerConfig(true);
+		config.setCommandLineArguments(argv);
+		config.configure();
+		AlgoRunner algoRunner = new AlgoRunner(config);
+		int threads = getConfiguredThreads(algoRunner.getAlgorithmConfig());
+		ParallelAlgoRunner runner = new ParallelAlgoRunner(algoRunner, threads);
+		try {
+			runner.execute();
+		} finally {
+			MR4CStats.flush();
+		}
+	}
+
+	/**
+	  * Threads to use, from the core config property local.threads.
+	  * Defaults to the number of processors if the algorithm is declared
+	  * thread safe, and to one otherwise.
+	*/
+	public static int getConfiguredThreads(AlgorithmConfig algoConfig) {
+		return getConfiguredThreads(MR4CConfig.getDefaultInstance().getCategory(Category.CORE), algoConfig);
+	}
+
+	/*package*/ static int getConfiguredThreads(CategoryConfig conf, AlgorithmConfig algoConfig) {
+		String threads = conf.getProperty(CoreConfig.PROP_LOCAL_THREADS);
+		if ( threads==null ) {
+			return algoConfig.isThreadSafe() ?
+				Runtime.getRuntime().availableProcessors() :
+				1;
+		}
+		int num = Integer.parseInt(threads);
+		if ( num>1 && !algoConfig.isThreadSafe() ) {
+			s_log.warn("Running algorithm [{}] on {} threads, though it isn't declared thread safe", algoConfig.getName(), num);
+		}
+		return num;
+	}
+
+	/**
+	  * Cuts the keyspace into one slice per thread
+	*/
+	public ParallelAlgoRunner(AlgoRunner runner, int threads) {
+		this(runner, threads, threads);
+	}
+
+	/**
+	  * @param slices number of slices to ask the partitioner for.  More
+	  *   slices than threads evens out the load when slices differ in cost.
+	*/
+	public ParallelAlgoRunner(AlgoRunner runner, int threads, int slices) {
+		if ( threads<1 || slices<1 ) {
+			throw new IllegalArgumentException(String.format("Need at least one thread and slice; got %d threads and %d slices", threads, slices));
+		}
+		m_runner = runner;
+		m_threads = threads;
+		m_slices = slices;
+	}
+
+	public void execute() throws IOException {
+		try {
+			m_runner.loadInputData();
+			executeSlices();
+			m_runner.saveOutputData(WriteMode.ALL);
+			m_runner.copyOutputToFinal();
+			m_runner.buildLogsDatasets();
+			m_runner.saveLogs(WriteMode.ALL);
+			m_runner.copyLogsToFinal();
+		} finally {
+			m_runner.cleanupAlgorithm();
+		}
+	}
+
+	private void executeSlices() throws IOException {
+		AlgorithmData algoData = m_runner.getAlgorithmData();
+		KeyspacePartitioner partitioner = SplitPlanner.partition(m_runner.getAlgorithmConfig(), algoData.getKeyspace(), m_slices, null);
+		SplitPlanner planner = new SplitPlanner(partitioner, SplitPlanner.getDependentDimensions(m_runner.getAlgorithmConfig()));
+		planner.plan(algoData);
+		List<SplitPlanner.Split> splits = planner.getSplits();
+		s_log.info("Running {} slices on {} threads", splits.size(), m_threads);
+
+		List<AlgorithmData> slices = new ArrayList<AlgorithmData>();
+		for ( SplitPlanner.Split split : splits ) {
+			BasicDataKeyFilter filter = new BasicDataKeyFilter();
+			filter.addKeys(split.getKeys());
+			slices.add(algoData.sliceInputs(filter));
+		}
+		final Map<DataFile,AtomicInteger> users = countUsers(slices);
+
+		if ( m_threads==1 || slices.size()==1 ) {
+			for ( int i=0; i<slices.size(); i++ ) {
+				executeSlice(i+1, slices.get(i), users);
+			}
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(m_threads, slices.size()), new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "mr4c-slice-" + s_threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			List<Future<Void>> results = new ArrayList<Future<Void>>();
+			for ( int i=0; i<slices.size(); i++ ) {
+				final int num = i+1;
+				final AlgorithmData slice = slices.get(i);
+				results.add(executor.submit(new Callable<Void>() {
+					public Void call() throws IOException {
+						executeSlice(num, slice, users);
+						return null;
+					}
+				}));
+			}
+			for ( Future<Void> result : results ) {
+				result.get();
+			}
+		} catch ( InterruptedException ie ) {
+			throw new InterruptedIOException("Interrupted running algorithm slices");
+		} catch ( ExecutionException ee ) {
+			Throwable cause = ee.getCause();
+			if ( cause instanceof IOException ) {
+				throw (IOException) cause;
+			}
+			if ( cause instanceof RuntimeException ) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void executeSlice(int num, AlgorithmData slice, Map<DataFile,AtomicInteger> users) throws IOException {
+		s_log.info("Begin slice #{}", num);
+		SliceContext context = new SliceContext(num);
+		try {
+			m_runner.executeSlice(slice, context);
+		} finally {
+			releaseInputs(slice, users);
+		}
+		if ( context.isFailed() ) {
+			throw new RuntimeException(String.format("Algorithm failed on slice #%d with message [%s]", num, context.getFailureMessage()));
+		}
+		m_runner.getAlgorithmData().addOutputs(slice);
+		s_log.info("End slice #{}", num);
+	}
+
+	// how many slices use each input file; identity, since equal files may have separate content
+	private static Map<DataFile,AtomicInteger> countUsers(List<AlgorithmData> slices) {
+		Map<DataFile,AtomicInteger> users = new IdentityHashMap<DataFile,AtomicInteger>();
+		for ( AlgorithmData slice : slices ) {
+			for ( DataFile file : getInputFiles(slice) ) {
+				AtomicInteger count = users.get(file);
+				if ( count==null ) {
+					users.put(file, new AtomicInteger(1));
+				} else {
+					count.incrementAndGet();
+				}
+			}
+		}
+		return users;
+	}
+
+	private static void releaseInputs(AlgorithmData slice, Map<DataFile,AtomicInteger> users) {
+		for ( DataFile file : getInputFiles(slice) ) {
+			if ( users.get(file).decrementAndGet()==0 ) {
+				file.release();
+			}
+		}
+	}
+
+	private static List<DataFile> getInputFiles(AlgorithmData slice) {
+		List<DataFile> files = new ArrayList<DataFile>();
+		for ( String name : slice.getInputDatasetNames() ) {
+			Dataset dataset = slice.getInputDataset(name);
+			for ( DataKey key : dataset.getAllFileKeys() ) {
+				files.add(dataset.getFile(key));
+			}
+		}
+		return files;
+	}
+
+	private static class SliceContext implements AlgorithmContext {
+
+		private int m_num;
+		private volatile boolean m_failed = false;
+		private volatile String m_failureMsg;
+
+		private SliceContext(int num) {
+			m_num = num;
+		}
+
+		public void log(LogLevel level, String msg) {
+			s_log.debug("Logging at level {} for slice #{} : {}", new Object[] {level, m_num, msg});
+		}
+
+		public void progress(float percentDone, String msg) {
+			s_log.info("Progress reported for slice #{}: {}% done : {}", new Object[] {m_num, percentDone, msg});
+		}
+
+		public void failure(String msg) {
+			m_failed = true;
+			m_failureMsg = msg;
+			s_log.error("Algorithm failed on slice #{} with message [{}]", m_num, msg);
+		}
+
+		public boolean isFailed() {
+			return m_failed;
+		}
+
+		public String getFailureMessage() {
+			return m_failureMsg;
+		}
+
+		public String getEnvironmentDescription() {
+			return "Parallel";
+		}
+
+		public void sendMessage(Message msg) {
+			Messages.handleMessage(msg);
+		}
+
+	}
+
+}
@@ -0,0 +1,153 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.serialize.DatasetSerializer;
+import com.google.mr4c.serialize.SerializerFactories;
+import com.google.mr4c.sources.DataFileSource;
+import com.google.mr4c.sources.URIDataFileSource;
+import com.google.mr4c.util.MR4CLogging;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import org.slf4j.Logger;
+
+/**
+  * Holds the partial output datasets written by each reducer when output
+  * assembly is spread across several reducers.  Partials are stored as
+  * [root]/[dataset name]/[part name], and are combined in a final merge.
+  * For sources that take their files in parts, only the metadata is kept
+  * here, as [root]/[dataset name]/[part name].json, to be concatenated
+  * into the dataset file.
+*/
+public class PartialDatasetStore {
+
+	protected static final Logger s_log = MR4CLogging.getLogger(PartialDatasetStore.class);
+
+	public static final String METADATA_SUFFIX = ".json";
+
+	private FileSystem m_fs;
+	private Path m_root;
+	private DatasetSerializer m_serializer = SerializerFactories.getSerializerFactory("application/json").createDatasetSerializer();
+
+	public PartialDatasetStore(URI root, Configuration conf) throws IOException {
+		this(FileSystem.get(root, conf), new Path(root));
+	}
+
+	public PartialDatasetStore(FileSystem fs, Path root) {
+		m_fs = fs;
+		m_root = root;
+	}
+
+	/**
+	  * Overwrites any partial with the same part name, so a retried task
+	  * replaces the output of the failed attempt.
+	*/
+	public void writePartial(String name, String partName, Dataset dataset) throws IOException {
+		Path path = new Path(new Path(m_root, name), partName);
+		s_log.info("Writing partial dataset [{}] to [{}]", name, path);
+		FSDataOutputStream out = m_fs.create(path, true);
+		try {
+			new DatasetWritable(dataset).write(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	  * Overwrites, as for writePartial()
+	*/
+	public void writeMetadataPart(String name, String partName, Dataset dataset) throws IOException {
+		Path path = new Path(new Path(m_root, name), partName + METADATA_SUFFIX);
+		s_log.info("Writing metadata part of dataset [{}] to [{}]", name, path);
+		Writer writer = new OutputStreamWriter(m_fs.create(path, true));
+		try {
+			m_serializer.serializeDataset(dataset.toMetadataOnly(), writer);
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	  * Metadata parts of a dataset, in part name order
+	*/
+	public List<DataFileSource> getMetadataParts(String name) throws IOException {
+		FileStatus[] parts = m_fs.listStatus(new Path(m_root, name));
+		Arrays.sort(parts);
+		List<DataFileSource> sources = new ArrayList<DataFileSource>();
+		for ( FileStatus part : parts ) {
+			sources.add(new URIDataFileSource(part.getPath().toUri(), part.getPath().getName()));
+		}
+		return sources;
+	}
+
+	public List<String> getDatasetNames() throws IOException {
+		List<String> names = new ArrayList<String>();
+		if ( !m_fs.exists(m_root) ) {
+			return names;
+		}
+		for ( FileStatus status : m_fs.listStatus(m_root) ) {
+			if ( status.isDirectory() ) {
+				names.add(status.getPath().getName());
+			}
+		}
+		return names;
+	}
+
+	/**
+	  * Combines all the partials for a dataset
+	*/
+	public Dataset readDataset(String name) throws IOException {
+		Dataset dataset = new Dataset();
+		FileStatus[] parts = m_fs.listStatus(new Path(m_root, name));
+		s_log.info("Merging {} partials of dataset [{}]", parts.length, name);
+		for ( FileStatus part : parts ) {
+			DatasetWritable writable = new DatasetWritable();
+			FSDataInputStream in = m_fs.open(part.getPath());
+			try {
+				writable.readFields(in);
+			} finally {
+				in.close();
+			}
+			dataset.addSlice(writable.getDataset());
+		}
+		return dataset;
+	}
+
+	public void delete() throws IOException {
+		m_fs.delete(m_root, true);
+	}
+
+	public String toString() {
+		return m_root.toString();
+	}
+
+}
@@ -0,0 +1,114 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.algorithm.AlgorithmData;
+import com.google.mr4c.content.ContentFactories;
+import com.google.mr4c.keys.DataKeyDimension;
+import com.google.mr4c.keys.DataKeyElement;
+import com.google.mr4c.keys.Keyspace;
+import com.google.mr4c.util.MR4CLogging;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+
+/**
+  * Costs measured in earlier runs, typically task runtimes, stored as a
+  * properties file with one line per element:
+  *   [dimension]:[identifier]=[cost]
+  * Elements the profile doesn't have get the average cost of the profiled
+  * elements in their dimension.  RuntimeProfileRecorder writes the profile
+  * from the execute times of a job.
+*/
+public class RuntimeProfileCostModel implements KeyCostModel {
+
+	protected static final Logger s_log = MR4CLogging.getLogger(RuntimeProfileCostModel.class);
+
+	private URI m_profile;
+
+	public RuntimeProfileCostModel(URI profile) {
+		m_profile = profile;
+	}
+
+	public Map<DataKeyElement,Double> estimateCosts(AlgorithmData algoData) throws IOException {
+		Map<DataKeyElement,Double> profiled = new HashMap<DataKeyElement,Double>();
+		if ( ContentFactories.exists(m_profile) ) {
+			profiled = load(m_profile);
+		} else {
+			// first run, all elements cost the same
+			s_log.info("No runtime profile at [{}] yet", m_profile);
+		}
+		Map<DataKeyElement,Double> costs = new HashMap<DataKeyElement,Double>();
+		Keyspace keyspace = algoData.getKeyspace();
+		for ( DataKeyDimension dim : keyspace.getDimensions() ) {
+			List<DataKeyElement> missing = new ArrayList<DataKeyElement>();
+			double total = 0;
+			int count = 0;
+			for ( DataKeyElement element : keyspace.getKeyspaceDimension(dim).getElements() ) {
+				Double cost = profiled.get(element);
+				if ( cost==null ) {
+					missing.add(element);
+				} else {
+					costs.put(element, cost);
+					total += cost;
+					count++;
+				}
+			}
+			if ( !missing.isEmpty() ) {
+				s_log.info("{} elements of dimension [{}] aren't in the runtime profile", missing.size(), dim.getName());
+				double average = count==0 ? 1 : total / count;
+				for ( DataKeyElement element : missing ) {
+					costs.put(element, average);
+				}
+			}
+		}
+		return costs;
+	}
+
+	public static Map<DataKeyElement,Double> load(URI profile) throws IOException {
+		Properties props = ContentFactories.readContentAsProperties(profile);
+		Map<DataKeyElement,Double> costs = new HashMap<DataKeyElement,Double>();
+		for ( String name : props.stringPropertyNames() ) {
+			int index = name.indexOf(':');
+			if ( index<0 ) {
+				throw new IllegalArgumentException(String.format("Runtime profile entry [%s] should be [dimension]:[identifier]", name));
+			}
+			DataKeyDimension dim = new DataKeyDimension(name.substring(0, index));
+			DataKeyElement element = new DataKeyElement(name.substring(index+1), dim);
+			costs.put(element, Double.parseDouble(props.getProperty(name)));
+		}
+		return costs;
+	}
+
+	public static void save(Map<DataKeyElement,Double> costs, URI profile) throws IOException {
+		Properties props = new Properties();
+		for ( Map.Entry<DataKeyElement,Double> entry : costs.entrySet() ) {
+			DataKeyElement element = entry.getKey();
+			props.setProperty(element.getDimension().getName() + ":" + element.getIdentifier(), entry.getValue().toString());
+		}
+		ContentFactories.ensureParentExists(profile);
+		ContentFactories.writeContent(profile, props);
+	}
+
+}
@@ -0,0 +1,126 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.content.ContentFactories;
+import com.google.mr4c.keys.DataKeyDimension;
+import com.google.mr4c.keys.DataKeyElement;
+import com.google.mr4c.keys.Keyspace;
+import com.google.mr4c.util.MR4CLogging;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import org.slf4j.Logger;
+
+/**
+  * Records the execute time of each split against the elements of its
+  * keyspace, for RuntimeProfileCostModel.  The time of a split is shared
+  * evenly among its elements in each dimension.  Each map task saves its
+  * own part as [profile].parts/[part name], and the parts are combined
+  * into the profile once the job has succeeded.
+*/
+public class RuntimeProfileRecorder {
+
+	protected static final Logger s_log = MR4CLogging.getLogger(RuntimeProfileRecorder.class);
+
+	public static final String PARTS_SUFFIX = ".parts";
+
+	private URI m_part;
+	private Map<DataKeyElement,Double> m_costs = new HashMap<DataKeyElement,Double>();
+
+	public RuntimeProfileRecorder(URI profile, String partName) {
+		m_part = URI.create(getPartsDir(profile) + "/" + partName);
+	}
+
+	/**
+	  * Safe to call from several threads at once
+	*/
+	public synchronized void record(Keyspace keyspace, long millis) {
+		for ( DataKeyDimension dim : keyspace.getDimensions() ) {
+			List<DataKeyElement> elements = keyspace.getKeyspaceDimension(dim).getElements();
+			if ( elements.isEmpty() ) {
+				continue;
+			}
+			double share = (double) millis / elements.size();
+			for ( DataKeyElement element : elements ) {
+				Double cost = m_costs.get(element);
+				m_costs.put(element, cost==null ? share : cost + share);
+			}
+		}
+	}
+
+	public synchronized void save() throws IOException {
+		if ( m_costs.isEmpty() ) {
+			return;
+		}
+		s_log.info("Saving runtime profile of {} elements to [{}]", m_costs.size(), m_part);
+		RuntimeProfileCostModel.save(m_costs, m_part);
+	}
+
+	/**
+	  * Removes parts left by an earlier job that didn't finish
+	*/
+	public static void clearParts(URI profile, Configuration conf) throws IOException {
+		URI dir = getPartsDir(profile);
+		FileSystem.get(dir, conf).delete(new Path(dir), true);
+	}
+
+	/**
+	  * Replaces the profile costs of the elements in the parts with their
+	  * totals, then removes the parts.  Elements that weren't in this job
+	  * keep their earlier cost.
+	*/
+	public static void mergeParts(URI profile, Configuration conf) throws IOException {
+		URI dirURI = getPartsDir(profile);
+		FileSystem fs = FileSystem.get(dirURI, conf);
+		Path dir = new Path(dirURI);
+		if ( !fs.exists(dir) ) {
+			s_log.info("No runtime profile parts in [{}]", dir);
+			return;
+		}
+		Map<DataKeyElement,Double> measured = new HashMap<DataKeyElement,Double>();
+		FileStatus[] parts = fs.listStatus(dir);
+		for ( FileStatus part : parts ) {
+			for ( Map.Entry<DataKeyElement,Double> entry : RuntimeProfileCostModel.load(part.getPath().toUri()).entrySet() ) {
+				Double cost = measured.get(entry.getKey());
+				measured.put(entry.getKey(), cost==null ? entry.getValue() : cost + entry.getValue());
+			}
+		}
+		Map<DataKeyElement,Double> costs = new HashMap<DataKeyElement,Double>();
+		if ( ContentFactories.exists(profile) ) {
+			costs.putAll(RuntimeProfileCostModel.load(profile));
+		}
+		costs.putAll(measured);
+		RuntimeProfileCostModel.save(costs, profile);
+		fs.delete(dir, true);
+		s_log.info("Saved runtime profile of {} elements from {} parts to [{}]", new Object[] {measured.size(), parts.length, profile});
+	}
+
+	private static URI getPartsDir(URI profile) {
+		return URI.create(profile + PARTS_SUFFIX);
+	}
+
+}
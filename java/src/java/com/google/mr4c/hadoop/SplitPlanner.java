@@ -0,0 +1,266 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.algorithm.AlgorithmData;
+import com.google.mr4c.config.algorithm.AlgorithmConfig;
+import com.google.mr4c.config.algorithm.DimensionConfig;
+import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.keys.DataKeyDimension;
+import com.google.mr4c.keys.DataKeyElement;
+import com.google.mr4c.keys.DimensionPartition;
+import com.google.mr4c.keys.KeyDimensionPartitioner;
+import com.google.mr4c.keys.Keyspace;
+import com.google.mr4c.keys.KeyspacePartition;
+import com.google.mr4c.keys.KeyspacePartitioner;
+import com.google.mr4c.metadata.MetadataKeyExtractor;
+import com.google.mr4c.sources.DataFileSource;
+import com.google.mr4c.util.MR4CLogging;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+
+/**
+  * Assigns every input key to its keyspace partitions in one pass over the
+  * input, instead of slicing all the input once per partition.  A key goes
+  * to each partition whose filters it passes, so with overlaps it can be in
+  * several.  The result is the same as slicing with each partition's
+  * independent filter to find the dependent elements, and then with its
+  * extra dimensions filter to find the keys.
+*/
+class SplitPlanner {
+
+	protected static final Logger s_log = MR4CLogging.getLogger(SplitPlanner.class);
+
+	private KeyspacePartitioner m_partitioner;
+	private List<KeyspacePartition> m_partitions;
+	private List<DataKeyDimension> m_depDims;
+	private List<Map<DataKeyDimension,Set<DataKeyElement>>> m_depElements = new ArrayList<Map<DataKeyDimension,Set<DataKeyElement>>>();
+	private List<Split> m_splits = new ArrayList<Split>();
+
+	static class Split {
+
+		private Set<DataKey> m_keys = new HashSet<DataKey>();
+		private Collection<DataFileSource> m_sources = new ArrayList<DataFileSource>();
+		private Keyspace m_keyspace = new Keyspace();
+
+		/**
+		  * All the input keys, including from datasets excluded from the keyspace
+		*/
+		Set<DataKey> getKeys() {
+			return m_keys;
+		}
+
+		/**
+		  * File sources from datasets that aren't excluded from the keyspace
+		*/
+		Collection<DataFileSource> getFileSources() {
+			return m_sources;
+		}
+
+		Keyspace getKeyspace() {
+			return m_keyspace;
+		}
+	}
+
+	/**
+	  * Partitions the keyspace as the dimension configs of the algorithm ask
+	  * for.
+	  * @param costs null to balance partitions by element count
+	*/
+	static KeyspacePartitioner partition(AlgorithmConfig algoConfig, Keyspace keyspace, int numSplits, Map<DataKeyElement,Double> costs) {
+		KeyDimensionPartitioner dimPartitioner = new KeyDimensionPartitioner(keyspace, numSplits);
+		for ( DimensionConfig dimConfig : algoConfig.getDimensions() ) {
+			DataKeyDimension dim = new DataKeyDimension(dimConfig.getName());
+			if ( dimConfig.canSplit() ) {
+				dimPartitioner.canSplit(dim);
+			}
+			if ( dimConfig.isDependent() ) {
+				dimPartitioner.dependent(dim);
+			}
+		}
+		dimPartitioner.partition();
+
+		s_log.info("Dim partition is {}", dimPartitioner.getComputedPartitions());
+
+		KeyspacePartitioner keyspacePartitioner = new KeyspacePartitioner(keyspace, dimPartitioner.getComputedPartitions());
+		for ( DimensionConfig dimConfig : algoConfig.getDimensions() ) {
+			DataKeyDimension dim = new DataKeyDimension(dimConfig.getName());
+			if ( !keyspace.hasDimension(dim) ) {
+				throw new IllegalStateException(String.format("Dimension [%s] is not in the keyspace. It should not have a splitting configuration.  If you haven't specified queryOnly in a dataset config, or registered the algorithm with a dataset excluded from the keyspace, then there is probably a typo somewhere.", dim));
+			}
+			if ( !dimConfig.isDependent() ) {
+				keyspacePartitioner.addOverlaps(dim, dimConfig.getOverlapBefore(), dimConfig.getOverlapAfter());
+				if ( dimConfig.getChunkSize()!=null ) {
+					keyspacePartitioner.specifyChunkSize(dim, dimConfig.getChunkSize());
+				}
+			}
+		}
+		if ( costs!=null ) {
+			keyspacePartitioner.specifyCosts(costs);
+		}
+		keyspacePartitioner.partition();
+
+		return keyspacePartitioner;
+	}
+
+	static List<DataKeyDimension> getDependentDimensions(AlgorithmConfig algoConfig) {
+		List<DataKeyDimension> dims = new ArrayList<DataKeyDimension>();
+		for ( DimensionConfig dimConfig : algoConfig.getDimensions() ) {
+			if ( dimConfig.isDependent() ) {
+				dims.add(new DataKeyDimension(dimConfig.getName()));
+			}
+		}
+		return dims;
+	}
+
+	/**
+	  * @param partitioner must already be partitioned
+	*/
+	SplitPlanner(KeyspacePartitioner partitioner, List<DataKeyDimension> depDims) {
+		m_partitioner = partitioner;
+		m_partitions = partitioner.getKeyPartitions();
+		m_depDims = depDims;
+		for ( int i=0; i<m_partitions.size(); i++ ) {
+			Map<DataKeyDimension,Set<DataKeyElement>> depElements = new HashMap<DataKeyDimension,Set<DataKeyElement>>();
+			for ( DataKeyDimension dim : depDims ) {
+				depElements.put(dim, new LinkedHashSet<DataKeyElement>());
+			}
+			m_depElements.add(depElements);
+			m_splits.add(new Split());
+		}
+	}
+
+	/**
+	  * Adds the dependent dimensions to the partitions, and collects the
+	  * keys for each of them.
+	*/
+	void plan(AlgorithmData algoData) {
+		findDependentElements(algoData);
+		assignKeys(algoData);
+	}
+
+	/**
+	  * One split per partition, in the same order
+	*/
+	List<Split> getSplits() {
+		return m_splits;
+	}
+
+	// dependent elements come from keys referenced in the metadata of each partition
+	private void findDependentElements(AlgorithmData algoData) {
+		if ( !m_depDims.isEmpty() ) {
+			Set<DataKeyDimension> indepDims = m_partitioner.getPartitionedDimensions();
+			for ( String name : algoData.getInputDatasetNames() ) {
+				Dataset dataset = algoData.getInputDataset(name);
+				for ( DataKey key : dataset.getAllMetadataKeys() ) {
+					if ( !indepDims.containsAll(key.getDimensions()) ) {
+						continue;
+					}
+					List<Integer> parts = m_partitioner.findPartitions(key);
+					if ( parts.isEmpty() ) {
+						continue;
+					}
+					for ( DataKey depKey : MetadataKeyExtractor.findKeys(dataset.getMetadata(key)) ) {
+						for ( DataKeyDimension dim : m_depDims ) {
+							if ( depKey.hasDimension(dim) ) {
+								DataKeyElement element = depKey.getElement(dim);
+								for ( int part : parts ) {
+									m_depElements.get(part).get(dim).add(element);
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		for ( int i=0; i<m_partitions.size(); i++ ) {
+			for ( DataKeyDimension dim : m_depDims ) {
+				DimensionPartition dimPart = new DimensionPartition(dim);
+				dimPart.addElements(new ArrayList<DataKeyElement>(m_depElements.get(i).get(dim)));
+				m_partitions.get(i).addDependentDimension(dimPart);
+			}
+		}
+	}
+
+	private void assignKeys(AlgorithmData algoData) {
+		Set<String> excluded = algoData.getExcludedInputDatasets();
+		for ( String name : algoData.getInputDatasetNames() ) {
+			Dataset dataset = algoData.getInputDataset(name);
+			boolean inKeyspace = !excluded.contains(name);
+			for ( DataKey key : dataset.getAllFileKeys() ) {
+				for ( int part : findPartitions(key) ) {
+					Split split = m_splits.get(part);
+					split.m_keys.add(key);
+					if ( inKeyspace ) {
+						split.m_sources.add(dataset.getFile(key).getFileSource());
+						split.m_keyspace.addKey(key);
+					}
+				}
+			}
+			for ( DataKey key : dataset.getAllMetadataKeys() ) {
+				for ( int part : findPartitions(key) ) {
+					Split split = m_splits.get(part);
+					split.m_keys.add(key);
+					if ( inKeyspace ) {
+						split.m_keyspace.addKey(key);
+					}
+				}
+			}
+		}
+	}
+
+	private List<Integer> findPartitions(DataKey key) {
+		List<Integer> parts = m_partitioner.findPartitions(key);
+		List<DataKeyDimension> keyDepDims = new ArrayList<DataKeyDimension>();
+		for ( DataKeyDimension dim : m_depDims ) {
+			if ( key.hasDimension(dim) ) {
+				keyDepDims.add(dim);
+			}
+		}
+		if ( keyDepDims.isEmpty() ) {
+			return parts;
+		}
+		List<Integer> result = new ArrayList<Integer>();
+		for ( int part : parts ) {
+			if ( hasDependentElements(part, key, keyDepDims) ) {
+				result.add(part);
+			}
+		}
+		return result;
+	}
+
+	private boolean hasDependentElements(int part, DataKey key, List<DataKeyDimension> dims) {
+		Map<DataKeyDimension,Set<DataKeyElement>> depElements = m_depElements.get(part);
+		for ( DataKeyDimension dim : dims ) {
+			if ( !depElements.get(dim).contains(key.getElement(dim)) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -42,5 +42,14 @@ public class BasicDataKeyFilter implements DataKeyFilter {
 		m_keys.addAll(keys);
 	}
 
+	/**
+	  * Returns a copy of the keys this filter passes
+	*/
+	public Set<DataKey> getKeys() {
+		synchronized (m_keys) {
+			return new HashSet<DataKey>(m_keys);
+		}
+	}
+
 }
 
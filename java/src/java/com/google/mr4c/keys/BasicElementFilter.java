@@ -42,6 +42,15 @@ public class BasicElementFilter implements ElementFilter {
 		return m_dim;
 	}
 
+	/**
+	  * Returns a copy of the elements this filter passes
+	*/
+	public Set<DataKeyElement> getElements() {
+		synchronized (m_elements) {
+			return new HashSet<DataKeyElement>(m_elements);
+		}
+	}
+
 	public void addElement(DataKeyElement element) {
 		if ( !element.getDimension().equals(m_dim) ) {
 			throw new IllegalArgumentException(String.format("Tried to add element of dimension [%s] to filter for dimension [%s]", element.getDimension(), m_dim));
@@ -66,6 +66,7 @@ import java.util.Set;
 	public boolean equals(Object obj) {
 		if ( this==obj ) return true;
 		if ( obj==null ) return false;
+		if ( obj instanceof IndexedDataKey ) return obj.equals(this);
 		if ( !obj.getClass().equals(this.getClass()) ) return false;
 		CompoundDataKey key = (CompoundDataKey) obj;
 		return key.m_eles.equals(m_eles);
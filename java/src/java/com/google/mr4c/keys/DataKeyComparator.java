@@ -28,6 +28,10 @@ class DataKeyComparator implements Comparator<DataKey> {
 
 	public int compare(DataKey key1, DataKey key2 ) {
 
+		if ( key1 instanceof IndexedDataKey && key2 instanceof IndexedDataKey ) {
+			return compareIndexed((IndexedDataKey)key1, (IndexedDataKey)key2);
+		}
+
 		List<DataKeyDimension> dims1 = sortDimensions(key1);
 		List<DataKeyDimension> dims2 = sortDimensions(key2);
 
@@ -58,6 +62,38 @@ class DataKeyComparator implements Comparator<DataKey> {
 	
 	}
 
+	/**
+	  * Same ordering as the general case, but the elements are already
+	  * sorted by dimension so nothing is copied.
+	*/
+	private int compareIndexed(IndexedDataKey key1, IndexedDataKey key2) {
+		DataKeyRegistry registry = DataKeyRegistry.INSTANCE;
+		int size1 = key1.size();
+		int size2 = key2.size();
+		for ( int i=0; ; i++ ) {
+			if ( i==size1 && i==size2 ) {
+				return 0;
+			}
+			if ( i==size1 ) {
+				return -1;
+			}
+			if ( i==size2 ) {
+				return 1;
+			}
+			int id1 = key1.getElementId(i);
+			int id2 = key2.getElementId(i);
+			if ( id1==id2 ) {
+				continue;
+			}
+			DataKeyElement ele1 = registry.getElement(id1);
+			DataKeyElement ele2 = registry.getElement(id2);
+			if ( registry.getDimensionId(id1)!=registry.getDimensionId(id2) ) {
+				return ele1.getDimension().compareTo(ele2.getDimension());
+			}
+			return ele1.getIdentifier().compareTo(ele2.getIdentifier());
+		}
+	}
+
 	private List<DataKeyDimension> sortDimensions(DataKey key) {
 		List<DataKeyDimension> dims = new ArrayList<DataKeyDimension>(key.getDimensions());
 		Collections.sort(dims);
@@ -27,17 +27,20 @@ import java.util.Set;
 public abstract class DataKeyFactory {
 
 	public static DataKey newKey(DataKeyElement element) {
-		return new SimpleDataKey(element);
+		return newKey(Collections.singletonList(element));
 	}
 
 	public static DataKey newKey(DataKeyElement ... eles ) {
 		return newKey(Arrays.asList(eles));
 	}
 
+	/**
+	  * Keys hold element ids while the registry has room, and the elements
+	  * themselves after that.
+	*/
 	public static DataKey newKey(Collection<DataKeyElement> eles ) {
-		return eles.size()==1 ?
-			new SimpleDataKey(eles.iterator().next()) :
-			new CompoundDataKey(eles);
+		DataKey key = IndexedDataKey.create(eles);
+		return key!=null ? key : new CompoundDataKey(eles);
 	}
 }
 
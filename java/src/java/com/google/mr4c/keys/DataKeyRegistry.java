@@ -0,0 +1,153 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.keys;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+  * Interns key elements and their dimensions to int ids, so keys can be
+  * stored and compared as arrays of ints.  Ids are only meaningful within
+  * one JVM; they are never serialized or used for hashing.
+  *
+  * Registration doesn't lock; racing threads resolve through putIfAbsent.
+  * The table holds at most a fixed number of elements.  Once it is full,
+  * new elements get NO_ID and DataKeyFactory builds keys that hold their
+  * own elements, so those are freed with the keys.
+*/
+/*package*/ class DataKeyRegistry {
+
+	/*package*/ static final int NO_ID = -1;
+
+	/*package*/ static final int MAX_ELEMENTS = 1<<20;
+
+	/*package*/ static final DataKeyRegistry INSTANCE = new DataKeyRegistry(MAX_ELEMENTS);
+
+	private static final int CHUNK_BITS = 10;
+	private static final int CHUNK_SIZE = 1<<CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE-1;
+
+	private final int m_maxElements;
+	private final ConcurrentMap<DataKeyElement,Integer> m_elementIds = new ConcurrentHashMap<DataKeyElement,Integer>();
+	private final ConcurrentMap<DataKeyDimension,Dimension> m_dims = new ConcurrentHashMap<DataKeyDimension,Dimension>();
+	private final AtomicInteger m_nextElementId = new AtomicInteger();
+	private final AtomicInteger m_nextDimId = new AtomicInteger();
+
+	// entries by id, in fixed size chunks allocated as the ids reach them
+	private final AtomicReferenceArray<Entry[]> m_chunks;
+
+	/*package*/ static class Entry {
+		/*package*/ final DataKeyElement element;
+		/*package*/ final int dimId;
+
+		private Entry(DataKeyElement element, int dimId) {
+			this.element = element;
+			this.dimId = dimId;
+		}
+	}
+
+	private static class Dimension {
+		private final DataKeyDimension dim;
+		private final int id;
+
+		private Dimension(DataKeyDimension dim, int id) {
+			this.dim = dim;
+			this.id = id;
+		}
+	}
+
+	/*package*/ DataKeyRegistry(int maxElements) {
+		m_maxElements = maxElements;
+		m_chunks = new AtomicReferenceArray<Entry[]>((maxElements+CHUNK_SIZE-1)/CHUNK_SIZE);
+	}
+
+	/**
+	  * Returns NO_ID if the element isn't registered yet and the table is
+	  * full.
+	*/
+	/*package*/ int getElementId(DataKeyElement element) {
+		Integer id = m_elementIds.get(element);
+		return id!=null ? id : register(element);
+	}
+
+	/**
+	  * Always the first instance registered with this identity; the
+	  * dimension of the returned element is the interned dimension.
+	*/
+	/*package*/ DataKeyElement getElement(int id) {
+		return getEntry(id).element;
+	}
+
+	/*package*/ int getDimensionId(int elementId) {
+		return getEntry(elementId).dimId;
+	}
+
+	/*package*/ int size() {
+		return m_elementIds.size();
+	}
+
+	private Entry getEntry(int id) {
+		return m_chunks.get(id>>>CHUNK_BITS)[id&CHUNK_MASK];
+	}
+
+	private int register(DataKeyElement element) {
+		// checked first so the counter can't creep past the limit forever
+		if ( m_nextElementId.get()>=m_maxElements ) {
+			return NO_ID;
+		}
+		int id = m_nextElementId.getAndIncrement();
+		if ( id>=m_maxElements ) {
+			return NO_ID;
+		}
+		Dimension dim = internDimension(element.getDimension());
+		if ( dim.dim!=element.getDimension() ) {
+			element = new DataKeyElement(element.getIdentifier(), dim.dim);
+		}
+		Entry[] chunk = getChunk(id>>>CHUNK_BITS);
+		chunk[id&CHUNK_MASK] = new Entry(element, dim.id);
+		// the map publishes the id only after the entry is visible
+		Integer existing = m_elementIds.putIfAbsent(element, id);
+		if ( existing!=null ) {
+			// lost the race; this id is never handed out
+			chunk[id&CHUNK_MASK] = null;
+			return existing;
+		}
+		return id;
+	}
+
+	private Entry[] getChunk(int index) {
+		Entry[] chunk = m_chunks.get(index);
+		if ( chunk==null ) {
+			m_chunks.compareAndSet(index, null, new Entry[CHUNK_SIZE]);
+			chunk = m_chunks.get(index);
+		}
+		return chunk;
+	}
+
+	private Dimension internDimension(DataKeyDimension dim) {
+		Dimension interned = m_dims.get(dim);
+		if ( interned!=null ) {
+			return interned;
+		}
+		Dimension newDim = new Dimension(dim, m_nextDimId.getAndIncrement());
+		interned = m_dims.putIfAbsent(dim, newDim);
+		return interned!=null ? interned : newDim;
+	}
+
+}
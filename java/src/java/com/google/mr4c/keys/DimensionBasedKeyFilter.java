@@ -58,6 +58,13 @@ public class DimensionBasedKeyFilter implements DataKeyFilter {
 		return true;
 	}
 
+	/**
+	  * The filter for the dimension, or null if there isn't one
+	*/
+	public ElementFilter getFilter(DataKeyDimension dim) {
+		return m_filters.get(dim);
+	}
+
 	public synchronized void addFilter(ElementFilter filter) {
 		DataKeyDimension dim = filter.getDimension();
 		if ( m_filters.containsKey(dim) ) {
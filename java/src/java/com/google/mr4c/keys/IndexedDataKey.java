@@ -0,0 +1,239 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.keys;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+  * Stores a key as the registry ids of its elements, ordered by dimension
+  * name.  The hash is computed from the elements themselves rather than
+  * the ids, so it is the same in every JVM, and it matches CompoundDataKey
+  * so the two are interchangeable once the registry is full.
+*/
+/*package*/ class IndexedDataKey implements DataKey {
+
+	private static final DataKeyRegistry s_registry = DataKeyRegistry.INSTANCE;
+
+	private int[] m_ids;
+	private int m_hash;
+
+	/*package*/ IndexedDataKey(DataKeyElement element) {
+		this(Collections.singletonList(element));
+	}
+
+	/*package*/ IndexedDataKey(DataKeyElement ... eles ) {
+		this(Arrays.asList(eles));
+	}
+
+	/*package*/ IndexedDataKey(Collection<DataKeyElement> eles ) {
+		this(requireIds(eles));
+	}
+
+	private IndexedDataKey(int[] ids) {
+		m_ids = ids;
+		sortByDimension();
+		for ( int i=1; i<m_ids.length; i++ ) {
+			if ( s_registry.getDimensionId(m_ids[i-1])==s_registry.getDimensionId(m_ids[i]) ) {
+				throw new IllegalArgumentException(String.format("Found two elements with dimension=[%s]", getDimension(m_ids[i])));
+			}
+		}
+		computeHash();
+	}
+
+	/**
+	  * Returns null if one of the elements couldn't be registered
+	*/
+	/*package*/ static IndexedDataKey create(Collection<DataKeyElement> eles) {
+		int[] ids = getIds(eles);
+		return ids==null ? null : new IndexedDataKey(ids);
+	}
+
+	private static int[] requireIds(Collection<DataKeyElement> eles) {
+		int[] ids = getIds(eles);
+		if ( ids==null ) {
+			throw new IllegalStateException("Key element registry is full");
+		}
+		return ids;
+	}
+
+	private static int[] getIds(Collection<DataKeyElement> eles) {
+		int[] ids = new int[eles.size()];
+		int count = 0;
+		for ( DataKeyElement ele : eles ) {
+			int id = s_registry.getElementId(ele);
+			if ( id==DataKeyRegistry.NO_ID ) {
+				return null;
+			}
+			ids[count++] = id;
+		}
+		return ids;
+	}
+
+	// insertion sort; keys rarely have more than a handful of dimensions
+	private void sortByDimension() {
+		for ( int i=1; i<m_ids.length; i++ ) {
+			int id = m_ids[i];
+			DataKeyDimension dim = getDimension(id);
+			int pos = i;
+			while ( pos>0 && getDimension(m_ids[pos-1]).compareTo(dim) > 0 ) {
+				m_ids[pos] = m_ids[pos-1];
+				pos--;
+			}
+			m_ids[pos] = id;
+		}
+	}
+
+	private void computeHash() {
+		// same as the element map in CompoundDataKey
+		int hash = 0;
+		for ( int id : m_ids ) {
+			DataKeyElement ele = s_registry.getElement(id);
+			hash += ele.getDimension().hashCode() ^ ele.hashCode();
+		}
+		m_hash = hash;
+	}
+
+	/*package*/ int size() {
+		return m_ids.length;
+	}
+
+	/*package*/ int getElementId(int index) {
+		return m_ids[index];
+	}
+
+	private static DataKeyDimension getDimension(int id) {
+		return s_registry.getElement(id).getDimension();
+	}
+
+	private int indexOf(DataKeyDimension dim) {
+		for ( int i=0; i<m_ids.length; i++ ) {
+			if ( getDimension(m_ids[i]).equals(dim) ) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public Set<DataKeyDimension> getDimensions() {
+		return new DimensionSet();
+	}
+
+	public boolean hasDimension(DataKeyDimension dim) {
+		return indexOf(dim)>=0;
+	}
+
+	public Set<DataKeyElement> getElements() {
+		return new ElementSet();
+	}
+
+	public DataKeyElement getElement(DataKeyDimension dim) {
+		int index = indexOf(dim);
+		if ( index<0 ) {
+			throw new IllegalArgumentException(String.format("Key doesn't have dimension=[%s]", dim));
+		}
+		return s_registry.getElement(m_ids[index]);
+	}
+
+	public boolean equals(Object obj) {
+		if ( this==obj ) return true;
+		if ( obj==null ) return false;
+		if ( obj instanceof CompoundDataKey ) {
+			DataKey key = (DataKey) obj;
+			return key.hashCode()==m_hash && key.getElements().equals(getElements());
+		}
+		if ( !obj.getClass().equals(this.getClass()) ) return false;
+		IndexedDataKey key = (IndexedDataKey) obj;
+		if ( key.m_hash!=m_hash ) return false;
+		return Arrays.equals(key.m_ids, m_ids);
+	}
+
+	public int hashCode() {
+		return m_hash;
+	}
+
+	public String toString() {
+		if ( m_ids.length==1 ) {
+			return s_registry.getElement(m_ids[0]).toString();
+		}
+		return getElements().toString();
+	}
+
+	public int compareTo(DataKey key) {
+		return DataKeyComparator.INSTANCE.compare(this,key);
+	}
+
+	private abstract class IdSet<T> extends AbstractSet<T> {
+
+		public int size() {
+			return m_ids.length;
+		}
+
+		public Iterator<T> iterator() {
+			return new Iterator<T>() {
+				private int m_index = 0;
+				public boolean hasNext() {
+					return m_index < m_ids.length;
+				}
+				public T next() {
+					if ( !hasNext() ) {
+						throw new NoSuchElementException();
+					}
+					return get(m_ids[m_index++]);
+				}
+				public void remove() {
+					throw new UnsupportedOperationException("Keys are immutable");
+				}
+			};
+		}
+
+		protected abstract T get(int id);
+	}
+
+	private class ElementSet extends IdSet<DataKeyElement> {
+
+		public boolean contains(Object obj) {
+			if ( !(obj instanceof DataKeyElement) ) {
+				return false;
+			}
+			DataKeyElement ele = (DataKeyElement) obj;
+			int index = indexOf(ele.getDimension());
+			return index>=0 && s_registry.getElement(m_ids[index]).equals(ele);
+		}
+
+		protected DataKeyElement get(int id) {
+			return s_registry.getElement(id);
+		}
+	}
+
+	private class DimensionSet extends IdSet<DataKeyDimension> {
+
+		public boolean contains(Object obj) {
+			return obj instanceof DataKeyDimension && hasDimension((DataKeyDimension)obj);
+		}
+
+		protected DataKeyDimension get(int id) {
+			return getDimension(id);
+		}
+	}
+
+}
@@ -23,8 +23,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class KeyspacePartitioner {
 
@@ -35,6 +37,7 @@ public class KeyspacePartitioner {
 		private int m_chunkSize=1;
 		private int m_partCount;
 		private List<DimensionPartition> m_partitions = new ArrayList<DimensionPartition>();
+		private Map<DataKeyElement,List<Integer>> m_index = new HashMap<DataKeyElement,List<Integer>>();
 	}
 
 	private Keyspace m_keyspace;
@@ -43,6 +46,11 @@ public class KeyspacePartitioner {
 
 	private List<KeyspacePartition> m_keyPartitions = new ArrayList<KeyspacePartition>();
 
+	private Map<DataKeyElement,Double> m_costs;
+
+	// dimensions in the order they vary across key partitions, slowest first
+	private List<DataKeyDimension> m_dimOrder = new ArrayList<DataKeyDimension>();
+
 
 	public KeyspacePartitioner(Keyspace keyspace, Map<DataKeyDimension,Integer> dimPartCounts) {
 		m_keyspace = keyspace;
@@ -77,10 +85,61 @@ public class KeyspacePartitioner {
 	}
 		
 
+	/**
+	  * Estimated cost of the keys with each element.  When provided,
+	  * dimensions are cut so each partition has about the same total cost,
+	  * instead of the same number of elements.  Missing elements cost
+	  * nothing.
+	*/
+	public synchronized void specifyCosts(Map<DataKeyElement,Double> costs) {
+		m_costs = costs;
+	}
+
 	public synchronized List<KeyspacePartition> getKeyPartitions() {
 		return m_keyPartitions;
 	}
 
+	/**
+	  * The dimensions the key partitions are split on
+	*/
+	public synchronized Set<DataKeyDimension> getPartitionedDimensions() {
+		return new HashSet<DataKeyDimension>(m_dimOrder);
+	}
+
+	/**
+	  * Returns the indexes, in the list from getKeyPartitions(), of the key
+	  * partitions with the elements of this key.  Dimensions the key doesn't
+	  * have match every partition, and dimensions that aren't partitioned
+	  * are ignored.  With overlaps a key can be in several partitions.
+	*/
+	public synchronized List<Integer> findPartitions(DataKey key) {
+		List<Integer> result = Collections.singletonList(0);
+		for ( DataKeyDimension dim : m_dimOrder ) {
+			DimensionInfo dimInfo = m_dimInfo.get(dim);
+			int count = dimInfo.m_partitions.size();
+			List<Integer> dimParts;
+			if ( key.hasDimension(dim) ) {
+				dimParts = dimInfo.m_index.get(key.getElement(dim));
+				if ( dimParts==null ) {
+					return Collections.emptyList();
+				}
+			} else {
+				dimParts = new ArrayList<Integer>(count);
+				for ( int i=0; i<count; i++ ) {
+					dimParts.add(i);
+				}
+			}
+			List<Integer> combined = new ArrayList<Integer>(result.size() * dimParts.size());
+			for ( int index : result ) {
+				for ( int dimPart : dimParts ) {
+					combined.add(index * count + dimPart);
+				}
+			}
+			result = combined;
+		}
+		return result;
+	}
+
 	public synchronized void partition() {
 		generateDimensionPartitions();
 		generateKeyPartitions();
@@ -100,7 +159,9 @@ public class KeyspacePartitioner {
 		// Want to do the partition on chunks of the desired split size mutliple
 		List<List<DataKeyElement>> chunks = CollectionUtils.partitionBySize(elements, dimInfo.m_chunkSize);
 
-		List<List<List<DataKeyElement>>> chunkedPartitions = CollectionUtils.partition(chunks, dimInfo.m_partCount);
+		List<List<List<DataKeyElement>>> chunkedPartitions = m_costs==null ?
+			CollectionUtils.partition(chunks, dimInfo.m_partCount) :
+			CollectionUtils.partitionByWeight(chunks, getChunkCosts(chunks), dimInfo.m_partCount);
 
 		// Now return it to partition by individual elements
 		List<List<DataKeyElement>> partitions = new ArrayList<List<DataKeyElement>>();
@@ -112,14 +173,37 @@ public class KeyspacePartitioner {
 		for ( List<DataKeyElement> partition : partitions ) { 
 			DimensionPartition dimPart = new DimensionPartition(dim);
 			dimPart.addElements(partition);
+			for ( DataKeyElement element : partition ) {
+				List<Integer> indexes = dimInfo.m_index.get(element);
+				if ( indexes==null ) {
+					indexes = new ArrayList<Integer>();
+					dimInfo.m_index.put(element, indexes);
+				}
+				indexes.add(dimInfo.m_partitions.size());
+			}
 			dimInfo.m_partitions.add(dimPart);
 		}
 	}
 
+	private List<Double> getChunkCosts(List<List<DataKeyElement>> chunks) {
+		List<Double> costs = new ArrayList<Double>();
+		for ( List<DataKeyElement> chunk : chunks ) {
+			double cost = 0;
+			for ( DataKeyElement element : chunk ) {
+				Double elementCost = m_costs.get(element);
+				if ( elementCost!=null ) {
+					cost += elementCost;
+				}
+			}
+			costs.add(cost);
+		}
+		return costs;
+	}
 
 	private void generateKeyPartitions() {
 		List<Collection<DimensionPartition>> dimParts = new ArrayList<Collection<DimensionPartition>>();
-		for ( DataKeyDimension dim : m_dimInfo.keySet() )  {
+		m_dimOrder.addAll(m_dimInfo.keySet());
+		for ( DataKeyDimension dim : m_dimOrder )  {
 			dimParts.add(m_dimInfo.get(dim).m_partitions);
 		}
 		List<List<DimensionPartition>> allCombos = CombinatoricUtils.everyCombination(dimParts);
@@ -133,6 +217,7 @@ public class KeyspacePartitioner {
 		// make sure we always generate at least one partition
 		if ( m_keyPartitions.isEmpty() ) {
 			m_keyPartitions.add(new KeyspacePartition());
+			m_dimOrder.clear();
 		}
 	}
 
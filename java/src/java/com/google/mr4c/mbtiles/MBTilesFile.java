@@ -30,7 +30,12 @@ import java.sql.ResultSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+import org.sqlite.SQLiteConfig;
 
 public class MBTilesFile {
 
@@ -45,6 +50,17 @@ public class MBTilesFile {
 			"PRIMARY KEY (zoom_level, tile_column, tile_row)" +
 		")";
 
+	// for bulk loads, the index is built after all the tiles are in
+	public static final String CREATE_UNINDEXED_TILES_TABLE = 
+		"CREATE TABLE tiles (" +
+			"zoom_level integer NOT NULL," +
+			"tile_column integer NOT NULL," +
+			"tile_row integer NOT NULL," +
+			"tile_data blob NOT NULL" +
+		")";
+
+	public static final String CREATE_TILE_INDEX = "CREATE UNIQUE INDEX tile_index on tiles (zoom_level, tile_column, tile_row)";
+
 	public static final String CREATE_METADATA_TABLE = 
 		"CREATE TABLE metadata (" +
 			"name text NOT NULL," +
@@ -58,6 +74,8 @@ public class MBTilesFile {
 
 	public static final String FIND_KEYS = "select zoom_level, tile_column, tile_row from tiles";
 
+	public static final String FIND_KEYS_IN_RANGE = FIND_KEYS + " where zoom_level between ? and ? and tile_column between ? and ? and tile_row between ? and ?";
+
 	public static final String FIND_METADATA = "select * from metadata";
 
 	public static final String INSERT_METADATA = "insert into metadata (name, value) values (?, ?)";
@@ -68,6 +86,13 @@ public class MBTilesFile {
 	private boolean m_init;
 	private String m_url;
 	private Connection m_conn;
+	private PreparedStatement m_insert;
+	private int m_batchSize;
+	private int m_pageSize;
+	private int m_batched;
+	private int m_maxReaders;
+	private Semaphore m_readerPermits;
+	private Queue<TileReader> m_idleReaders = new ConcurrentLinkedQueue<TileReader>();
 
 	
 	public static MBTilesFile createInMemory() throws IOException {
@@ -88,6 +113,39 @@ public class MBTilesFile {
 		return mbtiles;
 	}
 
+	/**
+	  * Creates a new file for loading many tiles.  Tiles are inserted in
+	  * batches of batchSize, one transaction per batch, with journaling and
+	  * syncing turned off.  The tile index is built when the file is closed,
+	  * so duplicate tiles are only detected then.  Close the file to finish
+	  * the load; an unclosed file is unusable.
+	*/
+	public static MBTilesFile createForBulkWrite(File file, int batchSize, int pageSize) throws IOException {
+		if ( batchSize<1 ) {
+			throw new IllegalArgumentException("Batch size must be greater than zero");
+		}
+		MBTilesFile mbtiles = new MBTilesFile(file, FileMode.REPLACE);
+		mbtiles.m_batchSize = batchSize;
+		mbtiles.m_pageSize = pageSize;
+		mbtiles.init();
+		return mbtiles;
+	}
+
+	/**
+	  * Opens an existing file read-only.  Up to maxReaders threads can fetch
+	  * tiles at the same time, each on its own read-only connection.
+	*/
+	public static MBTilesFile createForRead(File file, int maxReaders) throws IOException {
+		if ( maxReaders<1 ) {
+			throw new IllegalArgumentException("Must allow at least one reader");
+		}
+		MBTilesFile mbtiles = new MBTilesFile(file, FileMode.READ_ONLY);
+		mbtiles.m_maxReaders = maxReaders;
+		mbtiles.m_readerPermits = new Semaphore(maxReaders);
+		mbtiles.init();
+		return mbtiles;
+	}
+
 	private MBTilesFile(File file, FileMode mode) throws IOException {
 		m_file = file;
 		m_mode = mode;
@@ -114,6 +172,8 @@ public class MBTilesFile {
 		if ( !m_file.exists() ) {
 			throw new FileNotFoundException(m_file.getPath());
 		}
+		m_maxReaders = 1;
+		m_readerPermits = new Semaphore(1);
 	}
 
 	private void handleUpdate() throws IOException {
@@ -165,6 +225,16 @@ public class MBTilesFile {
 		} 
 	}
 
+	private Connection getReadOnlyConnection() throws IOException {
+		SQLiteConfig config = new SQLiteConfig();
+		config.setReadOnly(true);
+		try {
+			return DriverManager.getConnection(m_url, config.toProperties());
+		} catch ( SQLException sqle ) {
+			throw new IOException(sqle);
+		} 
+	}
+
 	private static void ensureDriver() {
 		try {
 			Class.forName("org.sqlite.JDBC");
@@ -178,8 +248,18 @@ public class MBTilesFile {
 		Statement stmt = null;
 		try {
 			stmt = m_conn.createStatement();
-			stmt.executeUpdate(CREATE_TILES_TABLE);
-			stmt.executeUpdate(CREATE_METADATA_TABLE);
+			if ( isBulkWrite() ) {
+				// page size has to be set before any tables exist
+				stmt.executeUpdate("PRAGMA page_size=" + m_pageSize);
+				stmt.executeUpdate("PRAGMA journal_mode=OFF");
+				stmt.executeUpdate("PRAGMA synchronous=OFF");
+				stmt.executeUpdate(CREATE_UNINDEXED_TILES_TABLE);
+				stmt.executeUpdate(CREATE_METADATA_TABLE);
+				m_conn.setAutoCommit(false);
+			} else {
+				stmt.executeUpdate(CREATE_TILES_TABLE);
+				stmt.executeUpdate(CREATE_METADATA_TABLE);
+			}
 		} catch ( SQLException sqle ) {
 			throw new IOException(sqle);
 		} finally {
@@ -187,8 +267,35 @@ public class MBTilesFile {
 		}
 	}
 
-	public void close() throws IOException {
+	public synchronized void close() throws IOException {
 		try {
+			if ( isBulkWrite() && !isClosed(m_conn) ) {
+				finishBulkWrite();
+			}
+		} catch ( SQLException sqle ) {
+			throw new IOException(sqle);
+		} finally {
+			closeIdleReaders();
+			closeConnection();
+		}
+	}
+
+	/**
+	  * Readers in use right now go back to the pool when they finish, and
+	  * are closed by the next call to close()
+	*/
+	private void closeIdleReaders() throws IOException {
+		TileReader reader = m_idleReaders.poll();
+		while ( reader!=null ) {
+			reader.close();
+			reader = m_idleReaders.poll();
+		}
+	}
+
+	private void closeConnection() throws IOException {
+		try {
+			close(m_insert);
+			m_insert = null;
 			if ( m_conn!=null ) {
 				m_conn.close();
 			}
@@ -197,6 +304,33 @@ public class MBTilesFile {
 		} 
 	}
 
+	private void finishBulkWrite() throws IOException, SQLException {
+		Statement stmt = null;
+		try {
+			flushBatch();
+			stmt = m_conn.createStatement();
+			stmt.executeUpdate(CREATE_TILE_INDEX);
+			m_conn.commit();
+		} finally {
+			close(stmt);
+			// done with the bulk load, even if it failed
+			m_batchSize = 0;
+			m_batched = 0;
+		}
+	}
+
+	public boolean isBulkWrite() {
+		return m_batchSize>0;
+	}
+
+	public boolean isPooledRead() {
+		return m_mode==FileMode.READ_ONLY && !m_memory;
+	}
+
+	public int getMaxReaders() {
+		return m_maxReaders;
+	}
+
 	public boolean isInMemory() {
 		return m_memory;
 	}
@@ -215,64 +349,151 @@ public class MBTilesFile {
 		}
 	}
 
-	public void addTile(Tile tile) throws IOException {
+	public synchronized void addTile(Tile tile) throws IOException {
 		assertWritable();
 		ensureConnection();
-		PreparedStatement ps = null;
 		try {
-			ps = m_conn.prepareStatement(INSERT_TILE);
+			if ( m_insert==null ) {
+				m_insert = m_conn.prepareStatement(INSERT_TILE);
+			}
 			TileKey key = tile.getKey();
-			ps.setInt(1, key.getZoom());
-			ps.setInt(2, key.getColumn());
-			ps.setInt(3, key.getRow());
-			ps.setBytes(4, tile.getData());
-			ps.executeUpdate();
+			m_insert.setInt(1, key.getZoom());
+			m_insert.setInt(2, key.getColumn());
+			m_insert.setInt(3, key.getRow());
+			m_insert.setBytes(4, tile.getData());
+			if ( isBulkWrite() ) {
+				m_insert.addBatch();
+				if ( ++m_batched>=m_batchSize ) {
+					flushBatch();
+				}
+			} else {
+				m_insert.executeUpdate();
+			}
 		} catch ( SQLException sqle ) {
 			throw new IOException(sqle);
-		} finally {
-			close(ps);
+		}
+	}
+
+	// writes and commits any tiles batched up so far
+	private synchronized void flushBatch() throws SQLException {
+		if ( m_batched>0 ) {
+			m_insert.executeBatch();
+			m_batched = 0;
+		}
+		m_conn.commit();
+	}
+
+	private synchronized void flushForRead() throws IOException {
+		if ( isBulkWrite() && !isClosed(m_conn) ) {
+			try {
+				flushBatch();
+			} catch ( SQLException sqle ) {
+				throw new IOException(sqle);
+			}
 		}
 	}
 
 	public Tile findTile(TileKey key) throws IOException {
+		if ( isPooledRead() ) {
+			return findPooledTile(key);
+		}
 		ensureConnection();
+		flushForRead();
 		PreparedStatement ps = null;
 		try {
 			ps = m_conn.prepareStatement(FIND_TILE);
-			ps.setInt(1, key.getZoom());
-			ps.setInt(2, key.getColumn());
-			ps.setInt(3, key.getRow());
-			ResultSet rs = ps.executeQuery();
+			return findTile(ps, key);
+		} catch ( SQLException sqle ) {
+			throw new IOException(sqle);
+		} finally {
+			close(ps);
+		}
+	}
+
+	private Tile findPooledTile(TileKey key) throws IOException {
+		m_readerPermits.acquireUninterruptibly();
+		TileReader reader = null;
+		try {
+			reader = m_idleReaders.poll();
+			if ( reader==null ) {
+				reader = new TileReader(getReadOnlyConnection());
+			}
+			Tile tile = findTile(reader.getFindStatement(), key);
+			m_idleReaders.add(reader);
+			reader = null;
+			return tile;
+		} catch ( SQLException sqle ) {
+			throw new IOException(sqle);
+		} finally {
+			// a reader that failed isn't trusted again
+			if ( reader!=null ) {
+				reader.close();
+			}
+			m_readerPermits.release();
+		}
+	}
+
+	private static Tile findTile(PreparedStatement ps, TileKey key) throws SQLException {
+		ps.setInt(1, key.getZoom());
+		ps.setInt(2, key.getColumn());
+		ps.setInt(3, key.getRow());
+		ResultSet rs = ps.executeQuery();
+		try {
 			if ( !rs.next() ) {
 				return null;
 			}
 			byte[] data = rs.getBytes("tile_data");
 			return new Tile(key, data);
-		} catch ( SQLException sqle ) {
-			throw new IOException(sqle);
 		} finally {
-			close(ps);
+			rs.close();
 		}
 	}
 
 	public Set<TileKey> getAllTileKeys() throws IOException {
-		ensureConnection();
+		Set<TileKey> result = new HashSet<TileKey>();
+		TileKeyCursor cursor = findTileKeys(TileRange.ALL);
+		try {
+			while ( cursor.hasNext() ) {
+				result.add(cursor.next());
+			}
+		} finally {
+			cursor.close();
+		}
+		return result;
+	}
+
+	/**
+	  * Iterates the keys of the tiles in the range without loading them all.
+	  * On a read-only file the cursor has its own connection, so tiles can
+	  * be fetched while it is open.
+	*/
+	public TileKeyCursor findTileKeys(TileRange range) throws IOException {
+		Connection conn = null;
 		PreparedStatement ps = null;
 		try {
-			ps = m_conn.prepareStatement(FIND_KEYS);
-			ResultSet rs = ps.executeQuery();
-			Set<TileKey> result = new HashSet<TileKey>();
-			while ( rs.next() ) {
-				int zoom = rs.getInt("zoom_level");
-				int col = rs.getInt("tile_column");
-				int row = rs.getInt("tile_row");
-				result.add(new TileKey(zoom, col, row));
+			if ( isPooledRead() ) {
+				conn = getReadOnlyConnection();
+				ps = conn.prepareStatement(FIND_KEYS_IN_RANGE);
+			} else {
+				ensureConnection();
+				flushForRead();
+				ps = m_conn.prepareStatement(FIND_KEYS_IN_RANGE);
 			}
-			return result;
+			ps.setInt(1, range.getMinZoom());
+			ps.setInt(2, range.getMaxZoom());
+			ps.setInt(3, range.getMinX());
+			ps.setInt(4, range.getMaxX());
+			ps.setInt(5, range.getMinY());
+			ps.setInt(6, range.getMaxY());
+			TileKeyCursor cursor = new TileKeyCursor(conn, ps, ps.executeQuery());
+			conn = null;
+			ps = null;
+			return cursor;
 		} catch ( SQLException sqle ) {
 			throw new IOException(sqle);
 		} finally {
 			close(ps);
+			close(conn);
 		}
 	}
 
@@ -343,10 +564,43 @@ public class MBTilesFile {
 		}
 	}
 
+	private void close(Connection conn) throws IOException {
+		try {
+			if ( conn!=null ) {
+				conn.close();
+			}
+		} catch ( SQLException sqle ) {
+			throw new IOException(sqle);
+		}
+	}
+
 	private void assertWritable() {
 		if ( m_mode==FileMode.READ_ONLY ) {
 			throw new IllegalStateException("MBTiles file is read-only");
 		}
 	}
 
+	private class TileReader {
+
+		private Connection m_readConn;
+		private PreparedStatement m_find;
+
+		private TileReader(Connection conn) {
+			m_readConn = conn;
+		}
+
+		private PreparedStatement getFindStatement() throws SQLException {
+			if ( m_find==null ) {
+				m_find = m_readConn.prepareStatement(FIND_TILE);
+			}
+			return m_find;
+		}
+
+		private void close() throws IOException {
+			MBTilesFile.this.close(m_find);
+			MBTilesFile.this.close(m_readConn);
+		}
+
+	}
+
 }
@@ -0,0 +1,104 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.mbtiles;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+  * Walks tile keys straight off a query instead of collecting them first.
+  * Closes itself when exhausted; close it explicitly if you stop early.
+*/
+public class TileKeyCursor implements Iterator<TileKey>, Closeable {
+
+	private Connection m_conn;
+	private Statement m_stmt;
+	private ResultSet m_rs;
+	private TileKey m_next;
+	private boolean m_closed;
+
+	/**
+	  * @param conn connection owned by the cursor and closed with it, or
+	  * null if the connection is shared
+	*/
+	TileKeyCursor(Connection conn, Statement stmt, ResultSet rs) {
+		m_conn = conn;
+		m_stmt = stmt;
+		m_rs = rs;
+	}
+
+	public synchronized boolean hasNext() {
+		if ( m_next==null && !m_closed ) {
+			m_next = advance();
+		}
+		return m_next!=null;
+	}
+
+	public synchronized TileKey next() {
+		if ( !hasNext() ) {
+			throw new NoSuchElementException();
+		}
+		TileKey key = m_next;
+		m_next = null;
+		return key;
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	private TileKey advance() {
+		try {
+			if ( !m_rs.next() ) {
+				close();
+				return null;
+			}
+			return new TileKey(
+				m_rs.getInt("zoom_level"),
+				m_rs.getInt("tile_column"),
+				m_rs.getInt("tile_row")
+			);
+		} catch ( SQLException sqle ) {
+			throw new IllegalStateException("Failed reading tile keys", sqle);
+		} catch ( IOException ioe ) {
+			throw new IllegalStateException("Failed reading tile keys", ioe);
+		}
+	}
+
+	public synchronized void close() throws IOException {
+		if ( m_closed ) {
+			return;
+		}
+		m_closed = true;
+		try {
+			m_rs.close();
+			m_stmt.close();
+			if ( m_conn!=null ) {
+				m_conn.close();
+			}
+		} catch ( SQLException sqle ) {
+			throw new IOException(sqle);
+		}
+	}
+
+}
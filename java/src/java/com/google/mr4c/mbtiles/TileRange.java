@@ -0,0 +1,133 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.mbtiles;
+
+import java.util.Collection;
+
+/**
+  * Inclusive bounds on the zoom, x and y of tile keys.  Used to push a
+  * range query down into the tiles table.
+*/
+public class TileRange {
+
+	public static final TileRange ALL = new TileRange(
+		Integer.MIN_VALUE, Integer.MAX_VALUE,
+		Integer.MIN_VALUE, Integer.MAX_VALUE,
+		Integer.MIN_VALUE, Integer.MAX_VALUE
+	);
+
+	private int m_minZoom;
+	private int m_maxZoom;
+	private int m_minX;
+	private int m_maxX;
+	private int m_minY;
+	private int m_maxY;
+
+	public TileRange(int minZoom, int maxZoom, int minX, int maxX, int minY, int maxY) {
+		m_minZoom = minZoom;
+		m_maxZoom = maxZoom;
+		m_minX = minX;
+		m_maxX = maxX;
+		m_minY = minY;
+		m_maxY = maxY;
+	}
+
+	/**
+	  * The smallest range containing all the keys.  Empty if there are no keys.
+	*/
+	public static TileRange covering(Collection<TileKey> keys) {
+		int minZoom = Integer.MAX_VALUE;
+		int maxZoom = Integer.MIN_VALUE;
+		int minX = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE;
+		int minY = Integer.MAX_VALUE;
+		int maxY = Integer.MIN_VALUE;
+		for ( TileKey key : keys ) {
+			minZoom = Math.min(minZoom, key.getZoom());
+			maxZoom = Math.max(maxZoom, key.getZoom());
+			minX = Math.min(minX, key.getX());
+			maxX = Math.max(maxX, key.getX());
+			minY = Math.min(minY, key.getY());
+			maxY = Math.max(maxY, key.getY());
+		}
+		return new TileRange(minZoom, maxZoom, minX, maxX, minY, maxY);
+	}
+
+	public int getMinZoom() {
+		return m_minZoom;
+	}
+
+	public int getMaxZoom() {
+		return m_maxZoom;
+	}
+
+	public int getMinX() {
+		return m_minX;
+	}
+
+	public int getMaxX() {
+		return m_maxX;
+	}
+
+	public int getMinY() {
+		return m_minY;
+	}
+
+	public int getMaxY() {
+		return m_maxY;
+	}
+
+	public boolean isEmpty() {
+		return m_minZoom>m_maxZoom || m_minX>m_maxX || m_minY>m_maxY;
+	}
+
+	public boolean contains(TileKey key) {
+		return
+			key.getZoom()>=m_minZoom && key.getZoom()<=m_maxZoom &&
+			key.getX()>=m_minX && key.getX()<=m_maxX &&
+			key.getY()>=m_minY && key.getY()<=m_maxY;
+	}
+
+	public boolean equals(Object obj) {
+		if ( this==obj ) return true;
+		if ( !obj.getClass().equals(this.getClass()) ) return false;
+		TileRange range = (TileRange) obj;
+		if ( m_minZoom!=range.m_minZoom ) return false;
+		if ( m_maxZoom!=range.m_maxZoom ) return false;
+		if ( m_minX!=range.m_minX ) return false;
+		if ( m_maxX!=range.m_maxX ) return false;
+		if ( m_minY!=range.m_minY ) return false;
+		if ( m_maxY!=range.m_maxY ) return false;
+		return true; 
+	}
+
+	public int hashCode() {
+		return m_minZoom + m_maxZoom + m_minX + m_maxX + m_minY + m_maxY;
+	}
+
+	public String toString() {
+		return String.format(
+			"zoom=[%s,%s]; " +
+			"x=[%s,%s]; " +
+			"y=[%s,%s]",
+			m_minZoom, m_maxZoom,
+			m_minX, m_maxX,
+			m_minY, m_maxY
+		);
+	}
+
+}
@@ -16,12 +16,20 @@
 
 package com.google.mr4c.metadata;
 
+import java.lang.reflect.Array;
+import java.util.AbstractList;
 import java.util.Arrays;
 import java.util.List;
 
+/**
+  * Array of primitive values.  Numeric arrays can be backed by a java
+  * primitive array instead of a list of boxed values; getValues() is then a
+  * read-only view that boxes values as they are read.
+*/
 public class MetadataArray implements MetadataElement {
 
 	private List m_vals;
+	private Object m_array; // primitive array, or null if backed by m_vals
 	private PrimitiveType m_type;
 
 	public MetadataArray(Object[] vals, PrimitiveType type) {
@@ -33,10 +41,65 @@ public class MetadataArray implements MetadataElement {
 		m_type = type;
 	}
 
+	public MetadataArray(double[] vals) {
+		this(vals, PrimitiveType.DOUBLE);
+	}
+
+	public MetadataArray(float[] vals) {
+		this(vals, PrimitiveType.FLOAT);
+	}
+
+	public MetadataArray(int[] vals) {
+		this(vals, PrimitiveType.INTEGER);
+	}
+
+	public MetadataArray(long[] vals) {
+		this(vals, PrimitiveType.SIZE_T);
+	}
+
+	public MetadataArray(byte[] vals) {
+		this(vals, PrimitiveType.BYTE);
+	}
+
+	private MetadataArray(Object array, PrimitiveType type) {
+		m_array = array;
+		m_type = type;
+		m_vals = new PrimitiveList();
+	}
+
 	public List getValues() {
 		return m_vals;
 	}
 
+	/**
+	  * The backing primitive array: a double[], float[], int[], long[] or
+	  * byte[] matching the type.  Null if the values are boxed.
+	*/
+	public Object getPrimitiveArray() {
+		return m_array;
+	}
+
+	public int size() {
+		return m_vals.size();
+	}
+
+	/**
+	  * The value as it would be written in text, without boxing primitives
+	*/
+	public String getValueAsString(int index) {
+		if ( m_array==null ) {
+			return m_vals.get(index).toString();
+		}
+		switch ( m_type ) {
+			case DOUBLE : return Double.toString(((double[]) m_array)[index]);
+			case FLOAT : return Float.toString(((float[]) m_array)[index]);
+			case INTEGER : return Integer.toString(((int[]) m_array)[index]);
+			case SIZE_T : return Long.toString(((long[]) m_array)[index]);
+			case BYTE : return Byte.toString(((byte[]) m_array)[index]);
+			default : throw new IllegalStateException(String.format("No primitive array for type [%s]", m_type));
+		}
+	}
+
 	public PrimitiveType getType() {
 		return m_type;
 	}
@@ -53,7 +116,19 @@ public class MetadataArray implements MetadataElement {
 		if ( this==obj ) return true;
 		if ( !this.getClass().equals(obj.getClass()) ) return false;
 		MetadataArray array = (MetadataArray) obj;
-		return m_vals.equals(array.m_vals) && m_type.equals(array.m_type);
+		if ( !m_type.equals(array.m_type) ) return false;
+		if ( m_array!=null && array.m_array!=null ) {
+			return primitiveEquals(m_array, array.m_array);
+		}
+		return m_vals.equals(array.m_vals);
+	}
+
+	private static boolean primitiveEquals(Object array1, Object array2) {
+		if ( array1 instanceof double[] ) return Arrays.equals((double[]) array1, (double[]) array2);
+		if ( array1 instanceof float[] ) return Arrays.equals((float[]) array1, (float[]) array2);
+		if ( array1 instanceof int[] ) return Arrays.equals((int[]) array1, (int[]) array2);
+		if ( array1 instanceof long[] ) return Arrays.equals((long[]) array1, (long[]) array2);
+		return Arrays.equals((byte[]) array1, (byte[]) array2);
 	}
 
 	public int hashCode() {
@@ -66,4 +141,23 @@ public class MetadataArray implements MetadataElement {
 		return m_vals.toString();
 	}
 
+	private class PrimitiveList extends AbstractList<Object> {
+
+		public Object get(int index) {
+			switch ( m_type ) {
+				case DOUBLE : return ((double[]) m_array)[index];
+				case FLOAT : return ((float[]) m_array)[index];
+				case INTEGER : return ((int[]) m_array)[index];
+				case SIZE_T : return ((long[]) m_array)[index];
+				case BYTE : return ((byte[]) m_array)[index];
+				default : throw new IllegalStateException(String.format("No primitive array for type [%s]", m_type));
+			}
+		}
+
+		public int size() {
+			return Array.getLength(m_array);
+		}
+
+	}
+
 }
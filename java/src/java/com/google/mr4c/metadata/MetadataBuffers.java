@@ -0,0 +1,186 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.metadata;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+  * Contiguous blocks of numeric metadata array values, passed alongside a
+  * serialized dataset so the values don't have to be formatted as text.
+  * Laid out as in the native MetadataBuffers: native byte order, BYTE as
+  * 8 bit, INTEGER and FLOAT as 32 bit, DOUBLE and SIZE_T as 64 bit.
+  * Blocks are referred to by their index, in the order they were added.
+*/
+public class MetadataBuffers {
+
+	private List<ByteBuffer> m_buffers = new ArrayList<ByteBuffer>();
+
+	/**
+	  * Returns true if arrays of the type can be passed as a block
+	*/
+	public static boolean isBufferable(PrimitiveType type) {
+		switch ( type ) {
+			case BYTE :
+			case INTEGER :
+			case FLOAT :
+			case DOUBLE :
+			case SIZE_T :
+				return true;
+			default :
+				return false;
+		}
+	}
+
+	/**
+	  * Copies the values of the array into a new direct buffer, and returns
+	  * the index of the block
+	*/
+	public int addArray(MetadataArray array) {
+		PrimitiveType type = array.getType();
+		Object vals = toPrimitiveArray(array);
+		ByteBuffer buf = ByteBuffer.allocateDirect(array.size()*getValueSize(type));
+		buf.order(ByteOrder.nativeOrder());
+		switch ( type ) {
+			case BYTE : buf.put((byte[]) vals); break;
+			case INTEGER : buf.asIntBuffer().put((int[]) vals); break;
+			case FLOAT : buf.asFloatBuffer().put((float[]) vals); break;
+			case DOUBLE : buf.asDoubleBuffer().put((double[]) vals); break;
+			case SIZE_T : buf.asLongBuffer().put((long[]) vals); break;
+			default : throw new IllegalArgumentException(String.format("Can't buffer array of type [%s]", type));
+		}
+		buf.clear();
+		return addBuffer(buf);
+	}
+
+	/**
+	  * Recovers an array from the block at the index
+	*/
+	public MetadataArray getArray(int index, PrimitiveType type) {
+		ByteBuffer buf = getBuffer(index);
+		int size = getValueSize(type);
+		if ( buf.remaining() % size!=0 ) {
+			throw new IllegalArgumentException(String.format("Metadata buffer %d has %d bytes, not a whole number of %d byte values", index, buf.remaining(), size));
+		}
+		int num = buf.remaining() / size;
+		switch ( type ) {
+			case BYTE :
+				byte[] bytes = new byte[num];
+				buf.get(bytes);
+				return new MetadataArray(bytes);
+			case INTEGER :
+				int[] ints = new int[num];
+				buf.asIntBuffer().get(ints);
+				return new MetadataArray(ints);
+			case FLOAT :
+				float[] floats = new float[num];
+				buf.asFloatBuffer().get(floats);
+				return new MetadataArray(floats);
+			case DOUBLE :
+				double[] doubles = new double[num];
+				buf.asDoubleBuffer().get(doubles);
+				return new MetadataArray(doubles);
+			case SIZE_T :
+				long[] longs = new long[num];
+				buf.asLongBuffer().get(longs);
+				return new MetadataArray(longs);
+			default :
+				throw new IllegalArgumentException(String.format("Can't buffer array of type [%s]", type));
+		}
+	}
+
+	/**
+	  * Adds a block, without copying it; returns its index
+	*/
+	public int addBuffer(ByteBuffer buffer) {
+		m_buffers.add(buffer);
+		return m_buffers.size()-1;
+	}
+
+	/**
+	  * Returns a view of the whole block, in native byte order
+	*/
+	public ByteBuffer getBuffer(int index) {
+		if ( index<0 || index>=m_buffers.size() ) {
+			throw new IllegalArgumentException(String.format("No metadata buffer %d; there are %d", index, m_buffers.size()));
+		}
+		ByteBuffer buf = m_buffers.get(index).duplicate();
+		buf.clear();
+		buf.order(ByteOrder.nativeOrder());
+		return buf;
+	}
+
+	public int getBufferCount() {
+		return m_buffers.size();
+	}
+
+	private static int getValueSize(PrimitiveType type) {
+		switch ( type ) {
+			case BYTE : return 1;
+			case INTEGER : return 4;
+			case FLOAT : return 4;
+			case DOUBLE : return 8;
+			case SIZE_T : return 8;
+			default : throw new IllegalArgumentException(String.format("Can't buffer array of type [%s]", type));
+		}
+	}
+
+	private static Object toPrimitiveArray(MetadataArray array) {
+		if ( array.getPrimitiveArray()!=null ) {
+			return array.getPrimitiveArray();
+		}
+		List<?> vals = array.getValues();
+		int num = vals.size();
+		switch ( array.getType() ) {
+			case BYTE :
+				byte[] bytes = new byte[num];
+				for ( int i=0; i<num; i++ ) {
+					bytes[i] = ((Number) vals.get(i)).byteValue();
+				}
+				return bytes;
+			case INTEGER :
+				int[] ints = new int[num];
+				for ( int i=0; i<num; i++ ) {
+					ints[i] = ((Number) vals.get(i)).intValue();
+				}
+				return ints;
+			case FLOAT :
+				float[] floats = new float[num];
+				for ( int i=0; i<num; i++ ) {
+					floats[i] = ((Number) vals.get(i)).floatValue();
+				}
+				return floats;
+			case DOUBLE :
+				double[] doubles = new double[num];
+				for ( int i=0; i<num; i++ ) {
+					doubles[i] = ((Number) vals.get(i)).doubleValue();
+				}
+				return doubles;
+			case SIZE_T :
+				long[] longs = new long[num];
+				for ( int i=0; i<num; i++ ) {
+					longs[i] = ((Number) vals.get(i)).longValue();
+				}
+				return longs;
+			default :
+				throw new IllegalArgumentException(String.format("Can't buffer array of type [%s]", array.getType()));
+		}
+	}
+
+}
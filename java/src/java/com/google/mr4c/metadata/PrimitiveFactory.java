@@ -38,7 +38,48 @@ public abstract class PrimitiveFactory  {
 		return parseArray(Arrays.asList(strs), type);
 	}
 
+	/**
+	  * Numeric types are parsed straight into primitive arrays
+	*/
 	public static MetadataArray parseArray(List<String> strs, PrimitiveType type) {
+		int i = 0;
+		switch ( type ) {
+			case DOUBLE :
+				double[] doubles = new double[strs.size()];
+				for ( String str : strs ) {
+					doubles[i++] = Double.parseDouble(str);
+				}
+				return new MetadataArray(doubles);
+			case FLOAT :
+				float[] floats = new float[strs.size()];
+				for ( String str : strs ) {
+					floats[i++] = Float.parseFloat(str);
+				}
+				return new MetadataArray(floats);
+			case INTEGER :
+				int[] ints = new int[strs.size()];
+				for ( String str : strs ) {
+					ints[i++] = Integer.parseInt(str);
+				}
+				return new MetadataArray(ints);
+			case SIZE_T :
+				long[] longs = new long[strs.size()];
+				for ( String str : strs ) {
+					longs[i++] = Long.parseLong(str);
+				}
+				return new MetadataArray(longs);
+			case BYTE :
+				byte[] bytes = new byte[strs.size()];
+				for ( String str : strs ) {
+					bytes[i++] = Byte.parseByte(str);
+				}
+				return new MetadataArray(bytes);
+			default :
+				return parseBoxedArray(strs, type);
+		}
+	}
+
+	private static MetadataArray parseBoxedArray(List<String> strs, PrimitiveType type) {
 		PrimitiveFormat format = s_formats.get(type);
 		List vals = new ArrayList();
 		for ( String str : strs ) {
@@ -16,6 +16,8 @@
 
 package com.google.mr4c.nativec;
 
+import java.nio.ByteBuffer;
+
 public interface ExternalDataset {
 
 	String getName();
@@ -30,4 +32,17 @@ public interface ExternalDataset {
 
 	int getFileCount();
 
+	/**
+	  * Adds a block of numeric metadata array values referred to by the
+	  * serialized dataset.  Returns the index of the block.
+	*/
+	int addMetadataBuffer(ByteBuffer buffer);
+
+	/**
+	  * Only valid while this dataset is
+	*/
+	ByteBuffer getMetadataBuffer(int index);
+
+	int getMetadataBufferCount();
+
 }
@@ -19,6 +19,7 @@ package com.google.mr4c.nativec;
 import com.google.mr4c.dataset.Dataset;
 import com.google.mr4c.dataset.DataFile;
 import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.metadata.MetadataBuffers;
 import com.google.mr4c.serialize.DatasetSerializer;
 
 import java.io.IOException;
@@ -38,8 +39,12 @@ public class ExternalDatasetSerializer {
 	public ExternalDataset serializeDataset(String name, Dataset dataset) throws IOException {
 		ExternalDataset extDataset = m_factory.newDataset(name, dataset);
 		StringWriter writer = new StringWriter();
-		m_serializer.serializeDataset(dataset,writer);
+		MetadataBuffers buffers = new MetadataBuffers();
+		m_serializer.serializeDataset(dataset, writer, buffers);
 		extDataset.setSerializedDataset(writer.toString());
+		for ( int i=0; i<buffers.getBufferCount(); i++ ) {
+			extDataset.addMetadataBuffer(buffers.getBuffer(i));
+		}
 		for ( DataKey key : dataset.getAllFileKeys() ) {
 			DataFile file = dataset.getFile(key);
 			extDataset.addDataFile(serializeDataFile(key, file));
@@ -78,10 +83,15 @@ public class ExternalDatasetSerializer {
 	public void deserializeDataset(Dataset dataset, ExternalDataset extDataset) throws IOException {
 		String serializedDataset = extDataset.getSerializedDataset();
 		StringReader reader = new StringReader(serializedDataset);
+		// buffers point into the external dataset, arrays are copied out of them
+		MetadataBuffers buffers = new MetadataBuffers();
+		for ( int i=0; i<extDataset.getMetadataBufferCount(); i++ ) {
+			buffers.addBuffer(extDataset.getMetadataBuffer(i));
+		}
 		// separate files and metadata,
 		// metadata will be added en masse
 		// files were probably added one at a time already, but we'll check
-		Dataset deserDataset = m_serializer.deserializeDataset(reader);
+		Dataset deserDataset = m_serializer.deserializeDataset(reader, buffers);
 		Dataset metadata = deserDataset.toMetadataOnly();
 		Dataset files = deserDataset.toFilesOnly();
 		dataset.addSlice(metadata);
@@ -0,0 +1,362 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.nativec;
+
+import com.google.mr4c.algorithm.AlgorithmData;
+import com.google.mr4c.config.category.Category;
+import com.google.mr4c.config.category.CategoryConfig;
+import com.google.mr4c.config.category.CoreConfig;
+import com.google.mr4c.config.category.MR4CConfig;
+import com.google.mr4c.dataset.DataFile;
+import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.sources.AbstractDataFileSource;
+import com.google.mr4c.sources.DataFileSource;
+import com.google.mr4c.stats.MR4CStats;
+import com.google.mr4c.stats.StatsClient;
+import com.google.mr4c.util.MR4CLogging;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.fs.BlockLocation;
+
+import org.slf4j.Logger;
+
+/**
+  * Reads input files ahead of a native algorithm, in key order, so that
+  * the algorithm doesn't wait on remote storage for each file.  When the
+  * algorithm touches a file, the next files are read in the background.
+  * Files already on local disk are skipped.  Reading stops while the
+  * bytes read ahead and not yet touched exceed the memory limit.  Reads
+  * run on a pool shared by every prefetcher in the process with the same
+  * thread count.
+*/
+public class InputPrefetcher {
+
+	protected static final Logger s_log = MR4CLogging.getLogger(InputPrefetcher.class);
+
+	public static final String STALL_STAT = "mr4c.prefetch.stall";
+	public static final String READY_STAT = "mr4c.prefetch.ready";
+	public static final String MISS_STAT = "mr4c.prefetch.miss";
+
+	private static final AtomicInteger s_threadCount = new AtomicInteger();
+
+	private static Map<Integer,ExecutorService> s_executors = new HashMap<Integer,ExecutorService>();
+
+	private int m_ahead;
+	private int m_threads;
+	private long m_maxBytes;
+	private StatsClient m_stats;
+	private ExecutorService m_executor; // only while attached
+	private List<PrefetchingSource> m_sources = new ArrayList<PrefetchingSource>();
+	private long m_bytes; // read ahead and not yet touched
+	private long m_stallMillis;
+
+	/**
+	  * Settings come from the core config properties prefetch.files (number
+	  * of files to read ahead; 0, the default, disables prefetching),
+	  * prefetch.threads (default 4) and prefetch.mb (default 256).
+	*/
+	public static InputPrefetcher fromConfig() {
+		CategoryConfig conf = MR4CConfig.getDefaultInstance().getCategory(Category.CORE);
+		int ahead = Integer.parseInt(conf.getProperty(CoreConfig.PROP_PREFETCH_FILES, "0"));
+		int threads = Integer.parseInt(conf.getProperty(CoreConfig.PROP_PREFETCH_THREADS, "4"));
+		long mb = Long.parseLong(conf.getProperty(CoreConfig.PROP_PREFETCH_MB, "256"));
+		return new InputPrefetcher(ahead, threads, mb * 1024 * 1024, MR4CStats.getClient());
+	}
+
+	public InputPrefetcher(int ahead, int threads, long maxBytes, StatsClient stats) {
+		m_ahead = ahead;
+		m_threads = threads;
+		m_maxBytes = maxBytes;
+		m_stats = stats;
+	}
+
+	public boolean isEnabled() {
+		return m_ahead>0;
+	}
+
+	/**
+	  * Replaces the sources of the input files with prefetching ones, and
+	  * starts reading the first files.
+	*/
+	public synchronized void attach(AlgorithmData data) {
+		if ( !isEnabled() ) {
+			return;
+		}
+		List<String> names = new ArrayList<String>(data.getInputDatasetNames());
+		Collections.sort(names);
+		Set<DataKey> keys = new TreeSet<DataKey>();
+		for ( String name : names ) {
+			keys.addAll(data.getInputDataset(name).getAllFileKeys());
+		}
+		for ( DataKey key : keys ) {
+			for ( String name : names ) {
+				DataFile file = data.getInputDataset(name).getFile(key);
+				if ( file==null || !file.hasContent() || file.getFileSource().getLocalFile()!=null ) {
+					continue;
+				}
+				PrefetchingSource src = new PrefetchingSource(file, m_sources.size());
+				file.setFileSource(src);
+				m_sources.add(src);
+			}
+		}
+		if ( m_sources.isEmpty() ) {
+			return;
+		}
+		s_log.info("Prefetching {} input files, {} ahead", m_sources.size(), m_ahead);
+		m_executor = getExecutor(m_threads);
+		scheduleAfter(-1);
+	}
+
+	/**
+	  * Stops reading ahead, and puts back the original sources of the input
+	  * files.  Content already read stays with them.
+	*/
+	public synchronized void shutdown() {
+		if ( m_executor==null ) {
+			return;
+		}
+		m_executor = null;
+		for ( PrefetchingSource src : m_sources ) {
+			src.detach();
+		}
+		s_log.info("Stalled {} ms waiting for prefetched input", m_stallMillis);
+	}
+
+	private static synchronized ExecutorService getExecutor(int threads) {
+		ExecutorService executor = s_executors.get(threads);
+		if ( executor==null ) {
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "mr4c-prefetch-" + s_threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			// idle threads go away between executions
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+			s_executors.put(threads, executor);
+		}
+		return executor;
+	}
+
+	public synchronized long getStallMillis() {
+		return m_stallMillis;
+	}
+
+	public synchronized long getPrefetchedBytes() {
+		return m_bytes;
+	}
+
+	private synchronized void scheduleAfter(int index) {
+		if ( m_executor==null ) {
+			return;
+		}
+		int end = Math.min(index + m_ahead, m_sources.size()-1);
+		for ( int i=index+1; i<=end && m_bytes<m_maxBytes; i++ ) {
+			m_sources.get(i).schedule();
+		}
+	}
+
+	private synchronized void addStall(long millis) {
+		m_stallMillis += millis;
+	}
+
+	// all state is guarded by the prefetcher lock
+	private class PrefetchingSource extends AbstractDataFileSource {
+
+		private DataFile m_file;
+		private DataFileSource m_src;
+		private int m_index;
+		private Future<?> m_future;
+		private boolean m_touched;
+		private boolean m_released;
+		private long m_counted;
+
+		private PrefetchingSource(DataFile file, int index) {
+			m_file = file;
+			m_src = file.getFileSource();
+			m_index = index;
+		}
+
+		// stops any prefetch and gives the file back its own source
+		private void detach() {
+			if ( m_future!=null ) {
+				m_future.cancel(true);
+			}
+			if ( m_file.getFileSource()==this ) {
+				m_file.setFileSource(m_src);
+			}
+		}
+
+		private void schedule() {
+			if ( m_future!=null || m_touched ) {
+				return;
+			}
+			m_future = m_executor.submit(new Runnable() {
+				public void run() {
+					if ( !startRead() ) {
+						return;
+					}
+					try {
+						long size = m_src.getFileBytes().length;
+						if ( !count(size) ) {
+							// released while reading
+							m_src.release();
+						}
+					} catch ( Exception e ) {
+						// the algorithm will read directly and see the error
+						s_log.debug("Prefetch failed for " + m_src.getDescription(), e);
+					}
+				}
+			});
+		}
+
+		// the limit is checked again here, as earlier reads may have finished since scheduling
+		private boolean startRead() {
+			synchronized (InputPrefetcher.this) {
+				if ( m_touched ) {
+					return false;
+				}
+				if ( m_bytes>=m_maxBytes ) {
+					m_future = null; // can be scheduled again
+					return false;
+				}
+				return true;
+			}
+		}
+
+		private boolean count(long size) {
+			synchronized (InputPrefetcher.this) {
+				if ( !m_touched ) {
+					m_counted = size;
+					m_bytes += size;
+				}
+				return !m_released;
+			}
+		}
+
+		// marks this file as used; returns the prefetch to wait for, if any
+		private Future<?> markTouched() {
+			synchronized (InputPrefetcher.this) {
+				if ( m_touched ) {
+					return null;
+				}
+				m_touched = true;
+				m_bytes -= m_counted;
+				m_counted = 0;
+				return m_future;
+			}
+		}
+
+		// waits for any prefetch of this file, then starts the next ones
+		private void touch() {
+			Future<?> future;
+			synchronized (InputPrefetcher.this) {
+				if ( m_touched ) {
+					return;
+				}
+				future = markTouched();
+			}
+			if ( future==null ) {
+				m_stats.increment(MISS_STAT);
+			} else {
+				if ( future.isDone() ) {
+					m_stats.increment(READY_STAT);
+				}
+				long start = System.currentTimeMillis();
+				try {
+					future.get();
+				} catch ( Exception e ) {
+					// cancelled by shutdown; read directly
+				}
+				long stall = System.currentTimeMillis() - start;
+				addStall(stall);
+				m_stats.timing(STALL_STAT, (int) stall);
+			}
+			scheduleAfter(m_index);
+		}
+
+		public long getFileSize() throws IOException {
+			touch();
+			return m_src.getFileSize();
+		}
+
+		public InputStream getFileInputStream() throws IOException {
+			touch();
+			return m_src.getFileInputStream();
+		}
+
+		public byte[] getFileBytes() throws IOException {
+			touch();
+			return m_src.getFileBytes();
+		}
+
+		public void getFileBytes(ByteBuffer buf) throws IOException {
+			touch();
+			m_src.getFileBytes(buf);
+		}
+
+		public void release() {
+			Future<?> future;
+			synchronized (InputPrefetcher.this) {
+				m_released = true;
+				future = markTouched();
+			}
+			if ( future!=null ) {
+				future.cancel(false);
+			}
+			m_src.release();
+		}
+
+		public BlockLocation[] getBlockLocation() throws IOException {
+			return m_src.getBlockLocation();
+		}
+
+		public String getFileName() {
+			return m_src.getFileName();
+		}
+
+		public File getLocalFile() {
+			return m_src.getLocalFile();
+		}
+
+		public String getDescription() {
+			return m_src.getDescription();
+		}
+	}
+
+}
@@ -94,13 +94,19 @@ public abstract class NativeAlgorithm extends AlgorithmBase implements Algorithm
 	}
 
 	public void execute(AlgorithmData data, AlgorithmContext context) throws IOException {
-		ExternalAlgorithmData extData = m_factory.newAlgorithmData();
-		m_dataSerializer.serializeInputData(data, extData);
-		m_dataSerializer.serializeOutputData(data, extData);
-		ExternalContext extContext = m_factory.newContext(context);
-		m_entry.executeAlgorithm(getAlgorithmConfig().getName(), extData, extContext);
-		if ( !context.isFailed() ) {
-			m_dataSerializer.deserializeOutputData(data,extData);
+		InputPrefetcher prefetcher = InputPrefetcher.fromConfig();
+		prefetcher.attach(data);
+		try {
+			ExternalAlgorithmData extData = m_factory.newAlgorithmData();
+			m_dataSerializer.serializeInputData(data, extData);
+			m_dataSerializer.serializeOutputData(data, extData);
+			ExternalContext extContext = m_factory.newContext(context);
+			m_entry.executeAlgorithm(getAlgorithmConfig().getName(), extData, extContext);
+			if ( !context.isFailed() ) {
+				m_dataSerializer.deserializeOutputData(data,extData);
+			}
+		} finally {
+			prefetcher.shutdown();
 		}
 	}
 
@@ -25,6 +25,7 @@ import com.google.mr4c.nativec.jna.lib.Mr4cLibrary.MR4CDataSinkWritePtr;
 import com.google.mr4c.nativec.jna.lib.Mr4cLibrary.CExternalDataFileSinkPtr;
 import com.google.mr4c.nativec.jna.lib.CExternalDataSinkCallbacksStruct;
 import com.google.mr4c.sources.DataFileSink;
+import com.google.mr4c.stats.TaskStats;
 import com.google.mr4c.util.MR4CLogging;
 
 import com.sun.jna.Pointer;
@@ -46,10 +47,12 @@ public class JnaDataFileSink implements ExternalDataFileSink {
 	private CExternalDataSinkCallbacksStruct m_callbacks;
 	private WritableByteChannel m_chan;
 	private CExternalDataFileSinkPtr m_nativeSink;
+	private TaskStats.ByteCounter m_writes;
 
 
 	/*package*/ JnaDataFileSink(DataFileSink sink) {
 		m_sink = sink;
+		m_writes = TaskStats.instance().writes(sink);
 		m_callbacks = new CExternalDataSinkCallbacksStruct();
 		buildWriteCallback();
 		buildCloseCallback();
@@ -69,7 +72,12 @@ public class JnaDataFileSink implements ExternalDataFileSink {
 	private void buildWriteCallback() {
 		m_callbacks.writeCallback = new MR4CDataSinkWritePtr() {
 			public byte apply(Pointer buf, NativeSize num) {
-				return doWrite(buf, num);
+				long start = System.nanoTime();
+				try {
+					return doWrite(buf, num);
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -77,7 +85,12 @@ public class JnaDataFileSink implements ExternalDataFileSink {
 	private void buildCloseCallback() {
 		m_callbacks.closeCallback = new MR4CCloseDataSinkPtr() {
 			public void apply() {
-				doClose();
+				long start = System.nanoTime();
+				try {
+					doClose();
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -98,6 +111,7 @@ public class JnaDataFileSink implements ExternalDataFileSink {
 			if ( written!=size ) {
 				throw new IOException(String.format("Expected %d bytes to be written, only wrote %d bytes", size, written));
 			} 
+			m_writes.add(written);
 			return (byte)1;
 		} catch ( Exception e ) {
 			s_log.error("Error writing to " +  m_sink.getDescription(), e);
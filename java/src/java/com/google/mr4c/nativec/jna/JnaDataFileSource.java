@@ -31,10 +31,10 @@ import com.google.mr4c.nativec.jna.lib.CExternalDataSourceCallbacksStruct;
 import com.google.mr4c.sources.AbstractDataFileSource;
 import com.google.mr4c.sources.BytesDataFileSource;
 import com.google.mr4c.sources.DataFileSource;
+import com.google.mr4c.stats.TaskStats;
 import com.google.mr4c.util.MR4CLogging;
 import com.google.mr4c.util.ByteBufferInputStream;
 
-import com.sun.jna.Memory;
 import com.sun.jna.Pointer;
 
 import java.io.InputStream;
@@ -57,18 +57,20 @@ public class JnaDataFileSource implements ExternalDataFileSource {
 
 	private DataFileSource m_src;
 	private CExternalDataSourceCallbacksStruct m_callbacks;
-	private DisposableMemory m_memory;
-	private ByteBuffer m_buf;
+	private NativeBuffer m_buf;
 	private long m_size = -1;
 	private PushbackInputStream m_stream;
 	private ReadableByteChannel m_chan;
 	private boolean m_eof;
 	private CExternalDataFileSourcePtr m_nativeSrc;
+	private TaskStats.ByteCounter m_reads;
 
 
 	/*package*/ JnaDataFileSource(DataFileSource src) {
 
 		m_src = src;
+		m_reads = TaskStats.instance().reads(src);
+		m_buf = new NativeBuffer(src);
 		m_callbacks = new CExternalDataSourceCallbacksStruct();
 		buildBytesCallback();
 		buildSizeCallback();
@@ -91,7 +93,12 @@ public class JnaDataFileSource implements ExternalDataFileSource {
 	private void buildBytesCallback() {
 		m_callbacks.getBytesCallback = new MR4CGetDataSourceBytesPtr() {
 			public Pointer apply() {
-				return doGetBytes();
+				long start = System.nanoTime();
+				try {
+					return doGetBytes();
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -99,7 +106,12 @@ public class JnaDataFileSource implements ExternalDataFileSource {
 	private void buildSizeCallback() {
 		m_callbacks.getSizeCallback = new MR4CGetDataSourceSizePtr() {
 			public byte apply(NativeSizeByReference size) {
-				return doGetSize(size);
+				long start = System.nanoTime();
+				try {
+					return doGetSize(size);
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -107,7 +119,12 @@ public class JnaDataFileSource implements ExternalDataFileSource {
 	private void buildReadCallback() {
 		m_callbacks.readCallback = new MR4CDataSourceReadPtr() {
 			public byte apply(Pointer bufPtr, NativeSize num, NativeSizeByReference read) {
-				return doRead(bufPtr, num, read);
+				long start = System.nanoTime();
+				try {
+					return doRead(bufPtr, num, read);
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -115,7 +132,12 @@ public class JnaDataFileSource implements ExternalDataFileSource {
 	private void buildSkipCallback() {
 		m_callbacks.skipCallback = new MR4CDataSourceSkipPtr() {
 			public byte apply(NativeSize num, NativeSizeByReference skipped) {
-				return doSkip(num, skipped);
+				long start = System.nanoTime();
+				try {
+					return doSkip(num, skipped);
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -123,7 +145,12 @@ public class JnaDataFileSource implements ExternalDataFileSource {
 	private void buildReleaseCallback() {
 		m_callbacks.releaseCallback = new MR4CReleaseDataSourcePtr() {
 			public void apply() {
-				doRelease();
+				long start = System.nanoTime();
+				try {
+					doRelease();
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -134,52 +161,8 @@ public class JnaDataFileSource implements ExternalDataFileSource {
 		}
 		m_size = m_src.getFileSize();
 		if ( m_size==-1 ) {
-			initBuffer();
-		}
-	}
-		
-	private void initBufferIfNecessary() throws IOException {
-		if ( m_buf!=null ) {
-			return;
-		}
-		initBuffer();
-	}
-
-	private void initBuffer() throws IOException {
-		m_size = m_src.getFileSize();
-		if ( m_size==-1 ) {
-			initBufferFromBytes();
-		} else {
-			initBufferFromChannel();
-		}
-	}
-
-	private void initBufferFromBytes() throws IOException {
-		byte[] bytes = m_src.getFileBytes();
-		m_memory = new DisposableMemory(bytes.length);
-		m_buf = m_memory.getByteBuffer(0,bytes.length);
-		m_buf.put(bytes);
-		m_size = bytes.length;
-	}
-
-	private void initBufferFromChannel() throws IOException {
-		m_memory = new DisposableMemory(m_size);
-		InputStream stream = null;
-		ReadableByteChannel chan = null;
-		try {
-			stream = m_src.getFileInputStream();
-			chan = Channels.newChannel(stream);
-			m_buf = m_memory.getByteBuffer(0,m_size);
-			int read = chan.read(m_buf);
-			if ( read!=m_size ) {
-				throw new IllegalStateException(String.format("Expected %s bytes, read %s bytes", m_size, read));
-			}
-		} finally {
-			if ( chan!=null ) {
-				chan.close();
-			} else if ( stream!=null ) {
-				stream.close();
-			}
+			m_buf.getPointer();
+			m_size = m_buf.getSize();
 		}
 	}
 		
@@ -194,8 +177,13 @@ public class JnaDataFileSource implements ExternalDataFileSource {
 		
 	private synchronized Pointer doGetBytes() {
 		try {
-			initBufferIfNecessary();
-			return m_memory;
+			boolean loaded = m_buf.isLoaded();
+			Pointer ptr = m_buf.getPointer();
+			m_size = m_buf.getSize();
+			if ( !loaded ) {
+				m_reads.add(m_size);
+			}
+			return ptr;
 		} catch ( Exception e ) {
 			s_log.error("Error accessing " +  m_src.getDescription(), e);
 			return null;
@@ -228,6 +216,7 @@ public class JnaDataFileSource implements ExternalDataFileSource {
 				m_eof=true;
 				numRead=0;
 			}
+			m_reads.add(numRead);
 			read.setValue(new NativeSize(numRead));
 			return 1;
 		} catch ( Exception e ) {
@@ -268,12 +257,10 @@ public class JnaDataFileSource implements ExternalDataFileSource {
 	}
 
 	private void releaseMemory() {
-		if ( m_memory!=null ) {
+		if ( m_buf.isLoaded() ) {
 			s_log.info("Freeing {} byte file [{}]" , m_size, m_src.getDescription());
-			m_memory.publicDispose();
+			m_buf.release();
 		}
-		m_buf = null;
-		m_memory = null;
 	}
 		
 	private void releaseStream() {
@@ -304,21 +291,6 @@ public class JnaDataFileSource implements ExternalDataFileSource {
 		return nativeSrc==null ? null : new JnaDataFileSource(nativeSrc);
 	}
 
-	// NOTE: JNA normally won't free the native memory until the Memory finalizer runs.
-	// Its pretty easy for the GC to go a very long time without that happening.
-	// This class exposes the protected dispose method. 
-
-	private static class DisposableMemory extends Memory {
-	
-		DisposableMemory(long length) {
-			super(length);
-		}
-
-		public void publicDispose() {
-			dispose();
-		}
-	}
-
 	// This class allows delaying asking for bytes from the native source
 	private class SimpleSource extends AbstractDataFileSource {
 
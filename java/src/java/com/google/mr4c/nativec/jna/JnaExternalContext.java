@@ -28,6 +28,7 @@ import com.google.mr4c.nativec.jna.lib.Mr4cLibrary.CExternalMessageFunctionPtr;
 import com.google.mr4c.nativec.jna.lib.Mr4cLibrary.CExternalProgressFunctionPtr;
 import com.google.mr4c.nativec.jna.lib.CExternalContextCallbacksStruct;
 import com.google.mr4c.nativec.jna.lib.CExternalContextMessageStruct;
+import com.google.mr4c.stats.TaskStats;
 import com.google.mr4c.util.MR4CLogging;
 
 import com.sun.jna.Pointer;
@@ -82,8 +83,13 @@ public class JnaExternalContext implements ExternalContext {
 	private void buildLogCallback() {
 		m_callbacks.logCallback = new CExternalLogFunctionPtr() {
 			public void apply(Pointer lvl, Pointer msg) {
-				LogLevel level = LogLevel.valueOf(lvl.getString(0));
-				m_context.log(level, msg.getString(0));
+				long start = System.nanoTime();
+				try {
+					LogLevel level = LogLevel.valueOf(lvl.getString(0));
+					m_context.log(level, msg.getString(0));
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -91,7 +97,12 @@ public class JnaExternalContext implements ExternalContext {
 	private void buildProgressCallback() {
 		m_callbacks.progressCallback = new CExternalProgressFunctionPtr() {
 			public void apply(float percentDone, Pointer msg) {
-				m_context.progress(percentDone,msg.getString(0));
+				long start = System.nanoTime();
+				try {
+					m_context.progress(percentDone,msg.getString(0));
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -99,7 +110,12 @@ public class JnaExternalContext implements ExternalContext {
 	private void buildFailureCallback() {
 		m_callbacks.failureCallback = new CExternalFailureFunctionPtr() {
 			public void apply(Pointer msg) {
-				m_context.failure(msg.getString(0));
+				long start = System.nanoTime();
+				try {
+					m_context.failure(msg.getString(0));
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -107,7 +123,12 @@ public class JnaExternalContext implements ExternalContext {
 	private void buildMessageCallback() {
 		m_callbacks.messageCallback = new CExternalMessageFunctionPtr() {
 			public void apply(CExternalContextMessageStruct msg) {
-				m_context.sendMessage(fromNative(msg));
+				long start = System.nanoTime();
+				try {
+					m_context.sendMessage(fromNative(msg));
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -35,11 +35,15 @@ import com.google.mr4c.nativec.jna.lib.Mr4cLibrary.CExternalRandomAccessSinkFunc
 import com.google.mr4c.nativec.jna.lib.Mr4cLibrary.CExternalRandomAccessSourceFunctionPtr;
 import com.google.mr4c.nativec.jna.lib.CExternalDatasetCallbacksStruct;
 import com.google.mr4c.serialize.DatasetSerializer;
+import com.google.mr4c.stats.TaskStats;
 import com.google.mr4c.util.MR4CLogging;
 
+import com.ochafik.lang.jnaerator.runtime.NativeSize;
+import com.sun.jna.Native;
 import com.sun.jna.Pointer;
 
 import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
 
 import org.slf4j.Logger;
 
@@ -100,6 +104,35 @@ public class JnaExternalDataset implements ExternalDataset {
 		return s_lib.CExternalDataset_getFileCount(m_nativeDataset).intValue();
 	}
 
+	// the native side copies the block before returning; holding the lock
+	// keeps the buffer from being collected while it does
+	public int addMetadataBuffer(ByteBuffer buffer) {
+		ByteBuffer direct = buffer;
+		if ( !buffer.isDirect() ) {
+			direct = ByteBuffer.allocateDirect(buffer.remaining());
+			direct.put(buffer.duplicate());
+			direct.flip();
+		}
+		int size = direct.remaining();
+		synchronized ( direct ) {
+			Pointer ptr = size==0 ? null : Native.getDirectBufferPointer(direct).share(direct.position());
+			return s_lib.CExternalDataset_addMetadataBuffer(m_nativeDataset, ptr, new NativeSize(size)).intValue();
+		}
+	}
+
+	public ByteBuffer getMetadataBuffer(int index) {
+		NativeSize nativeIndex = new NativeSize(index);
+		long size = s_lib.CExternalDataset_getMetadataBufferSize(m_nativeDataset, nativeIndex).longValue();
+		if ( size==0 ) {
+			return ByteBuffer.allocate(0);
+		}
+		return s_lib.CExternalDataset_getMetadataBuffer(m_nativeDataset, nativeIndex).getByteBuffer(0, size);
+	}
+
+	public int getMetadataBufferCount() {
+		return s_lib.CExternalDataset_getMetadataBufferCount(m_nativeDataset).intValue();
+	}
+
 	/*package*/ CExternalDatasetPtr getNativeDataset() {
 		return m_nativeDataset;
 	}
@@ -117,7 +150,12 @@ public class JnaExternalDataset implements ExternalDataset {
 	private void buildAddFileCallback() {
 		m_callbacks.addFileCallback = new CExternalAddFunctionPtr() {
 			public byte apply(CExternalDataFilePtr filePtr) {
-				return doAddFile(filePtr);
+				long start = System.nanoTime();
+				try {
+					return doAddFile(filePtr);
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -144,7 +182,12 @@ public class JnaExternalDataset implements ExternalDataset {
 	private void buildFileNameCallback() {
 		m_callbacks.getFileNameCallback = new CExternalFileNameFunctionPtr() {
 			public String apply(Pointer serKey) {
-				return doGetFileName(serKey);
+				long start = System.nanoTime();
+				try {
+					return doGetFileName(serKey);
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -162,7 +205,12 @@ public class JnaExternalDataset implements ExternalDataset {
 	private void buildFindFileCallback() {
 		m_callbacks.findFileCallback = new CExternalFindFunctionPtr() {
 			public CExternalDataFilePtr apply(Pointer serializedKey) {
-				return doFind(serializedKey);
+				long start = System.nanoTime();
+				try {
+					return doFind(serializedKey);
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -186,7 +234,12 @@ public class JnaExternalDataset implements ExternalDataset {
 	private void buildQueryOnlyCallback() {
 		m_callbacks.isQueryOnlyCallback = new CExternalQueryOnlyFunctionPtr() {
 			public byte apply() {
-				return doIsQueryOnly();
+				long start = System.nanoTime();
+				try {
+					return doIsQueryOnly();
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -198,7 +251,12 @@ public class JnaExternalDataset implements ExternalDataset {
 	private void buildRandomAccessSourceCallback() {
 		m_callbacks.randomAccessSourceCallback = new CExternalRandomAccessSourceFunctionPtr() {
 			public CExternalRandomAccessFileSourcePtr apply(Pointer serializedKey) {
-				return doRandomAccessSource(serializedKey);
+				long start = System.nanoTime();
+				try {
+					return doRandomAccessSource(serializedKey);
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -221,7 +279,12 @@ public class JnaExternalDataset implements ExternalDataset {
 	private void buildRandomAccessSinkCallback() {
 		m_callbacks.randomAccessSinkCallback = new CExternalRandomAccessSinkFunctionPtr() {
 			public CExternalRandomAccessFileSinkPtr apply(Pointer serializedKey) {
-				return doRandomAccessSink(serializedKey);
+				long start = System.nanoTime();
+				try {
+					return doRandomAccessSink(serializedKey);
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -31,16 +31,16 @@ import com.google.mr4c.nativec.jna.lib.Mr4cLibrary.MR4CRandomAccessFileWritePtr;
 import com.google.mr4c.nativec.jna.lib.Mr4cLibrary.CExternalRandomAccessFileSourcePtr;
 import com.google.mr4c.nativec.jna.lib.CExternalRandomAccessFileCallbacksStruct;
 import com.google.mr4c.sources.DataFileSource;
+import com.google.mr4c.sources.RandomAccessChannel;
 import com.google.mr4c.sources.RandomAccessFileSource;
 import com.google.mr4c.sources.RandomAccessible;
+import com.google.mr4c.stats.TaskStats;
 import com.google.mr4c.util.MR4CLogging;
 
 import com.sun.jna.Pointer;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
 
 import org.slf4j.Logger;
 
@@ -51,13 +51,16 @@ import org.slf4j.Logger;
 	static Mr4cLibrary s_lib = Mr4cLibrary.INSTANCE;
 
 	private RandomAccessible m_rand;
-	private RandomAccessFile m_randFile;
-	private FileChannel m_chan;
+	private RandomAccessChannel m_chan;
 	private CExternalRandomAccessFileCallbacksStruct m_callbacks;
+	private TaskStats.ByteCounter m_reads;
+	private TaskStats.ByteCounter m_writes;
 
 
 	/*package*/ JnaRandomAccessFile(RandomAccessible rand) {
 		m_rand = rand;
+		m_reads = TaskStats.instance().reads(rand);
+		m_writes = TaskStats.instance().writes(rand);
 		m_callbacks = new CExternalRandomAccessFileCallbacksStruct();
 		buildReadCallback();
 		buildWriteCallback();
@@ -82,7 +85,12 @@ import org.slf4j.Logger;
 	private void buildReadCallback() {
 		m_callbacks.readCallback = new MR4CRandomAccessFileReadPtr() {
 			public byte apply(Pointer bufPtr, NativeSize num, NativeSizeByReference read) {
-				return doRead(bufPtr, num, read);
+				long start = System.nanoTime();
+				try {
+					return doRead(bufPtr, num, read);
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -90,7 +98,12 @@ import org.slf4j.Logger;
 	private void buildWriteCallback() {
 		m_callbacks.writeCallback = new MR4CRandomAccessFileWritePtr() {
 			public byte apply(Pointer bufPtr, NativeSize num) {
-				return doWrite(bufPtr, num);
+				long start = System.nanoTime();
+				try {
+					return doWrite(bufPtr, num);
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -98,7 +111,12 @@ import org.slf4j.Logger;
 	private void buildGetLocationCallback() {
 		m_callbacks.getLocationCallback = new MR4CRandomAccessFileGetLocationPtr() {
 			public byte apply(NativeSizeByReference loc) {
-				return doGetLocation(loc);
+				long start = System.nanoTime();
+				try {
+					return doGetLocation(loc);
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -106,7 +124,12 @@ import org.slf4j.Logger;
 	private void buildSetLocationCallback() {
 		m_callbacks.setLocationCallback = new MR4CRandomAccessFileSetLocationPtr() {
 			public byte apply(NativeSize loc) {
-				return doSetLocation(loc);
+				long start = System.nanoTime();
+				try {
+					return doSetLocation(loc);
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -114,7 +137,12 @@ import org.slf4j.Logger;
 	private void buildSetLocationFromEndCallback() {
 		m_callbacks.setLocationFromEndCallback = new MR4CRandomAccessFileSetLocationPtr() {
 			public byte apply(NativeSize loc) {
-				return doSetLocationFromEnd(loc);
+				long start = System.nanoTime();
+				try {
+					return doSetLocationFromEnd(loc);
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -122,7 +150,12 @@ import org.slf4j.Logger;
 	private void buildSkipForwardCallback() {
 		m_callbacks.skipForwardCallback = new MR4CRandomAccessFileSetLocationPtr() {
 			public byte apply(NativeSize loc) {
-				return doSkipForward(loc);
+				long start = System.nanoTime();
+				try {
+					return doSkipForward(loc);
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -130,7 +163,12 @@ import org.slf4j.Logger;
 	private void buildSkipBackwardCallback() {
 		m_callbacks.skipBackwardCallback = new MR4CRandomAccessFileSetLocationPtr() {
 			public byte apply(NativeSize loc) {
-				return doSkipBackward(loc);
+				long start = System.nanoTime();
+				try {
+					return doSkipBackward(loc);
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -138,7 +176,12 @@ import org.slf4j.Logger;
 	private void buildGetSizeCallback() {
 		m_callbacks.getSizeCallback = new MR4CRandomAccessFileGetSizePtr() {
 			public byte apply(NativeSizeByReference size) {
-				return doGetSize(size);
+				long start = System.nanoTime();
+				try {
+					return doGetSize(size);
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -146,7 +189,12 @@ import org.slf4j.Logger;
 	private void buildSetSizeCallback() {
 		m_callbacks.setSizeCallback = new MR4CRandomAccessFileSetSizePtr() {
 			public byte apply(NativeSize size) {
-				return doSetSize(size);
+				long start = System.nanoTime();
+				try {
+					return doSetSize(size);
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
@@ -154,17 +202,19 @@ import org.slf4j.Logger;
 	private void buildCloseCallback() {
 		m_callbacks.closeCallback = new MR4CRandomAccessFileClosePtr() {
 			public void apply() {
-				doClose();
+				long start = System.nanoTime();
+				try {
+					doClose();
+				} finally {
+					TaskStats.instance().callback(start);
+				}
 			}
 		};
 	}
 
 	private synchronized void initRandomAccessIfNecessary() throws IOException {
-		if ( m_randFile==null ) {
-			m_randFile = m_rand.getRandomAccess();
-		}
 		if ( m_chan==null ) {
-			m_chan = m_randFile.getChannel();
+			m_chan = m_rand.getChannel();
 		}
 	}
 		
@@ -174,6 +224,7 @@ import org.slf4j.Logger;
 			int size = num.intValue();
 			ByteBuffer buf = bufPtr.getByteBuffer(0, size);
 			int numRead = m_chan.read(buf);
+			m_reads.add(Math.max(numRead, 0));
 			read.setValue(new NativeSize(numRead));
 			return 1;
 		} catch ( Exception e ) {
@@ -188,10 +239,8 @@ import org.slf4j.Logger;
 			initRandomAccessIfNecessary();
 			int size = num.intValue();
 			ByteBuffer buf = bufPtr.getByteBuffer(0, size);
-			long numWritten = m_chan.write(buf);
-			if ( numWritten!=size ) {
-				throw new IOException("Not all bytes written");
-			}
+			m_chan.write(buf);
+			m_writes.add(size);
 			return 1;
 		} catch ( Exception e ) {
 			handleError("writing", e);
@@ -202,7 +251,7 @@ import org.slf4j.Logger;
 	private synchronized byte doGetLocation(NativeSizeByReference loc) {
 		try {
 			initRandomAccessIfNecessary();
-			long location = m_chan.position();
+			long location = m_chan.getPosition();
 			loc.setValue(new NativeSize(location));
 			return 1;
 		} catch ( Exception e ) {
@@ -215,7 +264,7 @@ import org.slf4j.Logger;
 		try {
 			initRandomAccessIfNecessary();
 			long location = loc.longValue();
-			m_chan.position(location);
+			m_chan.setPosition(location);
 			return 1;
 		} catch ( Exception e ) {
 			handleError("setting location", e);
@@ -227,7 +276,7 @@ import org.slf4j.Logger;
 		try {
 			initRandomAccessIfNecessary();
 			long location = loc.longValue();
-			m_chan.position(m_chan.size()-location);
+			m_chan.setPosition(m_chan.getSize()-location);
 			return 1;
 		} catch ( Exception e ) {
 			handleError("setting location from end", e);
@@ -239,7 +288,7 @@ import org.slf4j.Logger;
 		try {
 			initRandomAccessIfNecessary();
 			long location = loc.longValue();
-			m_chan.position(m_chan.position()+location);
+			m_chan.setPosition(m_chan.getPosition()+location);
 			return 1;
 		} catch ( Exception e ) {
 			handleError("skipping forward", e);
@@ -251,7 +300,7 @@ import org.slf4j.Logger;
 		try {
 			initRandomAccessIfNecessary();
 			long location = loc.longValue();
-			m_chan.position(m_chan.position()-location);
+			m_chan.setPosition(m_chan.getPosition()-location);
 			return 1;
 		} catch ( Exception e ) {
 			handleError("skipping backward", e);
@@ -262,7 +311,7 @@ import org.slf4j.Logger;
 	private synchronized byte doGetSize(NativeSizeByReference size) {
 		try {
 			initRandomAccessIfNecessary();
-			size.setValue(new NativeSize(m_chan.size()));
+			size.setValue(new NativeSize(m_chan.getSize()));
 			return 1;
 		} catch ( Exception e ) {
 			handleError("getting size", e);
@@ -274,7 +323,7 @@ import org.slf4j.Logger;
 		try {
 			assertWritable();
 			initRandomAccessIfNecessary();
-			m_randFile.setLength(size.longValue());
+			m_chan.setSize(size.longValue());
 			return 1;
 		} catch ( Exception e ) {
 			handleError("setting size", e);
@@ -286,10 +335,11 @@ import org.slf4j.Logger;
 	private synchronized void doClose() {
 		try {
 			if ( m_rand!=null ) {
-				s_log.info("Closing {} byte random access file [{}]" , m_randFile.length(), m_rand.getDescription());
+				if ( m_chan!=null ) {
+					s_log.info("Closing {} byte random access file [{}]" , m_chan.getSize(), m_rand.getDescription());
+				}
 				m_rand.close();
 			}
-			m_randFile=null;
 			m_chan=null;
 		} catch ( Exception e ) {
 			handleError("closing file", e);
@@ -0,0 +1,214 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.nativec.jna;
+
+import com.google.mr4c.config.category.Category;
+import com.google.mr4c.config.category.CoreConfig;
+import com.google.mr4c.config.category.MR4CConfig;
+import com.google.mr4c.sources.DataFileSource;
+import com.google.mr4c.util.MR4CLogging;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+import org.slf4j.Logger;
+
+/**
+  * Holds the content of a file in memory the native side can point into.
+  * How the content gets there is decided by the policy.
+*/
+/*package*/ class NativeBuffer {
+
+	protected static final Logger s_log = MR4CLogging.getLogger(NativeBuffer.class);
+
+	public enum Policy {
+
+		/**
+		  * Load the bytes through the source, which may cache them, then
+		  * copy them to native memory
+		*/
+		HEAP,
+
+		/**
+		  * Read straight from the source stream, or the local file, into
+		  * native memory; the bytes are copied once
+		*/
+		STREAM,
+
+		/**
+		  * Map the local file read only; falls back to STREAM if there is
+		  * no local file
+		*/
+		MMAP
+	}
+
+	private static Policy s_default;
+
+	private DataFileSource m_src;
+	private Policy m_policy;
+	private DisposableMemory m_memory;
+	private MappedByteBuffer m_mapped;
+	private Pointer m_ptr;
+	private long m_size = -1;
+
+	/*package*/ NativeBuffer(DataFileSource src) {
+		this(src, getDefaultPolicy());
+	}
+
+	/*package*/ NativeBuffer(DataFileSource src, Policy policy) {
+		m_src = src;
+		m_policy = policy;
+	}
+
+	/**
+	  * Reads the policy from the core config property native.buffer;
+	  * MMAP if not set
+	*/
+	/*package*/ static synchronized Policy getDefaultPolicy() {
+		if ( s_default==null ) {
+			String val = MR4CConfig.getDefaultInstance().getCategory(Category.CORE).getProperty(CoreConfig.PROP_NATIVE_BUFFER);
+			s_default = val==null ? Policy.MMAP : Policy.valueOf(val.toUpperCase());
+			s_log.info("Native buffer policy is {}", s_default);
+		}
+		return s_default;
+	}
+
+	/*package*/ Policy getPolicy() {
+		return m_policy;
+	}
+
+	/*package*/ boolean isLoaded() {
+		return m_ptr!=null;
+	}
+
+	/*package*/ long getSize() {
+		return m_size;
+	}
+
+	/*package*/ Pointer getPointer() throws IOException {
+		if ( m_ptr==null ) {
+			load();
+		}
+		return m_ptr;
+	}
+
+	private void load() throws IOException {
+		m_size = m_src.getFileSize();
+		File file = m_src.getLocalFile();
+		if ( m_policy==Policy.HEAP || m_size==-1 ) {
+			loadFromBytes();
+		} else if ( file==null ) {
+			loadFromStream();
+		} else if ( m_policy==Policy.MMAP && m_size>0 ) {
+			loadFromMapping(file);
+		} else {
+			loadFromFile(file);
+		}
+	}
+
+	private void loadFromBytes() throws IOException {
+		byte[] bytes = m_src.getFileBytes();
+		m_size = bytes.length;
+		ByteBuffer buf = allocate();
+		buf.put(bytes);
+	}
+
+	private void loadFromStream() throws IOException {
+		InputStream stream = m_src.getFileInputStream();
+		try {
+			readFully(Channels.newChannel(stream));
+		} finally {
+			stream.close();
+		}
+	}
+
+	private void loadFromFile(File file) throws IOException {
+		FileInputStream stream = new FileInputStream(file);
+		try {
+			readFully(stream.getChannel());
+		} finally {
+			stream.close();
+		}
+	}
+
+	private void loadFromMapping(File file) throws IOException {
+		FileInputStream stream = new FileInputStream(file);
+		try {
+			FileChannel chan = stream.getChannel();
+			m_size = chan.size();
+			// mapping stays valid after the channel is closed
+			m_mapped = chan.map(FileChannel.MapMode.READ_ONLY, 0, m_size);
+			m_ptr = Native.getDirectBufferPointer(m_mapped);
+		} finally {
+			stream.close();
+		}
+	}
+
+	private void readFully(ReadableByteChannel chan) throws IOException {
+		ByteBuffer buf = allocate();
+		while ( buf.hasRemaining() ) {
+			if ( chan.read(buf)==-1 ) {
+				release();
+				throw new IllegalStateException(String.format("Expected %s bytes, read %s bytes", m_size, buf.position()));
+			}
+		}
+	}
+
+	private ByteBuffer allocate() {
+		// JNA won't allocate zero bytes
+		m_memory = new DisposableMemory(Math.max(m_size, 1));
+		m_ptr = m_memory;
+		return m_memory.getByteBuffer(0, m_size);
+	}
+
+	/*package*/ void release() {
+		if ( m_memory!=null ) {
+			m_memory.publicDispose();
+		}
+		// mapped region is unmapped when the buffer is collected
+		m_memory = null;
+		m_mapped = null;
+		m_ptr = null;
+	}
+
+	// NOTE: JNA normally won't free the native memory until the Memory finalizer runs.
+	// Its pretty easy for the GC to go a very long time without that happening.
+	// This class exposes the protected dispose method. 
+
+	private static class DisposableMemory extends Memory {
+	
+		DisposableMemory(long length) {
+			super(length);
+		}
+
+		public void publicDispose() {
+			dispose();
+		}
+	}
+
+}
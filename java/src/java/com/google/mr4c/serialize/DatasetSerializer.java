@@ -19,17 +19,44 @@ package com.google.mr4c.serialize;
 import com.google.mr4c.dataset.DataFile;
 import com.google.mr4c.dataset.Dataset;
 import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.keys.DataKeyFilter;
+import com.google.mr4c.metadata.MetadataBuffers;
+import com.google.mr4c.sources.DataFileSource;
 
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.List;
 
 public interface DatasetSerializer extends Serializer {
 
 	void serializeDataset(Dataset dataset, Writer writer) throws IOException;
 
+	/**
+	  * Numeric metadata arrays may be added to the buffers rather than
+	  * written out as text
+	*/
+	void serializeDataset(Dataset dataset, Writer writer, MetadataBuffers buffers) throws IOException;
+
 	Dataset deserializeDataset(Reader reader) throws IOException;
 
+	/**
+	  * Resolves metadata arrays that were added to the buffers
+	*/
+	Dataset deserializeDataset(Reader reader, MetadataBuffers buffers) throws IOException;
+
+	/**
+	  * Deserializes only the files and metadata with keys that pass the filter
+	*/
+	Dataset deserializeDataset(Reader reader, DataKeyFilter filter) throws IOException;
+
+	/**
+	  * Writes the metadata of several serialized datasets as one dataset.
+	  * Parts are read one at a time, and must not share keys.  File
+	  * entries are dropped, as in dataset files.
+	*/
+	void concatenateMetadata(List<DataFileSource> parts, Writer writer) throws IOException;
+
 	String serializeDataFile(DataFile file);
 
 	DataFile deserializeDataFile(String serializedFile);
@@ -17,13 +17,12 @@
 package com.google.mr4c.serialize;
 
 import com.google.mr4c.serialize.bean.BeanBasedAlgorithmSerializer;
-import com.google.mr4c.serialize.bean.BeanBasedDatasetSerializer;
 import com.google.mr4c.serialize.bean.BeanBasedKeyspaceSerializer;
 import com.google.mr4c.serialize.json.JsonConfigSerializer;
 import com.google.mr4c.serialize.json.JsonAlgorithmBeanSerializer;
-import com.google.mr4c.serialize.json.JsonDatasetBeanSerializer;
 import com.google.mr4c.serialize.json.JsonKeyspaceBeanSerializer;
 import com.google.mr4c.serialize.json.JsonPropertiesSerializer;
+import com.google.mr4c.serialize.json.StreamingJsonDatasetSerializer;
 
 import java.util.Map;
 import java.util.HashMap;
@@ -54,9 +53,7 @@ public abstract class SerializerFactories {
 		}
 	
 		public DatasetSerializer createDatasetSerializer() {
-			return new BeanBasedDatasetSerializer(
-				new JsonDatasetBeanSerializer()
-			);
+			return new StreamingJsonDatasetSerializer();
 		}
 	
 		public KeyspaceSerializer createKeyspaceSerializer() {
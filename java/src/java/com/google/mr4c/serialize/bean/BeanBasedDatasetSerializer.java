@@ -19,14 +19,19 @@ package com.google.mr4c.serialize.bean;
 import com.google.mr4c.dataset.DataFile;
 import com.google.mr4c.dataset.Dataset;
 import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.keys.DataKeyFilter;
+import com.google.mr4c.metadata.MetadataBuffers;
 import com.google.mr4c.serialize.DatasetSerializer;
 import com.google.mr4c.serialize.bean.dataset.DatasetBean;
 import com.google.mr4c.serialize.bean.dataset.DataFileBean;
 import com.google.mr4c.serialize.bean.keys.DataKeyBean;
+import com.google.mr4c.sources.DataFileSource;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.List;
 
 public class BeanBasedDatasetSerializer implements DatasetSerializer {
 
@@ -41,11 +46,42 @@ public class BeanBasedDatasetSerializer implements DatasetSerializer {
 		m_ser.serializeDatasetBean(bean,writer);
 	}
 
+	// beans hold array values as strings, so nothing goes in the buffers
+	public void serializeDataset(Dataset dataset, Writer writer, MetadataBuffers buffers) throws IOException {
+		serializeDataset(dataset, writer);
+	}
+
 	public Dataset deserializeDataset(Reader reader) throws IOException {
 		DatasetBean bean = m_ser.deserializeDatasetBean(reader);
 		return bean.toDataset();
 	}
 
+	public Dataset deserializeDataset(Reader reader, MetadataBuffers buffers) throws IOException {
+		if ( buffers.getBufferCount()>0 ) {
+			throw new UnsupportedOperationException("Bean based serializer can't resolve metadata buffers");
+		}
+		return deserializeDataset(reader);
+	}
+
+	public Dataset deserializeDataset(Reader reader, DataKeyFilter filter) throws IOException {
+		DatasetBean bean = m_ser.deserializeDatasetBean(reader);
+		return bean.toDataset(filter);
+	}
+
+	// beans can't be streamed, so the parts are combined in memory
+	public void concatenateMetadata(List<DataFileSource> parts, Writer writer) throws IOException {
+		Dataset dataset = new Dataset();
+		for ( DataFileSource part : parts ) {
+			Reader reader = new InputStreamReader(part.getFileInputStream());
+			try {
+				dataset.addSlice(deserializeDataset(reader).toMetadataOnly());
+			} finally {
+				reader.close();
+			}
+		}
+		serializeDataset(dataset, writer);
+	}
+
 	public String serializeDataFile(DataFile file) {
 		DataFileBean bean = DataFileBean.instance(file);
 		return m_ser.serializeDataFileBean(bean);
@@ -19,6 +19,8 @@ package com.google.mr4c.serialize.bean.dataset;
 import com.google.mr4c.dataset.DataFile;
 import com.google.mr4c.dataset.Dataset;
 import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.keys.DataKeyFilter;
+import com.google.mr4c.keys.IdentityDataKeyFilter;
 import com.google.mr4c.metadata.MetadataMap;
 
 import java.util.ArrayList;
@@ -64,25 +66,36 @@ public class DatasetBean {
 	public DatasetBean(){}
 
 	public Dataset toDataset() {
+		return toDataset(IdentityDataKeyFilter.INSTANCE);
+	}
+
+	/**
+	  * Only converts entries with keys that pass the filter; the rest are never turned into metadata objects
+	*/
+	public Dataset toDataset(DataKeyFilter filter) {
 		Dataset dataset = new Dataset();
-		addFiles(dataset);
-		addMetadata(dataset);
+		addFiles(dataset, filter);
+		addMetadata(dataset, filter);
 		return dataset;
 	}
 
-	private void addFiles(Dataset dataset) {
+	private void addFiles(Dataset dataset, DataKeyFilter filter) {
 		for ( DatasetFileBean fileBean : files ) {
 			DataKey key = fileBean.extractDataKey();
-			DataFile file = fileBean.extractDataFile();
-			dataset.addFile(key,file);
+			if ( filter.filter(key) ) {
+				DataFile file = fileBean.extractDataFile();
+				dataset.addFile(key,file);
+			}
 		}
 	}
 
-	private void addMetadata(Dataset dataset) {
+	private void addMetadata(Dataset dataset, DataKeyFilter filter) {
 		for ( DatasetMetadataBean metadataBean : metadata ) {
 			DataKey key = metadataBean.extractDataKey();
-			MetadataMap meta = (MetadataMap) metadataBean.extractMetadata();
-			dataset.addMetadata(key,meta);
+			if ( filter.filter(key) ) {
+				MetadataMap meta = (MetadataMap) metadataBean.extractMetadata();
+				dataset.addMetadata(key,meta);
+			}
 		}
 	}
 
@@ -22,9 +22,6 @@ import com.google.mr4c.metadata.MetadataArray;
 import com.google.mr4c.metadata.PrimitiveFactory;
 import com.google.mr4c.metadata.PrimitiveType;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class MetadataArrayBean implements MetadataElementBean {
 
 	private String[] values;
@@ -32,11 +29,10 @@ public class MetadataArrayBean implements MetadataElementBean {
 
 	public static MetadataArrayBean instance(MetadataArray array) {
 		MetadataArrayBean bean = new MetadataArrayBean();
-		List<String> vals = new ArrayList<String>();
-		for ( Object val : array.getValues()) {
-			vals.add(val.toString());
+		bean.values = new String[array.size()];
+		for ( int i=0; i<bean.values.length; i++ ) {
+			bean.values[i] = array.getValueAsString(i);
 		}
-		bean.values = vals.toArray(new String[array.getValues().size()]);
 		bean.primitiveType = array.getType();
 		return bean;
 	}
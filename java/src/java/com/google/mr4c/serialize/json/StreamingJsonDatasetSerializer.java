@@ -0,0 +1,525 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.serialize.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import com.google.mr4c.dataset.DataFile;
+import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.keys.DataKeyDimension;
+import com.google.mr4c.keys.DataKeyElement;
+import com.google.mr4c.keys.DataKeyFactory;
+import com.google.mr4c.keys.DataKeyFilter;
+import com.google.mr4c.keys.IdentityDataKeyFilter;
+import com.google.mr4c.metadata.MetadataArray;
+import com.google.mr4c.metadata.MetadataBuffers;
+import com.google.mr4c.metadata.MetadataElement;
+import com.google.mr4c.metadata.MetadataElementType;
+import com.google.mr4c.metadata.MetadataField;
+import com.google.mr4c.metadata.MetadataKey;
+import com.google.mr4c.metadata.MetadataList;
+import com.google.mr4c.metadata.MetadataMap;
+import com.google.mr4c.metadata.PrimitiveFactory;
+import com.google.mr4c.metadata.PrimitiveType;
+import com.google.mr4c.serialize.DatasetSerializer;
+import com.google.mr4c.serialize.bean.BeanBasedDatasetSerializer;
+import com.google.mr4c.serialize.bean.metadata.MetadataBeans;
+import com.google.mr4c.serialize.bean.metadata.MetadataElementBean;
+import com.google.mr4c.serialize.bean.metadata.MetadataEntryBean;
+import com.google.mr4c.sources.DataFileSource;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+  * Reads and writes the same JSON as the bean based serializer, but one
+  * token at a time, building metadata objects directly.  Entries with
+  * keys rejected by the filter are skipped without being built.  Single
+  * files and keys are small, and still go through the beans.  Given
+  * buffers, numeric arrays are written as a reference to a block instead
+  * of a list of values.
+*/
+public class StreamingJsonDatasetSerializer implements DatasetSerializer {
+
+	private DatasetSerializer m_beanSerializer = new BeanBasedDatasetSerializer(new JsonDatasetBeanSerializer());
+
+	public void serializeDataset(Dataset dataset, Writer writer) throws IOException {
+		serializeDataset(dataset, writer, null);
+	}
+
+	public void serializeDataset(Dataset dataset, Writer writer, MetadataBuffers buffers) throws IOException {
+		JsonWriter json = new JsonWriter(writer);
+		json.setIndent("  ");
+		json.beginObject();
+		json.name("metadata").beginArray();
+		for ( DataKey key : sort(dataset.getAllMetadataKeys()) ) {
+			json.beginObject();
+			json.name("key");
+			writeKey(json, key);
+			json.name("metadata");
+			writeEntry(json, dataset.getMetadata(key), buffers);
+			json.endObject();
+		}
+		json.endArray();
+		json.name("files").beginArray();
+		for ( DataKey key : sort(dataset.getAllFileKeys()) ) {
+			json.beginObject();
+			json.name("key");
+			writeKey(json, key);
+			json.name("file").beginObject();
+			String contentType = dataset.getFile(key).getContentType();
+			if ( contentType!=null ) {
+				json.name("contentType").value(contentType);
+			}
+			json.endObject();
+			json.endObject();
+		}
+		json.endArray();
+		json.endObject();
+		json.flush();
+	}
+
+	private List<DataKey> sort(Iterable<DataKey> keys) {
+		List<DataKey> sorted = new ArrayList<DataKey>();
+		for ( DataKey key : keys ) {
+			sorted.add(key);
+		}
+		Collections.sort(sorted);
+		return sorted;
+	}
+
+	private void writeKey(JsonWriter json, DataKey key) throws IOException {
+		List<DataKeyDimension> dims = new ArrayList<DataKeyDimension>(key.getDimensions());
+		Collections.sort(dims);
+		json.beginObject();
+		json.name("elements").beginArray();
+		for ( DataKeyDimension dim : dims ) {
+			DataKeyElement element = key.getElement(dim);
+			json.beginObject();
+			json.name("identifier").value(element.getIdentifier());
+			json.name("dimension").value(dim.getName());
+			json.endObject();
+		}
+		json.endArray();
+		json.endObject();
+	}
+
+	// type goes first so readers can build the element as they go
+	private void writeEntry(JsonWriter json, MetadataElement element, MetadataBuffers buffers) throws IOException {
+		json.beginObject();
+		json.name("elementType").value(element.getMetadataElementType().name());
+		json.name("element");
+		writeElement(json, element, buffers);
+		json.endObject();
+	}
+
+	private void writeElement(JsonWriter json, MetadataElement element, MetadataBuffers buffers) throws IOException {
+		json.beginObject();
+		switch ( element.getMetadataElementType() ) {
+			case FIELD :
+				MetadataField field = (MetadataField) element;
+				json.name("value").value(field.getValue().toString());
+				json.name("primitiveType").value(field.getType().name());
+				break;
+			case ARRAY :
+				MetadataArray array = (MetadataArray) element;
+				if ( buffers!=null && MetadataBuffers.isBufferable(array.getType()) ) {
+					json.name("buffer").value(buffers.addArray(array));
+				} else {
+					json.name("values").beginArray();
+					for ( int i=0; i<array.size(); i++ ) {
+						json.value(array.getValueAsString(i));
+					}
+					json.endArray();
+				}
+				json.name("primitiveType").value(array.getType().name());
+				break;
+			case LIST :
+				json.name("entries").beginArray();
+				for ( MetadataElement child : ((MetadataList) element).getList() ) {
+					writeEntry(json, child, buffers);
+				}
+				json.endArray();
+				break;
+			case MAP :
+				Map<String,MetadataElement> map = ((MetadataMap) element).getMap();
+				List<String> names = new ArrayList<String>(map.keySet());
+				Collections.sort(names);
+				json.name("entries").beginObject();
+				for ( String name : names ) {
+					json.name(name);
+					writeEntry(json, map.get(name), buffers);
+				}
+				json.endObject();
+				break;
+			case KEY :
+				json.name("key");
+				writeKey(json, ((MetadataKey) element).getKey());
+				break;
+			default :
+				throw new IllegalArgumentException(String.format("Unsupported metadata element type [%s]", element.getMetadataElementType()));
+		}
+		json.endObject();
+	}
+
+	/**
+	  * Metadata entries are copied through token by token, so nothing more
+	  * than one token is held in memory.  Keys are sorted within each part
+	  * but not across parts.
+	*/
+	public void concatenateMetadata(List<DataFileSource> parts, Writer writer) throws IOException {
+		JsonWriter json = new JsonWriter(writer);
+		json.setIndent("  ");
+		json.beginObject();
+		json.name("metadata").beginArray();
+		for ( DataFileSource part : parts ) {
+			JsonReader in = new JsonReader(new InputStreamReader(part.getFileInputStream()));
+			try {
+				copyMetadata(in, json);
+			} finally {
+				in.close();
+			}
+		}
+		json.endArray();
+		json.name("files").beginArray().endArray();
+		json.endObject();
+		json.flush();
+	}
+
+	private void copyMetadata(JsonReader in, JsonWriter out) throws IOException {
+		in.beginObject();
+		while ( in.hasNext() ) {
+			String name = in.nextName();
+			if ( name.equals("metadata") && in.peek()!=JsonToken.NULL ) {
+				in.beginArray();
+				while ( in.hasNext() ) {
+					copyValue(in, out);
+				}
+				in.endArray();
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+	}
+
+	private void copyValue(JsonReader in, JsonWriter out) throws IOException {
+		switch ( in.peek() ) {
+			case BEGIN_ARRAY :
+				in.beginArray();
+				out.beginArray();
+				while ( in.hasNext() ) {
+					copyValue(in, out);
+				}
+				in.endArray();
+				out.endArray();
+				break;
+			case BEGIN_OBJECT :
+				in.beginObject();
+				out.beginObject();
+				while ( in.hasNext() ) {
+					out.name(in.nextName());
+					copyValue(in, out);
+				}
+				in.endObject();
+				out.endObject();
+				break;
+			case STRING :
+				out.value(in.nextString());
+				break;
+			case NUMBER :
+				out.value(new BigDecimal(in.nextString()));
+				break;
+			case BOOLEAN :
+				out.value(in.nextBoolean());
+				break;
+			case NULL :
+				in.nextNull();
+				out.nullValue();
+				break;
+			default :
+				throw new IOException(String.format("Unexpected JSON token [%s]", in.peek()));
+		}
+	}
+
+	public Dataset deserializeDataset(Reader reader) throws IOException {
+		return deserializeDataset(reader, IdentityDataKeyFilter.INSTANCE);
+	}
+
+	public Dataset deserializeDataset(Reader reader, MetadataBuffers buffers) throws IOException {
+		return deserializeDataset(reader, IdentityDataKeyFilter.INSTANCE, buffers);
+	}
+
+	public Dataset deserializeDataset(Reader reader, DataKeyFilter filter) throws IOException {
+		return deserializeDataset(reader, filter, null);
+	}
+
+	private Dataset deserializeDataset(Reader reader, DataKeyFilter filter, MetadataBuffers buffers) throws IOException {
+		JsonReader json = new JsonReader(reader);
+		Dataset dataset = new Dataset();
+		json.beginObject();
+		while ( json.hasNext() ) {
+			String name = json.nextName();
+			if ( name.equals("metadata") && json.peek()!=JsonToken.NULL ) {
+				readMetadata(json, dataset, filter, buffers);
+			} else if ( name.equals("files") && json.peek()!=JsonToken.NULL ) {
+				readFiles(json, dataset, filter);
+			} else {
+				json.skipValue();
+			}
+		}
+		json.endObject();
+		return dataset;
+	}
+
+	private void readMetadata(JsonReader json, Dataset dataset, DataKeyFilter filter, MetadataBuffers buffers) throws IOException {
+		json.beginArray();
+		while ( json.hasNext() ) {
+			DataKey key = null;
+			MetadataElement element = null;
+			json.beginObject();
+			while ( json.hasNext() ) {
+				String name = json.nextName();
+				if ( name.equals("key") ) {
+					key = readKey(json);
+				} else if ( name.equals("metadata") && ( key==null || filter.filter(key) ) ) {
+					element = readEntry(json, buffers);
+				} else {
+					json.skipValue();
+				}
+			}
+			json.endObject();
+			if ( element!=null && filter.filter(key) ) {
+				dataset.addMetadata(key, (MetadataMap) element);
+			}
+		}
+		json.endArray();
+	}
+
+	private void readFiles(JsonReader json, Dataset dataset, DataKeyFilter filter) throws IOException {
+		json.beginArray();
+		while ( json.hasNext() ) {
+			DataKey key = null;
+			String contentType = null;
+			json.beginObject();
+			while ( json.hasNext() ) {
+				String name = json.nextName();
+				if ( name.equals("key") ) {
+					key = readKey(json);
+				} else if ( name.equals("file") ) {
+					contentType = readContentType(json);
+				} else {
+					json.skipValue();
+				}
+			}
+			json.endObject();
+			if ( filter.filter(key) ) {
+				dataset.addFile(key, new DataFile(contentType));
+			}
+		}
+		json.endArray();
+	}
+
+	private String readContentType(JsonReader json) throws IOException {
+		String contentType = null;
+		json.beginObject();
+		while ( json.hasNext() ) {
+			if ( json.nextName().equals("contentType") ) {
+				contentType = readString(json);
+			} else {
+				json.skipValue();
+			}
+		}
+		json.endObject();
+		return contentType;
+	}
+
+	private DataKey readKey(JsonReader json) throws IOException {
+		List<DataKeyElement> elements = new ArrayList<DataKeyElement>();
+		json.beginObject();
+		while ( json.hasNext() ) {
+			if ( json.nextName().equals("elements") ) {
+				json.beginArray();
+				while ( json.hasNext() ) {
+					elements.add(readKeyElement(json));
+				}
+				json.endArray();
+			} else {
+				json.skipValue();
+			}
+		}
+		json.endObject();
+		return DataKeyFactory.newKey(elements);
+	}
+
+	private DataKeyElement readKeyElement(JsonReader json) throws IOException {
+		String identifier = null;
+		String dimension = null;
+		json.beginObject();
+		while ( json.hasNext() ) {
+			String name = json.nextName();
+			if ( name.equals("identifier") ) {
+				identifier = readString(json);
+			} else if ( name.equals("dimension") ) {
+				dimension = readString(json);
+			} else {
+				json.skipValue();
+			}
+		}
+		json.endObject();
+		return new DataKeyElement(identifier, new DataKeyDimension(dimension));
+	}
+
+	private MetadataElement readEntry(JsonReader json, MetadataBuffers buffers) throws IOException {
+		MetadataElementType type = null;
+		MetadataElement element = null;
+		JsonElement deferred = null;
+		json.beginObject();
+		while ( json.hasNext() ) {
+			String name = json.nextName();
+			if ( name.equals("elementType") ) {
+				type = MetadataElementType.valueOf(json.nextString());
+			} else if ( name.equals("element") && type!=null ) {
+				element = readElement(json, type, buffers);
+			} else if ( name.equals("element") ) {
+				// written by the bean serializer, with the type after the element
+				deferred = new JsonParser().parse(json);
+			} else {
+				json.skipValue();
+			}
+		}
+		json.endObject();
+		if ( deferred!=null ) {
+			element = fromTree(deferred, type);
+		}
+		return element;
+	}
+
+	private MetadataElement fromTree(JsonElement tree, MetadataElementType type) {
+		GsonBuilder builder = new GsonBuilder();
+		builder.registerTypeAdapter( MetadataEntryBean.class, new MetadataEntryBeanDeserializer());
+		Gson gson = builder.create();
+		MetadataElementBean bean = gson.fromJson(tree, MetadataBeans.getBeanClass(type));
+		return bean.toMetadataElement();
+	}
+
+	private MetadataElement readElement(JsonReader json, MetadataElementType type, MetadataBuffers buffers) throws IOException {
+		String value = null;
+		List<String> values = null;
+		Integer buffer = null;
+		PrimitiveType primitiveType = null;
+		List<MetadataElement> list = null;
+		Map<String,MetadataElement> map = null;
+		DataKey key = null;
+		json.beginObject();
+		while ( json.hasNext() ) {
+			String name = json.nextName();
+			if ( name.equals("value") ) {
+				value = readString(json);
+			} else if ( name.equals("values") ) {
+				values = new ArrayList<String>();
+				json.beginArray();
+				while ( json.hasNext() ) {
+					values.add(readString(json));
+				}
+				json.endArray();
+			} else if ( name.equals("buffer") ) {
+				buffer = json.nextInt();
+			} else if ( name.equals("primitiveType") ) {
+				primitiveType = PrimitiveType.valueOf(json.nextString());
+			} else if ( name.equals("entries") && type==MetadataElementType.LIST ) {
+				list = new ArrayList<MetadataElement>();
+				json.beginArray();
+				while ( json.hasNext() ) {
+					list.add(readEntry(json, buffers));
+				}
+				json.endArray();
+			} else if ( name.equals("entries") && type==MetadataElementType.MAP ) {
+				map = new HashMap<String,MetadataElement>();
+				json.beginObject();
+				while ( json.hasNext() ) {
+					String entryName = json.nextName();
+					map.put(entryName, readEntry(json, buffers));
+				}
+				json.endObject();
+			} else if ( name.equals("key") ) {
+				key = readKey(json);
+			} else {
+				json.skipValue();
+			}
+		}
+		json.endObject();
+		if ( type==MetadataElementType.ARRAY && buffer!=null ) {
+			if ( buffers==null ) {
+				throw new IOException(String.format("Metadata array refers to buffer %d but no buffers were passed", buffer));
+			}
+			return buffers.getArray(buffer, primitiveType);
+		}
+		switch ( type ) {
+			case FIELD : return PrimitiveFactory.parseField(value, primitiveType);
+			case ARRAY : return PrimitiveFactory.parseArray(values, primitiveType);
+			case LIST : return new MetadataList(list);
+			case MAP : return new MetadataMap(map);
+			case KEY : return new MetadataKey(key);
+			default : throw new IllegalArgumentException(String.format("Unsupported metadata element type [%s]", type));
+		}
+	}
+
+	private String readString(JsonReader json) throws IOException {
+		if ( json.peek()==JsonToken.NULL ) {
+			json.nextNull();
+			return null;
+		}
+		return json.nextString();
+	}
+
+	public String serializeDataFile(DataFile file) {
+		return m_beanSerializer.serializeDataFile(file);
+	}
+
+	public DataFile deserializeDataFile(String serializedFile) {
+		return m_beanSerializer.deserializeDataFile(serializedFile);
+	}
+
+	public String serializeDataKey(DataKey key) {
+		return m_beanSerializer.serializeDataKey(key);
+	}
+
+	public DataKey deserializeDataKey(String serializedKey) {
+		return m_beanSerializer.deserializeDataKey(serializedKey);
+	}
+
+	public String getContentType() {
+		return "application/json";
+	}
+
+}
@@ -16,6 +16,9 @@
 
 package com.google.mr4c.sources;
 
+import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.keys.DataKeyFilter;
+
 import java.io.IOException;
 
 public abstract class AbstractDatasetSource implements DatasetSource {
@@ -30,6 +33,15 @@ public abstract class AbstractDatasetSource implements DatasetSource {
 		return m_queryOnly;
 	}
 
+	/**
+	  * Default reads the whole dataset and slices it.  Override if the
+	  * source can do better.
+	*/
+	public Dataset readDataset(DataKeyFilter filter) throws IOException {
+		Dataset dataset = readDataset();
+		return dataset==null ? null : dataset.slice(filter);
+	}
+
 	public void copyToFinal() throws IOException {}
 
 	public void ensureExists() throws IOException {}
@@ -20,7 +20,10 @@ import com.google.mr4c.content.ContentFactories;
 import com.google.mr4c.content.ContentTypes;
 import com.google.mr4c.dataset.Dataset;
 import com.google.mr4c.dataset.DataFile;
+import com.google.mr4c.keys.BasicDataKeyFilter;
 import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.keys.DataKeyFilter;
+import com.google.mr4c.keys.IdentityDataKeyFilter;
 import com.google.mr4c.serialize.ConfigSerializer;
 import com.google.mr4c.serialize.DatasetSerializer;
 import com.google.mr4c.serialize.SerializerFactories;
@@ -37,6 +40,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 
@@ -54,6 +58,10 @@ public abstract class AbstractFilesDatasetSource extends AbstractDatasetSource {
 	protected String m_serFileName; 
 	protected String m_confFileName; 
 
+	public FilesDatasetSourceConfig getConfig() {
+		return m_config;
+	}
+
 	protected AbstractFilesDatasetSource(Logger log) {
 		this(log, null);
 	}
@@ -73,40 +81,50 @@ public abstract class AbstractFilesDatasetSource extends AbstractDatasetSource {
 	}
 	
 	public Dataset readDataset() throws IOException {
+		return readDataset(IdentityDataKeyFilter.INSTANCE);
+	}
+
+	/**
+	  * If the filter is a BasicDataKeyFilter, files are resolved by name from its keys rather than by listing the whole source
+	*/
+	public Dataset readDataset(DataKeyFilter filter) throws IOException {
 		m_log.info("Begin reading dataset");
 		List<String> names = getAllMetadataFileNames();
 
-		Dataset dataset = tryReadingDatasetFromFile(names).toMetadataOnly(); // we are going to ignore any DataFiles in the dataset file
+		Dataset dataset = tryReadingDatasetFromFile(names, filter).toMetadataOnly(); // we are going to ignore any DataFiles in the dataset file
 
 		if ( isQueryOnly() ) {
 			m_log.info("Dataset is configured as query-only; not going to find all files");
 		} else {
 			FilesDatasetSourceConfig config = selectConfig(names);
-			findFiles(dataset, config);
-			addFileSources(dataset, config);
+			if ( filter instanceof BasicDataKeyFilter ) {
+				resolveFiles(dataset, config, (BasicDataKeyFilter) filter);
+			} else {
+				findFiles(dataset, config, filter);
+			}
 		}
 
 		m_log.info("Done reading dataset");
 		return dataset;
 	}
 
-	private Dataset tryReadingDatasetFromFile(List<String> names) throws IOException {
+	private Dataset tryReadingDatasetFromFile(List<String> names, DataKeyFilter filter) throws IOException {
 		m_log.info("Looking for dataset file named [{}]", m_serFileName);
 		if ( names.contains(m_serFileName) ) {
-			return readDatasetFromFile();
+			return readDatasetFromFile(filter);
 		} else {
 			m_log.warn("No dataset file named [{}] found", m_serFileName);
 			return new Dataset();
 		}
 	}
 
-	private Dataset readDatasetFromFile() throws IOException {
+	private Dataset readDatasetFromFile(DataKeyFilter filter) throws IOException {
 
 		DataFileSource src = getMetadataFileSource(m_serFileName);
 		m_log.info("Reading dataset file from [{}]", src.getDescription());
 		Reader reader = new InputStreamReader(src.getFileInputStream());
 		try {
-			return m_serializer.deserializeDataset(reader);
+			return m_serializer.deserializeDataset(reader, filter);
 		} finally {
 			reader.close();
 		}
@@ -150,19 +168,7 @@ public abstract class AbstractFilesDatasetSource extends AbstractDatasetSource {
 		}
 	}
 
-	private Map<DataKey,String> makeFileNameMap(FilesDatasetSourceConfig config) throws IOException {
-		DataKeyFileMapper mapper = config.getKeyFileMapper();
-		Map<DataKey,String> nameMap = new HashMap<DataKey,String>();
-		for ( String name : getAllDataFileNames() ) {
-			if ( mapper.canMapName(name) ) {
-				DataKey key = mapper.getKey(name);
-				nameMap.put(key,name);
-			}
-		}
-		return nameMap;
-	}
-			
-	private void findFiles(Dataset dataset, FilesDatasetSourceConfig config) throws IOException {
+	private void findFiles(Dataset dataset, FilesDatasetSourceConfig config, DataKeyFilter filter) throws IOException {
 		List<String> names = new ArrayList<String>(getAllDataFileNames());
 		DataKeyFileMapper mapper = config.getKeyFileMapper();
 		for ( String name : names ) {
@@ -171,22 +177,62 @@ public abstract class AbstractFilesDatasetSource extends AbstractDatasetSource {
 				continue;
 			}
 			DataKey key = mapper.getKey(name);
-			String contentType = ContentTypes.getContentTypeForName(name);
-			DataFile file = new DataFile(contentType);
-			dataset.addFile(key,file);
+			if ( filter.filter(key) ) {
+				addFile(dataset, key, name, getDataFileSource(name));
+			}
 		}
 	}
 
-	private void addFileSources(Dataset dataset, FilesDatasetSourceConfig config) throws IOException {
-		Map<DataKey,String> nameMap = makeFileNameMap(config);
-		for ( DataKey key : dataset.getAllFileKeys() ) {
-			DataFile file = dataset.getFile(key);
+	// looks up just the requested keys, instead of listing all the files
+	private void resolveFiles(Dataset dataset, FilesDatasetSourceConfig config, BasicDataKeyFilter filter) throws IOException {
+		Set<DataKey> keys = filter.getKeys();
+		m_log.info("Resolving files for {} keys", keys.size());
+		DataKeyFileMapper mapper = config.getKeyFileMapper();
+		Map<DataKey,String> nameMap = new HashMap<DataKey,String>();
+		for ( DataKey key : keys ) {
+			if ( !mapper.canMapKey(key) ) {
+				continue; // key from some other dataset, or metadata only
+			}
+			try {
+				nameMap.put(key, mapper.getFileName(key));
+			} catch ( IllegalStateException ise ) {
+				// mapper can parse names but can't format them; have to list
+				m_log.info("Key file mapper can't generate file names; finding files by listing instead");
+				findFiles(dataset, config, filter);
+				return;
+			}
+		}
+		Map<String,DataFileSource> srcMap = getDataFileSourcesIfExist(nameMap.values());
+		for ( DataKey key : nameMap.keySet() ) {
 			String name = nameMap.get(key);
-			DataFileSource src = getDataFileSource(name);
-			file.setFileSource(src);
+			DataFileSource src = srcMap.get(name);
+			if ( src!=null ) {
+				addFile(dataset, key, name, src);
+			}
 		}
 	}
 
+	/**
+	  * Sources for those of the named data files that exist, by name.
+	  * Checks each name; subclasses may do better.
+	*/
+	protected Map<String,DataFileSource> getDataFileSourcesIfExist(Collection<String> names) throws IOException {
+		Map<String,DataFileSource> srcMap = new HashMap<String,DataFileSource>();
+		for ( String name : names ) {
+			DataFileSource src = getDataFileSourceIfExists(name);
+			if ( src!=null ) {
+				srcMap.put(name, src);
+			}
+		}
+		return srcMap;
+	}
+
+	private void addFile(Dataset dataset, DataKey key, String name, DataFileSource src) {
+		String contentType = ContentTypes.getContentTypeForName(name);
+		DataFile file = new DataFile(src, contentType);
+		dataset.addFile(key,file);
+	}
+
 	protected void writeDataFiles(Dataset dataset) throws IOException {
 		assertHaveConfig();
 		ensureExists();
@@ -224,6 +270,22 @@ public abstract class AbstractFilesDatasetSource extends AbstractDatasetSource {
 		}
 	}
 
+	/**
+	  * Writes the dataset file by concatenating serialized metadata parts,
+	  * without building the whole dataset
+	*/
+	protected void writeDatasetToFile(List<DataFileSource> metadataParts) throws IOException {
+		assertHaveConfig();
+		DataFileSink sink = getMetadataFileSink(m_serFileName);
+		m_log.info("Writing dataset file from {} parts to [{}]", metadataParts.size(), sink.getDescription());
+		Writer writer  = new OutputStreamWriter(sink.getFileOutputStream());
+		try {
+			m_serializer.concatenateMetadata(metadataParts, writer);
+		} finally {
+			writer.close();
+		}
+	}
+
 	protected void writeConfigToFile() throws IOException {
 		assertHaveConfig();
 		if ( m_config.isSelfConfig() && m_config.getDirectoryConfig()!=null ) {
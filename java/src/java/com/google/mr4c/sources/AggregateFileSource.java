@@ -48,6 +48,14 @@ public class AggregateFileSource implements FileSource {
 		return names;
 	}
 
+	public List<String> getFileNames(String dir) throws IOException {
+		List<String> names = new ArrayList<String>();
+		for ( FileSource src : m_sources ) {
+			names.addAll(src.getFileNames(dir));
+		}
+		return names;
+	}
+
 	public DataFileSource getFileSource(String fileName) throws IOException {
 		DataFileSource src = getFileSourceOnlyIfExists(fileName);
 		if ( src==null ) {
@@ -29,7 +29,7 @@ import java.util.TreeMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class ArchiveDatasetSource extends AbstractFilesDatasetSource {
+public class ArchiveDatasetSource extends AbstractFilesDatasetSource implements MergeableDatasetSource {
 
 	protected static final Logger s_log = MR4CLogging.getLogger(ArchiveDatasetSource.class);
 
@@ -64,6 +64,34 @@ public class ArchiveDatasetSource extends AbstractFilesDatasetSource {
 		s_log.info("Done writing dataset");
 	}
 
+	public boolean canWriteParts() {
+		return m_archSrc instanceof ShardedArchiveSource;
+	}
+
+	/**
+	  * Writes the files as one shard of the archive.  The shard is the one
+	  * the archive source was configured with, and must be distinct for each
+	  * part.
+	*/
+	public void writePart(Dataset dataset, String partName) throws IOException {
+		s_log.info("Begin writing part [{}] of dataset", partName);
+		m_archSrc.startWrite();
+		try {
+			writeDataFiles(dataset);
+		} finally {
+			m_archSrc.finishWrite();
+		}
+		s_log.info("Done writing part [{}] of dataset", partName);
+	}
+
+	public void mergeParts(List<DataFileSource> metadataParts) throws IOException {
+		s_log.info("Begin merging {} parts of dataset", metadataParts.size());
+		((ShardedArchiveSource) m_archSrc).mergeShards();
+		writeDatasetToFile(metadataParts);
+		writeConfigToFile();
+		s_log.info("Done merging parts of dataset");
+	}
+
 	public String getDescription() {
 		return String.format("archive dataset source stored by [%s]", m_archSrc.getDescription());
 	}
@@ -0,0 +1,254 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.sources;
+
+import com.google.mr4c.config.category.Category;
+import com.google.mr4c.config.category.CoreConfig;
+import com.google.mr4c.config.category.MR4CConfig;
+import com.google.mr4c.stats.MR4CStats;
+import com.google.mr4c.stats.StatsClient;
+import com.google.mr4c.util.MR4CLogging;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+import org.slf4j.Logger;
+
+/**
+  * Process wide cache of file content, bounded by the total number of
+  * bytes and evicting the least recently used content first.  Content is
+  * identified by URI, offset and length; sources reading a whole file use
+  * offset 0 and length -1.  The cached arrays are shared, so callers must
+  * not modify them; toFileSource() hands out copies.
+*/
+public class ContentCache {
+
+	protected static final Logger s_log = MR4CLogging.getLogger(ContentCache.class);
+
+	public static final String HIT_STAT = "mr4c.content.cache.hit";
+	public static final String MISS_STAT = "mr4c.content.cache.miss";
+	public static final String EVICTION_STAT = "mr4c.content.cache.eviction";
+
+	private static ContentCache s_instance;
+
+	public interface Loader {
+		byte[] load() throws IOException;
+	}
+
+	private long m_maxBytes;
+	private long m_bytes;
+	private StatsClient m_stats;
+	private long m_hits;
+	private long m_misses;
+	private long m_evictions;
+	private LinkedHashMap<Key,byte[]> m_entries = new LinkedHashMap<Key,byte[]>(16, 0.75f, true);
+
+	/**
+	  * Size comes from the core config property content.cache.mb.  The cache
+	  * is disabled if the property isn't set.
+	*/
+	public static synchronized ContentCache getInstance() {
+		if ( s_instance==null ) {
+			String mb = MR4CConfig.getDefaultInstance().getCategory(Category.CORE).getProperty(CoreConfig.PROP_CONTENT_CACHE_MB);
+			long maxBytes = StringUtils.isEmpty(mb) ? 0 : Long.parseLong(mb) * 1024 * 1024;
+			s_log.info("Content cache size is {} bytes", maxBytes);
+			s_instance = new ContentCache(maxBytes, MR4CStats.getClient());
+		}
+		return s_instance;
+	}
+
+	public ContentCache(long maxBytes, StatsClient stats) {
+		m_maxBytes = maxBytes;
+		m_stats = stats;
+	}
+
+	public boolean isEnabled() {
+		return m_maxBytes>0;
+	}
+
+	/**
+	  * Returns the cached content, or loads and caches it.  Content larger
+	  * than the whole cache is returned without being cached.
+	*/
+	public byte[] get(String uri, long offset, long length, Loader loader) throws IOException {
+		if ( !isEnabled() ) {
+			return loader.load();
+		}
+		Key key = new Key(uri, offset, length);
+		byte[] bytes = lookup(key);
+		if ( bytes!=null ) {
+			m_stats.increment(HIT_STAT);
+			return bytes;
+		}
+		m_stats.increment(MISS_STAT);
+		bytes = loader.load();
+		int evicted = put(key, bytes);
+		if ( evicted>0 ) {
+			m_stats.increment(EVICTION_STAT, evicted);
+		}
+		return bytes;
+	}
+
+	/**
+	  * Wraps cached content for reading.  getFileBytes() returns a copy,
+	  * since the array may be shared by every reader in the process.
+	*/
+	public static DataFileSource toFileSource(byte[] bytes) {
+		return new BytesDataFileSource(bytes) {
+			public synchronized byte[] getFileBytes() throws IOException {
+				return super.getFileBytes().clone();
+			}
+		};
+	}
+
+	/**
+	  * Returns null if not cached.  Doesn't count as a hit or a miss.
+	*/
+	public synchronized byte[] getIfPresent(String uri, long offset, long length) {
+		return m_entries.get(new Key(uri, offset, length));
+	}
+
+	private synchronized byte[] lookup(Key key) {
+		byte[] bytes = m_entries.get(key);
+		if ( bytes==null ) {
+			m_misses++;
+		} else {
+			m_hits++;
+		}
+		return bytes;
+	}
+
+	private synchronized int put(Key key, byte[] bytes) {
+		if ( bytes.length>m_maxBytes ) {
+			return 0;
+		}
+		byte[] old = m_entries.put(key, bytes);
+		if ( old!=null ) {
+			m_bytes -= old.length;
+		}
+		m_bytes += bytes.length;
+		int evicted = 0;
+		Iterator<Map.Entry<Key,byte[]>> iter = m_entries.entrySet().iterator();
+		while ( m_bytes>m_maxBytes ) {
+			Map.Entry<Key,byte[]> entry = iter.next();
+			m_bytes -= entry.getValue().length;
+			iter.remove();
+			evicted++;
+		}
+		m_evictions += evicted;
+		return evicted;
+	}
+
+	/**
+	  * Removes the content for one range of a URI
+	*/
+	public synchronized void invalidate(String uri, long offset, long length) {
+		byte[] old = m_entries.remove(new Key(uri, offset, length));
+		if ( old!=null ) {
+			m_bytes -= old.length;
+		}
+	}
+
+	/**
+	  * Removes all the content cached for a URI
+	*/
+	public synchronized void invalidate(String uri) {
+		Iterator<Map.Entry<Key,byte[]>> iter = m_entries.entrySet().iterator();
+		while ( iter.hasNext() ) {
+			Map.Entry<Key,byte[]> entry = iter.next();
+			if ( entry.getKey().m_uri.equals(uri) ) {
+				m_bytes -= entry.getValue().length;
+				iter.remove();
+			}
+		}
+	}
+
+	/**
+	  * Removes all the content cached for a location and anything under it,
+	  * as when a directory is renamed or cleared
+	*/
+	public synchronized void invalidateUnder(String location) {
+		String dir = StringUtils.removeEnd(location, "/");
+		Iterator<Map.Entry<Key,byte[]>> iter = m_entries.entrySet().iterator();
+		while ( iter.hasNext() ) {
+			Map.Entry<Key,byte[]> entry = iter.next();
+			String uri = entry.getKey().m_uri;
+			if ( uri.equals(dir) || uri.startsWith(dir + "/") ) {
+				m_bytes -= entry.getValue().length;
+				iter.remove();
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		m_entries.clear();
+		m_bytes = 0;
+	}
+
+	public long getMaxSize() {
+		return m_maxBytes;
+	}
+
+	public synchronized long getSize() {
+		return m_bytes;
+	}
+
+	public synchronized long getHits() {
+		return m_hits;
+	}
+
+	public synchronized long getMisses() {
+		return m_misses;
+	}
+
+	public synchronized long getEvictions() {
+		return m_evictions;
+	}
+
+	private static class Key {
+
+		private String m_uri;
+		private long m_offset;
+		private long m_length;
+		private int m_hash;
+
+		private Key(String uri, long offset, long length) {
+			m_uri = uri;
+			m_offset = offset;
+			m_length = length;
+			m_hash = 31 * (31 * uri.hashCode() + (int)(offset ^ (offset >>> 32))) + (int)(length ^ (length >>> 32));
+		}
+
+		public boolean equals(Object obj) {
+			if ( this==obj ) return true;
+			if ( !(obj instanceof Key) ) return false;
+			Key key = (Key) obj;
+			return m_offset==key.m_offset &&
+				m_length==key.m_length &&
+				m_uri.equals(key.m_uri);
+		}
+
+		public int hashCode() {
+			return m_hash;
+		}
+	}
+
+}
@@ -19,6 +19,7 @@ package com.google.mr4c.sources;
 import com.google.mr4c.dataset.DataFileFinder;
 import com.google.mr4c.dataset.Dataset;
 import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.keys.DataKeyFilter;
 
 import java.io.IOException;
 
@@ -30,6 +31,12 @@ public interface DatasetSource extends DataFileFinder {
 
 	Dataset readDataset() throws IOException;
 
+	/**
+	  * Reads only the part of the dataset with keys that pass the filter.
+	  * Sources should avoid loading anything outside the filter where they can.
+	*/
+	Dataset readDataset(DataKeyFilter filter) throws IOException;
+
 	// assumes ALL
 	void writeDataset(Dataset dataset) throws IOException;
 
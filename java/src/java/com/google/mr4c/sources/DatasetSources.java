@@ -17,6 +17,10 @@
 package com.google.mr4c.sources;
 
 import com.google.mr4c.config.ConfigDescriptor;
+import com.google.mr4c.config.category.Category;
+import com.google.mr4c.config.category.CategoryConfig;
+import com.google.mr4c.config.category.CoreConfig;
+import com.google.mr4c.config.category.MR4CConfig;
 import com.google.mr4c.config.execution.DatasetConfig;
 import com.google.mr4c.config.execution.LocationsConfig;
 import com.google.mr4c.config.execution.MapConfig;
@@ -34,6 +38,7 @@ import java.net.URI;
 import java.util.Map;
 import java.util.HashMap;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 
 import org.slf4j.Logger;
@@ -87,16 +92,25 @@ public abstract class DatasetSources {
 
 	}
 
+	/**
+	  * With a stage location, output is written there first and committed
+	  * to the actual location by rename where the file systems allow
+	*/
 	private static class DirectoryFactory implements Factory {
 
 		public DatasetSource create(DatasetConfig config) throws IOException {
 			FileSource fileSrc = extractFileSource(config);
-			if ( config.getSourceConfig()==null ) {
-				return new FilesDatasetSource(fileSrc);
-			} else {
-				FilesDatasetSourceConfig srcConfig =  FilesDatasetSourceConfig.load(config.getSourceConfig());
-				return new FilesDatasetSource(srcConfig, fileSrc);
+			FilesDatasetSourceConfig srcConfig = config.getSourceConfig()==null ?
+				null :
+				FilesDatasetSourceConfig.load(config.getSourceConfig());
+			DatasetSource actualSrc = new FilesDatasetSource(srcConfig, fileSrc);
+			if ( config.getStageLocation()==null ) {
+				return actualSrc;
 			}
+
+			FileSource stageFileSrc = FileSources.getFileSource(config.getStageLocation());
+			DatasetSource stageSrc = new FilesDatasetSource(srcConfig, stageFileSrc);
+			return new StagedDatasetSource(actualSrc, stageSrc);
 		}
 
 
@@ -144,6 +158,31 @@ public abstract class DatasetSources {
 	}
 	static { s_factories.put("mapfile", new MapFileFactory()); }
 
+	/**
+	  * Each writer writes the shard named by the core config property
+	  * pack.shard, so several tasks can write one archive
+	*/
+	private static class PackFileFactory implements Factory {
+
+		public DatasetSource create(DatasetConfig config) throws IOException {
+			Path path  = ContentFactories.toPath(config.getLocation());
+			CategoryConfig coreConf = MR4CConfig.getDefaultInstance().getCategory(Category.CORE);
+			String shard = coreConf.getProperty(CoreConfig.PROP_PACK_SHARD, PackFileSource.DEFAULT_SHARD);
+			ArchiveSource actualFileSrc = new PackFileSource(path.getFileSystem(new Configuration()), path, shard);
+			FilesDatasetSourceConfig srcConfig =  FilesDatasetSourceConfig.load(config.getSourceConfig());
+			DatasetSource actualSrc = new ArchiveDatasetSource(srcConfig, actualFileSrc);
+			if ( config.getStageLocation()==null ) {
+				return actualSrc;
+			}
+
+			FileSource stageFileSrc = FileSources.getFileSource(config.getStageLocation());
+			DatasetSource stageSrc = new FilesDatasetSource(srcConfig, stageFileSrc);
+			return new StagedDatasetSource(actualSrc, stageSrc);
+		}
+
+	}
+	static { s_factories.put("packfile", new PackFileFactory()); }
+
 	private static class MetafilesFactory implements Factory {
 
 		public DatasetSource create(DatasetConfig config) throws IOException {
@@ -61,6 +61,18 @@ public class DiskFileSource implements FileSource {
 		return names;
 	}
 
+	public List<String> getFileNames(String dir) throws IOException {
+		List<String> names = new ArrayList<String>();
+		String[] children = toFile(dir).list();
+		if ( children==null ) {
+			return names;
+		}
+		for ( String child : children ) {
+			names.add(SourceUtils.toChildName(dir, child));
+		}
+		return names;
+	}
+
 	public DataFileSource getFileSource(String fileName) throws IOException {
 		return new URIDataFileSource(toURI(fileName), fileName, toFile(fileName));
 	}
@@ -79,7 +91,11 @@ public class DiskFileSource implements FileSource {
 		return new URIDataFileSink(toURI(fileName), fileName, toFile(fileName));
 	}
 
-	private File toFile(String fileName) {
+	public File getDirectory() {
+		return m_dir;
+	}
+
+	public File toFile(String fileName) {
 		return new File(m_dir, fileName);
 	}
 
@@ -99,6 +115,7 @@ public class DiskFileSource implements FileSource {
 	}
 
 	public void clear() throws IOException {
+		ContentCache.getInstance().invalidateUnder(toURI(m_dir).toString());
 		clear(m_dir);
 	}
 
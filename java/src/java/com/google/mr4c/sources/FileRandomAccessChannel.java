@@ -0,0 +1,65 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.sources;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+  * Channel over a local file
+*/
+public class FileRandomAccessChannel implements RandomAccessChannel {
+
+	private RandomAccessFile m_raf;
+	private FileChannel m_chan;
+
+	public FileRandomAccessChannel(RandomAccessFile raf) {
+		m_raf = raf;
+		m_chan = raf.getChannel();
+	}
+
+	public int read(ByteBuffer buf) throws IOException {
+		return m_chan.read(buf);
+	}
+
+	public void write(ByteBuffer buf) throws IOException {
+		int size = buf.remaining();
+		long numWritten = m_chan.write(buf);
+		if ( numWritten!=size ) {
+			throw new IOException("Not all bytes written");
+		}
+	}
+
+	public long getPosition() throws IOException {
+		return m_chan.position();
+	}
+
+	public void setPosition(long position) throws IOException {
+		m_chan.position(position);
+	}
+
+	public long getSize() throws IOException {
+		return m_chan.size();
+	}
+
+	public void setSize(long size) throws IOException {
+		m_raf.setLength(size);
+	}
+
+}
@@ -24,6 +24,14 @@ public interface FileSource {
 
 	List<String> getAllFileNames() throws IOException;
 
+	/**
+	  * Names of the files directly in the directory, named as for
+	  * getFileSource(), so one listing can stand in for checking whether
+	  * each file exists.  May include subdirectories too.  Use "" for the
+	  * top directory.  Empty if there is no such directory.
+	*/
+	List<String> getFileNames(String dir) throws IOException;
+
 	DataFileSource getFileSource(String fileName) throws IOException;
 
 	/**
@@ -24,12 +24,16 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class FilesDatasetSource extends AbstractFilesDatasetSource implements DatasetSource {
+public class FilesDatasetSource extends AbstractFilesDatasetSource implements MergeableDatasetSource {
 
 	protected static final Logger s_log = MR4CLogging.getLogger(FilesDatasetSource.class);
 
@@ -48,6 +52,10 @@ public class FilesDatasetSource extends AbstractFilesDatasetSource implements Da
 		m_fileSrc = fileSrc;
 	}
 
+	public FileSource getFileSource() {
+		return m_fileSrc;
+	}
+
 	public void writeDataset(Dataset dataset) throws IOException {
 		writeDataset(dataset, WriteMode.ALL);
 	}
@@ -64,6 +72,22 @@ public class FilesDatasetSource extends AbstractFilesDatasetSource implements Da
 		s_log.info("Done writing dataset");
 	}
 
+	public boolean canWriteParts() {
+		return true;
+	}
+
+	/**
+	  * Nothing to do; data files are written as they are added
+	*/
+	public void writePart(Dataset dataset, String partName) throws IOException {}
+
+	public synchronized void mergeParts(List<DataFileSource> metadataParts) throws IOException {
+		s_log.info("Begin merging {} dataset parts", metadataParts.size());
+		writeDatasetToFile(metadataParts);
+		writeConfigToFile();
+		s_log.info("Done merging dataset parts");
+	}
+
 	public String getDescription() {
 		return String.format("directory dataset source stored by [%s]", m_fileSrc.getDescription());
 	}
@@ -104,6 +128,24 @@ public class FilesDatasetSource extends AbstractFilesDatasetSource implements Da
 		return src;
 	}
 
+	// one listing per directory, rather than checking each name
+	protected Map<String,DataFileSource> getDataFileSourcesIfExist(Collection<String> names) throws IOException {
+		Map<String,Set<String>> dirMap = new HashMap<String,Set<String>>();
+		Map<String,DataFileSource> srcMap = new HashMap<String,DataFileSource>();
+		for ( String name : names ) {
+			String dir = SourceUtils.getDirectoryName(name);
+			Set<String> existing = dirMap.get(dir);
+			if ( existing==null ) {
+				existing = new HashSet<String>(m_fileSrc.getFileNames(dir));
+				dirMap.put(dir, existing);
+			}
+			if ( existing.contains(name) ) {
+				srcMap.put(name, getDataFileSource(name));
+			}
+		}
+		return srcMap;
+	}
+
 	protected DataFileSink getMetadataFileSink(String name) throws IOException {
 		return getDataFileSink(name);
 	}
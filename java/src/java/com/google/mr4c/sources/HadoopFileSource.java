@@ -65,6 +65,23 @@ public abstract class HadoopFileSource implements FileSource {
 	}
 
 
+	public List<String> getFileNames(String dir) throws IOException {
+		List<String> names = new ArrayList<String>();
+		FileStatus[] files;
+		try {
+			files = m_fs.listStatus(dir.isEmpty() ? m_dir : toPath(dir));
+		} catch ( FileNotFoundException fnfe ) {
+			return names;
+		}
+		if ( files==null ) {
+			return names;
+		}
+		for ( FileStatus status : files ) {
+			names.add(SourceUtils.toChildName(dir, status.getPath().getName()));
+		}
+		return names;
+	}
+
 	public DataFileSource getFileSource(String fileName) throws IOException {
 		return new URIDataFileSource(toURI(fileName), fileName);
 	}
@@ -83,7 +100,15 @@ public abstract class HadoopFileSource implements FileSource {
 		return new URIDataFileSink(toURI(fileName), fileName);
 	}
 
-	private Path toPath(String fileName) throws IOException {
+	public FileSystem getFileSystem() {
+		return m_fs;
+	}
+
+	public Path getDirectory() {
+		return m_dir;
+	}
+
+	public Path toPath(String fileName) {
 		return new Path(m_dir, fileName);
 	}
 		
@@ -100,6 +125,7 @@ public abstract class HadoopFileSource implements FileSource {
 	}
 
 	public synchronized void clear() throws IOException {
+		ContentCache.getInstance().invalidateUnder(m_dir.toUri().toString());
 		for ( FileStatus status : m_fs.listStatus(m_dir) ) {
 			if ( !m_fs.delete(status.getPath(), !m_flat) ) {
 				throw new IOException(String.format("Couldn't delete [%s]", status.getPath().toString()));
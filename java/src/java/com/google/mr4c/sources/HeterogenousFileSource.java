@@ -48,6 +48,11 @@ public class HeterogenousFileSource implements FileSource {
 		return names;
 	}
 
+	// matches fileExists(), which only checks the map
+	public List<String> getFileNames(String dir) throws IOException {
+		return SourceUtils.getNamesInDirectory(m_files.keySet(), dir);
+	}
+
 	public DataFileSource getFileSource(String fileName) throws IOException {
 		URI uri = m_files.get(fileName);
 		if ( uri==null ) {
@@ -47,6 +47,10 @@ public class InMemoryFileSource implements FileSource {
 		return names;
 	}
 
+	public List<String> getFileNames(String dir) throws IOException {
+		return SourceUtils.getNamesInDirectory(getAllFileNames(), dir);
+	}
+
 	public DataFileSource getFileSource(String fileName) throws IOException {
 		return new InMemoryDataFileSource(fileName);
 	}
@@ -16,17 +16,29 @@
 
 package com.google.mr4c.sources;
 
+import com.google.mr4c.config.category.Category;
+import com.google.mr4c.config.category.CategoryConfig;
+import com.google.mr4c.config.category.CoreConfig;
+import com.google.mr4c.config.category.MR4CConfig;
 import com.google.mr4c.content.ContentFactories;
 import com.google.mr4c.dataset.DataFile;
 import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.keys.BasicDataKeyFilter;
+import com.google.mr4c.keys.BasicElementFilter;
 import com.google.mr4c.keys.DataKey;
 import com.google.mr4c.keys.DataKeyDimension;
 import com.google.mr4c.keys.DataKeyElement;
 import com.google.mr4c.keys.DataKeyFactory;
+import com.google.mr4c.keys.DataKeyFilter;
+import com.google.mr4c.keys.DimensionBasedKeyFilter;
+import com.google.mr4c.keys.ElementFilter;
+import com.google.mr4c.keys.IdentityDataKeyFilter;
 import com.google.mr4c.mbtiles.MBTilesFile;
 import com.google.mr4c.mbtiles.Tile;
 import com.google.mr4c.mbtiles.TileFormat;
 import com.google.mr4c.mbtiles.TileKey;
+import com.google.mr4c.mbtiles.TileKeyCursor;
+import com.google.mr4c.mbtiles.TileRange;
 import com.google.mr4c.metadata.MetadataField;
 import com.google.mr4c.metadata.MetadataMap;
 import com.google.mr4c.metadata.PrimitiveType;
@@ -40,7 +52,9 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.io.IOUtils;
@@ -71,11 +85,20 @@ public class MBTilesDatasetSource extends AbstractDatasetSource  implements Data
 		m_mbtiles = mbtiles;
 	}
 
-	public synchronized Dataset readDataset() throws IOException {
+	public Dataset readDataset() throws IOException {
+		return readDataset(IdentityDataKeyFilter.INSTANCE);
+	}
+
+	/**
+	  * Only reads keys for tiles in the range covered by the filter
+	*/
+	public synchronized Dataset readDataset(DataKeyFilter filter) throws IOException {
 		ensureReadable();
 		Dataset dataset = new Dataset();
-		readMetadata(dataset);
-		readDataFiles(dataset);
+		if ( filter.filter(ROOT_KEY) ) {
+			readMetadata(dataset);
+		}
+		readDataFiles(dataset, filter);
 		m_mbtiles.close();
 		return dataset;
 	}
@@ -109,7 +132,9 @@ public class MBTilesDatasetSource extends AbstractDatasetSource  implements Data
 		if ( m_staged ) {
 			copyToLocal();
 		}
-		m_mbtiles = MBTilesFile.create(m_file, MBTilesFile.FileMode.READ_ONLY);
+		CategoryConfig conf = MR4CConfig.getDefaultInstance().getCategory(Category.CORE);
+		int readers = Integer.parseInt(conf.getProperty(CoreConfig.PROP_MBTILES_READERS, "4"));
+		m_mbtiles = MBTilesFile.createForRead(m_file, readers);
 	}
 
 	private void readMetadata(Dataset dataset) throws IOException {
@@ -118,13 +143,84 @@ public class MBTilesDatasetSource extends AbstractDatasetSource  implements Data
 		dataset.addMetadata(ROOT_KEY, bbMeta);
 	}
 
-	private void readDataFiles(Dataset dataset) throws IOException {
+	private void readDataFiles(Dataset dataset, DataKeyFilter filter) throws IOException {
 		TileFormat format = m_mbtiles.getFormat(true);
-		for ( TileKey tileKey : m_mbtiles.getAllTileKeys() ) {
-			DataKey fileKey = toFileKey(tileKey); 
-			DataFileSource fileSource = new MBTilesDataFileSource(tileKey);
-			DataFile file = new DataFile(fileSource, format.getContentType());
-			dataset.addFile(fileKey, file);
+		TileKeyCursor cursor = m_mbtiles.findTileKeys(toTileRange(filter));
+		try {
+			while ( cursor.hasNext() ) {
+				TileKey tileKey = cursor.next();
+				DataKey fileKey = toFileKey(tileKey); 
+				if ( !filter.filter(fileKey) ) {
+					continue;
+				}
+				DataFileSource fileSource = new MBTilesDataFileSource(tileKey);
+				DataFile file = new DataFile(fileSource, format.getContentType());
+				dataset.addFile(fileKey, file);
+			}
+		} finally {
+			cursor.close();
+		}
+	}
+
+	/**
+	  * Range of tiles that can pass the filter.  Only filters on explicit
+	  * keys or explicit elements narrow the range; anything else reads all
+	  * the tiles and leaves the rest to the filter.
+	*/
+	static TileRange toTileRange(DataKeyFilter filter) {
+		if ( filter instanceof BasicDataKeyFilter ) {
+			List<TileKey> tileKeys = new ArrayList<TileKey>();
+			for ( DataKey key : ((BasicDataKeyFilter) filter).getKeys() ) {
+				if ( isTileKey(key) ) {
+					tileKeys.add(toTileKey(key));
+				}
+			}
+			return TileRange.covering(tileKeys);
+		} else if ( filter instanceof DimensionBasedKeyFilter ) {
+			DimensionBasedKeyFilter dimFilter = (DimensionBasedKeyFilter) filter;
+			int[] zoom = getBounds(dimFilter.getFilter(ZOOM_DIM));
+			int[] x = getBounds(dimFilter.getFilter(X_DIM));
+			int[] y = getBounds(dimFilter.getFilter(Y_DIM));
+			return new TileRange(zoom[0], zoom[1], x[0], x[1], y[0], y[1]);
+		} else {
+			return TileRange.ALL;
+		}
+	}
+
+	private static boolean isTileKey(DataKey key) {
+		return
+			key.getDimensions().size()==3 &&
+			key.hasDimension(ZOOM_DIM) &&
+			key.hasDimension(X_DIM) &&
+			key.hasDimension(Y_DIM) &&
+			isInteger(key.getElement(ZOOM_DIM)) &&
+			isInteger(key.getElement(X_DIM)) &&
+			isInteger(key.getElement(Y_DIM));
+	}
+
+	private static int[] getBounds(ElementFilter filter) {
+		int[] bounds = new int[] {Integer.MIN_VALUE, Integer.MAX_VALUE};
+		if ( !(filter instanceof BasicElementFilter) ) {
+			return bounds;
+		}
+		bounds[0] = Integer.MAX_VALUE;
+		bounds[1] = Integer.MIN_VALUE;
+		for ( DataKeyElement element : ((BasicElementFilter) filter).getElements() ) {
+			if ( isInteger(element) ) {
+				int val = Integer.parseInt(element.getIdentifier());
+				bounds[0] = Math.min(bounds[0], val);
+				bounds[1] = Math.max(bounds[1], val);
+			}
+		}
+		return bounds;
+	}
+
+	private static boolean isInteger(DataKeyElement element) {
+		try {
+			Integer.parseInt(element.getIdentifier());
+			return true;
+		} catch ( NumberFormatException nfe ) {
+			return false;
 		}
 	}
 
@@ -151,7 +247,20 @@ public class MBTilesDatasetSource extends AbstractDatasetSource  implements Data
 		if ( m_mbtiles!=null ) {
 			m_mbtiles.close();
 		}
-		m_mbtiles = MBTilesFile.create(m_file, MBTilesFile.FileMode.REPLACE);
+		m_mbtiles = createForWrite(m_file);
+	}
+
+	/**
+	  * Bulk loads the file unless the configured batch size is zero
+	*/
+	static MBTilesFile createForWrite(File file) throws IOException {
+		CategoryConfig conf = MR4CConfig.getDefaultInstance().getCategory(Category.CORE);
+		int batchSize = Integer.parseInt(conf.getProperty(CoreConfig.PROP_MBTILES_BATCH, "10000"));
+		if ( batchSize<=0 ) {
+			return MBTilesFile.create(file, MBTilesFile.FileMode.REPLACE);
+		}
+		int pageSize = Integer.parseInt(conf.getProperty(CoreConfig.PROP_MBTILES_PAGE_SIZE, "4096"));
+		return MBTilesFile.createForBulkWrite(file, batchSize, pageSize);
 	}
 
 	private void writeMetadata(Dataset dataset) throws IOException {
@@ -213,7 +322,7 @@ public class MBTilesDatasetSource extends AbstractDatasetSource  implements Data
 	}
 
 
-	private DataKey toFileKey(TileKey tileKey) {
+	private static DataKey toFileKey(TileKey tileKey) {
 		return DataKeyFactory.newKey(
 			toElement(tileKey.getZoom(), ZOOM_DIM),
 			toElement(tileKey.getX(), X_DIM),
@@ -221,11 +330,11 @@ public class MBTilesDatasetSource extends AbstractDatasetSource  implements Data
 		);
 	}
 
-	private DataKeyElement toElement(int val, DataKeyDimension dim) {
+	private static DataKeyElement toElement(int val, DataKeyDimension dim) {
 		return new DataKeyElement(Integer.toString(val), dim);
 	}
 
-	private TileKey toTileKey(DataKey fileKey) {
+	private static TileKey toTileKey(DataKey fileKey) {
 		return new TileKey(
 			toInteger(fileKey, ZOOM_DIM),
 			toInteger(fileKey, X_DIM),
@@ -233,7 +342,7 @@ public class MBTilesDatasetSource extends AbstractDatasetSource  implements Data
 		);
 	}
 
-	private int toInteger(DataKey fileKey, DataKeyDimension dim) {
+	private static int toInteger(DataKey fileKey, DataKeyDimension dim) {
 		DataKeyElement ele = fileKey.getElement(dim);
 		return Integer.parseInt(ele.getIdentifier());
 	}
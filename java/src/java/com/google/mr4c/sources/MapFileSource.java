@@ -18,9 +18,14 @@ package com.google.mr4c.sources;
 
 import com.google.mr4c.util.MR4CLogging;
 
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -34,20 +39,38 @@ import java.util.Map;
 import java.util.HashMap;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.MapFile;
 import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.SequenceFile.CompressionType;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.Decompressor;
 
 import org.slf4j.Logger;
 
+/**
+  * Archive stored as a Hadoop MapFile.  Lookups go through a hash of the
+  * MapFile index, and file content is read straight from its byte range
+  * in the data file rather than loaded through MapFile.Reader.  New map
+  * files are written with uncompressed values so content can be streamed
+  * in both directions; existing record compressed map files are
+  * decompressed on the fly, and block compressed ones fall back to
+  * MapFile.Reader.
+*/
 public class MapFileSource implements ArchiveSource {
 
 	// at any time, either we can read the file, or we are writing it
@@ -59,6 +82,13 @@ public class MapFileSource implements ArchiveSource {
 
 	protected static final Logger s_log = MR4CLogging.getLogger(MapFileSource.class); 
 
+	// streamed content larger than this is spooled to local disk while writing
+	private static final int SPOOL_THRESHOLD = 1024 * 1024;
+
+	// escape that precedes a sync marker, and the marker length
+	private static final int SYNC_ESCAPE = -1;
+	private static final int SYNC_HASH_SIZE = 16;
+
 	private Path m_dir;
 	private Path m_dataPath;
 	private Path m_indexPath;
@@ -68,7 +98,12 @@ public class MapFileSource implements ArchiveSource {
 	private FileStatus m_status;
 	private Configuration m_config;
 	private MapFile.Reader m_reader;
-	private MapFile.Writer m_writer;
+	private FSDataInputStream m_data;
+	private CompressionCodec m_codec;
+	private boolean m_blockCompressed;
+	private SequenceFile.Writer m_dataWriter;
+	private SequenceFile.Writer m_indexWriter;
+	private Text m_lastKey;
 	private MapFileIndex m_index;
 	private Mode m_mode = Mode.NONE;
 
@@ -226,7 +261,19 @@ public class MapFileSource implements ArchiveSource {
 		assertExists();
 		m_index = new MapFileIndex();
 		m_status = m_fs.getFileStatus(m_dataPath);
-		m_reader = new MapFile.Reader(m_fs, m_dirStr, m_config);
+		SequenceFile.Reader header = new SequenceFile.Reader(m_config, SequenceFile.Reader.file(m_dataPath));
+		try {
+			m_codec = header.isCompressed() ? header.getCompressionCodec() : null;
+			m_blockCompressed = header.isBlockCompressed();
+		} finally {
+			header.close();
+		}
+		if ( m_blockCompressed ) {
+			s_log.info("Values in [{}] are block compressed; reading through MapFile.Reader", getDescription());
+			m_reader = new MapFile.Reader(m_fs, m_dirStr, m_config);
+		} else {
+			m_data = m_fs.open(m_dataPath);
+		}
 		m_mode = Mode.READ;
 	}
 
@@ -237,14 +284,31 @@ public class MapFileSource implements ArchiveSource {
 		closeReader();
 		m_index=null;
 		m_status=null;
+		m_codec=null;
 		m_mode = Mode.NONE;
 	}
 
 	public synchronized void startWrite() throws IOException {
 		assertNotWrite("Tried to restart write");
 		cleanupRead();
-		m_writer = new MapFile.Writer(m_config, m_fs, m_dirStr, Text.class, BytesWritable.class);
-		m_writer.setIndexInterval(1);
+		ContentCache.getInstance().invalidate(m_dataPath.toString());
+		m_fs.mkdirs(m_dir);
+		m_dataWriter = SequenceFile.createWriter(
+			m_config,
+			SequenceFile.Writer.file(m_dataPath),
+			SequenceFile.Writer.keyClass(Text.class),
+			SequenceFile.Writer.valueClass(BytesWritable.class),
+			SequenceFile.Writer.compression(CompressionType.NONE)
+		);
+		// Same index layout MapFile.Writer produces with an index interval of 1
+		m_indexWriter = SequenceFile.createWriter(
+			m_config,
+			SequenceFile.Writer.file(m_indexPath),
+			SequenceFile.Writer.keyClass(Text.class),
+			SequenceFile.Writer.valueClass(LongWritable.class),
+			SequenceFile.Writer.compression(CompressionType.BLOCK)
+		);
+		m_lastKey = null;
 		m_fs.mkdirs(m_metaPath);
 		m_mode = Mode.WRITE;
 	}
@@ -260,25 +324,63 @@ public class MapFileSource implements ArchiveSource {
 		return m_reader;
 	}
 
-	private synchronized MapFile.Writer getWriter() throws IOException {
+	private synchronized FSDataInputStream getData() throws IOException {
+		ensureRead();
+		return m_data;
+	}
+
+	/**
+	  * Appends a record the same way MapFile.Writer does, except that the
+	  * value is copied straight to the data file.  Keys must arrive in
+	  * sorted order.
+	*/
+	private synchronized void append(String name, ValueContent content) throws IOException {
 		assertWrite();
-		return m_writer;
+		Text key = new Text(name);
+		if ( m_lastKey!=null && key.compareTo(m_lastKey)<=0 ) {
+			throw new IOException(String.format("Key [%s] is out of order after [%s] in %s", key, m_lastKey, getDescription()));
+		}
+		DataOutputBuffer keyBytes = new DataOutputBuffer();
+		key.write(keyBytes);
+		m_indexWriter.append(key, new LongWritable(m_dataWriter.getLength()));
+		m_dataWriter.appendRaw(keyBytes.getData(), 0, keyBytes.getLength(), content);
+		m_lastKey = key;
 	}
 
 	public synchronized void close() throws IOException {
 		assertNotWrite();
-		closeReader();
+		cleanupRead();
 	}
 
 	private synchronized void closeReader() throws IOException {
-		if ( m_reader!=null ) {
-			m_reader.close();
+		try {
+			if ( m_reader!=null ) {
+				m_reader.close();
+			}
+			if ( m_data!=null ) {
+				m_data.close();
+			}
+		} finally {
+			m_reader=null;
+			m_data=null;
 		}
 	}
 
 	private synchronized void closeWriter() throws IOException {
-		if ( m_writer!=null ) {
-			m_writer.close();
+		try {
+			if ( m_dataWriter!=null ) {
+				m_dataWriter.close();
+			}
+		} finally {
+			try {
+				if ( m_indexWriter!=null ) {
+					m_indexWriter.close();
+				}
+			} finally {
+				m_dataWriter=null;
+				m_indexWriter=null;
+				m_lastKey=null;
+			}
 		}
 	}
 
@@ -289,6 +391,9 @@ public class MapFileSource implements ArchiveSource {
 		private String m_name;
 		private long m_offset;
 		private long m_length;
+		private long m_valueStart = -1;
+		private long m_valueLength;
+		private long m_size = -1;
 	
 		private MapFileDataFileSource( String name, long offset, long length) {
 			m_name = name;
@@ -297,44 +402,169 @@ public class MapFileSource implements ArchiveSource {
 		}
 
 		public long getFileSize() throws IOException {
-			// Length in the MapFile is not the same as the actual number of data bytes, so need to read it to find out
-			loadBytesIfNecessary();
-			return m_cache.getFileSize();
+			if ( m_blockCompressed ) {
+				return getContent().getFileSize();
+			}
+			synchronized(this) {
+				if ( m_cache!=null ) {
+					return m_cache.getFileSize();
+				}
+			}
+			locate();
+			if ( m_size<0 ) {
+				DataInputStream in = openValue();
+				try {
+					setSize(in.readInt());
+				} finally {
+					in.close();
+				}
+			}
+			return m_size;
 		}
 	
 		public InputStream getFileInputStream() throws IOException {
-			// no stream support, probably should just use cache
-			loadBytesIfNecessary();
-			s_log.debug("Creating stream for reading file content cached from [{}]", getDescription());
-			return m_cache.getFileInputStream();
+			if ( m_blockCompressed ) {
+				return getContent().getFileInputStream();
+			}
+			byte[] shared = ContentCache.getInstance().getIfPresent(m_dataPath.toString(), m_offset, m_length);
+			if ( shared!=null ) {
+				s_log.debug("Creating stream for reading file content shared from [{}]", getDescription());
+				return new ByteArrayInputStream(shared);
+			}
+			synchronized(this) {
+				if ( m_cache!=null ) {
+					s_log.debug("Creating stream for reading file content cached from [{}]", getDescription());
+					return m_cache.getFileInputStream();
+				}
+			}
+			s_log.debug("Creating stream for reading file content from [{}]", getDescription());
+			locate();
+			if ( m_codec==null ) {
+				return new BufferedInputStream(new PositionedRangeInputStream(getData(), m_valueStart + 4, m_size));
+			}
+			DataInputStream in = openValue();
+			int size = in.readInt();
+			setSize(size);
+			return new BoundedInputStream(in, size);
 		}
 	
 		public byte[] getFileBytes() throws IOException {
-			loadBytesIfNecessary();
-			return m_cache.getFileBytes();
+			return getContent().getFileBytes();
 		}
 	
-		private synchronized void loadBytesIfNecessary() throws IOException {
+		// when the shared cache is enabled it replaces the private one
+		private synchronized DataFileSource getContent() throws IOException {
+			ContentCache cache = ContentCache.getInstance();
+			if ( cache.isEnabled() ) {
+				return ContentCache.toFileSource(cache.get(m_dataPath.toString(), m_offset, m_length, new ContentCache.Loader() {
+					public byte[] load() throws IOException {
+						return readBytes();
+					}
+				}));
+			}
 			if ( m_cache==null ) {
-				s_log.debug("Reading file content from [{}]", getDescription());
-				Text key = new Text(m_name);
-				BytesWritable value = new BytesWritable();
-				if ( getReader().get(key,value)==null ) {
-					throw new IOException(String.format("[%s] not found", getDescription()));
+				m_cache = new BytesDataFileSource(readBytes());
+			}
+			return m_cache;
+		}
+
+		private byte[] readBytes() throws IOException {
+			s_log.debug("Reading file content from [{}]", getDescription());
+			byte[] bytes;
+			if ( m_blockCompressed ) {
+				bytes = readBytesFromReader();
+			} else if ( m_codec==null ) {
+				locate();
+				bytes = new byte[(int) m_size];
+				getData().readFully(m_valueStart + 4, bytes);
+			} else {
+				DataInputStream in = openValue();
+				try {
+					bytes = new byte[in.readInt()];
+					in.readFully(bytes);
+				} finally {
+					in.close();
 				}
-				byte[] bytes = Arrays.copyOfRange(value.getBytes(), 0, value.getLength() ); // pulling the whole array will get extra padding
-				s_log.debug("Read {} bytes from [{}]", bytes.length, getDescription()); 
-				m_cache = new BytesDataFileSource(bytes);
 			}
+			s_log.debug("Read {} bytes from [{}]", bytes.length, getDescription()); 
+			return bytes;
+		}
+
+		private byte[] readBytesFromReader() throws IOException {
+			Text key = new Text(m_name);
+			BytesWritable value = new BytesWritable();
+			if ( getReader().get(key,value)==null ) {
+				throw new IOException(String.format("[%s] not found", getDescription()));
+			}
+			return Arrays.copyOfRange(value.getBytes(), 0, value.getLength() ); // pulling the whole array will get extra padding
+		}
+
+		/**
+		  * Parses the record header at the indexed offset: an optional sync
+		  * marker, the record and key lengths, and the key.  For uncompressed
+		  * values the size prefix is read too, all in one positioned read.
+		*/
+		private synchronized void locate() throws IOException {
+			if ( m_valueStart>=0 ) {
+				return;
+			}
+			Text key = new Text(m_name);
+			int keyBytes = WritableUtils.getVIntSize(key.getLength()) + key.getLength();
+			int headerBytes = (int) Math.min(m_length, 4 + SYNC_HASH_SIZE + 8 + keyBytes + 4);
+			byte[] header = new byte[headerBytes];
+			getData().readFully(m_offset, header);
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+			long pos = 4;
+			int recordLength = in.readInt();
+			if ( recordLength==SYNC_ESCAPE ) {
+				in.skipBytes(SYNC_HASH_SIZE);
+				recordLength = in.readInt();
+				pos += SYNC_HASH_SIZE + 4;
+			}
+			int keyLength = in.readInt();
+			pos += 4;
+			if ( keyLength!=keyBytes ) {
+				throw new IOException(String.format("Expected key of %s bytes but found %s in [%s]", keyBytes, keyLength, getDescription()));
+			}
+			m_valueStart = m_offset + pos + keyLength;
+			m_valueLength = recordLength - keyLength;
+			if ( m_codec==null ) {
+				in.skipBytes(keyLength);
+				m_size = in.readInt();
+			}
+		}
+
+		/**
+		  * Opens the serialized BytesWritable value, decompressing if needed
+		*/
+		private DataInputStream openValue() throws IOException {
+			locate();
+			InputStream range = new PositionedRangeInputStream(getData(), m_valueStart, m_valueLength);
+			if ( m_codec==null ) {
+				return new DataInputStream(new BufferedInputStream(range));
+			}
+			final Decompressor decompressor = CodecPool.getDecompressor(m_codec);
+			return new DataInputStream(new FilterInputStream(m_codec.createInputStream(range, decompressor)) {
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						CodecPool.returnDecompressor(decompressor);
+					}
+				}
+			});
+		}
+
+		private synchronized void setSize(long size) {
+			m_size = size;
 		}
 
 		public void getFileBytes(ByteBuffer buf) throws IOException {
-			loadBytesIfNecessary();
-			m_cache.getFileBytes(buf);
+			getContent().getFileBytes(buf);
 		}
 			
 	
-		public void release() {
+		public synchronized void release() {
 			if ( m_cache!=null ) {
 				m_cache.release();
 			}
@@ -370,20 +600,31 @@ public class MapFileSource implements ArchiveSource {
 	
 		public void writeFile(byte[] bytes) throws IOException {
 			s_log.debug("Writing {} bytes of file content to [{}]", bytes.length, getDescription());
-			writeBytes(bytes);
+			append(m_name, new BytesValueContent(bytes));
 		}
 	
+		/**
+		  * The record length has to be written ahead of the value, so large
+		  * content is spooled to local disk rather than held in memory.
+		*/
 		public void writeFile(InputStream input) throws IOException {
 			s_log.debug("Writing file content from stream to [{}]", getDescription());
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			IOUtils.copy(input, baos);
-			writeBytes(baos.toByteArray());
-		}
-
-		private synchronized void writeBytes(byte[] bytes) throws IOException {
-			BytesWritable data = new BytesWritable(bytes);
-			Text key = new Text(m_name);
-			getWriter().append(key,data);
+			DeferredFileOutputStream spool = new DeferredFileOutputStream(SPOOL_THRESHOLD, "mr4c-mapfile-", ".tmp", null);
+			try {
+				IOUtils.copyLarge(input, spool);
+				spool.close();
+				if ( spool.isInMemory() ) {
+					append(m_name, new BytesValueContent(spool.getData()));
+				} else {
+					append(m_name, new FileValueContent(spool.getFile()));
+				}
+			} finally {
+				spool.close();
+				File file = spool.getFile();
+				if ( file!=null ) {
+					file.delete();
+				}
+			}
 		}
 
 		@Override public String getFileName() {
@@ -397,6 +638,73 @@ public class MapFileSource implements ArchiveSource {
 	}
 
 
+	/**
+	  * Writes a value in the same form as a serialized BytesWritable
+	*/
+	private static abstract class ValueContent implements SequenceFile.ValueBytes {
+
+		private int m_size;
+
+		protected ValueContent(long size) throws IOException {
+			if ( size>Integer.MAX_VALUE - 4 ) {
+				throw new IOException(String.format("Content of %s bytes is too large for a map file value", size));
+			}
+			m_size = (int) size;
+		}
+
+		public int getSize() {
+			return 4 + m_size;
+		}
+
+		public void writeUncompressedBytes(DataOutputStream out) throws IOException {
+			out.writeInt(m_size);
+			writeContent(out);
+		}
+
+		public void writeCompressedBytes(DataOutputStream out) {
+			throw new IllegalArgumentException("Map file values are written uncompressed");
+		}
+
+		protected abstract void writeContent(OutputStream out) throws IOException;
+
+	}
+
+	private static class BytesValueContent extends ValueContent {
+
+		private byte[] m_bytes;
+
+		private BytesValueContent(byte[] bytes) throws IOException {
+			super(bytes.length);
+			m_bytes = bytes;
+		}
+
+		protected void writeContent(OutputStream out) throws IOException {
+			out.write(m_bytes);
+		}
+
+	}
+
+	private static class FileValueContent extends ValueContent {
+
+		private File m_file;
+
+		private FileValueContent(File file) throws IOException {
+			super(file.length());
+			m_file = file;
+		}
+
+		protected void writeContent(OutputStream out) throws IOException {
+			InputStream in = new FileInputStream(m_file);
+			try {
+				IOUtils.copyLarge(in, out);
+			} finally {
+				in.close();
+			}
+		}
+
+	}
+
+
 	private class MapFileIndex {
 	
 		private List<String> m_names = new ArrayList<String>();
@@ -413,7 +721,7 @@ public class MapFileSource implements ArchiveSource {
 		}
 
 		public boolean fileExists(String fileName) {
-			return m_names.contains(fileName);
+			return m_offsets.containsKey(fileName);
 		}
 	
 		public long getOffset(String fileName) {
@@ -0,0 +1,50 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.sources;
+
+import com.google.mr4c.dataset.Dataset;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+  * A dataset source that several writers, such as reducers, can each write
+  * part of.  The parts are combined afterwards without reading them back
+  * into one dataset.
+*/
+public interface MergeableDatasetSource extends DatasetSource {
+
+	/**
+	  * False if this source has to be written whole after all
+	*/
+	boolean canWriteParts();
+
+	/**
+	  * Writes the files of one writer's part that are not already where
+	  * they belong.  Metadata is kept by the caller and passed to
+	  * mergeParts().  Writing the same part again replaces it.
+	*/
+	void writePart(Dataset dataset, String partName) throws IOException;
+
+	/**
+	  * Combines everything written with writePart(), writes the dataset
+	  * file from the serialized metadata parts, then does what
+	  * copyToFinal() would.  Call once, after all the parts are written.
+	*/
+	void mergeParts(List<DataFileSource> metadataParts) throws IOException;
+
+}
@@ -0,0 +1,841 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.sources;
+
+import com.google.mr4c.util.MR4CLogging;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import org.slf4j.Logger;
+
+/**
+  * Archive that packs many small files into a few large ones.  Each writer
+  * produces one shard, [dir]/[shard].pack, holding the file contents back
+  * to back followed by a footer index sorted by name.  Each index entry
+  * has the offset, length, and CRC32 of a file.  Several writers, such as
+  * reducers, can each write their own shard of the same archive; a reader
+  * combines the shard footers, or reads the single index written by
+  * mergeShards().  Metadata files are stored as plain files under
+  * [dir]/metadata.
+  *
+  * Reads are served from slices of the shard: memory mapped on a local
+  * file system, positioned reads elsewhere.  Checksums are verified
+  * whenever a file is read whole, including into a buffer.
+*/
+public class PackFileSource implements ShardedArchiveSource {
+
+	// at any time, either we can read the archive, or we are writing a shard
+	private static enum Mode {
+		NONE, // no info about the archive loaded yet
+		READ, // index loaded, ready to read
+		WRITE // in the process of writing
+	};
+
+	protected static final Logger s_log = MR4CLogging.getLogger(PackFileSource.class);
+
+	public static final String DEFAULT_SHARD = "part-00000";
+	public static final String SHARD_SUFFIX = ".pack";
+	public static final String INDEX_NAME = "index";
+	public static final String METADATA_NAME = "metadata";
+
+	private static final int SHARD_MAGIC = 0x4d52345a; // "MR4Z"
+	private static final int INDEX_MAGIC = 0x4d523449; // "MR4I"
+	private static final int TRAILER_SIZE = 16;
+
+	private FileSystem m_fs;
+	private Path m_dir;
+	private Path m_indexPath;
+	private Path m_metaPath;
+	private String m_shard;
+	private Mode m_mode = Mode.NONE;
+
+	// read state
+	private Map<String,PackEntry> m_entries;
+	private List<String> m_names;
+	private Map<String,ShardReader> m_readers = new HashMap<String,ShardReader>();
+
+	// write state
+	private FSDataOutputStream m_out;
+	private SortedMap<String,PackEntry> m_written;
+	private Thread m_sinkThread; // the thread writing a file, if any
+
+	public PackFileSource(Path dir) throws IOException {
+		this(dir.getFileSystem(new Configuration()), dir);
+	}
+
+	public PackFileSource(FileSystem fs, Path dir) throws IOException {
+		this(fs, dir, DEFAULT_SHARD);
+	}
+
+	/**
+	  * @param shard name of the shard this source writes; readers see all
+	  *   the shards in the directory
+	*/
+	public PackFileSource(FileSystem fs, Path dir, String shard) throws IOException {
+		if ( shard==null || shard.length()==0 || shard.contains("/") ) {
+			throw new IllegalArgumentException(String.format("Bad shard name [%s]", shard));
+		}
+		m_fs = fs;
+		m_dir = new Path(new Path(fs.getUri()), dir);
+		m_indexPath = new Path(m_dir, INDEX_NAME);
+		m_metaPath = new Path(m_dir, METADATA_NAME);
+		m_shard = shard;
+	}
+
+	public synchronized List<String> getAllFileNames() throws IOException {
+		ensureRead();
+		return m_names;
+	}
+
+	public synchronized List<String> getAllMetadataFileNames() throws IOException {
+		ensureRead();
+		if ( !m_fs.exists(m_metaPath) ) {
+			return Collections.emptyList();
+		}
+		List<String> names = new ArrayList<String>();
+		for ( FileStatus status : m_fs.listStatus(m_metaPath) ) {
+			names.add(status.getPath().getName());
+		}
+		return names;
+	}
+
+	public synchronized DataFileSource getFileSource(String fileName) throws IOException {
+		ensureRead();
+		PackEntry entry = m_entries.get(fileName);
+		if ( entry==null ) {
+			throw new FileNotFoundException(String.format("No file named [%s] in %s", fileName, getDescription()));
+		}
+		return new PackDataFileSource(fileName, entry, getReader(entry.shard));
+	}
+
+	public synchronized boolean fileExists(String fileName) throws IOException {
+		ensureRead();
+		return m_entries.containsKey(fileName);
+	}
+
+	public synchronized DataFileSource getFileSourceOnlyIfExists(String fileName) throws IOException {
+		return fileExists(fileName) ?
+			getFileSource(fileName) :
+			null;
+	}
+
+	public DataFileSource getMetadataFileSource(String fileName) throws IOException {
+		return new URIDataFileSource(toMetadataURI(fileName), fileName);
+	}
+
+	public DataFileSink getFileSink(String fileName) throws IOException {
+		return new PackDataFileSink(fileName);
+	}
+
+	public DataFileSink getMetadataFileSink(String fileName) throws IOException {
+		return new URIDataFileSink(toMetadataURI(fileName), fileName);
+	}
+
+	private URI toMetadataURI(String fileName) {
+		return new Path(m_metaPath, fileName).toUri();
+	}
+
+	/**
+	  * Starts writing this source's shard, replacing any earlier version of
+	  * it.  Any merged index is removed, since it no longer matches the
+	  * shards.
+	*/
+	public synchronized void startWrite() throws IOException {
+		assertNotWrite("Tried to restart write");
+		cleanupRead();
+		Path shardPath = getShardPath(m_shard);
+		ContentCache.getInstance().invalidate(shardPath.toString());
+		m_fs.delete(m_indexPath, false);
+		m_fs.mkdirs(m_metaPath);
+		m_out = m_fs.create(shardPath, true);
+		m_written = new TreeMap<String,PackEntry>();
+		m_sinkThread = null;
+		m_mode = Mode.WRITE;
+	}
+
+	public synchronized void finishWrite() throws IOException {
+		assertWrite("Tried to finish non-existent write");
+		try {
+			if ( m_sinkThread!=null ) {
+				throw new IOException("Output stream still open at end of write to " + getDescription());
+			}
+			writeFooter();
+		} finally {
+			m_out.close();
+			m_out = null;
+			m_written = null;
+			m_mode = Mode.NONE;
+			// sinks waiting for the shard fail their write check now
+			notifyAll();
+		}
+	}
+
+	private void writeFooter() throws IOException {
+		long footerStart = m_out.getPos();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(m_out));
+		for ( PackEntry entry : m_written.values() ) {
+			out.writeUTF(entry.name);
+			out.writeLong(entry.offset);
+			out.writeLong(entry.length);
+			out.writeInt(entry.checksum);
+		}
+		out.writeLong(footerStart);
+		out.writeInt(m_written.size());
+		out.writeInt(SHARD_MAGIC);
+		out.flush();
+		s_log.info("Wrote {} files to shard [{}] of {}", m_written.size(), m_shard, getDescription());
+	}
+
+	/**
+	  * Concatenates the footer indexes of all the shards into one sorted
+	  * index, so readers load a single file instead of one footer per
+	  * shard.  Call after all the shards have been written.
+	*/
+	public synchronized void mergeShards() throws IOException {
+		assertNotWrite("Tried to merge during a write");
+		cleanupRead();
+		SortedMap<String,PackEntry> entries = readShardFooters();
+		Path tempPath = new Path(m_dir, INDEX_NAME + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(m_fs.create(tempPath, true)));
+		try {
+			out.writeInt(INDEX_MAGIC);
+			out.writeInt(entries.size());
+			for ( PackEntry entry : entries.values() ) {
+				out.writeUTF(entry.name);
+				out.writeUTF(entry.shard);
+				out.writeLong(entry.offset);
+				out.writeLong(entry.length);
+				out.writeInt(entry.checksum);
+			}
+		} finally {
+			out.close();
+		}
+		m_fs.delete(m_indexPath, false);
+		if ( !m_fs.rename(tempPath, m_indexPath) ) {
+			throw new IOException(String.format("Failed to rename [%s] to [%s]", tempPath, m_indexPath));
+		}
+		s_log.info("Merged index of {} files for {}", entries.size(), getDescription());
+	}
+
+	public synchronized void close() throws IOException {
+		assertNotWrite();
+		cleanupRead();
+	}
+
+	public synchronized void clear() throws IOException {
+		assertNotWrite();
+		cleanupRead();
+		for ( Path path : listShards() ) {
+			m_fs.delete(path, false);
+		}
+		m_fs.delete(m_indexPath, false);
+		m_fs.delete(m_metaPath, true);
+	}
+
+	public synchronized boolean exists() throws IOException {
+		return m_fs.exists(m_indexPath) || !listShards().isEmpty();
+	}
+
+	public String getDescription() {
+		return "pack file: " + m_dir.toUri().toString();
+	}
+
+	private String getFileDescription(String fileName) {
+		return getDescription() + " file " + fileName;
+	}
+
+	private Path getShardPath(String shard) {
+		return new Path(m_dir, shard + SHARD_SUFFIX);
+	}
+
+	private List<Path> listShards() throws IOException {
+		List<Path> paths = new ArrayList<Path>();
+		if ( !m_fs.exists(m_dir) ) {
+			return paths;
+		}
+		for ( FileStatus status : m_fs.listStatus(m_dir) ) {
+			if ( !status.isDirectory() && status.getPath().getName().endsWith(SHARD_SUFFIX) ) {
+				paths.add(status.getPath());
+			}
+		}
+		return paths;
+	}
+
+	private void ensureRead() throws IOException {
+		switch(m_mode) {
+			case READ :
+				return;
+			case WRITE :
+				throw new IOException("Tried to read in the middle of a write");
+			default :
+				initRead();
+		}
+	}
+
+	private void assertWrite(String msg) throws IOException {
+		if ( m_mode!=Mode.WRITE ) {
+			throw new IOException("Assert write failed for " + getDescription() + "; " + msg);
+		}
+	}
+
+	private void assertNotWrite() throws IOException {
+		assertNotWrite(null);
+	}
+
+	private void assertNotWrite(String msg) throws IOException {
+		if ( m_mode==Mode.WRITE ) {
+			String error = "Assert not write failed for " + getDescription();
+			if ( msg!=null ) {
+				error += ("; " + msg);
+			}
+			throw new IOException(error);
+		}
+	}
+
+	private synchronized void initRead() throws IOException {
+		SortedMap<String,PackEntry> entries = m_fs.exists(m_indexPath) ?
+			readMergedIndex() :
+			readShardFooters();
+		if ( entries.isEmpty() && !exists() ) {
+			throw new FileNotFoundException("No shards found for " + getDescription());
+		}
+		m_entries = new HashMap<String,PackEntry>(entries);
+		m_names = Collections.unmodifiableList(new ArrayList<String>(entries.keySet()));
+		m_mode = Mode.READ;
+	}
+
+	private synchronized void cleanupRead() throws IOException {
+		try {
+			for ( ShardReader reader : m_readers.values() ) {
+				reader.close();
+			}
+		} finally {
+			m_readers.clear();
+			m_entries = null;
+			m_names = null;
+			if ( m_mode==Mode.READ ) {
+				m_mode = Mode.NONE;
+			}
+		}
+	}
+
+	private SortedMap<String,PackEntry> readShardFooters() throws IOException {
+		SortedMap<String,PackEntry> entries = new TreeMap<String,PackEntry>();
+		for ( Path path : listShards() ) {
+			String shard = path.getName().substring(0, path.getName().length() - SHARD_SUFFIX.length());
+			for ( PackEntry entry : readFooter(shard, path) ) {
+				addEntry(entries, entry);
+			}
+		}
+		return entries;
+	}
+
+	private List<PackEntry> readFooter(String shard, Path path) throws IOException {
+		long size = m_fs.getFileStatus(path).getLen();
+		if ( size<TRAILER_SIZE ) {
+			throw new IOException(String.format("Shard [%s] is too short to have a footer", path));
+		}
+		FSDataInputStream in = m_fs.open(path);
+		try {
+			in.seek(size - TRAILER_SIZE);
+			long footerStart = in.readLong();
+			int count = in.readInt();
+			if ( in.readInt()!=SHARD_MAGIC ) {
+				throw new IOException(String.format("Shard [%s] has no footer; it may not have been finished", path));
+			}
+			in.seek(footerStart);
+			DataInputStream footer = new DataInputStream(new BufferedInputStream(in));
+			List<PackEntry> entries = new ArrayList<PackEntry>(count);
+			for ( int i=0; i<count; i++ ) {
+				String name = footer.readUTF();
+				entries.add(new PackEntry(name, shard, footer.readLong(), footer.readLong(), footer.readInt()));
+			}
+			return entries;
+		} finally {
+			in.close();
+		}
+	}
+
+	private SortedMap<String,PackEntry> readMergedIndex() throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(m_fs.open(m_indexPath)));
+		try {
+			if ( in.readInt()!=INDEX_MAGIC ) {
+				throw new IOException(String.format("[%s] is not a pack file index", m_indexPath));
+			}
+			int count = in.readInt();
+			SortedMap<String,PackEntry> entries = new TreeMap<String,PackEntry>();
+			for ( int i=0; i<count; i++ ) {
+				String name = in.readUTF();
+				String shard = in.readUTF();
+				addEntry(entries, new PackEntry(name, shard, in.readLong(), in.readLong(), in.readInt()));
+			}
+			return entries;
+		} finally {
+			in.close();
+		}
+	}
+
+	private void addEntry(Map<String,PackEntry> entries, PackEntry entry) throws IOException {
+		PackEntry existing = entries.put(entry.name, entry);
+		if ( existing!=null ) {
+			throw new IOException(String.format("File [%s] is in both shard [%s] and shard [%s] of %s", entry.name, existing.shard, entry.shard, getDescription()));
+		}
+	}
+
+	private synchronized ShardReader getReader(String shard) throws IOException {
+		ShardReader reader = m_readers.get(shard);
+		if ( reader==null ) {
+			reader = new ShardReader(getShardPath(shard));
+			m_readers.put(shard, reader);
+		}
+		return reader;
+	}
+
+	/**
+	  * Records a file written to the shard
+	*/
+	private synchronized void addWritten(String name, long offset, long length, int checksum) {
+		m_written.put(name, new PackEntry(name, m_shard, offset, length, checksum));
+	}
+
+	/**
+	  * Waits until no other thread is writing a file.  A thread that still
+	  * has a stream open can't write another file; it would wait forever.
+	*/
+	private synchronized FSDataOutputStream openForSink() throws IOException {
+		assertWrite("Tried to write a file outside of a write");
+		if ( m_sinkThread==Thread.currentThread() ) {
+			throw new IOException("This thread is still writing another file to " + getDescription());
+		}
+		while ( m_sinkThread!=null ) {
+			try {
+				wait();
+			} catch ( InterruptedException ie ) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting to write to " + getDescription());
+			}
+			assertWrite("Write finished while waiting to write a file");
+		}
+		m_sinkThread = Thread.currentThread();
+		return m_out;
+	}
+
+	private synchronized void closeForSink() {
+		m_sinkThread = null;
+		notifyAll();
+	}
+
+
+	private static class PackEntry {
+
+		private String name;
+		private String shard;
+		private long offset;
+		private long length;
+		private int checksum;
+
+		private PackEntry(String name, String shard, long offset, long length, int checksum) {
+			this.name = name;
+			this.shard = shard;
+			this.offset = offset;
+			this.length = length;
+			this.checksum = checksum;
+		}
+
+	}
+
+
+	/**
+	  * Read access to one shard.  A local shard is memory mapped once if it
+	  * fits in a single mapping, otherwise each file is mapped on its own;
+	  * a remote shard is opened once and shared through positioned reads.
+	*/
+	private class ShardReader {
+
+		private Path m_path;
+		private FileStatus m_status;
+		private RandomAccessFile m_raf;
+		private ByteBuffer m_mapped;
+		private FSDataInputStream m_input;
+
+		private ShardReader(Path path) throws IOException {
+			m_path = path;
+			m_status = m_fs.getFileStatus(path);
+			File file = toLocalFile(path);
+			if ( file!=null ) {
+				m_raf = new RandomAccessFile(file, "r");
+				if ( m_status.getLen()<=Integer.MAX_VALUE ) {
+					m_mapped = m_raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, m_status.getLen());
+				}
+			} else {
+				m_input = m_fs.open(path);
+			}
+		}
+
+		private File toLocalFile(Path path) {
+			URI uri = path.toUri();
+			return "file".equals(uri.getScheme()) ? new File(uri.getPath()) : null;
+		}
+
+		private boolean isLocal() {
+			return m_raf!=null;
+		}
+
+		/**
+		  * Read-only view of the file content, without copying
+		*/
+		private ByteBuffer slice(PackEntry entry) throws IOException {
+			if ( m_mapped!=null ) {
+				ByteBuffer buf = m_mapped.duplicate();
+				buf.position((int) entry.offset);
+				buf.limit((int) (entry.offset + entry.length));
+				return buf.slice();
+			}
+			return m_raf.getChannel().map(FileChannel.MapMode.READ_ONLY, entry.offset, entry.length);
+		}
+
+		private InputStream openStream(PackEntry entry) throws IOException {
+			return isLocal() ?
+				new ByteBufferInputStream(slice(entry)) :
+				new BufferedInputStream(new PositionedRangeInputStream(m_input, entry.offset, entry.length));
+		}
+
+		private void read(PackEntry entry, byte[] bytes, int offset) throws IOException {
+			if ( isLocal() ) {
+				slice(entry).get(bytes, offset, (int) entry.length);
+			} else {
+				m_input.readFully(entry.offset, bytes, offset, (int) entry.length);
+			}
+		}
+
+		private BlockLocation[] getBlockLocation(PackEntry entry) throws IOException {
+			return m_fs.getFileBlockLocations(m_status, entry.offset, entry.length);
+		}
+
+		private void close() throws IOException {
+			m_mapped = null;
+			if ( m_raf!=null ) {
+				m_raf.close();
+			}
+			if ( m_input!=null ) {
+				m_input.close();
+			}
+		}
+
+		public String toString() {
+			return m_path.toString();
+		}
+
+	}
+
+
+	private class PackDataFileSource extends AbstractDataFileSource {
+
+		private DataFileSource m_cache;
+		private String m_name;
+		private PackEntry m_entry;
+		private ShardReader m_reader;
+
+		private PackDataFileSource(String name, PackEntry entry, ShardReader reader) {
+			m_name = name;
+			m_entry = entry;
+			m_reader = reader;
+		}
+
+		public long getFileSize() {
+			return m_entry.length;
+		}
+
+		public InputStream getFileInputStream() throws IOException {
+			synchronized(this) {
+				if ( m_cache!=null ) {
+					s_log.debug("Creating stream for reading file content cached from [{}]", getDescription());
+					return m_cache.getFileInputStream();
+				}
+			}
+			s_log.debug("Creating stream for reading file content from [{}]", getDescription());
+			return m_reader.openStream(m_entry);
+		}
+
+		public byte[] getFileBytes() throws IOException {
+			return getContent().getFileBytes();
+		}
+
+		/**
+		  * Copies straight from the shard into the buffer, once
+		*/
+		public void getFileBytes(ByteBuffer buf) throws IOException {
+			if ( buf.remaining() < m_entry.length ) {
+				throw new BufferOverflowException();
+			}
+			synchronized(this) {
+				if ( m_cache!=null || ContentCache.getInstance().isEnabled() ) {
+					getContent().getFileBytes(buf);
+					return;
+				}
+			}
+			if ( buf.hasArray() ) {
+				int offset = buf.arrayOffset() + buf.position();
+				m_reader.read(m_entry, buf.array(), offset);
+				verify(buf.array(), offset);
+				buf.position(buf.position() + (int) m_entry.length);
+			} else if ( m_reader.isLocal() ) {
+				copyVerified(m_reader.slice(m_entry), buf);
+			} else {
+				buf.put(readBytes());
+			}
+		}
+
+		// when the shared cache is enabled it replaces the private one
+		private synchronized DataFileSource getContent() throws IOException {
+			ContentCache cache = ContentCache.getInstance();
+			if ( cache.isEnabled() ) {
+				return ContentCache.toFileSource(cache.get(m_reader.toString(), m_entry.offset, m_entry.length, new ContentCache.Loader() {
+					public byte[] load() throws IOException {
+						return readBytes();
+					}
+				}));
+			}
+			if ( m_cache==null ) {
+				m_cache = new BytesDataFileSource(readBytes());
+			}
+			return m_cache;
+		}
+
+		private byte[] readBytes() throws IOException {
+			s_log.debug("Reading file content from [{}]", getDescription());
+			byte[] bytes = new byte[(int) m_entry.length];
+			m_reader.read(m_entry, bytes, 0);
+			verify(bytes, 0);
+			return bytes;
+		}
+
+		private void verify(byte[] bytes, int offset) throws IOException {
+			CRC32 crc = new CRC32();
+			crc.update(bytes, offset, (int) m_entry.length);
+			verify(crc);
+		}
+
+		private void verify(CRC32 crc) throws IOException {
+			if ( (int) crc.getValue()!=m_entry.checksum ) {
+				throw new IOException(String.format("Checksum mismatch reading [%s]", getDescription()));
+			}
+		}
+
+		/**
+		  * Computes the checksum through a small chunk as the slice is
+		  * copied; on a mismatch the buffer position is left unchanged.
+		*/
+		private void copyVerified(ByteBuffer slice, ByteBuffer buf) throws IOException {
+			int start = buf.position();
+			CRC32 crc = new CRC32();
+			byte[] chunk = new byte[(int) Math.min(m_entry.length, 64 * 1024)];
+			while ( slice.hasRemaining() ) {
+				int num = Math.min(chunk.length, slice.remaining());
+				slice.get(chunk, 0, num);
+				crc.update(chunk, 0, num);
+				buf.put(chunk, 0, num);
+			}
+			try {
+				verify(crc);
+			} catch ( IOException ioe ) {
+				buf.position(start);
+				throw ioe;
+			}
+		}
+
+		public synchronized void release() {
+			if ( m_cache!=null ) {
+				m_cache.release();
+			}
+			m_cache=null;
+		}
+
+		@Override public String getFileName() {
+			return m_name;
+		}
+
+		public String getDescription() {
+			return getFileDescription(m_name);
+		}
+
+		@Override public BlockLocation[] getBlockLocation() throws IOException {
+			return m_reader.getBlockLocation(m_entry);
+		}
+
+	}
+
+
+	private class PackDataFileSink extends AbstractDataFileSink {
+
+		private String m_name;
+
+		private PackDataFileSink(String name) {
+			m_name = name;
+		}
+
+		/**
+		  * Only one file can be streamed at a time; this waits until the
+		  * stream of any other thread is closed.
+		*/
+		public OutputStream getFileOutputStream() throws IOException {
+			final FSDataOutputStream shard = openForSink();
+			final long start = shard.getPos();
+			final CRC32 crc = new CRC32();
+			return new FilterOutputStream(shard) {
+
+				private boolean m_closed;
+
+				public void write(int b) throws IOException {
+					shard.write(b);
+					crc.update(b);
+				}
+
+				public void write(byte[] b, int off, int len) throws IOException {
+					shard.write(b, off, len);
+					crc.update(b, off, len);
+				}
+
+				public void close() throws IOException {
+					if ( m_closed ) {
+						return;
+					}
+					m_closed = true;
+					addWritten(m_name, start, shard.getPos() - start, (int) crc.getValue());
+					closeForSink();
+				}
+
+			};
+		}
+
+		public void writeFile(byte[] bytes) throws IOException {
+			s_log.debug("Writing {} bytes of file content to [{}]", bytes.length, getDescription());
+			synchronized(PackFileSource.this) {
+				FSDataOutputStream out = openForSink();
+				try {
+					long start = out.getPos();
+					CRC32 crc = new CRC32();
+					out.write(bytes);
+					crc.update(bytes);
+					addWritten(m_name, start, bytes.length, (int) crc.getValue());
+				} finally {
+					closeForSink();
+				}
+			}
+		}
+
+		/**
+		  * Waits for writes from other threads to finish, since files go
+		  * into the shard one at a time.  Nothing is added to the index if
+		  * reading the input fails.
+		*/
+		public void writeFile(InputStream input) throws IOException {
+			s_log.debug("Writing file content from stream to [{}]", getDescription());
+			synchronized(PackFileSource.this) {
+				FSDataOutputStream out = openForSink();
+				try {
+					long start = out.getPos();
+					CRC32 crc = new CRC32();
+					byte[] buf = new byte[64 * 1024];
+					int num;
+					while ( (num=input.read(buf))>=0 ) {
+						out.write(buf, 0, num);
+						crc.update(buf, 0, num);
+					}
+					addWritten(m_name, start, out.getPos() - start, (int) crc.getValue());
+				} finally {
+					closeForSink();
+				}
+			}
+		}
+
+		@Override public String getFileName() {
+			return m_name;
+		}
+
+		public String getDescription() {
+			return getFileDescription(m_name);
+		}
+
+	}
+
+
+	private static class ByteBufferInputStream extends InputStream {
+
+		private ByteBuffer m_buf;
+
+		private ByteBufferInputStream(ByteBuffer buf) {
+			m_buf = buf;
+		}
+
+		public int read() {
+			return m_buf.hasRemaining() ? m_buf.get() & 0xff : -1;
+		}
+
+		public int read(byte[] b, int off, int len) {
+			if ( !m_buf.hasRemaining() ) {
+				return len==0 ? 0 : -1;
+			}
+			int num = Math.min(len, m_buf.remaining());
+			m_buf.get(b, off, num);
+			return num;
+		}
+
+		public long skip(long n) {
+			int num = (int) Math.max(0, Math.min(n, m_buf.remaining()));
+			m_buf.position(m_buf.position() + num);
+			return num;
+		}
+
+		public int available() {
+			return m_buf.remaining();
+		}
+
+	}
+
+}
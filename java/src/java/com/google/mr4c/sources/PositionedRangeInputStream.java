@@ -0,0 +1,69 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.sources;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.hadoop.fs.PositionedReadable;
+
+/**
+  * Stream over a byte range of a file, using positioned reads so many
+  * streams can share one open file.
+*/
+public class PositionedRangeInputStream extends InputStream {
+
+	private PositionedReadable m_input;
+	private long m_pos;
+	private long m_end;
+
+	public PositionedRangeInputStream(PositionedReadable input, long start, long length) {
+		m_input = input;
+		m_pos = start;
+		m_end = start + length;
+	}
+
+	public int read() throws IOException {
+		byte[] b = new byte[1];
+		return read(b, 0, 1)<0 ? -1 : b[0] & 0xff;
+	}
+
+	public int read(byte[] b, int off, int len) throws IOException {
+		if ( m_pos>=m_end ) {
+			return -1;
+		}
+		int num = (int) Math.min(len, m_end - m_pos);
+		int read = m_input.read(m_pos, b, off, num);
+		if ( read<0 ) {
+			throw new EOFException(String.format("Unexpected end of file at position %s", m_pos));
+		}
+		m_pos += read;
+		return read;
+	}
+
+	public long skip(long n) {
+		long num = Math.max(0, Math.min(n, m_end - m_pos));
+		m_pos += num;
+		return num;
+	}
+
+	public int available() {
+		return (int) Math.min(Integer.MAX_VALUE, m_end - m_pos);
+	}
+
+}
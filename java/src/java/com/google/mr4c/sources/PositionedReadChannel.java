@@ -0,0 +1,128 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.sources;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.hadoop.fs.PositionedReadable;
+
+/**
+  * Read-only channel over a stream that supports positioned reads, such as
+  * one opened from HDFS or S3.  Content is fetched a block at a time, only
+  * for the blocks actually touched, and the most recently used blocks are
+  * kept in memory.
+*/
+public class PositionedReadChannel implements RandomAccessChannel {
+
+	private PositionedReadable m_input;
+	private long m_size;
+	private int m_blockSize;
+	private Map<Long,byte[]> m_blocks;
+	private long m_position;
+	private long m_bytesFetched;
+
+	/**
+	  * @param size number of bytes in the content
+	  * @param blockSize number of bytes fetched at a time
+	  * @param maxBlocks number of blocks kept in memory
+	*/
+	public PositionedReadChannel(PositionedReadable input, long size, int blockSize, final int maxBlocks) {
+		if ( blockSize<1 || maxBlocks<1 ) {
+			throw new IllegalArgumentException(String.format("Block size [%s] and block count [%s] must be greater than zero", blockSize, maxBlocks));
+		}
+		m_input = input;
+		m_size = size;
+		m_blockSize = blockSize;
+		m_blocks = new LinkedHashMap<Long,byte[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			protected boolean removeEldestEntry(Map.Entry<Long,byte[]> eldest) {
+				return size()>maxBlocks;
+			}
+		};
+	}
+
+	public synchronized int read(ByteBuffer buf) throws IOException {
+		if ( m_position>=m_size ) {
+			return -1;
+		}
+		int total = 0;
+		while ( buf.hasRemaining() && m_position<m_size ) {
+			long index = m_position / m_blockSize;
+			byte[] block = getBlock(index);
+			int offset = (int) (m_position - index * m_blockSize);
+			int num = Math.min(buf.remaining(), block.length - offset);
+			buf.put(block, offset, num);
+			m_position += num;
+			total += num;
+		}
+		return total;
+	}
+
+	private byte[] getBlock(long index) throws IOException {
+		byte[] block = m_blocks.get(index);
+		if ( block==null ) {
+			long start = index * m_blockSize;
+			block = new byte[(int) Math.min(m_blockSize, m_size - start)];
+			try {
+				m_input.readFully(start, block, 0, block.length);
+			} catch ( EOFException eofe ) {
+				throw new IOException(String.format("Content ended before expected size of %s bytes", m_size), eofe);
+			}
+			m_bytesFetched += block.length;
+			m_blocks.put(index, block);
+		}
+		return block;
+	}
+
+	public void write(ByteBuffer buf) throws IOException {
+		throw new UnsupportedOperationException("Positioned read channel is read-only");
+	}
+
+	public synchronized long getPosition() {
+		return m_position;
+	}
+
+	/**
+	  * Any position is allowed; reading past the end returns -1
+	*/
+	public synchronized void setPosition(long position) throws IOException {
+		if ( position<0 ) {
+			throw new IOException(String.format("Negative position [%s]", position));
+		}
+		m_position = position;
+	}
+
+	public long getSize() {
+		return m_size;
+	}
+
+	public void setSize(long size) {
+		throw new UnsupportedOperationException("Positioned read channel is read-only");
+	}
+
+	/**
+	  * Total bytes read from the underlying stream so far
+	*/
+	public synchronized long getBytesFetched() {
+		return m_bytesFetched;
+	}
+
+}
@@ -0,0 +1,47 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.sources;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+  * Positioned byte access to file content, whether or not there is a
+  * local file behind it.
+*/
+public interface RandomAccessChannel {
+
+	/**
+	  * Reads from the current position into the buffer, and advances the
+	  * position.  Returns the number of bytes read, or -1 at the end.
+	*/
+	int read(ByteBuffer buf) throws IOException;
+
+	/**
+	  * Writes the whole buffer at the current position
+	*/
+	void write(ByteBuffer buf) throws IOException;
+
+	long getPosition() throws IOException;
+
+	void setPosition(long position) throws IOException;
+
+	long getSize() throws IOException;
+
+	void setSize(long size) throws IOException;
+
+}
@@ -46,6 +46,10 @@ public class RandomAccessFileSink implements RandomAccessible {
 		return m_raf;
 	}
 
+	public RandomAccessChannel getChannel() throws IOException {
+		return new FileRandomAccessChannel(getRandomAccess());
+	}
+
 	public synchronized void close() throws IOException {
 		if ( m_raf!=null ) {
 			m_raf.close();
@@ -16,22 +16,38 @@
 
 package com.google.mr4c.sources;
 
+import com.google.mr4c.config.category.Category;
+import com.google.mr4c.config.category.CategoryConfig;
+import com.google.mr4c.config.category.CoreConfig;
+import com.google.mr4c.config.category.MR4CConfig;
 import com.google.mr4c.content.ContentFactories;
+import com.google.mr4c.util.MR4CLogging;
 
 import java.io.File;
 import java.io.InputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.net.URI;
+
+import org.apache.hadoop.fs.PositionedReadable;
+
+import org.slf4j.Logger;
 
 /**
-  * Wrapper around a DataFileSource to allow random access
+  * Wrapper around a DataFileSource to allow random access.  The channel
+  * reads remote content in place when its stream supports positioned
+  * reads; otherwise the content is staged to a local file.
 */
 public class RandomAccessFileSource implements RandomAccessible {
 
+	protected static final Logger s_log = MR4CLogging.getLogger(RandomAccessFileSource.class);
+
 	private DataFileSource m_src;
 	private File m_file;
 	private RandomAccessFile m_raf;
 	private boolean m_staged;
+	private InputStream m_input;
+	private RandomAccessChannel m_channel;
 
 	public RandomAccessFileSource(DataFileSource src) {
 		m_src = src;
@@ -46,7 +62,55 @@ public class RandomAccessFileSource implements RandomAccessible {
 		return m_raf;
 	}
 
+	public synchronized RandomAccessChannel getChannel() throws IOException {
+		if ( m_channel!=null ) {
+			return m_channel;
+		}
+		if ( m_raf==null ) {
+			m_channel = openPositionedRead();
+		}
+		if ( m_channel==null ) {
+			m_channel = new FileRandomAccessChannel(getRandomAccess());
+		}
+		return m_channel;
+	}
+
+	public boolean isPositionedRead() {
+		return m_input!=null;
+	}
+
+	// returns null if the source can't be read in place
+	private RandomAccessChannel openPositionedRead() throws IOException {
+		CategoryConfig conf = MR4CConfig.getDefaultInstance().getCategory(Category.CORE);
+		if ( !Boolean.parseBoolean(conf.getProperty(CoreConfig.PROP_RANDOM_POSITIONED, "true")) ) {
+			return null;
+		}
+		if ( m_src.getLocalFile()!=null || !(m_src instanceof URIDataFileSource) ) {
+			return null;
+		}
+		long size = m_src.getFileSize();
+		if ( size<0 ) {
+			return null;
+		}
+		URI uri = ((URIDataFileSource) m_src).getURI();
+		InputStream input = ContentFactories.readContentAsStream(uri);
+		if ( !(input instanceof PositionedReadable) ) {
+			input.close();
+			return null;
+		}
+		int blockSize = Integer.parseInt(conf.getProperty(CoreConfig.PROP_RANDOM_BLOCK_KB, "64")) * 1024;
+		int blocks = Integer.parseInt(conf.getProperty(CoreConfig.PROP_RANDOM_CACHE_BLOCKS, "32"));
+		s_log.info("Reading {} bytes in place from [{}]", size, uri);
+		m_input = input;
+		return new PositionedReadChannel((PositionedReadable) input, size, blockSize, blocks);
+	}
+
 	public synchronized void close() throws IOException {
+		m_channel = null;
+		if ( m_input!=null ) {
+			m_input.close();
+			m_input = null;
+		}
 		if ( m_raf!=null ) {
 			m_raf.close();
 			m_raf=null;
@@ -23,6 +23,11 @@ public interface RandomAccessible {
 
 	RandomAccessFile getRandomAccess() throws IOException;
 
+	/**
+	  * Byte access that may avoid a local file entirely
+	*/
+	RandomAccessChannel getChannel() throws IOException;
+
 	void close() throws IOException;
 
 	boolean isStaged();
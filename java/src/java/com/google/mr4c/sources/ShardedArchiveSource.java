@@ -0,0 +1,32 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.sources;
+
+import java.io.IOException;
+
+/**
+  * An archive written in shards, one per writer, which can be written
+  * concurrently and combined once they are all finished.
+*/
+public interface ShardedArchiveSource extends ArchiveSource {
+
+	/**
+	  * Combines the indexes of all the shards written so far
+	*/
+	void mergeShards() throws IOException;
+
+}
@@ -16,39 +16,231 @@
 
 package com.google.mr4c.sources;
 
+import com.google.mr4c.config.category.Category;
+import com.google.mr4c.config.category.CategoryConfig;
+import com.google.mr4c.config.category.CoreConfig;
+import com.google.mr4c.config.category.MR4CConfig;
 import com.google.mr4c.dataset.Dataset;
 import com.google.mr4c.sources.DatasetSource.WriteMode;
+import com.google.mr4c.util.MR4CLogging;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.IOUtils;
 
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import org.slf4j.Logger;
+
 public abstract class SourceUtils {
 
+	protected static final Logger s_log = MR4CLogging.getLogger(SourceUtils.class);
+
+	private static AtomicInteger s_threadCount = new AtomicInteger();
+
 	public static void copySource(DatasetSource src, DatasetSource dest) throws IOException {
 		Dataset dataset = src.readDataset();
 		dest.writeDataset(dataset,WriteMode.ALL);
 		dest.copyToFinal();
 	}
 
+	/**
+	  * Copies files in parallel, retrying files that fail.  Thread and retry
+	  * counts come from the core config.
+	*/
 	public static void copySource(FileSource src, FileSource dest, boolean streamOutput) throws IOException {
-		for ( String file : src.getAllFileNames() ) {
-			copyFile(src, file, dest, file, streamOutput);
-		}
+		copyFiles(src, src.getAllFileNames(), dest, streamOutput);
 		dest.close();
 		src.close();
 	}
 
+	/**
+	  * Moves staged files to their final location.  On the same file system
+	  * this is a rename of the whole directory if the destination is empty,
+	  * and a rename per file if it isn't.  Files that can't be renamed are
+	  * copied in parallel, and are left in the staging location.
+	*/
+	public static void commitSource(FileSource stage, FileSource dest) throws IOException {
+		long start = System.currentTimeMillis();
+		List<String> names = stage.getAllFileNames();
+		try {
+			if ( renameDirectory(stage, dest) ) {
+				s_log.info("Committed {} files from [{}] to [{}] by renaming the directory in {} ms", new Object[] {names.size(), stage.getDescription(), dest.getDescription(), System.currentTimeMillis()-start});
+				return;
+			}
+			List<String> toCopy = new ArrayList<String>();
+			for ( String name : names ) {
+				if ( !renameFile(stage, name, dest) ) {
+					toCopy.add(name);
+				}
+			}
+			copyFiles(stage, toCopy, dest, true);
+			s_log.info("Committed {} files from [{}] to [{}]; renamed {} and copied {} in {} ms", new Object[] {names.size(), stage.getDescription(), dest.getDescription(), names.size()-toCopy.size(), toCopy.size(), System.currentTimeMillis()-start});
+		} finally {
+			// content read from either side before the move is stale now
+			invalidateContent(stage);
+			invalidateContent(dest);
+			dest.close();
+			stage.close();
+		}
+	}
+
+	private static void invalidateContent(FileSource src) {
+		ContentCache cache = ContentCache.getInstance();
+		if ( src instanceof HadoopFileSource ) {
+			cache.invalidateUnder(((HadoopFileSource) src).getDirectory().toUri().toString());
+		} else if ( src instanceof DiskFileSource ) {
+			cache.invalidateUnder(((DiskFileSource) src).getDirectory().toURI().toString());
+		}
+	}
+
+	private static boolean renameDirectory(FileSource stage, FileSource dest) throws IOException {
+		if ( stage instanceof HadoopFileSource && dest instanceof HadoopFileSource ) {
+			HadoopFileSource hadoopStage = (HadoopFileSource) stage;
+			HadoopFileSource hadoopDest = (HadoopFileSource) dest;
+			if ( !isSameFileSystem(hadoopStage, hadoopDest) ) {
+				return false;
+			}
+			FileSystem fs = hadoopDest.getFileSystem();
+			Path destDir = hadoopDest.getDirectory();
+			if ( fs.exists(destDir) ) {
+				FileStatus[] contents = fs.listStatus(destDir);
+				// rename would move the directory inside a non-empty one
+				if ( contents!=null && contents.length>0 ) {
+					return false;
+				}
+				fs.delete(destDir, false);
+			}
+			fs.mkdirs(destDir.getParent());
+			return fs.rename(hadoopStage.getDirectory(), destDir);
+		} else if ( stage instanceof DiskFileSource && dest instanceof DiskFileSource ) {
+			File stageDir = ((DiskFileSource) stage).getDirectory();
+			File destDir = ((DiskFileSource) dest).getDirectory();
+			if ( destDir.exists() ) {
+				String[] contents = destDir.list();
+				if ( contents==null || contents.length>0 || !destDir.delete() ) {
+					return false;
+				}
+			}
+			destDir.getAbsoluteFile().getParentFile().mkdirs();
+			return stageDir.renameTo(destDir);
+		} else {
+			return false;
+		}
+	}
+
+	private static boolean renameFile(FileSource stage, String name, FileSource dest) throws IOException {
+		if ( stage instanceof HadoopFileSource && dest instanceof HadoopFileSource ) {
+			HadoopFileSource hadoopStage = (HadoopFileSource) stage;
+			HadoopFileSource hadoopDest = (HadoopFileSource) dest;
+			if ( !isSameFileSystem(hadoopStage, hadoopDest) ) {
+				return false;
+			}
+			FileSystem fs = hadoopDest.getFileSystem();
+			Path destPath = hadoopDest.toPath(name);
+			fs.mkdirs(destPath.getParent());
+			if ( fs.exists(destPath) ) {
+				fs.delete(destPath, false);
+			}
+			return fs.rename(hadoopStage.toPath(name), destPath);
+		} else if ( stage instanceof DiskFileSource && dest instanceof DiskFileSource ) {
+			File destFile = ((DiskFileSource) dest).toFile(name);
+			destFile.getAbsoluteFile().getParentFile().mkdirs();
+			if ( destFile.exists() ) {
+				destFile.delete();
+			}
+			return ((DiskFileSource) stage).toFile(name).renameTo(destFile);
+		} else {
+			return false;
+		}
+	}
+
+	private static boolean isSameFileSystem(HadoopFileSource src1, HadoopFileSource src2) {
+		return src1.getFileSystem().getUri().equals(src2.getFileSystem().getUri());
+	}
+
+	private static void copyFiles(final FileSource src, List<String> names, final FileSource dest, final boolean streamOutput) throws IOException {
+		if ( names.isEmpty() ) {
+			return;
+		}
+		CategoryConfig conf = MR4CConfig.getDefaultInstance().getCategory(Category.CORE);
+		int threads = Integer.parseInt(conf.getProperty(CoreConfig.PROP_COPY_THREADS, "8"));
+		final int retries = Integer.parseInt(conf.getProperty(CoreConfig.PROP_COPY_RETRIES, "3"));
+		if ( threads<=1 || names.size()==1 ) {
+			for ( String name : names ) {
+				copyFileWithRetries(src, name, dest, streamOutput, retries);
+			}
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, names.size()), new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "mr4c-copy-" + s_threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			List<Future<Void>> results = new ArrayList<Future<Void>>();
+			for ( final String name : names ) {
+				results.add(executor.submit(new Callable<Void>() {
+					public Void call() throws IOException {
+						copyFileWithRetries(src, name, dest, streamOutput, retries);
+						return null;
+					}
+				}));
+			}
+			for ( Future<Void> result : results ) {
+				result.get();
+			}
+		} catch ( InterruptedException ie ) {
+			throw new InterruptedIOException("Interrupted copying files from " + src.getDescription());
+		} catch ( ExecutionException ee ) {
+			Throwable cause = ee.getCause();
+			if ( cause instanceof IOException ) {
+				throw (IOException) cause;
+			}
+			throw new IOException(cause);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void copyFileWithRetries(FileSource src, String name, FileSource dest, boolean streamOutput, int retries) throws IOException {
+		for ( int attempt=0; ; attempt++ ) {
+			try {
+				copyFile(src, name, dest, name, streamOutput);
+				return;
+			} catch ( IOException ioe ) {
+				if ( attempt>=retries ) {
+					throw ioe;
+				}
+				s_log.warn(String.format("Failed copying [%s] from [%s]; retrying", name, src.getDescription()), ioe);
+			}
+		}
+	}
+
 	public static void copySource(ArchiveSource src, ArchiveSource dest, boolean streamOutput) throws IOException {
 		List<String> files  = new ArrayList<String>(src.getAllFileNames());
 		Collections.sort(files);
@@ -121,6 +313,29 @@ public abstract class SourceUtils {
 		}
 		return result;
 	}
+
+	/**
+	  * Directory part of a file name in a file source; "" for names in the
+	  * top directory
+	*/
+	public static String getDirectoryName(String name) {
+		int index = name.lastIndexOf('/');
+		return index<0 ? "" : name.substring(0, index);
+	}
+
+	public static String toChildName(String dir, String child) {
+		return dir.isEmpty() ? child : dir + "/" + child;
+	}
+
+	public static List<String> getNamesInDirectory(Collection<String> names, String dir) {
+		List<String> result = new ArrayList<String>();
+		for ( String name : names ) {
+			if ( getDirectoryName(name).equals(dir) ) {
+				result.add(name);
+			}
+		}
+		return result;
+	}
 		
 }
 
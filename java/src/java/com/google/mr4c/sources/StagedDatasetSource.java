@@ -18,11 +18,14 @@ package com.google.mr4c.sources;
 
 import com.google.mr4c.dataset.DataFile;
 import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.keys.BasicDataKeyFilter;
 import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.keys.DataKeyFilter;
 
 import java.io.IOException;
+import java.util.List;
 
-public class StagedDatasetSource implements DatasetSource {
+public class StagedDatasetSource implements MergeableDatasetSource {
 
 	private DatasetSource m_actualSrc;
 	private DatasetSource m_stagingSrc;
@@ -36,6 +39,10 @@ public class StagedDatasetSource implements DatasetSource {
 		return m_actualSrc.readDataset();
 	}
 
+	public Dataset readDataset(DataKeyFilter filter) throws IOException {
+		return m_actualSrc.readDataset(filter);
+	}
+
 	public void writeDataset(Dataset dataset) throws IOException {
 		m_stagingSrc.writeDataset(dataset);
 	}
@@ -52,8 +59,61 @@ public class StagedDatasetSource implements DatasetSource {
 		return m_actualSrc.findDataFile(key);
 	}
 
+	/**
+	  * When both sides are directories of the same kind with the same
+	  * config, the staged files are committed as they are, by renaming where
+	  * possible.  Otherwise the staged dataset is read and written again.
+	*/
 	public void copyToFinal() throws IOException {
-		SourceUtils.copySource(m_stagingSrc, m_actualSrc);
+		if ( isSameFileLayout() ) {
+			FileSource stageFiles = ((FilesDatasetSource) m_stagingSrc).getFileSource();
+			FileSource actualFiles = ((FilesDatasetSource) m_actualSrc).getFileSource();
+			SourceUtils.commitSource(stageFiles, actualFiles);
+			m_actualSrc.copyToFinal();
+		} else {
+			SourceUtils.copySource(m_stagingSrc, m_actualSrc);
+		}
+	}
+
+	public boolean canWriteParts() {
+		return isSameFileLayout() || canWriteParts(m_actualSrc);
+	}
+
+	private static boolean canWriteParts(DatasetSource src) {
+		return src instanceof MergeableDatasetSource && ((MergeableDatasetSource) src).canWriteParts();
+	}
+
+	/**
+	  * With the same layout, staged files are moved into place by
+	  * mergeParts().  Otherwise the staged files of this part are written to
+	  * the actual source now.
+	*/
+	public void writePart(Dataset dataset, String partName) throws IOException {
+		if ( isSameFileLayout() ) {
+			return;
+		}
+		BasicDataKeyFilter filter = new BasicDataKeyFilter();
+		filter.addKeys(dataset.getAllFileKeys());
+		Dataset staged = m_stagingSrc.readDataset(filter);
+		((MergeableDatasetSource) m_actualSrc).writePart(staged, partName);
+	}
+
+	public void mergeParts(List<DataFileSource> metadataParts) throws IOException {
+		if ( isSameFileLayout() ) {
+			((MergeableDatasetSource) m_stagingSrc).mergeParts(metadataParts);
+			copyToFinal();
+		} else {
+			((MergeableDatasetSource) m_actualSrc).mergeParts(metadataParts);
+		}
+	}
+
+	private boolean isSameFileLayout() {
+		if ( m_stagingSrc.getClass()!=FilesDatasetSource.class || m_actualSrc.getClass()!=FilesDatasetSource.class ) {
+			return false;
+		}
+		FilesDatasetSource stage = (FilesDatasetSource) m_stagingSrc;
+		FilesDatasetSource actual = (FilesDatasetSource) m_actualSrc;
+		return stage.getConfig()==actual.getConfig();
 	}
 
 	public void ensureExists() throws IOException {
@@ -22,8 +22,10 @@ import com.google.mr4c.config.execution.ValueConfig;
 import com.google.mr4c.dataset.DataFile;
 import com.google.mr4c.dataset.Dataset;
 import com.google.mr4c.dataset.DatasetTransformer;
+import com.google.mr4c.keys.BasicDataKeyFilter;
 import com.google.mr4c.keys.DataKey;
 import com.google.mr4c.keys.DataKeyDimension;
+import com.google.mr4c.keys.DataKeyFilter;
 import com.google.mr4c.keys.ElementTransformer;
 import com.google.mr4c.keys.KeyTransformer;
 
@@ -54,6 +56,28 @@ public class TransformedDatasetSource implements DatasetSource {
 		return m_readTrans.transformDataset(origDataset, false);
 	}
 
+	public Dataset readDataset(DataKeyFilter filter) throws IOException {
+		Dataset origDataset = m_src.readDataset(toOriginalFilter(filter));
+		return m_readTrans.transformDataset(origDataset, false);
+	}
+
+	// filter passed in is in terms of the transformed keys
+	private DataKeyFilter toOriginalFilter(final DataKeyFilter filter) {
+		if ( filter instanceof BasicDataKeyFilter ) {
+			// keep the explicit key list so the wrapped source can look up keys directly
+			BasicDataKeyFilter origFilter = new BasicDataKeyFilter();
+			for ( DataKey key : ((BasicDataKeyFilter) filter).getKeys() ) {
+				origFilter.addKey(m_writeKeyTrans.transformKey(key));
+			}
+			return origFilter;
+		}
+		return new DataKeyFilter() {
+			public boolean filter(DataKey key) {
+				return filter.filter(m_readKeyTrans.transformKey(key));
+			}
+		};
+	}
+
 	public void writeDataset(Dataset dataset) throws IOException {
 		writeDataset(dataset, WriteMode.ALL);
 	}
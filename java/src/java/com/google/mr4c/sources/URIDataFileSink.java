@@ -52,18 +52,21 @@ public class URIDataFileSink extends AbstractDataFileSink {
 
 	public OutputStream getFileOutputStream() throws IOException {
 		s_log.debug("Creating stream for writing file content to [{}]", m_uri);
+		ContentCache.getInstance().invalidate(m_uri.toString(), 0, -1);
 		ContentFactories.ensureParentExists(m_uri);
 		return ContentFactories.getOutputStreamForContent(m_uri);
 	}
 
 	public void writeFile(byte[] bytes) throws IOException {
 		s_log.debug("Writing {} bytes of file content to [{}]", bytes.length, m_uri);
+		ContentCache.getInstance().invalidate(m_uri.toString(), 0, -1);
 		ContentFactories.ensureParentExists(m_uri);
 		ContentFactories.writeContent(m_uri, bytes);
 	}
 
 	public void writeFile(InputStream input) throws IOException {
 		s_log.debug("Writing file content from stream to [{}]", m_uri);
+		ContentCache.getInstance().invalidate(m_uri.toString(), 0, -1);
 		ContentFactories.ensureParentExists(m_uri);
 		ContentFactories.writeContent(m_uri, input);
 	}
@@ -19,6 +19,7 @@ package com.google.mr4c.sources;
 import com.google.mr4c.content.ContentFactories;
 import com.google.mr4c.util.MR4CLogging;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.io.IOException;
@@ -58,6 +59,10 @@ public class URIDataFileSource extends AbstractDataFileSource {
 		m_file = file;
 	}
 
+	public URI getURI() {
+		return m_uri;
+	}
+
 	public long getFileSize() throws IOException {
 		if ( m_cache==null ) {
 			return ContentFactories.getContentLength(m_uri);
@@ -67,7 +72,11 @@ public class URIDataFileSource extends AbstractDataFileSource {
 	}
 
 	public InputStream getFileInputStream() throws IOException {
-		if ( m_cache==null ) {
+		byte[] shared = ContentCache.getInstance().getIfPresent(m_uri.toString(), 0, -1);
+		if ( shared!=null ) {
+			s_log.debug("Creating stream for reading file content shared from [{}]", m_uri);
+			return new ByteArrayInputStream(shared);
+		} else if ( m_cache==null ) {
 			s_log.debug("Creating stream for reading file content from [{}]", m_uri);
 			return ContentFactories.readContentAsStream(m_uri);
 		} else {
@@ -77,22 +86,34 @@ public class URIDataFileSource extends AbstractDataFileSource {
 	}
 
 	public byte[] getFileBytes() throws IOException {
-		loadBytesIfNecessary();
-		return m_cache.getFileBytes();
+		return getContent().getFileBytes();
 	}
 
-	private synchronized void loadBytesIfNecessary() throws IOException {
+	// when the shared cache is enabled it replaces the private one
+	private synchronized DataFileSource getContent() throws IOException {
+		ContentCache cache = ContentCache.getInstance();
+		if ( cache.isEnabled() ) {
+			return ContentCache.toFileSource(cache.get(m_uri.toString(), 0, -1, new ContentCache.Loader() {
+				public byte[] load() throws IOException {
+					return readBytes();
+				}
+			}));
+		}
 		if ( m_cache==null ) {
-			s_log.debug("Reading file content from [{}]", m_uri);
-			byte[] bytes = ContentFactories.readContentAsBytes(m_uri);
-			s_log.debug("Read {} bytes from [{}]", bytes.length, m_uri);
-			m_cache = new BytesDataFileSource(bytes);
+			m_cache = new BytesDataFileSource(readBytes());
 		}
+		return m_cache;
+	}
+
+	private byte[] readBytes() throws IOException {
+		s_log.debug("Reading file content from [{}]", m_uri);
+		byte[] bytes = ContentFactories.readContentAsBytes(m_uri);
+		s_log.debug("Read {} bytes from [{}]", bytes.length, m_uri);
+		return bytes;
 	}
 
 	public void getFileBytes(ByteBuffer buf) throws IOException {
-		loadBytesIfNecessary();
-		m_cache.getFileBytes(buf);
+		getContent().getFileBytes(buf);
 	}
 		
 
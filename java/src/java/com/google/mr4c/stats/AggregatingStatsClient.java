@@ -0,0 +1,279 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.stats;
+
+import com.google.mr4c.util.MR4CLogging;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+
+/**
+  * Aggregates stats in memory and forwards them to another client in
+  * batches, so recording a stat never does I/O on the caller's thread.
+  * Counters are summed, the last value of a gauge wins, and timings are
+  * collected into histograms.  On each flush, every timing key is sent as
+  * [key].count, and gauges [key].mean, [key].p50, [key].p95, [key].p99 and
+  * [key].max.
+  *
+  * Flushes run on a daemon thread, so they never hold up JVM exit, and
+  * once more from a shutdown hook.  Call flush() at the end of a task to
+  * make sure nothing recorded is lost.  Sample rates are ignored: since
+  * recording is cheap, every value is counted.
+*/
+public class AggregatingStatsClient implements StatsClient {
+
+	protected static final Logger s_log = MR4CLogging.getLogger(AggregatingStatsClient.class);
+
+	private static final AtomicInteger s_threadCount = new AtomicInteger();
+
+	private StatsClient m_target;
+	private ConcurrentMap<String,AtomicLong> m_counters = new ConcurrentHashMap<String,AtomicLong>();
+	private ConcurrentMap<String,Double> m_gauges = new ConcurrentHashMap<String,Double>();
+	private ConcurrentMap<String,AtomicReference<StatsHistogram>> m_timings = new ConcurrentHashMap<String,AtomicReference<StatsHistogram>>();
+	// recorders share the read lock; flush takes the write lock to swap
+	// histograms out, so no timing lands in one that was already sent
+	private ReadWriteLock m_timingLock = new ReentrantReadWriteLock();
+	private ScheduledExecutorService m_flusher;
+	private Thread m_hook;
+
+	/**
+	  * @param target client the aggregated stats are sent to; its flush()
+	  *   is called at the end of each batch
+	  * @param flushMillis time between flushes, or zero to flush only when
+	  *   flush() is called
+	*/
+	public AggregatingStatsClient(StatsClient target, long flushMillis) {
+		m_target = target;
+		if ( flushMillis>0 ) {
+			m_flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "mr4c-stats-" + s_threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			m_flusher.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					flushQuietly();
+				}
+			}, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+		}
+		m_hook = new Thread("mr4c-stats-final-flush") {
+			public void run() {
+				flushQuietly();
+			}
+		};
+		Runtime.getRuntime().addShutdownHook(m_hook);
+	}
+
+	public boolean timing(String key, int value) {
+		AtomicReference<StatsHistogram> ref = getHistogram(key);
+		Lock lock = m_timingLock.readLock();
+		lock.lock();
+		try {
+			ref.get().record(value);
+		} finally {
+			lock.unlock();
+		}
+		return true;
+	}
+
+	public boolean timing(String key, int value, double sampleRate) {
+		return timing(key, value);
+	}
+
+	public boolean decrement(String key) {
+		return increment(key, -1);
+	}
+
+	public boolean decrement(String key, int magnitude) {
+		return increment(key, -Math.abs(magnitude));
+	}
+
+	public boolean decrement(String key, int magnitude, double sampleRate) {
+		return decrement(key, magnitude);
+	}
+
+	public boolean decrement(String... keys) {
+		return increment(-1, 1.0, keys);
+	}
+
+	public boolean decrement(int magnitude, String... keys) {
+		return increment(-Math.abs(magnitude), 1.0, keys);
+	}
+
+	public boolean decrement(int magnitude, double sampleRate, String... keys) {
+		return increment(-Math.abs(magnitude), sampleRate, keys);
+	}
+
+	public boolean increment(String key) {
+		return increment(key, 1);
+	}
+
+	public boolean increment(String key, int magnitude) {
+		getValue(m_counters, key).addAndGet(magnitude);
+		return true;
+	}
+
+	public boolean increment(String key, int magnitude, double sampleRate) {
+		return increment(key, magnitude);
+	}
+
+	public boolean increment(int magnitude, double sampleRate, String... keys) {
+		for ( String key : keys ) {
+			increment(key, magnitude);
+		}
+		return true;
+	}
+
+	public boolean gauge(String key, double magnitude) {
+		m_gauges.put(key, magnitude);
+		return true;
+	}
+
+	public boolean gauge(String key, double magnitude, double sampleRate) {
+		return gauge(key, magnitude);
+	}
+
+	/**
+	  * Sends everything recorded since the last flush, and starts over.  A
+	  * gauge is only sent again once it is set again.  Timings recorded
+	  * while the histograms are swapped out go in the next batch.
+	*/
+	public synchronized boolean flush() {
+		boolean sent = false;
+		for ( Map.Entry<String,AtomicLong> entry : m_counters.entrySet() ) {
+			long value = entry.getValue().getAndSet(0);
+			if ( value!=0 ) {
+				sendCount(entry.getKey(), value);
+				sent = true;
+			}
+		}
+		for ( Map.Entry<String,Double> entry : m_gauges.entrySet() ) {
+			// if the gauge was set again meanwhile, the new value waits for the next flush
+			if ( m_gauges.remove(entry.getKey(), entry.getValue()) ) {
+				m_target.gauge(entry.getKey(), entry.getValue());
+				sent = true;
+			}
+		}
+		for ( Map.Entry<String,StatsHistogram> entry : swapHistograms().entrySet() ) {
+			StatsHistogram hist = entry.getValue();
+			if ( hist.getCount()>0 ) {
+				sendHistogram(entry.getKey(), hist);
+				sent = true;
+			}
+		}
+		if ( sent ) {
+			m_target.flush();
+		}
+		return sent;
+	}
+
+	/**
+	  * Stops the flush thread and sends anything still pending
+	*/
+	public void close() {
+		if ( m_flusher!=null ) {
+			m_flusher.shutdown();
+		}
+		flush();
+		try {
+			Runtime.getRuntime().removeShutdownHook(m_hook);
+		} catch ( IllegalStateException ise ) {
+			// already shutting down
+		}
+	}
+
+	private Map<String,StatsHistogram> swapHistograms() {
+		Map<String,StatsHistogram> hists = new LinkedHashMap<String,StatsHistogram>();
+		Lock lock = m_timingLock.writeLock();
+		lock.lock();
+		try {
+			for ( Map.Entry<String,AtomicReference<StatsHistogram>> entry : m_timings.entrySet() ) {
+				hists.put(entry.getKey(), entry.getValue().getAndSet(new StatsHistogram()));
+			}
+		} finally {
+			lock.unlock();
+		}
+		return hists;
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch ( RuntimeException re ) {
+			s_log.warn("Failed to flush stats", re);
+		}
+	}
+
+	private void sendCount(String key, long value) {
+		// the target only takes int increments
+		while ( value!=0 ) {
+			int num = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+			m_target.increment(key, num);
+			value -= num;
+		}
+	}
+
+	private void sendHistogram(String key, StatsHistogram hist) {
+		sendCount(key + ".count", hist.getCount());
+		m_target.gauge(key + ".mean", hist.getMean());
+		m_target.gauge(key + ".p50", hist.getPercentile(0.50));
+		m_target.gauge(key + ".p95", hist.getPercentile(0.95));
+		m_target.gauge(key + ".p99", hist.getPercentile(0.99));
+		m_target.gauge(key + ".max", hist.getMax());
+	}
+
+	private AtomicReference<StatsHistogram> getHistogram(String key) {
+		AtomicReference<StatsHistogram> ref = m_timings.get(key);
+		if ( ref==null ) {
+			ref = new AtomicReference<StatsHistogram>(new StatsHistogram());
+			AtomicReference<StatsHistogram> existing = m_timings.putIfAbsent(key, ref);
+			if ( existing!=null ) {
+				ref = existing;
+			}
+		}
+		return ref;
+	}
+
+	private static AtomicLong getValue(ConcurrentMap<String,AtomicLong> map, String key) {
+		AtomicLong value = map.get(key);
+		if ( value==null ) {
+			value = new AtomicLong();
+			AtomicLong existing = map.putIfAbsent(key, value);
+			if ( existing!=null ) {
+				value = existing;
+			}
+		}
+		return value;
+	}
+
+}
@@ -55,24 +55,38 @@ public abstract class MR4CStats {
 		}
 	}
 	
-	private static StatsdClient createStatsdClient(CategoryConfig catConf) {
+	private static StatsClient createStatsdClient(CategoryConfig catConf) {
 		String host = catConf.getProperty(StatsConfig.PROP_STATSD_HOST, "localhost");
 		int port = Integer.parseInt(catConf.getProperty(StatsConfig.PROP_STATSD_PORT, "8125"));
 		int flush = Integer.parseInt(catConf.getProperty(StatsConfig.PROP_STATSD_FLUSH, "10"));
+		boolean aggregate = Boolean.parseBoolean(catConf.getProperty(StatsConfig.PROP_STATSD_AGGREGATE, "false"));
 	
 		s_log.info("Creating Statsd client for [{}:{}] ", host, port);
 
 		try {
 			StatsdClient client = new StatsdClient(host, port);
-			// Just going to push immediately - we may have short run times, plus the timer thread prevents exiting
-			// Uncomment these two lines to switch to a periodic flush
-			//client.enableMultiMetrics(true);
-			//client.startFlushTimer(1000*flush);
-			return client;
+			if ( !aggregate ) {
+				// Just going to push immediately - we may have short run times, plus the timer thread prevents exiting
+				return client;
+			}
+			// Stats are batched into as few packets as possible, from a daemon thread
+			s_log.info("Aggregating stats and flushing every {} seconds", flush);
+			client.enableMultiMetrics(true);
+			return new AggregatingStatsClient(client, 1000L*flush);
 		} catch ( Exception e ) {
 			throw new IllegalArgumentException(e);
 		}
 
 	}
 
+	/**
+	  * Sends the task counters, and any stats still held by the client.
+	  * Call at the end of a task.
+	*/
+	public static synchronized void flush() {
+		StatsClient client = getClient();
+		TaskStats.instance().publish(client);
+		client.flush();
+	}
+
 }
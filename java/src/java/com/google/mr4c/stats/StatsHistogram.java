@@ -0,0 +1,136 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+  * Lock-free histogram of non-negative integer values, such as timings in
+  * milliseconds.  Values below 128 are counted exactly; larger values fall
+  * into 16 buckets per power of two, so percentiles are within about 6%.
+*/
+public class StatsHistogram {
+
+	private static final int EXACT = 128;
+	private static final int EXACT_BITS = 7;
+	private static final int SUB_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = EXACT + (31 - EXACT_BITS) * SUB_BUCKETS;
+
+	private AtomicLongArray m_buckets = new AtomicLongArray(BUCKETS);
+	private AtomicLong m_count = new AtomicLong();
+	private AtomicLong m_sum = new AtomicLong();
+	private AtomicLong m_max = new AtomicLong(Long.MIN_VALUE);
+	private AtomicLong m_min = new AtomicLong(Long.MAX_VALUE);
+
+	/**
+	  * Negative values are counted as zero
+	*/
+	public void record(int value) {
+		value = Math.max(0, value);
+		m_buckets.incrementAndGet(toBucket(value));
+		m_count.incrementAndGet();
+		m_sum.addAndGet(value);
+		updateMax(value);
+		updateMin(value);
+	}
+
+	public long getCount() {
+		return m_count.get();
+	}
+
+	public long getSum() {
+		return m_sum.get();
+	}
+
+	public long getMax() {
+		return getCount()==0 ? 0 : m_max.get();
+	}
+
+	public long getMin() {
+		return getCount()==0 ? 0 : m_min.get();
+	}
+
+	public double getMean() {
+		long count = getCount();
+		return count==0 ? 0 : (double) getSum() / count;
+	}
+
+	/**
+	  * Returns the smallest bucket value that at least the given fraction
+	  * of recorded values are at or below, capped by the maximum
+	*/
+	public long getPercentile(double fraction) {
+		long count = 0;
+		long[] counts = new long[BUCKETS];
+		for ( int i=0; i<BUCKETS; i++ ) {
+			counts[i] = m_buckets.get(i);
+			count += counts[i];
+		}
+		if ( count==0 ) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(fraction * count);
+		rank = Math.max(1, Math.min(count, rank));
+		long seen = 0;
+		for ( int i=0; i<BUCKETS; i++ ) {
+			seen += counts[i];
+			if ( seen>=rank ) {
+				return Math.min(toUpperValue(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	static int toBucket(int value) {
+		if ( value<EXACT ) {
+			return value;
+		}
+		int exp = 31 - Integer.numberOfLeadingZeros(value);
+		int sub = (value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return EXACT + (exp - EXACT_BITS) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	  * Largest value that falls in the bucket
+	*/
+	static long toUpperValue(int bucket) {
+		if ( bucket<EXACT ) {
+			return bucket;
+		}
+		int exp = (bucket - EXACT) / SUB_BUCKETS + EXACT_BITS;
+		int sub = (bucket - EXACT) % SUB_BUCKETS;
+		long lower = ((long) (SUB_BUCKETS + sub)) << (exp - SUB_BITS);
+		return lower + (1L << (exp - SUB_BITS)) - 1;
+	}
+
+	private void updateMax(long value) {
+		long max = m_max.get();
+		while ( value>max && !m_max.compareAndSet(max, value) ) {
+			max = m_max.get();
+		}
+	}
+
+	private void updateMin(long value) {
+		long min = m_min.get();
+		while ( value<min && !m_min.compareAndSet(min, value) ) {
+			min = m_min.get();
+		}
+	}
+
+}
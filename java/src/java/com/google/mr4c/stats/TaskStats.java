@@ -0,0 +1,236 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.stats;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+  * Counters for the current task: time spent in each phase, files and
+  * bytes moved, and callbacks from native code.  Values accumulate for the
+  * life of the JVM; publishers send only what changed since they last
+  * looked, so a task's totals can be reported a piece at a time.
+  *
+  * Bytes are counted overall and by the type of the source or sink, as
+  * [bytes.read].[type] and [bytes.written].[type].  Phase times are counted
+  * as phase.[name].millis and phase.[name].count, and each phase is also
+  * sent as a timing named mr4c.phase.[name].success or .failure.
+*/
+public class TaskStats {
+
+	public static final String FILES_READ = "files.read";
+	public static final String FILES_WRITTEN = "files.written";
+	public static final String BYTES_READ = "bytes.read";
+	public static final String BYTES_WRITTEN = "bytes.written";
+	public static final String CALLBACKS = "jna.callbacks";
+	public static final String CALLBACK_NANOS = "jna.callback.nanos";
+
+	public static final String STATS_PREFIX = "mr4c.task.";
+
+	private static final TaskStats s_instance = new TaskStats();
+
+	private ConcurrentMap<String,AtomicLong> m_counters = new ConcurrentHashMap<String,AtomicLong>();
+	private Deltas m_statsDeltas = newDeltas();
+
+	public static TaskStats instance() {
+		return s_instance;
+	}
+
+	public void add(String name, long delta) {
+		getCounter(name).addAndGet(delta);
+	}
+
+	public long get(String name) {
+		AtomicLong counter = m_counters.get(name);
+		return counter==null ? 0 : counter.get();
+	}
+
+	/**
+	  * Current value of every counter, sorted by name
+	*/
+	public Map<String,Long> getCounters() {
+		Map<String,Long> result = new TreeMap<String,Long>();
+		for ( Map.Entry<String,AtomicLong> entry : m_counters.entrySet() ) {
+			result.put(entry.getKey(), entry.getValue().get());
+		}
+		return result;
+	}
+
+	public PhaseTimer startPhase(String name) {
+		return new PhaseTimer(name);
+	}
+
+	/**
+	  * Counts bytes read from a source of the same type as the one given
+	*/
+	public ByteCounter reads(Object src) {
+		return new ByteCounter(BYTES_READ, src);
+	}
+
+	/**
+	  * Counts bytes written to a sink of the same type as the one given
+	*/
+	public ByteCounter writes(Object sink) {
+		return new ByteCounter(BYTES_WRITTEN, sink);
+	}
+
+	/**
+	  * Records one callback from native code that started at the given
+	  * System.nanoTime()
+	*/
+	public void callback(long startNanos) {
+		getCounter(CALLBACKS).incrementAndGet();
+		getCounter(CALLBACK_NANOS).addAndGet(System.nanoTime() - startNanos);
+	}
+
+	public Deltas newDeltas() {
+		return new Deltas();
+	}
+
+	/**
+	  * Sends the counters that changed since the last call as increments
+	  * named mr4c.task.[counter]
+	*/
+	public void publish(StatsClient client) {
+		for ( Map.Entry<String,Long> entry : m_statsDeltas.next().entrySet() ) {
+			String key = STATS_PREFIX + entry.getKey();
+			long delta = entry.getValue();
+			// increments only take an int
+			while ( delta>Integer.MAX_VALUE ) {
+				client.increment(key, Integer.MAX_VALUE);
+				delta -= Integer.MAX_VALUE;
+			}
+			client.increment(key, (int)delta);
+		}
+	}
+
+	/**
+	  * Drops all counters.  For tests.
+	*/
+	public void clear() {
+		m_counters.clear();
+	}
+
+	private AtomicLong getCounter(String name) {
+		AtomicLong counter = m_counters.get(name);
+		if ( counter==null ) {
+			AtomicLong newCounter = new AtomicLong();
+			counter = m_counters.putIfAbsent(name, newCounter);
+			if ( counter==null ) {
+				counter = newCounter;
+			}
+		}
+		return counter;
+	}
+
+	private static String getTypeName(Object obj) {
+		Class<?> type = obj.getClass();
+		while ( type.isAnonymousClass() ) {
+			type = type.getSuperclass();
+		}
+		return type.getSimpleName();
+	}
+
+	/**
+	  * Times one run of a phase.  Call done() exactly once.
+	*/
+	public class PhaseTimer {
+
+		private String m_name;
+		private StatsTimer m_timer;
+		private long m_start;
+
+		private PhaseTimer(String name) {
+			m_name = name;
+			m_timer = new StatsTimer(
+				MR4CStats.getClient(),
+				String.format("mr4c.phase.%s.success", name),
+				String.format("mr4c.phase.%s.failure", name)
+			);
+			m_start = System.currentTimeMillis();
+		}
+
+		/**
+		  * Returns the elapsed milliseconds
+		*/
+		public long done(boolean success) {
+			long millis = System.currentTimeMillis() - m_start;
+			add(String.format("phase.%s.millis", m_name), millis);
+			add(String.format("phase.%s.count", m_name), 1);
+			m_timer.done(success);
+			return millis;
+		}
+
+	}
+
+	/**
+	  * Adds to both the overall byte count and the one for a source or
+	  * sink type.  Keep one per source or sink; add() doesn't allocate.
+	*/
+	public class ByteCounter {
+
+		private AtomicLong m_total;
+		private AtomicLong m_type;
+
+		private ByteCounter(String name, Object obj) {
+			m_total = getCounter(name);
+			m_type = getCounter(name + "." + getTypeName(obj));
+		}
+
+		public void add(long bytes) {
+			m_total.addAndGet(bytes);
+			m_type.addAndGet(bytes);
+		}
+
+	}
+
+	/**
+	  * Tracks what one publisher has already seen
+	*/
+	public class Deltas {
+
+		private Map<String,Long> m_last = new HashMap<String,Long>();
+
+		private Deltas() {}
+
+		/**
+		  * Returns the counters that changed since the previous call, with
+		  * the amount they changed by
+		*/
+		public synchronized Map<String,Long> next() {
+			Map<String,Long> result = new TreeMap<String,Long>();
+			for ( Map.Entry<String,Long> entry : getCounters().entrySet() ) {
+				Long last = m_last.get(entry.getKey());
+				if ( last==null || last>entry.getValue() ) {
+					last = 0L; // new, or cleared since
+				}
+				long delta = entry.getValue() - last;
+				if ( delta!=0 ) {
+					result.put(entry.getKey(), delta);
+				}
+				m_last.put(entry.getKey(), entry.getValue());
+			}
+			return result;
+		}
+
+	}
+
+}
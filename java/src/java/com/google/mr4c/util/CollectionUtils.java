@@ -67,6 +67,51 @@ public class CollectionUtils {
 		return result;
 	}
 
+	/**
+	  * Partition a list into <code>num</code> sub-lists of consecutive
+	  * elements, with the total weight of each sub-list as close as possible
+	  * to an even share of what remains.  As with partition(), there are no
+	  * empty lists.  Falls back to partition() if the weights are all zero.
+	*/
+	public static <T> List<List<T>> partitionByWeight(List<T> list, List<Double> weights, int num) {
+		if ( num<1 ) {
+			throw new IllegalArgumentException("Number of sub-lists must be greater than zero");
+		}
+		if ( weights.size()!=list.size() ) {
+			throw new IllegalArgumentException(String.format("Have %d weights for %d elements", weights.size(), list.size()));
+		}
+		double remaining = 0;
+		for ( double weight : weights ) {
+			if ( weight<0 ) {
+				throw new IllegalArgumentException("Weights cannot be negative");
+			}
+			remaining += weight;
+		}
+		if ( remaining==0 ) {
+			return partition(list, num);
+		}
+		List<List<T>> result = new ArrayList<List<T>>();
+		int index=0;
+		int listsRemaining = Math.min(num, list.size());
+		while ( listsRemaining>0 ) {
+			double target = remaining / listsRemaining;
+			// leave at least one element for each of the remaining lists
+			int maxEnd = list.size() - listsRemaining + 1;
+			int end = index+1;
+			double sum = weights.get(index);
+			// take the next element if that gets closer to the target
+			while ( end<maxEnd && ( listsRemaining==1 || sum + weights.get(end)/2 <= target ) ) {
+				sum += weights.get(end);
+				end++;
+			}
+			result.add(list.subList(index, end));
+			remaining -= sum;
+			listsRemaining--;
+			index = end;
+		}
+		return result;
+	}
+
 	/**
 	  * Partition a list into sub-lists with <code>size</code> elements
 	  * each.  If the list does not divide evenly, the extra elements are
@@ -41,4 +41,9 @@ public class AlgorithmConfigTest {
 		assertFalse(m_config1a.equals(m_config2));
 	}
 
+	@Test public void testNotEqualThreadSafe() {
+		m_config1b.setThreadSafe(true);
+		assertFalse(m_config1a.equals(m_config1b));
+	}
+
 }
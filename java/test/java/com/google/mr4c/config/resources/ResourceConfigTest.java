@@ -67,6 +67,15 @@ public class ResourceConfigTest {
 		assertEquals("3072", jobConf.get(Resource.MEMORY.getHadoopName()));
 	}
 
+	@Test public void testScaleRequests() {
+		ResourceConfig config = new ResourceConfig();
+		config.addRequest(new ResourceRequest(Resource.CORES, 2, null));
+		config.addRequest(new ResourceRequest(Resource.MEMORY, 1024, 2048));
+		config.scaleRequests(3);
+		assertEquals(new ResourceRequest(Resource.CORES, 6, null), config.getRequest(Resource.CORES));
+		assertEquals(new ResourceRequest(Resource.MEMORY, 3072, 6144), config.getRequest(Resource.MEMORY));
+	}
+
 	private ResourceConfig buildConfig() {
 		ResourceConfig config = new ResourceConfig();
 		config.addRequest(new ResourceRequest(Resource.CORES, 1, 5));
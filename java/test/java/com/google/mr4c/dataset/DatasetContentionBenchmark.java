@@ -0,0 +1,161 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.dataset;
+
+import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.keys.DataKeyDimension;
+import com.google.mr4c.keys.DataKeyElement;
+import com.google.mr4c.keys.DataKeyFactory;
+import com.google.mr4c.keys.DataKeyFilter;
+import com.google.mr4c.metadata.MetadataField;
+import com.google.mr4c.metadata.MetadataMap;
+import com.google.mr4c.metadata.PrimitiveType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+  * Measures throughput of many threads adding outputs to one Dataset, the
+  * way a multithreaded algorithm does.  Each add writes the file content
+  * to a sink, and a reader thread keeps slicing the dataset while the
+  * writers run.  Run with:
+  *   ant benchmark -Dbenchmark.class=dataset.DatasetContentionBenchmark
+*/
+public class DatasetContentionBenchmark {
+
+	private static final int[] THREADS = {1, 2, 4, 8, 16};
+	private static final int ADDS_PER_THREAD = 20000;
+	private static final int FILE_BYTES = 4096;
+	private static final int WARMUP = 2;
+	private static final int RUNS = 5;
+
+	public static void main(String[] args) throws Exception {
+		for ( int threads : THREADS ) {
+			for ( int i=0; i<WARMUP; i++ ) {
+				run(threads);
+			}
+			long best = Long.MAX_VALUE;
+			long slices = 0;
+			for ( int i=0; i<RUNS; i++ ) {
+				long[] result = run(threads);
+				best = Math.min(best, result[0]);
+				slices += result[1];
+			}
+			double seconds = best / 1e9;
+			long adds = (long) threads * ADDS_PER_THREAD;
+			System.out.println(String.format("%2d writers : %10.0f adds/sec; %6d concurrent slices/run", threads, adds / seconds, slices / RUNS));
+		}
+	}
+
+	/**
+	  * Returns wall time in nanos and the number of slices the reader took
+	*/
+	private static long[] run(int threads) throws Exception {
+		final Dataset dataset = new Dataset();
+		dataset.setContext(new SinkContext());
+		final DataKeyDimension threadDim = new DataKeyDimension("thread");
+		final DataKeyDimension tileDim = new DataKeyDimension("tile");
+		final byte[] content = new byte[FILE_BYTES];
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicBoolean done = new AtomicBoolean();
+		final long[] slices = new long[1];
+		List<Thread> writers = new ArrayList<Thread>();
+		for ( int t=0; t<threads; t++ ) {
+			final DataKeyElement threadEle = new DataKeyElement("thread_" + t, threadDim);
+			writers.add(new Thread() {
+				public void run() {
+					await(start);
+					for ( int i=0; i<ADDS_PER_THREAD; i++ ) {
+						DataKey key = DataKeyFactory.newKey(threadEle, new DataKeyElement("tile_" + i, tileDim));
+						dataset.addFile(key, new DataFile(content, "image/png"));
+						MetadataMap meta = new MetadataMap();
+						meta.getMap().put("index", new MetadataField(i, PrimitiveType.INTEGER));
+						dataset.addMetadata(key, meta);
+					}
+				}
+			});
+		}
+		Thread reader = new Thread() {
+			public void run() {
+				await(start);
+				DataKeyFilter filter = new DataKeyFilter() {
+					public boolean filter(DataKey key) {
+						return key.hashCode() % 16 == 0;
+					}
+				};
+				while ( !done.get() ) {
+					dataset.slice(filter);
+					slices[0]++;
+				}
+			}
+		};
+		for ( Thread writer : writers ) {
+			writer.start();
+		}
+		reader.start();
+		long begin = System.nanoTime();
+		start.countDown();
+		for ( Thread writer : writers ) {
+			writer.join();
+		}
+		long elapsed = System.nanoTime() - begin;
+		done.set(true);
+		reader.join();
+		return new long[] {elapsed, slices[0]};
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch ( InterruptedException ie ) {
+			throw new IllegalStateException(ie);
+		}
+	}
+
+	/**
+	  * Copies each added file the way an output sink would
+	*/
+	private static class SinkContext implements DatasetContext {
+
+		public DataFile findFile(DataKey key) {
+			return null;
+		}
+
+		public boolean isOutput() {
+			return true;
+		}
+
+		public boolean isQueryOnly() {
+			return false;
+		}
+
+		public void addFile(DataKey key, DataFile file) throws IOException {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(FILE_BYTES);
+			out.write(file.getBytes());
+		}
+
+		public String getFileName(DataKey key) {
+			return null;
+		}
+
+	}
+
+}
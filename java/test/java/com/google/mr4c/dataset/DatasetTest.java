@@ -25,9 +25,17 @@ import com.google.mr4c.keys.DataKeyFilter;
 import com.google.mr4c.metadata.MetadataKey;
 import com.google.mr4c.metadata.MetadataMap;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.*;
 import static org.junit.Assert.*;
@@ -90,4 +98,91 @@ public class DatasetTest {
 		assertEquals(expected,result);
 	}
 
+	@Test public void testConcurrentAdd() throws Exception {
+		final Dataset dataset = new Dataset();
+		final AtomicInteger written = new AtomicInteger();
+		dataset.setContext(new TestOutputContext(written, null));
+		final DataKeyDimension dim = new DataKeyDimension("dim");
+		final AtomicInteger duplicates = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Object>> futures = new ArrayList<Future<Object>>();
+			for ( int t=0; t<8; t++ ) {
+				futures.add(executor.submit(new Callable<Object>() {
+					public Object call() {
+						// every thread tries every key, so each key is a race
+						for ( int i=0; i<500; i++ ) {
+							DataKey key = DataKeyFactory.newKey(new DataKeyElement("ele" + i, dim));
+							try {
+								dataset.addFile(key, new DataFile(new byte[] {(byte) i}, "application/octet-stream"));
+							} catch ( IllegalArgumentException iae ) {
+								duplicates.incrementAndGet();
+							}
+							dataset.addMetadata(DataKeyFactory.newKey(new DataKeyElement(Thread.currentThread().getName() + i, dim)), new MetadataMap());
+						}
+						return null;
+					}
+				}));
+			}
+			for ( Future<Object> future : futures ) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(500, dataset.getAllFileKeys().size());
+		assertEquals(500, written.get());
+		assertEquals(7 * 500, duplicates.get());
+		assertEquals(8 * 500, dataset.getAllMetadataKeys().size());
+	}
+
+	@Test public void testFailedOutputWrite() {
+		Dataset dataset = new Dataset();
+		DataKey key = DataKeyFactory.newKey(new DataKeyElement("ele1", new DataKeyDimension("dim")));
+		DataFile file = new DataFile(new byte[] {1}, "application/octet-stream");
+		dataset.setContext(new TestOutputContext(new AtomicInteger(), key));
+		try {
+			dataset.addFile(key, file);
+			fail("Expected write to fail");
+		} catch ( IllegalStateException ise ) {
+			// expected
+		}
+		assertFalse(dataset.hasFiles());
+	}
+
+	private static class TestOutputContext implements DatasetContext {
+
+		private AtomicInteger m_written;
+		private DataKey m_failKey;
+
+		private TestOutputContext(AtomicInteger written, DataKey failKey) {
+			m_written = written;
+			m_failKey = failKey;
+		}
+
+		public DataFile findFile(DataKey key) {
+			return null;
+		}
+
+		public boolean isOutput() {
+			return true;
+		}
+
+		public boolean isQueryOnly() {
+			return false;
+		}
+
+		public void addFile(DataKey key, DataFile file) throws IOException {
+			if ( key.equals(m_failKey) ) {
+				throw new IOException("Write failed");
+			}
+			m_written.incrementAndGet();
+		}
+
+		public String getFileName(DataKey key) {
+			return null;
+		}
+
+	}
+
 }
@@ -19,10 +19,17 @@ package com.google.mr4c.hadoop;
 import com.google.mr4c.dataset.Dataset;
 import com.google.mr4c.dataset.DatasetTestUtils;
 import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.keys.DataKeyDimension;
+import com.google.mr4c.keys.DataKeyElement;
+import com.google.mr4c.keys.DataKeyFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hadoop.io.DataOutputBuffer;
+
 import org.junit.*;
 import static org.junit.Assert.*;
 
@@ -42,5 +49,47 @@ public class DataKeyListTest {
 		assertEquals(list1, dkl2.getKeys());
 	}
 
+	@Test public void testReadReplacesKeys() throws Exception {
+		List<DataKey> list1 = new ArrayList<DataKey>(m_dataset.getAllFileKeys());
+		DataKeyList dkl1 = new DataKeyList(list1);
+		DataKeyList dkl2 = new DataKeyList(m_dataset.getAllMetadataKeys());
+		HadoopTestUtils.copyWritable(dkl1, dkl2);
+		assertEquals(list1, dkl2.getKeys());
+	}
+
+	@Test public void testLongIdentifier() throws Exception {
+		// writeUTF would fail on this
+		DataKeyDimension dim = new DataKeyDimension("dim");
+		DataKey key = DataKeyFactory.newKey(new DataKeyElement(StringUtils.repeat('x', 100000), dim));
+		List<DataKey> list1 = Arrays.asList(key);
+		DataKeyList dkl2 = new DataKeyList();
+		HadoopTestUtils.copyWritable(new DataKeyList(list1), dkl2);
+		assertEquals(list1, dkl2.getKeys());
+	}
+
+	@Test public void testNamesWrittenOnce() throws Exception {
+		DataKeyDimension dim1 = new DataKeyDimension("dimension_one");
+		DataKeyDimension dim2 = new DataKeyDimension("dimension_two");
+		List<DataKey> keys = new ArrayList<DataKey>();
+		int nameBytes = 0;
+		for ( int i=0; i<40; i++ ) {
+			DataKeyElement ele1 = new DataKeyElement("element_" + i, dim1);
+			nameBytes += ele1.getIdentifier().length();
+			for ( int j=0; j<25; j++ ) {
+				keys.add(DataKeyFactory.newKey(ele1, new DataKeyElement("element_" + j, dim2)));
+			}
+		}
+		for ( int j=0; j<25; j++ ) {
+			nameBytes += ("element_" + j).length();
+		}
+		DataOutputBuffer out = new DataOutputBuffer();
+		new DataKeyList(keys).write(out);
+		// each of the 65 elements costs its name plus about 2 bytes, each key about 3 bytes
+		assertTrue(out.getLength() < nameBytes + 65*3 + keys.size()*3 + 100);
+		DataKeyList dkl2 = new DataKeyList();
+		HadoopTestUtils.copyWritable(new DataKeyList(keys), dkl2);
+		assertEquals(keys, dkl2.getKeys());
+	}
+
 
 }
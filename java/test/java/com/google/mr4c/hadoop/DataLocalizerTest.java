@@ -19,16 +19,20 @@ package com.google.mr4c.hadoop;
 import com.google.mr4c.dataset.Dataset;
 import com.google.mr4c.dataset.DatasetTestUtils;
 import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.sources.BytesDataFileSource;
 import com.google.mr4c.sources.DataFileSource;
 import com.google.mr4c.sources.URIDataFileSource;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import org.apache.hadoop.fs.BlockLocation;
+
 import org.junit.*;
 import static org.junit.Assert.*;
 
@@ -56,6 +60,53 @@ public class DataLocalizerTest {
 		test(root, m_localFiles, m_localExpected);
 	}
 
+	@Test public void testLocalFromListing() throws Exception {
+		URI root = new File(m_localRoot).toURI();
+		List<DataFileSource> sources = new ArrayList<DataFileSource>();
+		List<CountingURISource> counted = new ArrayList<CountingURISource>();
+		for ( String file : m_localFiles ) {
+			CountingURISource src = new CountingURISource(new URI(root+file));
+			sources.add(src);
+			counted.add(src);
+		}
+		assertEquals(m_localExpected, m_localizer.localize(sources));
+		assertEquals(m_localExpected, m_localizer.localize(sources.subList(0,1)));
+		for ( CountingURISource src : counted ) {
+			assertEquals(0, src.m_count);
+		}
+	}
+
+	@Test public void testFileSizesFromListing() throws Exception {
+		URI root = new File(m_localRoot).toURI();
+		List<DataFileSource> sources = new ArrayList<DataFileSource>();
+		List<CountingURISource> counted = new ArrayList<CountingURISource>();
+		for ( String file : m_localFiles ) {
+			CountingURISource src = new CountingURISource(new URI(root+file));
+			sources.add(src);
+			counted.add(src);
+		}
+		sources.add(new BytesDataFileSource(new byte[7]));
+		long[] sizes = m_localizer.getFileSizes(sources);
+		for ( int i=0; i<m_localFiles.size(); i++ ) {
+			assertEquals(new File(m_localRoot, m_localFiles.get(i)).length(), sizes[i]);
+			assertEquals(0, counted.get(i).m_sizeCount);
+		}
+		assertEquals(7, sizes[m_localFiles.size()]);
+		m_localizer.localize(sources.subList(0, m_localFiles.size()));
+		for ( CountingURISource src : counted ) {
+			assertEquals(0, src.m_count);
+		}
+	}
+
+	@Test public void testOtherSources() throws Exception {
+		CountingSource src1 = new CountingSource("host1");
+		CountingSource src2 = new CountingSource("host1");
+		List<DataFileSource> sources = Arrays.<DataFileSource>asList(src1, src2);
+		assertEquals(Arrays.asList("host1"), m_localizer.localize(sources));
+		assertEquals(1, src1.m_count);
+		assertEquals(1, src2.m_count);
+	}
+
 	/*@Test public void testHDFS() throws Exception {
 		test(new URI(m_hdfsRoot), m_hdfsFiles, m_hdfsExpected);
 	}*/
@@ -276,4 +327,42 @@ public class DataLocalizerTest {
 	}
 
 
+	private static class CountingURISource extends URIDataFileSource {
+
+		private int m_count;
+		private int m_sizeCount;
+
+		private CountingURISource(URI uri) {
+			super(uri);
+		}
+
+		@Override public BlockLocation[] getBlockLocation() throws IOException {
+			m_count++;
+			return super.getBlockLocation();
+		}
+
+		@Override public long getFileSize() throws IOException {
+			m_sizeCount++;
+			return super.getFileSize();
+		}
+	}
+
+	private static class CountingSource extends BytesDataFileSource {
+
+		private int m_count;
+		private String m_host;
+
+		private CountingSource(String host) {
+			super(new byte[10]);
+			m_host = host;
+		}
+
+		@Override public BlockLocation[] getBlockLocation() {
+			m_count++;
+			return new BlockLocation[] {
+				new BlockLocation(new String[] {m_host + ":50010"}, new String[] {m_host}, 0, 10)
+			};
+		}
+	}
+
 }
@@ -0,0 +1,85 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.testing.TestDataManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.io.Text;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class DatasetPartitionerTest {
+
+	private TestDataManager m_mgr = new TestDataManager();
+	private Dataset m_dataset;
+
+	@Before public void setUp() {
+		m_mgr.addDimension("dim1", Arrays.asList("d1v1", "d1v2", "d1v3", "d1v4"));
+		m_mgr.addDimension("dim2", Arrays.asList("d2v1", "d2v2", "d2v3", "d2v4"));
+		m_mgr.readyToTest();
+		m_dataset = TestDataManager.buildDataset("output", m_mgr.getKeys());
+	}
+
+	@Test public void testSplit() {
+		List<DatasetWritable> parts = DatasetPartitioner.split(m_dataset, 4, DatasetWritable.Format.BINARY);
+		assertTrue(parts.size()>1);
+		List<Dataset> slices = new ArrayList<Dataset>();
+		for ( DatasetWritable part : parts ) {
+			for ( DataKey key : part.getDataset().getAllFileKeys() ) {
+				assertEquals(part.getPart(), DatasetPartitioner.getPart(key, 4));
+			}
+			slices.add(part.getDataset());
+		}
+		assertEquals(m_dataset, Dataset.combineSlices(slices));
+	}
+
+	@Test public void testNoSplit() {
+		List<DatasetWritable> parts = DatasetPartitioner.split(m_dataset, 1, DatasetWritable.Format.JSON);
+		assertEquals(1, parts.size());
+		assertSame(m_dataset, parts.get(0).getDataset());
+		assertEquals(0, parts.get(0).getPart());
+	}
+
+	@Test public void testSplitEmpty() {
+		List<DatasetWritable> parts = DatasetPartitioner.split(new Dataset(), 4, DatasetWritable.Format.BINARY);
+		assertEquals(1, parts.size());
+		assertTrue(parts.get(0).getDataset().isEmpty());
+	}
+
+	@Test public void testPartitionsByNameAndPart() {
+		DatasetPartitioner partitioner = new DatasetPartitioner();
+		Text key = new Text("output");
+		int numReducers = 7;
+		int first = partitioner.getPartition(key, new DatasetWritable(m_dataset, DatasetWritable.Format.BINARY, 0), numReducers);
+		assertEquals(first, partitioner.getPartition(new Text("output"), new DatasetWritable(new Dataset(), DatasetWritable.Format.BINARY, 0), numReducers));
+		boolean spread = false;
+		for ( int part=0; part<numReducers; part++ ) {
+			int reducer = partitioner.getPartition(key, new DatasetWritable(m_dataset, DatasetWritable.Format.BINARY, part), numReducers);
+			assertTrue(reducer>=0 && reducer<numReducers);
+			spread |= reducer!=first;
+		}
+		assertTrue("parts of one dataset should reach several reducers", spread);
+	}
+
+}
@@ -0,0 +1,118 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.dataset.DatasetTestUtils;
+import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.keys.DataKeyDimension;
+import com.google.mr4c.keys.DataKeyElement;
+import com.google.mr4c.keys.DataKeyFactory;
+import com.google.mr4c.metadata.MetadataArray;
+import com.google.mr4c.metadata.MetadataField;
+import com.google.mr4c.metadata.MetadataMap;
+import com.google.mr4c.metadata.PrimitiveType;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class DatasetWritableTest {
+
+	private Dataset m_dataset1;
+	private Dataset m_dataset2;
+
+	@Before public void setUp() throws Exception {
+		m_dataset1 = DatasetTestUtils.buildDataset1();
+		m_dataset1.release();
+		m_dataset2 = buildPrimitivesDataset();
+	}
+
+	@Test public void testBinaryRoundTrip() throws Exception {
+		assertRoundTrip(m_dataset1, DatasetWritable.Format.BINARY);
+		assertRoundTrip(m_dataset2, DatasetWritable.Format.BINARY);
+	}
+
+	@Test public void testJsonRoundTrip() throws Exception {
+		assertRoundTrip(m_dataset1, DatasetWritable.Format.JSON);
+		assertRoundTrip(m_dataset2, DatasetWritable.Format.JSON);
+	}
+
+	@Test public void testEmptyDataset() throws Exception {
+		assertRoundTrip(new Dataset(), DatasetWritable.Format.BINARY);
+	}
+
+	@Test public void testFormatsMatch() throws Exception {
+		Dataset dataset = buildMismatchedTypesDataset();
+		Dataset binary = copy(dataset, DatasetWritable.Format.BINARY);
+		Dataset json = copy(dataset, DatasetWritable.Format.JSON);
+		assertEquals(json, binary);
+	}
+
+	private void assertRoundTrip(Dataset dataset, DatasetWritable.Format format) throws Exception {
+		DatasetWritable writable = new DatasetWritable(dataset, format);
+		DatasetWritable copy = HadoopTestUtils.copyDatasetWritable(writable);
+		assertEquals(format, copy.getFormat());
+		assertEquals(dataset, copy.getDataset());
+	}
+
+	private Dataset copy(Dataset dataset, DatasetWritable.Format format) throws Exception {
+		return HadoopTestUtils.copyDatasetWritable(new DatasetWritable(dataset, format)).getDataset();
+	}
+
+	private Dataset buildPrimitivesDataset() {
+		MetadataMap map = new MetadataMap();
+		map.getMap().put("bool", new MetadataField(true, PrimitiveType.BOOLEAN));
+		map.getMap().put("byte", new MetadataField((byte)-7, PrimitiveType.BYTE));
+		map.getMap().put("int", new MetadataField(-123456, PrimitiveType.INTEGER));
+		map.getMap().put("float", new MetadataField(3.5f, PrimitiveType.FLOAT));
+		map.getMap().put("double", new MetadataField(-2.25, PrimitiveType.DOUBLE));
+		map.getMap().put("string", new MetadataField("some string", PrimitiveType.STRING));
+		map.getMap().put("size", new MetadataField(1L<<40, PrimitiveType.SIZE_T));
+		map.getMap().put("long_double", new MetadataField(new BigDecimal("1.5", MathContext.DECIMAL128), PrimitiveType.LONG_DOUBLE));
+		map.getMap().put("ints", new MetadataArray(Arrays.asList(1, 2, 3), PrimitiveType.INTEGER));
+		map.getMap().put("doubles", new MetadataArray(Arrays.asList(1.0, -2.0), PrimitiveType.DOUBLE));
+		map.getMap().put("packed_doubles", new MetadataArray(new double[] {0.5, -1.25, 1e300}));
+		map.getMap().put("packed_bytes", new MetadataArray(new byte[] {1, -1, 127}));
+		Dataset dataset = new Dataset();
+		dataset.addMetadata(buildKey(), map);
+		return dataset;
+	}
+
+	private Dataset buildMismatchedTypesDataset() {
+		MetadataMap map = new MetadataMap();
+		map.getMap().put("int", new MetadataField(55L, PrimitiveType.INTEGER));
+		map.getMap().put("double", new MetadataField("4.5", PrimitiveType.DOUBLE));
+		map.getMap().put("sizes", new MetadataArray(Arrays.asList(1, 2), PrimitiveType.SIZE_T));
+		Dataset dataset = new Dataset();
+		dataset.addMetadata(buildKey(), map);
+		return dataset;
+	}
+
+	private DataKey buildKey() {
+		DataKeyDimension dim1 = new DataKeyDimension("dim1");
+		DataKeyDimension dim2 = new DataKeyDimension("dim2");
+		return DataKeyFactory.newKey(
+			new DataKeyElement("val1", dim1),
+			new DataKeyElement("val2", dim2)
+		);
+	}
+
+}
@@ -0,0 +1,58 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.algorithm.AlgorithmData;
+import com.google.mr4c.dataset.DataFile;
+import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.keys.DataKeyDimension;
+import com.google.mr4c.keys.DataKeyElement;
+import com.google.mr4c.keys.DataKeyFactory;
+
+import java.util.Map;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class FileSizeCostModelTest {
+
+	private DataKeyElement m_f1 = new DataKeyElement("f1", new DataKeyDimension("frame"));
+	private DataKeyElement m_f2 = new DataKeyElement("f2", new DataKeyDimension("frame"));
+	private DataKeyElement m_pan = new DataKeyElement("pan", new DataKeyDimension("type"));
+	private DataKeyElement m_ms = new DataKeyElement("ms", new DataKeyDimension("type"));
+
+	@Test public void testCosts() throws Exception {
+		Dataset images = new Dataset();
+		images.addFile(DataKeyFactory.newKey(m_f1, m_pan), new DataFile(new byte[100], "image/tiff"));
+		images.addFile(DataKeyFactory.newKey(m_f1, m_ms), new DataFile(new byte[20], "image/tiff"));
+		images.addFile(DataKeyFactory.newKey(m_f2, m_pan), new DataFile(new byte[5], "image/tiff"));
+		Dataset excluded = new Dataset();
+		excluded.addFile(DataKeyFactory.newKey(m_f2), new DataFile(new byte[1000], "image/tiff"));
+		AlgorithmData algoData = new AlgorithmData();
+		algoData.addInputDataset("images", images);
+		algoData.addInputDataset("excluded", excluded);
+		algoData.excludeInputDatasetFromKeyspace("excluded");
+
+		Map<DataKeyElement,Double> costs = new FileSizeCostModel().estimateCosts(algoData);
+		assertEquals(4, costs.size());
+		assertEquals(120.0, costs.get(m_f1), 0.0);
+		assertEquals(5.0, costs.get(m_f2), 0.0);
+		assertEquals(105.0, costs.get(m_pan), 0.0);
+		assertEquals(20.0, costs.get(m_ms), 0.0);
+	}
+
+}
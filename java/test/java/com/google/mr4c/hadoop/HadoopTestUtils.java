@@ -66,6 +66,15 @@ public abstract class HadoopTestUtils {
 		}
 	}
 
+	/**
+	  * Returns the dataset as it would arrive after the shuffle
+	*/
+	public static DatasetWritable copyDatasetWritable(DatasetWritable src) throws IOException {
+		DatasetWritable target = new DatasetWritable();
+		copyWritable(src, target);
+		return target;
+	}
+
 	public static void assertEquals(Configuration expected, Configuration actual) {
 		org.junit.Assert.assertEquals(
 			CollectionUtils.toProperties(expected),
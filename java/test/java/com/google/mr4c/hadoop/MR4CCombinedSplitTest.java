@@ -0,0 +1,126 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.keys.DataKeyDimension;
+import com.google.mr4c.keys.DataKeyElement;
+import com.google.mr4c.keys.DataKeyFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.RecordReader;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class MR4CCombinedSplitTest {
+
+	private MR4CInputSplit[] m_splits;
+
+	@Before public void setup() throws Exception {
+		m_splits = new MR4CInputSplit[] {
+			buildSplit(1, 3, "hostA", "hostB"),
+			buildSplit(2, 1, "hostA"),
+			buildSplit(3, 2, "hostA", "hostC"),
+			buildSplit(4, 1, "hostB"),
+			buildSplit(5, 4, "hostC"),
+			buildSplit(6, 2)
+		};
+	}
+
+	@Test public void testCombineByHost() {
+		MR4CCombinedSplit[] combined = MR4CCombinedSplit.combine(m_splits, 2);
+		assertEquals(3, combined.length);
+		assertSplits(combined[0], 1, 2);
+		assertEquals(Arrays.asList("hostA", "hostB"), Arrays.asList(combined[0].getLocations()));
+		assertSplits(combined[1], 3, 5);
+		assertEquals(Arrays.asList("hostC", "hostA"), Arrays.asList(combined[1].getLocations()));
+		// left over, no shared host
+		assertSplits(combined[2], 4, 6);
+		assertEquals(Arrays.asList("hostB"), Arrays.asList(combined[2].getLocations()));
+	}
+
+	@Test public void testCombineAll() {
+		MR4CCombinedSplit[] combined = MR4CCombinedSplit.combine(m_splits, 10);
+		assertEquals(1, combined.length);
+		assertSplits(combined[0], 1, 2, 3, 4, 5, 6);
+		assertEquals(13, combined[0].getLength());
+		assertEquals("hostA", combined[0].getLocations()[0]);
+	}
+
+	@Test public void testCombineOnePerTask() {
+		MR4CCombinedSplit[] combined = MR4CCombinedSplit.combine(m_splits, 1);
+		assertEquals(m_splits.length, combined.length);
+		for ( MR4CCombinedSplit split : combined ) {
+			assertEquals(1, split.getSplits().size());
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testCombineZeroPerTask() {
+		MR4CCombinedSplit.combine(m_splits, 0);
+	}
+
+	@Test public void testRoundTrip() throws Exception {
+		MR4CCombinedSplit split1 = MR4CCombinedSplit.combine(m_splits, 2)[1];
+		MR4CCombinedSplit split2 = new MR4CCombinedSplit();
+		HadoopTestUtils.copyWritable(split1, split2);
+		assertSplits(split2, 3, 5);
+		assertEquals(m_splits[4].getKeys().getKeys(), split2.getSplits().get(1).getKeys().getKeys());
+		assertEquals(Arrays.asList(split1.getLocations()), Arrays.asList(split2.getLocations()));
+		assertEquals(split1.getLength(), split2.getLength());
+	}
+
+	@Test public void testRecordPerSplit() throws Exception {
+		MR4CCombinedSplit split = MR4CCombinedSplit.combine(m_splits, 2)[0];
+		RecordReader<Text,DataKeyList> reader = MR4CInputFormat.getRecordReader(split);
+		Text key = reader.createKey();
+		DataKeyList value = reader.createValue();
+		assertEquals(0.0f, reader.getProgress(), 0.0f);
+		assertTrue(reader.next(key, value));
+		assertEquals("1", key.toString());
+		assertEquals(m_splits[0].getKeys().getKeys(), value.getKeys());
+		assertEquals(0.5f, reader.getProgress(), 0.0f);
+		assertTrue(reader.next(key, value));
+		assertEquals("2", key.toString());
+		assertEquals(m_splits[1].getKeys().getKeys(), value.getKeys());
+		assertFalse(reader.next(key, value));
+		assertEquals(1.0f, reader.getProgress(), 0.0f);
+	}
+
+	private void assertSplits(MR4CCombinedSplit combined, Integer ... seqNums) {
+		List<Integer> actual = new ArrayList<Integer>();
+		for ( MR4CInputSplit split : combined.getSplits() ) {
+			actual.add(split.getSequenceNumber());
+		}
+		assertEquals(Arrays.asList(seqNums), actual);
+	}
+
+	private MR4CInputSplit buildSplit(int seqNum, int numKeys, String ... hosts) {
+		DataKeyDimension dim = new DataKeyDimension("dim");
+		List<DataKey> keys = new ArrayList<DataKey>();
+		for ( int i=0; i<numKeys; i++ ) {
+			keys.add(DataKeyFactory.newKey(new DataKeyElement("split" + seqNum + "_" + i, dim)));
+		}
+		return new MR4CInputSplit(seqNum, keys, Arrays.asList(hosts));
+	}
+
+}
@@ -17,20 +17,18 @@
 package com.google.mr4c.hadoop;
 
 import com.google.mr4c.dataset.Dataset;
-import com.google.mr4c.serialize.DatasetSerializer;
-import com.google.mr4c.serialize.SerializerFactories;
 import com.google.mr4c.sources.DatasetSource.WriteMode;
 import com.google.mr4c.testing.TestDataManager;
 
 import java.io.IOException;
-import java.io.Reader;
-import java.io.StringReader;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.Counters.Counter;
+import org.apache.hadoop.mapred.InputSplit;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reporter;
 
@@ -79,23 +77,88 @@ public class MR4CMapperTest {
 		}
 	}
 
+	@Test public void testMapCleansUpEachSplit() throws Exception {
+		MR4CMapper mapper = new MR4CMapper(m_mgr.getExecutionSource());
+		DataKeyList value = new DataKeyList(m_mgr.getKeys());
+		mapper.map(new Text("1"), value, new TestOutputCollector(), Reporter.NULL);
+		mapper.map(new Text("2"), value, new TestOutputCollector(), Reporter.NULL);
+		mapper.close();
+		assertEquals(2, m_mgr.getCleanupCount());
+	}
+
+	@Test public void testMapReusesRunner() throws Exception {
+		MR4CMapper mapper = new MR4CMapper(m_mgr.getExecutionSource());
+		mapper.init();
+		DataKeyList value = new DataKeyList(m_mgr.getKeys());
+		mapper.map(new Text("1"), value, new TestOutputCollector(), Reporter.NULL);
+		TestOutputCollector collector = new TestOutputCollector();
+		mapper.map(new Text("2"), value, collector, Reporter.NULL);
+
+		// second split sees only its own data
+		for ( String  name : m_outputs ) {
+			Dataset expected = TestDataManager.buildDataset(name, m_mgr.getKeys());
+			expected.release();
+			assertEquals(expected, collector.m_outputs.get(name));
+		}
+	}
 
-	class TestOutputCollector implements OutputCollector<Text,Text> {
+	@Test public void testMapPublishesCounters() throws Exception {
+		MR4CMapper mapper = new MR4CMapper(m_mgr.getExecutionSource());
+		TestReporter reporter = new TestReporter();
+		mapper.map(new Text("1"), new DataKeyList(m_mgr.getKeys()), new TestOutputCollector(), reporter);
+		assertEquals(Long.valueOf(1), reporter.m_counters.get("phase.load.count"));
+		assertEquals(Long.valueOf(1), reporter.m_counters.get("phase.execute.count"));
+		assertEquals(Long.valueOf(1), reporter.m_counters.get("phase.save.count"));
+		assertEquals(Long.valueOf(1), reporter.m_counters.get("phase.logs.count"));
+		assertNotNull(reporter.m_counters.get("phase.load.millis"));
+	}
+
+	@Test public void testPerTaskLogsAndCleanupOnClose() throws Exception {
+		MR4CMapper mapper = new MR4CMapper(m_mgr.getExecutionSource(), DatasetWritable.Format.BINARY, 1, true);
+		TestReporter reporter = new TestReporter();
+		DataKeyList value = new DataKeyList(m_mgr.getKeys());
+		mapper.map(new Text("1"), value, new TestOutputCollector(), reporter);
+		mapper.map(new Text("2"), value, new TestOutputCollector(), reporter);
+		assertEquals(Long.valueOf(2), reporter.m_counters.get("phase.execute.count"));
+		assertNull(reporter.m_counters.get("phase.logs.count"));
+		assertEquals(0, m_mgr.getCleanupCount());
+		mapper.close();
+		assertEquals(Long.valueOf(1), reporter.m_counters.get("phase.logs.count"));
+		assertEquals(1, m_mgr.getCleanupCount());
+	}
+
+	class TestOutputCollector implements OutputCollector<Text,DatasetWritable> {
 		private Map<String,Dataset> m_outputs = new HashMap<String,Dataset>();
-		private DatasetSerializer m_serializer = SerializerFactories.getSerializerFactory("application/json").createDatasetSerializer();
 
-		public void collect(Text key, Text value) throws IOException {
+		public void collect(Text key, DatasetWritable value) throws IOException {
 			//key --> name
 			String name = key.toString();
 			if ( m_outputs.containsKey(name) ) {
 				throw new IllegalStateException(String.format("Already added dataset [%s]", name));
 			}
-			Reader reader = new StringReader(value.toString());
-			Dataset dataset = m_serializer.deserializeDataset(reader);
+			Dataset dataset = HadoopTestUtils.copyDatasetWritable(value).getDataset();
 			m_outputs.put(name,dataset);
 		}
 	}
-		
+
+
+	class TestReporter implements Reporter {
+		private Map<String,Long> m_counters = new HashMap<String,Long>();
+
+		public void incrCounter(String group, String name, long amount) {
+			assertEquals(HadoopCounters.GROUP, group);
+			Long count = m_counters.get(name);
+			m_counters.put(name, count==null ? amount : count+amount);
+		}
+
+		public void incrCounter(Enum<?> key, long amount) {}
+		public Counter getCounter(Enum<?> name) { return null; }
+		public Counter getCounter(String group, String name) { return null; }
+		public InputSplit getInputSplit() { return null; }
+		public float getProgress() { return 0; }
+		public void setStatus(String status) {}
+		public void progress() {}
+	}
 
 }
 
@@ -17,17 +17,20 @@
 package com.google.mr4c.hadoop;
 
 import com.google.mr4c.dataset.Dataset;
-import com.google.mr4c.serialize.DatasetSerializer;
-import com.google.mr4c.serialize.SerializerFactories;
+import com.google.mr4c.keys.DataKey;
 import com.google.mr4c.sources.DatasetSource.WriteMode;
 import com.google.mr4c.testing.TestDataManager;
+import com.google.mr4c.util.CollectionUtils;
 
 import java.io.IOException;
-import java.io.StringWriter;
-import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 
 import org.junit.*;
@@ -38,7 +41,6 @@ public class MR4CRecordWriterTest {
 
 	private List<String> m_outputs = Arrays.asList("output1", "output2");
 	private TestDataManager m_mgr = new TestDataManager();
-	private DatasetSerializer m_serializer = SerializerFactories.getSerializerFactory("application/json").createDatasetSerializer();
 
 	@Before public void setUp() {
 
@@ -56,9 +58,7 @@ public class MR4CRecordWriterTest {
 		for ( String name : m_outputs ) {
 			Text key = new Text(name);
 			Dataset dataset = TestDataManager.buildDataset(name, m_mgr.getKeys());
-			StringWriter sw = new StringWriter();
-			m_serializer.serializeDataset(dataset,sw);
-			Text value = new Text(sw.toString());
+			DatasetWritable value = HadoopTestUtils.copyDatasetWritable(new DatasetWritable(dataset));
 			writer.write(key, value);
 		}
 
@@ -70,5 +70,37 @@ public class MR4CRecordWriterTest {
 		}
 	}
 
+	@Test public void testWritePartialsAndMerge() throws Exception {
+		FileSystem fs = FileSystem.getLocal(new Configuration());
+		Path root = new Path("output/test/partials");
+		fs.delete(root, true);
+		PartialDatasetStore partials = new PartialDatasetStore(fs, root);
+
+		List<List<DataKey>> keySlices = CollectionUtils.partition(new ArrayList<DataKey>(m_mgr.getKeys()), 3);
+		int reducer = 0;
+		for ( List<DataKey> keySlice : keySlices ) {
+			String partName = "part-0000" + reducer++;
+			MR4CRecordWriter writer = new MR4CRecordWriter(m_mgr.getExecutionSource(), partials, partName);
+			for ( String name : m_outputs ) {
+				Dataset dataset = TestDataManager.buildDataset(name, new HashSet<DataKey>(keySlice));
+				writer.write(new Text(name), HadoopTestUtils.copyDatasetWritable(new DatasetWritable(dataset)));
+			}
+		}
+
+		for ( String  name : m_outputs ) {
+			assertFalse("No copy to final before merge for " + name, m_mgr.copyToFinalCalled(name));
+		}
+		assertEquals(new HashSet<String>(m_outputs), new HashSet<String>(partials.getDatasetNames()));
+
+		new MR4COutputMerger(m_mgr.getExecutionSource(), partials).merge();
+
+		for ( String  name : m_outputs ) {
+			m_mgr.assertWriteCalled(name, WriteMode.SERIALIZED_ONLY);
+			m_mgr.assertSerializedContentCorrect(name);
+			assertTrue("Copy to final call for " + name, m_mgr.copyToFinalCalled(name));
+		}
+		assertFalse("Partials removed after merge", fs.exists(root));
+	}
+
 }
 
@@ -0,0 +1,137 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.dataset.DataFile;
+import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.keys.DataKeyDimension;
+import com.google.mr4c.keys.DataKeyElement;
+import com.google.mr4c.keys.DataKeyFactory;
+import com.google.mr4c.metadata.MetadataArray;
+import com.google.mr4c.metadata.MetadataField;
+import com.google.mr4c.metadata.MetadataMap;
+import com.google.mr4c.metadata.PrimitiveType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+
+/**
+  * Compares reducer wall time for the binary and JSON shuffle formats.
+  * Values are deserialized lazily into a single reused DatasetWritable, the
+  * same way Hadoop feeds them to a reducer.  Run with:
+  *   ant benchmark -Dbenchmark.class=hadoop.MR4CReducerBenchmark
+*/
+public class MR4CReducerBenchmark {
+
+	private static final int SLICES = 200;
+	private static final int KEYS_PER_SLICE = 50;
+	private static final int WARMUP = 5;
+	private static final int RUNS = 20;
+
+	public static void main(String[] args) throws Exception {
+		List<Dataset> slices = buildSlices();
+		for ( DatasetWritable.Format format : DatasetWritable.Format.values() ) {
+			List<byte[]> values = serialize(slices, format);
+			long bytes = 0;
+			for ( byte[] value : values ) {
+				bytes += value.length;
+			}
+			for ( int i=0; i<WARMUP; i++ ) {
+				reduce(values);
+			}
+			long start = System.nanoTime();
+			for ( int i=0; i<RUNS; i++ ) {
+				reduce(values);
+			}
+			double millis = (System.nanoTime() - start) / 1000000.0 / RUNS;
+			System.out.println(String.format("%-6s : %8.2f ms/reduce; %10d shuffle bytes", format, millis, bytes));
+		}
+	}
+
+	private static void reduce(final List<byte[]> values) throws IOException {
+		MR4CReducer reducer = new MR4CReducer(null);
+		final DatasetWritable value = new DatasetWritable();
+		final DataInputBuffer in = new DataInputBuffer();
+		Iterator<DatasetWritable> iter = new Iterator<DatasetWritable>() {
+			private int m_index = 0;
+			public boolean hasNext() {
+				return m_index < values.size();
+			}
+			public DatasetWritable next() {
+				byte[] bytes = values.get(m_index++);
+				in.reset(bytes, bytes.length);
+				try {
+					value.readFields(in);
+				} catch ( IOException ioe ) {
+					throw new IllegalStateException(ioe);
+				}
+				return value;
+			}
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		reducer.reduce(new Text("output"), iter, new NullCollector(), Reporter.NULL);
+	}
+
+	private static List<byte[]> serialize(List<Dataset> slices, DatasetWritable.Format format) throws IOException {
+		List<byte[]> values = new ArrayList<byte[]>();
+		for ( Dataset slice : slices ) {
+			DataOutputBuffer out = new DataOutputBuffer();
+			new DatasetWritable(slice, format).write(out);
+			values.add(Arrays.copyOf(out.getData(), out.getLength()));
+		}
+		return values;
+	}
+
+	private static List<Dataset> buildSlices() {
+		DataKeyDimension dim1 = new DataKeyDimension("slice");
+		DataKeyDimension dim2 = new DataKeyDimension("tile");
+		List<Dataset> slices = new ArrayList<Dataset>();
+		for ( int i=0; i<SLICES; i++ ) {
+			Dataset slice = new Dataset();
+			DataKeyElement sliceEle = new DataKeyElement("slice_" + i, dim1);
+			for ( int j=0; j<KEYS_PER_SLICE; j++ ) {
+				DataKey key = DataKeyFactory.newKey(sliceEle, new DataKeyElement("tile_" + j, dim2));
+				slice.addFile(key, new DataFile("image/tiff"));
+				MetadataMap meta = new MetadataMap();
+				meta.getMap().put("width", new MetadataField(256, PrimitiveType.INTEGER));
+				meta.getMap().put("height", new MetadataField(256, PrimitiveType.INTEGER));
+				meta.getMap().put("name", new MetadataField("tile " + i + "/" + j, PrimitiveType.STRING));
+				meta.getMap().put("bounds", new MetadataArray(Arrays.asList(-122.5, 37.5, -122.25, 37.75), PrimitiveType.DOUBLE));
+				slice.addMetadata(key, meta);
+			}
+			slices.add(slice);
+		}
+		return slices;
+	}
+
+	private static class NullCollector implements OutputCollector<Text,DatasetWritable> {
+		public void collect(Text key, DatasetWritable value) {}
+	}
+
+}
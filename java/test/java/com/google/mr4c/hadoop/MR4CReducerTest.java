@@ -18,17 +18,11 @@ package com.google.mr4c.hadoop;
 
 import com.google.mr4c.dataset.Dataset;
 import com.google.mr4c.keys.DataKey;
-import com.google.mr4c.serialize.DatasetSerializer;
-import com.google.mr4c.serialize.SerializerFactories;
 import com.google.mr4c.sources.DatasetSource.WriteMode;
 import com.google.mr4c.testing.TestDataManager;
 import com.google.mr4c.util.CollectionUtils;
 
 import java.io.IOException;
-import java.io.Reader;
-import java.io.StringReader;
-import java.io.StringWriter;
-import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -49,7 +43,6 @@ public class MR4CReducerTest {
 
 	private List<String> m_outputs = Arrays.asList("output1", "output2");
 	private List<List<DataKey>> m_keySlices = new ArrayList<List<DataKey>>();
-	private DatasetSerializer m_serializer = SerializerFactories.getSerializerFactory("application/json").createDatasetSerializer();
 	private TestDataManager m_mgr = new TestDataManager();
 
 	@Before public void setUp() {
@@ -62,12 +55,20 @@ public class MR4CReducerTest {
 	} 
 
 	@Test public void testReduce() throws Exception {
+		doTestReduce(DatasetWritable.Format.BINARY);
+	}
+
+	@Test public void testReduceJson() throws Exception {
+		doTestReduce(DatasetWritable.Format.JSON);
+	}
+
+	private void doTestReduce(DatasetWritable.Format format) throws Exception {
 		MR4CReducer reducer = new MR4CReducer(m_mgr.getExecutionSource());
 		TestOutputCollector collector = new TestOutputCollector();
 
 		for ( String name : m_outputs ) {
 			Text key = new Text(name);
-			Collection<Text> values = buildValues(name);
+			Collection<DatasetWritable> values = buildValues(name, format);
 			reducer.reduce(key, values.iterator(), collector, Reporter.NULL);
 		}
 		
@@ -79,30 +80,27 @@ public class MR4CReducerTest {
 		}
 	}
 
-	private Collection<Text> buildValues(String name) throws IOException {
-		List<Text> values = new ArrayList<Text>();
+	private Collection<DatasetWritable> buildValues(String name, DatasetWritable.Format format) throws IOException {
+		List<DatasetWritable> values = new ArrayList<DatasetWritable>();
 		for ( List<DataKey> keySlice : m_keySlices ) {
 			Set<DataKey> keys = new HashSet<DataKey>(keySlice);
 			Dataset dataset = TestDataManager.buildDataset(name,keys);
-			StringWriter sw = new StringWriter();
-			m_serializer.serializeDataset(dataset,sw);
-			values.add(new Text(sw.toString()));
+			values.add(HadoopTestUtils.copyDatasetWritable(new DatasetWritable(dataset, format)));
 		}
 		return values;
 	}
 			
 
-	class TestOutputCollector implements OutputCollector<Text,Text> {
+	class TestOutputCollector implements OutputCollector<Text,DatasetWritable> {
 		private Map<String,Dataset> m_outputs = new HashMap<String,Dataset>();
 
-		public void collect(Text key, Text value) throws IOException {
+		public void collect(Text key, DatasetWritable value) throws IOException {
 			//key --> name
 			String name = key.toString();
 			if ( m_outputs.containsKey(name) ) {
 				throw new IllegalStateException(String.format("Already added dataset [%s]", name));
 			}
-			Reader reader = new StringReader(value.toString());
-			Dataset dataset = m_serializer.deserializeDataset(reader);
+			Dataset dataset = HadoopTestUtils.copyDatasetWritable(value).getDataset();
 			m_outputs.put(name,dataset);
 		}
 	}
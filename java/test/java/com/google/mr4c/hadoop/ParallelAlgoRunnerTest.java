@@ -0,0 +1,254 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.AlgoRunner;
+import com.google.mr4c.algorithm.AlgorithmBase;
+import com.google.mr4c.algorithm.AlgorithmContext;
+import com.google.mr4c.algorithm.AlgorithmData;
+import com.google.mr4c.algorithm.AlgorithmSchema;
+import com.google.mr4c.algorithm.AlgorithmType;
+import com.google.mr4c.config.algorithm.AlgorithmConfig;
+import com.google.mr4c.config.algorithm.DimensionConfig;
+import com.google.mr4c.config.category.Category;
+import com.google.mr4c.config.category.CategoryConfig;
+import com.google.mr4c.config.category.CoreConfig;
+import com.google.mr4c.config.category.MR4CConfig;
+import com.google.mr4c.dataset.DataFile;
+import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.keys.DataKeyDimension;
+import com.google.mr4c.keys.DataKeyElement;
+import com.google.mr4c.keys.DataKeyFactory;
+import com.google.mr4c.sources.AbstractDatasetSource;
+import com.google.mr4c.sources.BytesDataFileSink;
+import com.google.mr4c.sources.CustomExecutionSource;
+import com.google.mr4c.sources.DataFileSink;
+import com.google.mr4c.sources.DatasetSource.WriteMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ParallelAlgoRunnerTest {
+
+	private static final int FRAMES = 8;
+
+	private DataKeyDimension m_frameDim = new DataKeyDimension("frame");
+	private DataKeyDimension m_typeDim = new DataKeyDimension("type");
+	private Dataset m_input = new Dataset();
+	private TestOutputSource m_output = new TestOutputSource();
+	private CopyAlgorithm m_algo = new CopyAlgorithm();
+	private CustomExecutionSource m_exeSrc;
+
+	@Before public void setUp() {
+		for ( int i=1; i<=FRAMES; i++ ) {
+			for ( String type : Arrays.asList("PAN", "MS") ) {
+				DataKey key = DataKeyFactory.newKey(
+					new DataKeyElement("frame" + i, m_frameDim),
+					new DataKeyElement(type, m_typeDim)
+				);
+				m_input.addFile(key, new DataFile(key.toString().getBytes(), "text/plain"));
+			}
+		}
+		AlgorithmConfig algoConfig = new AlgorithmConfig("copy", "testing", AlgorithmType.JAVA, CopyAlgorithm.class.getName());
+		algoConfig.addDimension(new DimensionConfig("frame", true, 0, 0, null, null, false));
+		algoConfig.addDimension(new DimensionConfig("type", false, 0, 0, null, null, false));
+		m_algo.setAlgorithmConfig(algoConfig);
+		m_algo.init();
+		m_exeSrc = new CustomExecutionSource(m_algo);
+		m_exeSrc.addInputSource("input", new TestInputSource());
+		m_exeSrc.addOutputSource("output", m_output);
+	}
+
+	@Test public void testSlicesShareOutput() throws Exception {
+		new ParallelAlgoRunner(new AlgoRunner(m_exeSrc), 4).execute();
+		assertEquals(4, m_algo.m_executions.get());
+		assertEquals(1, m_algo.m_cleanups.get());
+		assertOutputCorrect();
+	}
+
+	@Test public void testSlicesHaveOwnOutput() throws Exception {
+		new ParallelAlgoRunner(new AlgoRunner(m_exeSrc), 4, 8).execute();
+		assertEquals(0, m_algo.m_nonEmptyOutputs.get());
+		assertOutputCorrect();
+	}
+
+	@Test public void testMoreSlicesThanThreads() throws Exception {
+		new ParallelAlgoRunner(new AlgoRunner(m_exeSrc), 2, 8).execute();
+		assertEquals(8, m_algo.m_executions.get());
+		assertOutputCorrect();
+	}
+
+	@Test public void testOneThread() throws Exception {
+		new ParallelAlgoRunner(new AlgoRunner(m_exeSrc), 1, 4).execute();
+		assertEquals(4, m_algo.m_executions.get());
+		assertOutputCorrect();
+	}
+
+	@Test public void testConfiguredThreads() {
+		AlgorithmConfig algoConfig = new AlgorithmConfig("copy", "testing", AlgorithmType.JAVA, CopyAlgorithm.class.getName());
+		MR4CConfig config = new MR4CConfig(false);
+		config.initStandardCategories();
+		CategoryConfig conf = config.getCategory(Category.CORE);
+		assertEquals(1, ParallelAlgoRunner.getConfiguredThreads(conf, algoConfig));
+		algoConfig.setThreadSafe(true);
+		assertEquals(Runtime.getRuntime().availableProcessors(), ParallelAlgoRunner.getConfiguredThreads(conf, algoConfig));
+		conf.setProperty(CoreConfig.PROP_LOCAL_THREADS, "3");
+		assertEquals(3, ParallelAlgoRunner.getConfiguredThreads(conf, algoConfig));
+		algoConfig.setThreadSafe(false);
+		assertEquals(3, ParallelAlgoRunner.getConfiguredThreads(conf, algoConfig));
+	}
+
+	@Test public void testSliceFailure() throws Exception {
+		m_algo.m_failFrame = "frame5";
+		try {
+			new ParallelAlgoRunner(new AlgoRunner(m_exeSrc), 4).execute();
+			fail("Expected the failed slice to fail the run");
+		} catch ( RuntimeException re ) {
+			assertTrue(re.getMessage(), re.getMessage().contains("frame5"));
+		}
+		assertNull("output shouldn't be written", m_output.m_written);
+		assertEquals(1, m_algo.m_cleanups.get());
+	}
+
+	private void assertOutputCorrect() throws IOException {
+		assertEquals(m_input.getAllFileKeys(), m_output.m_written.getAllFileKeys());
+		for ( DataKey key : m_input.getAllFileKeys() ) {
+			assertTrue(key.toString(), Arrays.equals(key.toString().getBytes(), m_output.m_sinks.get(key).getWrittenBytes()));
+		}
+	}
+
+	private class TestInputSource extends AbstractDatasetSource {
+
+		public Dataset readDataset() {
+			return m_input;
+		}
+
+		public void writeDataset(Dataset dataset) throws IOException {
+			throw new IOException("Writing to input dataset source");
+		}
+
+		public void writeDataset(Dataset dataset, WriteMode writeMode) throws IOException {
+			throw new IOException("Writing to input dataset source");
+		}
+
+		public DataFileSink getDataFileSink(DataKey key) throws IOException {
+			throw new IOException("Writing to input dataset source");
+		}
+
+		public DataFile findDataFile(DataKey key) {
+			return null;
+		}
+
+		public String getDescription() {
+			return "Test input";
+		}
+
+	}
+
+	private static class TestOutputSource extends AbstractDatasetSource {
+
+		private ConcurrentMap<DataKey,BytesDataFileSink> m_sinks = new ConcurrentHashMap<DataKey,BytesDataFileSink>();
+		private Dataset m_written;
+
+		public Dataset readDataset() throws IOException {
+			throw new IOException("Reading from output dataset source");
+		}
+
+		public void writeDataset(Dataset dataset) throws IOException {
+			writeDataset(dataset, WriteMode.ALL);
+		}
+
+		public synchronized void writeDataset(Dataset dataset, WriteMode writeMode) throws IOException {
+			assertNull("Wrote dataset twice", m_written);
+			m_written = dataset;
+		}
+
+		public DataFileSink getDataFileSink(DataKey key) {
+			BytesDataFileSink sink = new BytesDataFileSink();
+			assertNull("Got sink twice for " + key, m_sinks.putIfAbsent(key, sink));
+			return sink;
+		}
+
+		public DataFile findDataFile(DataKey key) throws IOException {
+			throw new IOException("Reading from output dataset source");
+		}
+
+		public String getDescription() {
+			return "Test output";
+		}
+
+	}
+
+	// copies each input file to the output, as it is sliced
+	public static class CopyAlgorithm extends AlgorithmBase {
+
+		private AtomicInteger m_executions = new AtomicInteger();
+		private volatile String m_failFrame;
+		private AtomicInteger m_nonEmptyOutputs = new AtomicInteger();
+		private AtomicInteger m_cleanups = new AtomicInteger();
+
+		public void init() {
+			AlgorithmSchema schema = new AlgorithmSchema();
+			schema.addInputDataset("input");
+			schema.addOutputDataset("output");
+			setAlgorithmSchema(schema);
+		}
+
+		public void cleanup() {
+			m_cleanups.incrementAndGet();
+		}
+
+		public void execute(AlgorithmData data, AlgorithmContext context) throws IOException {
+			m_executions.incrementAndGet();
+			Dataset input = data.getInputDataset("input");
+			Dataset output = data.getOutputDataset("output");
+			if ( !output.getAllFileKeys().isEmpty() ) {
+				m_nonEmptyOutputs.incrementAndGet();
+			}
+			Set<String> frames = new HashSet<String>();
+			for ( DataKey key : input.getAllFileKeys() ) {
+				frames.add(key.getElement(new DataKeyDimension("frame")).getIdentifier());
+				output.addFile(key, new DataFile(input.getFile(key).getBytes(), "text/plain"));
+			}
+			if ( frames.contains(m_failFrame) ) {
+				context.failure("Failed on " + m_failFrame);
+			}
+		}
+
+		public Collection<File> getRequiredFiles() {
+			return Collections.emptyList();
+		}
+
+		public Collection<File> getGeneratedLogFiles() {
+			return Collections.<File>emptySet();
+		}
+
+	}
+
+}
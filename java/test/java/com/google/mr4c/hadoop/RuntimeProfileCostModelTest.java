@@ -0,0 +1,117 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.algorithm.AlgorithmData;
+import com.google.mr4c.dataset.DataFile;
+import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.keys.DataKeyDimension;
+import com.google.mr4c.keys.DataKeyElement;
+import com.google.mr4c.keys.DataKeyFactory;
+import com.google.mr4c.keys.Keyspace;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class RuntimeProfileCostModelTest {
+
+	private URI m_profile = URI.create("output/data/hadoop/profile/profile.properties");
+	private DataKeyElement m_f1 = new DataKeyElement("f1", new DataKeyDimension("frame"));
+	private DataKeyElement m_f2 = new DataKeyElement("f2", new DataKeyDimension("frame"));
+	private DataKeyElement m_f3 = new DataKeyElement("f3", new DataKeyDimension("frame"));
+	private DataKeyElement m_odd = new DataKeyElement("a:b=c", new DataKeyDimension("odd"));
+
+	@Test public void testSaveLoad() throws Exception {
+		Map<DataKeyElement,Double> costs = new HashMap<DataKeyElement,Double>();
+		costs.put(m_f1, 12.5);
+		costs.put(m_odd, 3.0);
+		RuntimeProfileCostModel.save(costs, m_profile);
+		assertEquals(costs, RuntimeProfileCostModel.load(m_profile));
+	}
+
+	@Test public void testRecordAndMerge() throws Exception {
+		Map<DataKeyElement,Double> earlier = new HashMap<DataKeyElement,Double>();
+		earlier.put(m_f1, 99.0);
+		earlier.put(m_odd, 5.0);
+		RuntimeProfileCostModel.save(earlier, m_profile);
+		Configuration conf = new Configuration();
+		RuntimeProfileRecorder.clearParts(m_profile, conf);
+
+		RuntimeProfileRecorder task1 = new RuntimeProfileRecorder(m_profile, "map-00000");
+		task1.record(buildKeyspace(m_f1, m_f2), 30);
+		task1.record(buildKeyspace(m_f3), 10);
+		task1.save();
+		RuntimeProfileRecorder task2 = new RuntimeProfileRecorder(m_profile, "map-00001");
+		task2.record(buildKeyspace(m_f2), 6);
+		task2.save();
+		RuntimeProfileRecorder.mergeParts(m_profile, conf);
+
+		Map<DataKeyElement,Double> costs = RuntimeProfileCostModel.load(m_profile);
+		assertEquals(4, costs.size());
+		assertEquals(15.0, costs.get(m_f1), 0.0);
+		assertEquals(21.0, costs.get(m_f2), 0.0);
+		assertEquals(10.0, costs.get(m_f3), 0.0);
+		assertEquals(5.0, costs.get(m_odd), 0.0);
+	}
+
+	@Test public void testNoProfileYet() throws Exception {
+		URI missing = URI.create("output/data/hadoop/profile/missing.properties");
+		AlgorithmData algoData = new AlgorithmData();
+		Dataset images = new Dataset();
+		images.addFile(DataKeyFactory.newKey(m_f1), new DataFile(new byte[1], "image/tiff"));
+		algoData.addInputDataset("images", images);
+		algoData.generateKeyspaceFromInputDatasets();
+		Map<DataKeyElement,Double> costs = new RuntimeProfileCostModel(missing).estimateCosts(algoData);
+		assertEquals(1.0, costs.get(m_f1), 0.0);
+	}
+
+	private Keyspace buildKeyspace(DataKeyElement ... frames) {
+		Keyspace keyspace = new Keyspace();
+		for ( DataKeyElement frame : frames ) {
+			keyspace.addKey(DataKeyFactory.newKey(frame));
+		}
+		return keyspace;
+	}
+
+	@Test public void testMissingElements() throws Exception {
+		Map<DataKeyElement,Double> profile = new HashMap<DataKeyElement,Double>();
+		profile.put(m_f1, 10.0);
+		profile.put(m_f2, 20.0);
+		RuntimeProfileCostModel.save(profile, m_profile);
+
+		Dataset images = new Dataset();
+		for ( DataKeyElement frame : new DataKeyElement[] {m_f1, m_f2, m_f3} ) {
+			images.addFile(DataKeyFactory.newKey(frame), new DataFile(new byte[1], "image/tiff"));
+		}
+		AlgorithmData algoData = new AlgorithmData();
+		algoData.addInputDataset("images", images);
+		algoData.generateKeyspaceFromInputDatasets();
+
+		Map<DataKeyElement,Double> costs = new RuntimeProfileCostModel(m_profile).estimateCosts(algoData);
+		assertEquals(3, costs.size());
+		assertEquals(10.0, costs.get(m_f1), 0.0);
+		assertEquals(20.0, costs.get(m_f2), 0.0);
+		assertEquals(15.0, costs.get(m_f3), 0.0);
+	}
+
+}
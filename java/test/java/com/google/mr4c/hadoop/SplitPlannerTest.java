@@ -0,0 +1,161 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.hadoop;
+
+import com.google.mr4c.algorithm.AlgorithmData;
+import com.google.mr4c.dataset.DataFile;
+import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.keys.DataKeyDimension;
+import com.google.mr4c.keys.DataKeyElement;
+import com.google.mr4c.keys.DataKeyFactory;
+import com.google.mr4c.keys.DimensionPartition;
+import com.google.mr4c.keys.Keyspace;
+import com.google.mr4c.keys.KeyspacePartition;
+import com.google.mr4c.keys.KeyspacePartitioner;
+import com.google.mr4c.metadata.MetadataKey;
+import com.google.mr4c.metadata.MetadataMap;
+import com.google.mr4c.sources.DataFileSource;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class SplitPlannerTest {
+
+	private DataKeyDimension m_frameDim = new DataKeyDimension("frame");
+	private DataKeyDimension m_typeDim = new DataKeyDimension("type");
+	private DataKeyDimension m_refDim = new DataKeyDimension("ref");
+	private List<DataKeyDimension> m_depDims = Arrays.asList(m_refDim);
+	private AlgorithmData m_algoData;
+
+	@Before public void setUp() {
+		Dataset images = new Dataset();
+		Dataset refs = new Dataset();
+		Dataset extra = new Dataset();
+		for ( int i=1; i<=8; i++ ) {
+			DataKeyElement frame = new DataKeyElement("frame" + i, m_frameDim);
+			for ( String type : Arrays.asList("PAN", "MS") ) {
+				DataKey key = DataKeyFactory.newKey(frame, new DataKeyElement(type, m_typeDim));
+				images.addFile(key, new DataFile(new byte[] {1}, "image/tiff"));
+			}
+			// each frame refers to the ref with the same number
+			DataKey refKey = DataKeyFactory.newKey(new DataKeyElement("ref" + i, m_refDim));
+			MetadataMap meta = new MetadataMap();
+			meta.getMap().put("ref", new MetadataKey(refKey));
+			images.addMetadata(DataKeyFactory.newKey(frame), meta);
+			refs.addFile(refKey, new DataFile(new byte[] {2}, "image/tiff"));
+			extra.addFile(DataKeyFactory.newKey(frame), new DataFile(new byte[] {3}, "image/tiff"));
+		}
+		refs.addFile(DataKeyFactory.newKey(new DataKeyElement("ref9", m_refDim)), new DataFile(new byte[] {4}, "image/tiff"));
+		m_algoData = new AlgorithmData();
+		m_algoData.addInputDataset("images", images);
+		m_algoData.addInputDataset("refs", refs);
+		m_algoData.addInputDataset("extra", extra);
+		m_algoData.excludeInputDatasetFromKeyspace("extra");
+		m_algoData.generateKeyspaceFromInputDatasets();
+	}
+
+	@Test public void testNoOverlap() {
+		doTest(0, 0);
+	}
+
+	@Test public void testOverlap() {
+		doTest(1, 1);
+	}
+
+	@Test public void testDependentElements() {
+		KeyspacePartitioner partitioner = buildPartitioner(0, 0);
+		SplitPlanner planner = new SplitPlanner(partitioner, m_depDims);
+		planner.plan(m_algoData);
+		Set<DataKeyElement> found = new HashSet<DataKeyElement>();
+		for ( KeyspacePartition partition : partitioner.getKeyPartitions() ) {
+			List<DataKeyElement> refs = partition.getPartition(m_refDim).getElements();
+			assertEquals(2, refs.size());
+			found.addAll(refs);
+		}
+		assertEquals(8, found.size());
+		assertFalse(found.contains(new DataKeyElement("ref9", m_refDim)));
+	}
+
+	@Test public void testExcludedDataset() {
+		SplitPlanner planner = new SplitPlanner(buildPartitioner(0, 0), m_depDims);
+		planner.plan(m_algoData);
+		SplitPlanner.Split split = planner.getSplits().get(0);
+		// 2 frames x (2 images + frame key for metadata and extra) + 2 refs
+		assertEquals(8, split.getKeys().size());
+		// the extra files aren't used for locality
+		assertEquals(6, split.getFileSources().size());
+		assertEquals(2, split.getKeyspace().getKeyspaceDimension(m_frameDim).getElements().size());
+	}
+
+	// compares against slicing all the data for each partition
+	private void doTest(int overlapBefore, int overlapAfter) {
+		KeyspacePartitioner partitioner = buildPartitioner(overlapBefore, overlapAfter);
+		SplitPlanner planner = new SplitPlanner(partitioner, m_depDims);
+		planner.plan(m_algoData);
+		List<SplitPlanner.Split> splits = planner.getSplits();
+
+		KeyspacePartitioner expectedPartitioner = buildPartitioner(overlapBefore, overlapAfter);
+		List<KeyspacePartition> expectedPartitions = expectedPartitioner.getKeyPartitions();
+		assertEquals(expectedPartitions.size(), splits.size());
+		for ( int i=0; i<expectedPartitions.size(); i++ ) {
+			KeyspacePartition expectedPartition = expectedPartitions.get(i);
+			AlgorithmData indep = m_algoData.slice(expectedPartition.getIndependentFilter());
+			addDependentDimension(expectedPartition, indep);
+			AlgorithmData slice = m_algoData.slice(expectedPartition.getExtraDimensionsFilter());
+
+			SplitPlanner.Split split = splits.get(i);
+			assertEquals(slice.getAllInputKeys(), split.getKeys());
+			assertEquals(slice.getKeyspace(), split.getKeyspace());
+			assertEquals(
+				new HashSet<DataFileSource>(slice.getInputDataFileSources(true)),
+				new HashSet<DataFileSource>(split.getFileSources())
+			);
+			assertEquals(
+				new HashSet<DataKeyElement>(expectedPartition.getPartition(m_refDim).getElements()),
+				new HashSet<DataKeyElement>(partitioner.getKeyPartitions().get(i).getPartition(m_refDim).getElements())
+			);
+		}
+	}
+
+	private void addDependentDimension(KeyspacePartition partition, AlgorithmData algoData) {
+		DimensionPartition dimPart = new DimensionPartition(m_refDim);
+		for ( DataKey key : algoData.getDependentKeys(m_refDim) ) {
+			dimPart.addElement(key.getElement(m_refDim));
+		}
+		partition.addDependentDimension(dimPart);
+	}
+
+	private KeyspacePartitioner buildPartitioner(int overlapBefore, int overlapAfter) {
+		Keyspace keyspace = m_algoData.getKeyspace();
+		Map<DataKeyDimension,Integer> counts = new HashMap<DataKeyDimension,Integer>();
+		counts.put(m_frameDim, 4);
+		counts.put(m_typeDim, 1);
+		KeyspacePartitioner partitioner = new KeyspacePartitioner(keyspace, counts);
+		partitioner.addOverlaps(m_frameDim, overlapBefore, overlapAfter);
+		partitioner.partition();
+		return partitioner;
+	}
+
+}
@@ -0,0 +1,92 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.keys;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+  * Compares key generation, keyspace building and sorting for the indexed
+  * keys against the map based keys they replaced.  Run with:
+  *   ant benchmark -Dbenchmark.class=keys.DataKeyBenchmark
+*/
+public class DataKeyBenchmark {
+
+	private static final int IMAGES = 100;
+	private static final int BANDS = 8;
+	private static final int TILES = 500;
+	private static final int WARMUP = 3;
+	private static final int RUNS = 5;
+
+	private interface KeyMaker {
+		DataKey newKey(DataKeyElement ... eles);
+	}
+
+	public static void main(String[] args) {
+		run("compound", new KeyMaker() {
+			public DataKey newKey(DataKeyElement ... eles) {
+				return new CompoundDataKey(eles);
+			}
+		});
+		run("indexed", new KeyMaker() {
+			public DataKey newKey(DataKeyElement ... eles) {
+				return new IndexedDataKey(eles);
+			}
+		});
+	}
+
+	private static void run(String name, KeyMaker maker) {
+		for ( int i=0; i<WARMUP; i++ ) {
+			Collections.sort(generate(maker));
+		}
+		long genNanos = 0;
+		long sortNanos = 0;
+		for ( int i=0; i<RUNS; i++ ) {
+			long start = System.nanoTime();
+			List<DataKey> keys = generate(maker);
+			genNanos += System.nanoTime() - start;
+			Collections.shuffle(keys);
+			start = System.nanoTime();
+			Collections.sort(keys);
+			sortNanos += System.nanoTime() - start;
+		}
+		System.out.println(String.format("%-9s : %8.2f ms generate+keyspace; %8.2f ms sort (%d keys)",
+			name, genNanos / 1000000.0 / RUNS, sortNanos / 1000000.0 / RUNS, IMAGES*BANDS*TILES));
+	}
+
+	private static List<DataKey> generate(KeyMaker maker) {
+		DataKeyDimension imageDim = new DataKeyDimension("image");
+		DataKeyDimension bandDim = new DataKeyDimension("band");
+		DataKeyDimension tileDim = new DataKeyDimension("tile");
+		List<DataKey> keys = new ArrayList<DataKey>(IMAGES*BANDS*TILES);
+		Keyspace keyspace = new Keyspace();
+		for ( int i=0; i<IMAGES; i++ ) {
+			DataKeyElement image = new DataKeyElement("image_" + i, imageDim);
+			for ( int b=0; b<BANDS; b++ ) {
+				DataKeyElement band = new DataKeyElement("band_" + b, bandDim);
+				for ( int t=0; t<TILES; t++ ) {
+					DataKey key = maker.newKey(image, band, new DataKeyElement("tile_" + t, tileDim));
+					keyspace.addKey(key);
+					keys.add(key);
+				}
+			}
+		}
+		return keys;
+	}
+
+}
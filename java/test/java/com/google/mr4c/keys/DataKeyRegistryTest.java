@@ -0,0 +1,83 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.keys;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class DataKeyRegistryTest {
+
+	private DataKeyDimension m_dim;
+	private DataKeyRegistry m_registry;
+
+	@Before public void setUp() {
+		m_dim = new DataKeyDimension("dim");
+		m_registry = new DataKeyRegistry(3);
+	}
+
+	@Test public void testSameId() {
+		int id = m_registry.getElementId(new DataKeyElement("ele1", m_dim));
+		assertEquals(id, m_registry.getElementId(new DataKeyElement("ele1", new DataKeyDimension("dim"))));
+		assertSame(m_dim, m_registry.getElement(id).getDimension());
+	}
+
+	@Test public void testFull() {
+		int id1 = m_registry.getElementId(new DataKeyElement("ele1", m_dim));
+		m_registry.getElementId(new DataKeyElement("ele2", m_dim));
+		m_registry.getElementId(new DataKeyElement("ele3", m_dim));
+		assertEquals(DataKeyRegistry.NO_ID, m_registry.getElementId(new DataKeyElement("ele4", m_dim)));
+		assertEquals(3, m_registry.size());
+		assertEquals(id1, m_registry.getElementId(new DataKeyElement("ele1", m_dim)));
+	}
+
+	@Test public void testConcurrentRegister() throws Exception {
+		final DataKeyRegistry registry = new DataKeyRegistry(DataKeyRegistry.MAX_ELEMENTS);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<int[]>> results = new ArrayList<Future<int[]>>();
+			for ( int i=0; i<4; i++ ) {
+				results.add(executor.submit(new Callable<int[]>() {
+					public int[] call() {
+						int[] ids = new int[2000];
+						for ( int j=0; j<ids.length; j++ ) {
+							ids[j] = registry.getElementId(new DataKeyElement("ele"+j, new DataKeyDimension("dim")));
+						}
+						return ids;
+					}
+				}));
+			}
+			int[] expected = results.get(0).get();
+			for ( Future<int[]> result : results ) {
+				assertArrayEquals(expected, result.get());
+			}
+			assertEquals(2000, registry.size());
+			for ( int j=0; j<expected.length; j++ ) {
+				assertEquals("ele"+j, registry.getElement(expected[j]).getIdentifier());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
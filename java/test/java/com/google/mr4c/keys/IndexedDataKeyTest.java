@@ -0,0 +1,150 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.keys;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class IndexedDataKeyTest {
+
+	private DataKeyDimension m_dim1;
+	private DataKeyDimension m_dim2;
+	private DataKeyDimension m_dim3;
+
+	private DataKeyElement m_ele1;
+	private DataKeyElement m_ele2a; 
+	private DataKeyElement m_ele2b; 
+	private DataKeyElement m_ele3; 
+
+	private DataKey m_key1a;
+	private DataKey m_key1b;
+	private DataKey m_key2; // different ids
+	private DataKey m_key3; // different dims
+
+	@Before public void setUp() {
+		m_dim1 = new DataKeyDimension("dim1");
+		m_dim2 = new DataKeyDimension("dim2");
+		m_dim3 = new DataKeyDimension("dim3");
+		m_ele1 = new DataKeyElement("ele1", m_dim1);
+		m_ele2a = new DataKeyElement("ele2a", m_dim2);
+		m_ele2b = new DataKeyElement("ele2b", m_dim2);
+		m_ele3 = new DataKeyElement("ele3", m_dim3);
+		m_key1a = new IndexedDataKey( m_ele1, m_ele2a );
+		m_key1b = new IndexedDataKey( m_ele2a, m_ele1 );
+		m_key2 = new IndexedDataKey( m_ele1, m_ele2b );
+		m_key3 = new IndexedDataKey( m_ele1, m_ele3 );
+	} 
+
+	@Test public void testEquals() {
+		assertEquals(m_key1a, m_key1b);
+		assertEquals(m_key1a.hashCode(), m_key1b.hashCode());
+	}
+
+	@Test public void testEqualsCopiedElements() {
+		DataKey key = new IndexedDataKey(
+			new DataKeyElement("ele2a", new DataKeyDimension("dim2")),
+			new DataKeyElement("ele1", new DataKeyDimension("dim1"))
+		);
+		assertEquals(m_key1a, key);
+	}
+
+	@Test public void testEqualsCompound() {
+		DataKey key = new CompoundDataKey(m_ele2a, m_ele1);
+		assertEquals(m_key1a, key);
+		assertEquals(key, m_key1a);
+		assertEquals(key.hashCode(), m_key1a.hashCode());
+		assertFalse(m_key2.equals(key));
+		assertFalse(key.equals(m_key2));
+	}
+
+	@Test public void testNotEqualId() {
+		assertFalse(m_key1a.equals(m_key2));
+	}
+
+	@Test public void testNotEqualDim() {
+		assertFalse(m_key1a.equals(m_key3));
+	}
+
+	@Test public void testGetElement() {
+		assertEquals(m_ele1, m_key1a.getElement(m_dim1));
+		assertEquals(m_ele2a, m_key1a.getElement(m_dim2));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testGetElementFail() {
+		m_key1a.getElement(m_dim3);
+	}
+
+	@Test public void testGetElements() {
+		assertEquals(new HashSet<DataKeyElement>(Arrays.asList(m_ele1, m_ele2a)), m_key1a.getElements());
+		assertTrue(m_key1a.getElements().contains(m_ele2a));
+		assertFalse(m_key1a.getElements().contains(m_ele2b));
+	}
+
+	@Test public void testGetDimensions() {
+		assertEquals(new HashSet<DataKeyDimension>(Arrays.asList(m_dim1, m_dim2)), m_key1a.getDimensions());
+		assertTrue(m_key1a.hasDimension(m_dim2));
+		assertFalse(m_key1a.hasDimension(m_dim3));
+	}
+
+	@Test public void testDimensionOrder() {
+		List<DataKeyDimension> dims = new ArrayList<DataKeyDimension>(new IndexedDataKey(m_ele3, m_ele2a, m_ele1).getDimensions());
+		assertEquals(Arrays.asList(m_dim1, m_dim2, m_dim3), dims);
+	}
+
+	@Test public void testSingleElement() {
+		DataKey key = new IndexedDataKey(m_ele1);
+		assertEquals(key, new IndexedDataKey(Arrays.asList(m_ele1)));
+		assertEquals(m_ele1.toString(), key.toString());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testConstructorFail() {
+		new IndexedDataKey( m_ele1, m_ele2a, m_ele2b, m_ele3 );
+	}
+
+	@Test public void testCompareMatchesGeneral() {
+		DataKey[] indexed = {
+			new IndexedDataKey(m_ele1, m_ele2a),
+			new IndexedDataKey(m_ele1, m_ele2b),
+			new IndexedDataKey(m_ele1, m_ele3),
+			new IndexedDataKey(m_ele1),
+			new IndexedDataKey(m_ele2b, m_ele3),
+			new IndexedDataKey()
+		};
+		DataKey[] general = {
+			new CompoundDataKey(m_ele1, m_ele2a),
+			new CompoundDataKey(m_ele1, m_ele2b),
+			new CompoundDataKey(m_ele1, m_ele3),
+			new SimpleDataKey(m_ele1),
+			new CompoundDataKey(m_ele2b, m_ele3),
+			new CompoundDataKey()
+		};
+		for ( int i=0; i<indexed.length; i++ ) {
+			for ( int j=0; j<indexed.length; j++ ) {
+				int expected = Integer.signum(general[i].compareTo(general[j]));
+				assertEquals(expected, Integer.signum(indexed[i].compareTo(indexed[j])));
+			}
+		}
+	}
+
+}
@@ -16,6 +16,7 @@
 
 package com.google.mr4c.keys;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -135,6 +136,22 @@ public class KeyspacePartitionerTest {
 		testPartitioning();
 	}
 
+	@Test public void testPartitioningWithCosts() {
+		buildPartitionsWithCosts();
+		Map<DataKeyDimension,Integer> counts = new HashMap<DataKeyDimension,Integer>();
+		counts.put(m_frame,3);
+		counts.put(m_sensor,2);
+		counts.put(m_type,1);
+		m_partitioner = new KeyspacePartitioner(m_keyspace, counts);
+		Map<DataKeyElement,Double> costs = new HashMap<DataKeyElement,Double>();
+		for ( DataKeyElement element : Arrays.asList(m_f2, m_f3, m_f4, m_f5, m_s1, m_s2, m_s3, m_pan, m_ms) ) {
+			costs.put(element, 1.0);
+		}
+		costs.put(m_f1, 10.0);
+		m_partitioner.specifyCosts(costs);
+		testPartitioning();
+	}
+
 	@Test public void testPartitioningRootOnly() {
 		addPartition(m_rootKey);
 		Map<DataKeyDimension,Integer> counts = new HashMap<DataKeyDimension,Integer>();
@@ -151,6 +168,20 @@ public class KeyspacePartitionerTest {
 			results.add(DataKeyUtils.filter(filter,m_allKeys));
 		}
 		assertEquals(m_expected, results);
+		testFindPartitions(partitions);
+	}
+
+	// findPartitions() should agree with the partition filters
+	private void testFindPartitions(List<KeyspacePartition> partitions) {
+		for ( DataKey key : m_allKeys ) {
+			List<Integer> expected = new ArrayList<Integer>();
+			for ( int i=0; i<partitions.size(); i++ ) {
+				if ( partitions.get(i).getExtraDimensionsFilter().filter(key) ) {
+					expected.add(i);
+				}
+			}
+			assertEquals("Partitions for " + key, expected, m_partitioner.findPartitions(key));
+		}
 	}
 
 	private void buildDimensions() {
@@ -233,6 +264,33 @@ public class KeyspacePartitionerTest {
 		m_allKeys.addAll(keys);
 	}
 
+	// the expensive first frame gets a partition to itself
+	private void buildPartitionsWithCosts() {
+		List<List<DataKeyElement>> frameParts = Arrays.asList(
+			Arrays.asList(m_f1),
+			Arrays.asList(m_f2, m_f3),
+			Arrays.asList(m_f4, m_f5)
+		);
+		List<List<DataKeyElement>> sensorParts = Arrays.asList(
+			Arrays.asList(m_s1, m_s2),
+			Arrays.asList(m_s3)
+		);
+		for ( List<DataKeyElement> frames : frameParts ) {
+			for ( List<DataKeyElement> sensors : sensorParts ) {
+				List<DataKey> keys = new ArrayList<DataKey>();
+				keys.add(m_rootKey);
+				for ( DataKeyElement frame : frames ) {
+					keys.add(DataKeyFactory.newKey(frame));
+					for ( DataKeyElement sensor : sensors ) {
+						keys.add(DataKeyFactory.newKey(frame, sensor, m_pan));
+						keys.add(DataKeyFactory.newKey(frame, sensor, m_ms));
+					}
+				}
+				addPartition(keys);
+			}
+		}
+	}
+
 	private void buildPartitionsNormal() {	
 
 		addPartition(
@@ -18,11 +18,14 @@ package com.google.mr4c.mbtiles;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.junit.*;
 import static org.junit.Assert.*;
@@ -119,6 +122,97 @@ public class MBTilesFileTest {
 		mb2.close();
 	}
 		
+	@Test public void testBulkWrite() throws Exception {
+		MBTilesFile mb1 = MBTilesFile.createForBulkWrite(m_file, 2, 4096);
+		m_cleanup.add(mb1);
+		addTiles(mb1);
+		addMetadata(mb1);
+		checkTiles(mb1);
+		checkMetadata(mb1);
+		mb1.close();
+		MBTilesFile mb2 = MBTilesFile.create(m_file, MBTilesFile.FileMode.READ_ONLY);
+		m_cleanup.add(mb2);
+		checkTiles(mb2);
+		checkMetadata(mb2);
+	}
+
+	@Test public void testBulkWriteLargeBatch() throws Exception {
+		MBTilesFile mb1 = MBTilesFile.createForBulkWrite(m_file, 1000, 4096);
+		m_cleanup.add(mb1);
+		addTiles(mb1);
+		mb1.close();
+		MBTilesFile mb2 = MBTilesFile.create(m_file, MBTilesFile.FileMode.READ_ONLY);
+		m_cleanup.add(mb2);
+		checkTiles(mb2);
+	}
+
+	@Test(expected=IOException.class)
+	public void testBulkWriteDuplicate() throws Exception {
+		MBTilesFile mb1 = MBTilesFile.createForBulkWrite(m_file, 2, 4096);
+		m_cleanup.add(mb1);
+		addTiles(mb1);
+		mb1.addTile(m_tiles.get(0));
+		mb1.close();
+	}
+
+	@Test public void testFindTileKeysInRange() throws Exception {
+		addTiles(m_memoryFile);
+		TileRange range = new TileRange(2, 3, 0, 5, 0, 100);
+		assertEquals(Collections.singleton(m_tiles.get(1).getKey()), collectKeys(m_memoryFile.findTileKeys(range)));
+	}
+
+	@Test public void testFindTileKeysNoneInRange() throws Exception {
+		addTiles(m_memoryFile);
+		TileRange range = new TileRange(4, 10, 0, 100, 0, 100);
+		assertEquals(Collections.emptySet(), collectKeys(m_memoryFile.findTileKeys(range)));
+	}
+
+	@Test public void testConcurrentReads() throws Exception {
+		MBTilesFile mb1 = MBTilesFile.create(m_file, MBTilesFile.FileMode.REPLACE);
+		m_cleanup.add(mb1);
+		final List<Tile> tiles = MBTilesTestUtil.generateTestTiles(50);
+		mb1.addTiles(tiles);
+		mb1.close();
+		final MBTilesFile mb2 = MBTilesFile.createForRead(m_file, 4);
+		m_cleanup.add(mb2);
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+		List<Thread> threads = new ArrayList<Thread>();
+		for ( int i=0; i<8; i++ ) {
+			Thread thread = new Thread() {
+				public void run() {
+					try {
+						// fetch tiles while holding a key cursor open
+						TileKeyCursor cursor = mb2.findTileKeys(TileRange.ALL);
+						for ( Tile tile : tiles ) {
+							assertEquals(tile, mb2.findTile(tile.getKey()));
+						}
+						assertEquals(tiles.size(), collectKeys(cursor).size());
+					} catch ( Throwable t ) {
+						errors.add(t);
+					}
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		for ( Thread thread : threads ) {
+			thread.join();
+		}
+		assertEquals(Collections.emptyList(), errors);
+	}
+
+	private Set<TileKey> collectKeys(TileKeyCursor cursor) throws Exception {
+		Set<TileKey> keys = new HashSet<TileKey>();
+		try {
+			while ( cursor.hasNext() ) {
+				keys.add(cursor.next());
+			}
+		} finally {
+			cursor.close();
+		}
+		return keys;
+	}
+
 	private void addMetadata(MBTilesFile mbtiles) throws Exception {
 		mbtiles.addMetadata(m_meta);
 	}
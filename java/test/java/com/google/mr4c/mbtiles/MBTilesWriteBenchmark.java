@@ -0,0 +1,78 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.mbtiles;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+  * Compares tiles/sec written by the plain and bulk write modes of
+  * MBTilesFile.  Run with:
+  *   ant benchmark -Dbenchmark.class=mbtiles.MBTilesWriteBenchmark
+*/
+public class MBTilesWriteBenchmark {
+
+	private static final int ZOOM = 7;
+	private static final int TILES = 5000;
+	private static final int TILE_BYTES = 2048;
+	private static final int[] BATCH_SIZES = {100, 1000, 10000};
+
+	public static void main(String[] args) throws Exception {
+		File file = new File("output/mbtiles/benchmark.db");
+		List<Tile> tiles = buildTiles();
+		report("plain", TILES, timePlain(file, tiles));
+		for ( int batchSize : BATCH_SIZES ) {
+			report("batch " + batchSize, TILES, timeBulk(file, tiles, batchSize));
+		}
+	}
+
+	private static long timePlain(File file, List<Tile> tiles) throws Exception {
+		long start = System.nanoTime();
+		MBTilesFile mbtiles = MBTilesFile.create(file, MBTilesFile.FileMode.REPLACE);
+		mbtiles.addTiles(tiles);
+		mbtiles.close();
+		return System.nanoTime() - start;
+	}
+
+	private static long timeBulk(File file, List<Tile> tiles, int batchSize) throws Exception {
+		long start = System.nanoTime();
+		MBTilesFile mbtiles = MBTilesFile.createForBulkWrite(file, batchSize, 4096);
+		mbtiles.addTiles(tiles);
+		mbtiles.close();
+		return System.nanoTime() - start;
+	}
+
+	private static void report(String name, int count, long nanos) {
+		double secs = nanos / 1000000000.0;
+		System.out.println(String.format("%-12s : %8.2f s; %10.0f tiles/sec", name, secs, count / secs));
+	}
+
+	private static List<Tile> buildTiles() {
+		Random random = new Random(42);
+		List<Tile> tiles = new ArrayList<Tile>();
+		int side = 1 << ZOOM;
+		for ( int i=0; i<TILES; i++ ) {
+			byte[] data = new byte[TILE_BYTES];
+			random.nextBytes(data);
+			tiles.add(new Tile(new TileKey(ZOOM, i % side, i / side), data));
+		}
+		return tiles;
+	}
+
+}
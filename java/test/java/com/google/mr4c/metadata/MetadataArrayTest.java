@@ -36,4 +36,33 @@ public class MetadataArrayTest {
 		assertFalse("should not be equal", array1.equals(array2));
 	}
 
+	@Test public void testPrimitiveEqualsBoxed() {
+		MetadataArray array1 = new MetadataArray(new double[] {1.5, -2.0, 3.25});
+		MetadataArray array2 = new MetadataArray(Arrays.asList(1.5, -2.0, 3.25), PrimitiveType.DOUBLE);
+		assertEquals("should be equal", array1, array2);
+		assertEquals("should be equal", array2, array1);
+		assertEquals(array1.hashCode(), array2.hashCode());
+	}
+
+	@Test public void testPrimitiveNotEqual() {
+		MetadataArray array1 = new MetadataArray(new int[] {1, 2, 3});
+		MetadataArray array2 = new MetadataArray(new int[] {1, 2, 4});
+		assertFalse("should not be equal", array1.equals(array2));
+	}
+
+	@Test public void testPrimitiveValues() {
+		MetadataArray array = new MetadataArray(new long[] {5L, 1L<<40});
+		assertEquals(PrimitiveType.SIZE_T, array.getType());
+		assertEquals(2, array.size());
+		assertEquals(Arrays.asList(5L, 1L<<40), array.getValues());
+		assertEquals("1099511627776", array.getValueAsString(1));
+		assertTrue(array.getPrimitiveArray() instanceof long[]);
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void testPrimitiveValuesReadOnly() {
+		MetadataArray array = new MetadataArray(new float[] {1.0f});
+		array.getValues().clear();
+	}
+
 }
@@ -0,0 +1,99 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.metadata;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class MetadataBuffersTest {
+
+	private MetadataBuffers m_buffers;
+
+	@Before public void setup() {
+		m_buffers = new MetadataBuffers();
+	}
+
+	@Test public void testDouble() {
+		doTestRoundTrip(new MetadataArray(new double[] {1.5, -2.0, 1e300}), 24);
+	}
+
+	@Test public void testFloat() {
+		doTestRoundTrip(new MetadataArray(new float[] {1.5f, -2.0f}), 8);
+	}
+
+	@Test public void testInteger() {
+		doTestRoundTrip(new MetadataArray(new int[] {1, -2, 3, 4}), 16);
+	}
+
+	@Test public void testSize_t() {
+		doTestRoundTrip(new MetadataArray(new long[] {1, 77777777777L}), 16);
+	}
+
+	@Test public void testByte() {
+		doTestRoundTrip(new MetadataArray(new byte[] {1, -2, 3}), 3);
+	}
+
+	@Test public void testBoxed() {
+		doTestRoundTrip(new MetadataArray(Arrays.asList(1.5, -2.0), PrimitiveType.DOUBLE), 16);
+	}
+
+	@Test public void testEmpty() {
+		doTestRoundTrip(new MetadataArray(new int[0]), 0);
+	}
+
+	@Test public void testNativeOrder() {
+		m_buffers.addArray(new MetadataArray(new int[] {1}));
+		ByteBuffer buf = m_buffers.getBuffer(0);
+		assertTrue(buf.isDirect());
+		assertEquals(1, buf.getInt());
+	}
+
+	@Test public void testIndexes() {
+		assertEquals(0, m_buffers.addArray(new MetadataArray(new int[] {1, 2})));
+		assertEquals(1, m_buffers.addArray(new MetadataArray(new double[] {1.5})));
+		assertEquals(2, m_buffers.getBufferCount());
+	}
+
+	@Test public void testBufferable() {
+		assertTrue(MetadataBuffers.isBufferable(PrimitiveType.DOUBLE));
+		assertTrue(MetadataBuffers.isBufferable(PrimitiveType.SIZE_T));
+		assertFalse(MetadataBuffers.isBufferable(PrimitiveType.STRING));
+		assertFalse(MetadataBuffers.isBufferable(PrimitiveType.BOOLEAN));
+		assertFalse(MetadataBuffers.isBufferable(PrimitiveType.LONG_DOUBLE));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testString() {
+		m_buffers.addArray(new MetadataArray(Arrays.asList("one", "two"), PrimitiveType.STRING));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testWrongSize() {
+		m_buffers.addBuffer(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+		m_buffers.getArray(0, PrimitiveType.INTEGER);
+	}
+
+	private void doTestRoundTrip(MetadataArray array, int bytes) {
+		int index = m_buffers.addArray(array);
+		assertEquals(bytes, m_buffers.getBuffer(index).remaining());
+		assertEquals(array, m_buffers.getArray(index, array.getType()));
+	}
+
+}
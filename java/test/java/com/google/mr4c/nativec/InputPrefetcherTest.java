@@ -0,0 +1,193 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.nativec;
+
+import com.google.mr4c.algorithm.AlgorithmData;
+import com.google.mr4c.dataset.DataFile;
+import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.keys.DataKeyDimension;
+import com.google.mr4c.keys.DataKeyElement;
+import com.google.mr4c.keys.DataKeyFactory;
+import com.google.mr4c.sources.AbstractDataFileSource;
+import com.google.mr4c.sources.DataFileSource;
+import com.google.mr4c.stats.NoOpStatsClient;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class InputPrefetcherTest {
+
+	private AlgorithmData m_data;
+	private List<DataKey> m_keys = new ArrayList<DataKey>();
+	private List<CountingSource> m_sources = new ArrayList<CountingSource>();
+	private InputPrefetcher m_prefetcher;
+
+	@Before public void setUp() {
+		m_data = new AlgorithmData();
+		DataKeyDimension dim = new DataKeyDimension("dim");
+		for ( int i=0; i<5; i++ ) {
+			m_keys.add(DataKeyFactory.newKey(new DataKeyElement("key" + i, dim)));
+		}
+		Dataset dataset = new Dataset();
+		// add out of order, prefetch should go by key
+		for ( int i=4; i>=0; i-- ) {
+			CountingSource src = new CountingSource(100);
+			m_sources.add(0, src);
+			dataset.addFile(m_keys.get(i), new DataFile(src, "application/octet-stream"));
+		}
+		m_data.addInputDataset("input", dataset);
+	}
+
+	@After public void tearDown() {
+		if ( m_prefetcher!=null ) {
+			m_prefetcher.shutdown();
+		}
+	}
+
+	@Test public void testReadsAhead() throws Exception {
+		m_prefetcher = new InputPrefetcher(2, 2, 1000000, new NoOpStatsClient());
+		m_prefetcher.attach(m_data);
+		waitForReads(0, 1);
+		assertEquals(0, m_sources.get(2).getReads());
+
+		byte[] bytes = getFile(0).getBytes();
+		assertEquals(100, bytes.length);
+		assertEquals(1, m_sources.get(0).getReads()); // served from the prefetch
+		waitForReads(2);
+		assertEquals(0, m_sources.get(3).getReads());
+	}
+
+	@Test public void testMemoryLimit() throws Exception {
+		m_prefetcher = new InputPrefetcher(3, 1, 150, new NoOpStatsClient());
+		m_prefetcher.attach(m_data);
+		waitForReads(0, 1);
+		Thread.sleep(100);
+		assertEquals(0, m_sources.get(2).getReads());
+		assertEquals(200, m_prefetcher.getPrefetchedBytes());
+
+		getFile(0).getBytes();
+		getFile(1).getBytes();
+		waitForReads(2, 3);
+		assertEquals(200, m_prefetcher.getPrefetchedBytes());
+	}
+
+	@Test public void testDisabled() throws Exception {
+		m_prefetcher = new InputPrefetcher(0, 1, 1000, new NoOpStatsClient());
+		m_prefetcher.attach(m_data);
+		assertSame(m_sources.get(0), getFile(0).getFileSource());
+	}
+
+	@Test public void testSkipsLocalFiles() throws Exception {
+		m_sources.get(0).m_local = new File("local");
+		m_prefetcher = new InputPrefetcher(2, 1, 1000, new NoOpStatsClient());
+		m_prefetcher.attach(m_data);
+		assertSame(m_sources.get(0), getFile(0).getFileSource());
+		waitForReads(1, 2);
+	}
+
+	@Test public void testShutdown() throws Exception {
+		m_prefetcher = new InputPrefetcher(1, 1, 1000, new NoOpStatsClient());
+		m_prefetcher.attach(m_data);
+		waitForReads(0);
+		m_prefetcher.shutdown();
+		getFile(0).getBytes();
+		getFile(1).getBytes();
+		assertEquals(1, m_sources.get(1).getReads());
+	}
+
+	@Test public void testShutdownRestoresSources() throws Exception {
+		m_prefetcher = new InputPrefetcher(2, 1, 1000, new NoOpStatsClient());
+		m_prefetcher.attach(m_data);
+		assertNotSame(m_sources.get(0), getFile(0).getFileSource());
+		m_prefetcher.shutdown();
+		for ( int i=0; i<m_keys.size(); i++ ) {
+			assertSame(m_sources.get(i), getFile(i).getFileSource());
+		}
+	}
+
+	private DataFile getFile(int index) {
+		return m_data.getInputDataset("input").getFile(m_keys.get(index));
+	}
+
+	private void waitForReads(int ... indexes) throws Exception {
+		for ( int index : indexes ) {
+			long end = System.currentTimeMillis() + 5000;
+			while ( m_sources.get(index).getReads()==0 ) {
+				assertTrue("Timed out waiting for file " + index, System.currentTimeMillis() < end);
+				Thread.sleep(10);
+			}
+		}
+	}
+
+	private static class CountingSource extends AbstractDataFileSource {
+
+		private byte[] m_bytes;
+		private byte[] m_cache;
+		private int m_reads;
+		private File m_local;
+
+		private CountingSource(int size) {
+			m_bytes = new byte[size];
+		}
+
+		synchronized int getReads() {
+			return m_reads;
+		}
+
+		public long getFileSize() {
+			return m_bytes.length;
+		}
+
+		public InputStream getFileInputStream() throws IOException {
+			return new ByteArrayInputStream(getFileBytes());
+		}
+
+		public synchronized byte[] getFileBytes() {
+			if ( m_cache==null ) {
+				m_reads++;
+				m_cache = m_bytes;
+			}
+			return m_cache;
+		}
+
+		public void getFileBytes(ByteBuffer buf) {
+			buf.put(getFileBytes());
+		}
+
+		public synchronized void release() {
+			m_cache = null;
+		}
+
+		public File getLocalFile() {
+			return m_local;
+		}
+
+		public String getDescription() {
+			return "counting source";
+		}
+	}
+
+}
@@ -0,0 +1,90 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.nativec.jna;
+
+import com.google.mr4c.nativec.jna.NativeBuffer.Policy;
+import com.google.mr4c.sources.BytesDataFileSource;
+import com.google.mr4c.sources.DataFileSource;
+import com.google.mr4c.sources.URIDataFileSource;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class NativeBufferTest {
+
+	private byte[] m_bytes;
+	private File m_file;
+
+	@Before public void setUp() throws Exception {
+		m_bytes = new byte[100000];
+		for ( int i=0; i<m_bytes.length; i++ ) {
+			m_bytes[i] = (byte) i;
+		}
+		File dir = new File("output/test/native");
+		dir.mkdirs();
+		m_file = new File(dir, "buffer.bin");
+		FileOutputStream out = new FileOutputStream(m_file);
+		try {
+			out.write(m_bytes);
+		} finally {
+			out.close();
+		}
+	}
+
+	@Test public void testLocalFile() throws Exception {
+		for ( Policy policy : Policy.values() ) {
+			DataFileSource src = new URIDataFileSource(m_file.toURI(), m_file.getName(), m_file);
+			assertContent(policy, src);
+		}
+	}
+
+	@Test public void testNoLocalFile() throws Exception {
+		for ( Policy policy : Policy.values() ) {
+			assertContent(policy, new BytesDataFileSource(m_bytes));
+		}
+	}
+
+	@Test public void testEmptyFile() throws Exception {
+		for ( Policy policy : Policy.values() ) {
+			NativeBuffer buf = new NativeBuffer(new BytesDataFileSource(new byte[0]), policy);
+			assertNotNull(buf.getPointer());
+			assertEquals(0, buf.getSize());
+			buf.release();
+		}
+	}
+
+	@Test public void testRelease() throws Exception {
+		NativeBuffer buf = new NativeBuffer(new BytesDataFileSource(m_bytes), Policy.STREAM);
+		buf.getPointer();
+		assertTrue(buf.isLoaded());
+		buf.release();
+		assertFalse(buf.isLoaded());
+	}
+
+	private void assertContent(Policy policy, DataFileSource src) throws Exception {
+		NativeBuffer buf = new NativeBuffer(src, policy);
+		byte[] actual = buf.getPointer().getByteArray(0, m_bytes.length);
+		assertEquals(policy.toString(), m_bytes.length, buf.getSize());
+		assertTrue(policy.toString(), Arrays.equals(m_bytes, actual));
+		buf.release();
+	}
+
+}
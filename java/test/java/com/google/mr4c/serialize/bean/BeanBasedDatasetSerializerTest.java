@@ -18,6 +18,9 @@ package com.google.mr4c.serialize.bean;
 
 import com.google.mr4c.dataset.Dataset;
 import com.google.mr4c.dataset.DatasetTestUtils;
+import com.google.mr4c.keys.DataKeyDimension;
+import com.google.mr4c.keys.DataKeyFilter;
+import com.google.mr4c.keys.HasDimensionFilter;
 import com.google.mr4c.serialize.DatasetSerializer;
 import com.google.mr4c.serialize.json.JsonDatasetBeanSerializer;
 
@@ -49,5 +52,14 @@ public class BeanBasedDatasetSerializerTest {
 		assertEquals(m_dataset, dataset2);
 	}
 
+	@Test public void testDatasetFiltered() throws Exception {
+		StringWriter writer = new StringWriter();
+		m_serializer.serializeDataset(m_dataset, writer);
+		StringReader reader = new StringReader(writer.toString());
+		DataKeyFilter filter = new HasDimensionFilter(new DataKeyDimension("dim2"));
+		Dataset dataset2 = m_serializer.deserializeDataset(reader, filter);
+		assertEquals(m_dataset.slice(filter), dataset2);
+	}
+
 }
 
@@ -0,0 +1,143 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.serialize.json;
+
+import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.dataset.DatasetTestUtils;
+import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.keys.DataKeyDimension;
+import com.google.mr4c.keys.DataKeyElement;
+import com.google.mr4c.keys.DataKeyFactory;
+import com.google.mr4c.keys.DataKeyFilter;
+import com.google.mr4c.keys.HasDimensionFilter;
+import com.google.mr4c.metadata.MetadataArray;
+import com.google.mr4c.metadata.MetadataBuffers;
+import com.google.mr4c.metadata.MetadataList;
+import com.google.mr4c.metadata.MetadataMap;
+import com.google.mr4c.metadata.PrimitiveType;
+import com.google.mr4c.serialize.DatasetSerializer;
+import com.google.mr4c.serialize.bean.BeanBasedDatasetSerializer;
+import com.google.mr4c.sources.BytesDataFileSource;
+import com.google.mr4c.sources.DataFileSource;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class StreamingJsonDatasetSerializerTest {
+
+	private Dataset m_dataset;
+	private DatasetSerializer m_serializer;
+	private DatasetSerializer m_beanSerializer;
+	private DataKeyFilter m_filter;
+
+	@Before public void setup() throws Exception {
+		m_dataset = DatasetTestUtils.buildDataset1();
+		m_dataset.release();
+		m_serializer = new StreamingJsonDatasetSerializer();
+		m_beanSerializer = new BeanBasedDatasetSerializer(
+			new JsonDatasetBeanSerializer()
+		);
+		m_filter = new HasDimensionFilter(new DataKeyDimension("dim2"));
+	}
+
+	@Test public void testDataset() throws Exception {
+		String serialized = serialize(m_serializer);
+		Dataset dataset2 = m_serializer.deserializeDataset(new StringReader(serialized));
+		assertEquals(m_dataset, dataset2);
+	}
+
+	@Test public void testDatasetFiltered() throws Exception {
+		String serialized = serialize(m_serializer);
+		Dataset dataset2 = m_serializer.deserializeDataset(new StringReader(serialized), m_filter);
+		assertEquals(m_dataset.slice(m_filter), dataset2);
+	}
+
+	@Test public void testDatasetBuffers() throws Exception {
+		addNumericArrays();
+		StringWriter writer = new StringWriter();
+		MetadataBuffers buffers = new MetadataBuffers();
+		m_serializer.serializeDataset(m_dataset, writer, buffers);
+		String serialized = writer.toString();
+		assertEquals(3, buffers.getBufferCount());
+		assertTrue(serialized.contains("\"buffer\""));
+		Dataset dataset2 = m_serializer.deserializeDataset(new StringReader(serialized), buffers);
+		assertEquals(m_dataset, dataset2);
+	}
+
+	@Test(expected=java.io.IOException.class)
+	public void testBuffersMissing() throws Exception {
+		addNumericArrays();
+		StringWriter writer = new StringWriter();
+		m_serializer.serializeDataset(m_dataset, writer, new MetadataBuffers());
+		m_serializer.deserializeDataset(new StringReader(writer.toString()));
+	}
+
+	@Test public void testReadBeanOutput() throws Exception {
+		String serialized = serialize(m_beanSerializer);
+		Dataset dataset2 = m_serializer.deserializeDataset(new StringReader(serialized));
+		assertEquals(m_dataset, dataset2);
+	}
+
+	@Test public void testReadBeanOutputFiltered() throws Exception {
+		String serialized = serialize(m_beanSerializer);
+		Dataset dataset2 = m_serializer.deserializeDataset(new StringReader(serialized), m_filter);
+		assertEquals(m_dataset.slice(m_filter), dataset2);
+	}
+
+	@Test public void testBeanReadsOutput() throws Exception {
+		String serialized = serialize(m_serializer);
+		Dataset dataset2 = m_beanSerializer.deserializeDataset(new StringReader(serialized));
+		assertEquals(m_dataset, dataset2);
+	}
+
+	@Test public void testConcatenateMetadata() throws Exception {
+		List<DataFileSource> parts = new ArrayList<DataFileSource>();
+		for ( Dataset slice : DatasetTestUtils.buildDataset1Slices() ) {
+			StringWriter writer = new StringWriter();
+			m_serializer.serializeDataset(slice, writer);
+			parts.add(new BytesDataFileSource(writer.toString().getBytes()));
+		}
+		StringWriter writer = new StringWriter();
+		m_serializer.concatenateMetadata(parts, writer);
+		Dataset dataset2 = m_serializer.deserializeDataset(new StringReader(writer.toString()));
+		assertEquals(m_dataset.toMetadataOnly(), dataset2);
+	}
+
+	private void addNumericArrays() {
+		DataKey key = DataKeyFactory.newKey(new DataKeyElement("val3", new DataKeyDimension("dim2")));
+		MetadataList list = new MetadataList();
+		list.getList().add(new MetadataArray(new int[] {1, 2, 3}));
+		MetadataMap map = new MetadataMap();
+		map.getMap().put("doubles", new MetadataArray(new double[] {1.5, -2.0}));
+		map.getMap().put("boxed", new MetadataArray(Arrays.asList(7L, 8L), PrimitiveType.SIZE_T));
+		map.getMap().put("nested", list);
+		m_dataset.addMetadata(key, map);
+	}
+
+	private String serialize(DatasetSerializer serializer) throws Exception {
+		StringWriter writer = new StringWriter();
+		serializer.serializeDataset(m_dataset, writer);
+		return writer.toString();
+	}
+
+}
@@ -24,10 +24,19 @@ import com.google.mr4c.keys.DataKey;
 import com.google.mr4c.keys.DataKeyDimension;
 import com.google.mr4c.keys.DataKeyElement;
 import com.google.mr4c.keys.DataKeyFactory;
+import com.google.mr4c.serialize.DatasetSerializer;
+import com.google.mr4c.serialize.SerializerFactories;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 
 import org.junit.*;
 import static org.junit.Assert.*;
@@ -61,6 +70,41 @@ public class ArchiveDatasetSourceTest {
 		doTestFail(null, 3);
 	}
 
+	@Test public void testPackRoundTrip() throws Exception {
+		URI outputDir = URI.create("output/data/dataset/archive/pack");
+		ArchiveSource outputFileSrc = new PackFileSource(ContentFactories.toPath(outputDir));
+		outputFileSrc.clear();
+		DatasetSource outputSrc = new ArchiveDatasetSource(m_configNoSelf, outputFileSrc);
+		SourceTestUtils.testSource(m_inputSrc, outputSrc);
+	}
+
+	@Test public void testPackParts() throws Exception {
+		FileSystem fs = FileSystem.getLocal(new Configuration());
+		Path dir = new Path(fs.getWorkingDirectory(), "output/data/dataset/archive/packparts");
+		PackFileSource packSrc = new PackFileSource(fs, dir);
+		packSrc.clear();
+		Dataset dataset = m_inputSrc.readDataset();
+		Dataset[] parts = new Dataset[] { dataset.toMetadataOnly(), new Dataset() };
+		int count = 0;
+		for ( DataKey key : dataset.getAllFileKeys() ) {
+			parts[count++ % 2].addFile(key, dataset.getFile(key));
+		}
+		DatasetSerializer serializer = SerializerFactories.getSerializerFactory("application/json").createDatasetSerializer();
+		List<DataFileSource> metaParts = new ArrayList<DataFileSource>();
+		for ( int i=0; i<parts.length; i++ ) {
+			String partName = String.format("part-%05d", i);
+			ArchiveDatasetSource partSrc = new ArchiveDatasetSource(m_configNoSelf, new PackFileSource(fs, dir, partName));
+			assertTrue(partSrc.canWriteParts());
+			partSrc.writePart(parts[i], partName);
+			StringWriter writer = new StringWriter();
+			serializer.serializeDataset(parts[i].toMetadataOnly(), writer);
+			metaParts.add(new BytesDataFileSource(writer.toString().getBytes()));
+		}
+		ArchiveDatasetSource outputSrc = new ArchiveDatasetSource(m_configNoSelf, packSrc);
+		outputSrc.mergeParts(metaParts);
+		SourceTestUtils.compareSources(m_inputSrc, outputSrc);
+	}
+
 	@Test public void testFindFile() throws Exception {
 		DataKey key = buildKey("1","2455874.21556848", "MS");
 		DataFile file = m_inputSrc.findDataFile(key);
@@ -0,0 +1,121 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.sources;
+
+import com.google.mr4c.stats.NoOpStatsClient;
+
+import java.io.IOException;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ContentCacheTest {
+
+	private ContentCache m_cache;
+	private int m_loads;
+
+	@Before public void setUp() {
+		m_cache = new ContentCache(100, new NoOpStatsClient());
+		m_loads = 0;
+	}
+
+	@Test public void testHit() throws Exception {
+		byte[] bytes1 = m_cache.get("file:/a", 0, -1, loader(10));
+		byte[] bytes2 = m_cache.get("file:/a", 0, -1, loader(10));
+		assertSame(bytes1, bytes2);
+		assertEquals(1, m_loads);
+		assertEquals(1, m_cache.getHits());
+		assertEquals(1, m_cache.getMisses());
+		assertEquals(10, m_cache.getSize());
+	}
+
+	@Test public void testRangesAreSeparate() throws Exception {
+		m_cache.get("file:/a", 0, 10, loader(10));
+		m_cache.get("file:/a", 10, 10, loader(10));
+		m_cache.get("file:/b", 0, 10, loader(10));
+		assertEquals(3, m_loads);
+		assertEquals(30, m_cache.getSize());
+	}
+
+	@Test public void testEvictLeastRecentlyUsed() throws Exception {
+		m_cache.get("file:/a", 0, -1, loader(40));
+		m_cache.get("file:/b", 0, -1, loader(40));
+		m_cache.get("file:/a", 0, -1, loader(40));
+		m_cache.get("file:/c", 0, -1, loader(40));
+		assertEquals(1, m_cache.getEvictions());
+		assertEquals(80, m_cache.getSize());
+		assertNotNull(m_cache.getIfPresent("file:/a", 0, -1));
+		assertNull(m_cache.getIfPresent("file:/b", 0, -1));
+		assertNotNull(m_cache.getIfPresent("file:/c", 0, -1));
+	}
+
+	@Test public void testTooBig() throws Exception {
+		m_cache.get("file:/a", 0, -1, loader(101));
+		assertEquals(0, m_cache.getSize());
+		assertNull(m_cache.getIfPresent("file:/a", 0, -1));
+	}
+
+	@Test public void testInvalidate() throws Exception {
+		m_cache.get("file:/a", 0, 10, loader(10));
+		m_cache.get("file:/a", 10, 10, loader(10));
+		m_cache.get("file:/b", 0, -1, loader(10));
+		m_cache.invalidate("file:/b", 0, -1);
+		assertNull(m_cache.getIfPresent("file:/b", 0, -1));
+		m_cache.invalidate("file:/a");
+		assertNull(m_cache.getIfPresent("file:/a", 10, 10));
+		assertEquals(0, m_cache.getSize());
+	}
+
+	@Test public void testInvalidateUnder() throws Exception {
+		m_cache.get("file:/dir/a", 0, -1, loader(10));
+		m_cache.get("file:/dir/sub/b", 0, 10, loader(10));
+		m_cache.get("file:/dir2/c", 0, -1, loader(10));
+		m_cache.invalidateUnder("file:/dir/");
+		assertNull(m_cache.getIfPresent("file:/dir/a", 0, -1));
+		assertNull(m_cache.getIfPresent("file:/dir/sub/b", 0, 10));
+		assertNotNull(m_cache.getIfPresent("file:/dir2/c", 0, -1));
+		assertEquals(10, m_cache.getSize());
+	}
+
+	@Test public void testFileSourceCopiesBytes() throws Exception {
+		byte[] shared = m_cache.get("file:/a", 0, -1, loader(10));
+		byte[] bytes = ContentCache.toFileSource(shared).getFileBytes();
+		assertNotSame(shared, bytes);
+		assertArrayEquals(shared, bytes);
+		bytes[0]++;
+		assertFalse(shared[0]==bytes[0]);
+	}
+
+	@Test public void testDisabled() throws Exception {
+		ContentCache cache = new ContentCache(0, new NoOpStatsClient());
+		assertFalse(cache.isEnabled());
+		cache.get("file:/a", 0, -1, loader(10));
+		cache.get("file:/a", 0, -1, loader(10));
+		assertEquals(2, m_loads);
+		assertEquals(0, cache.getSize());
+	}
+
+	private ContentCache.Loader loader(final int size) {
+		return new ContentCache.Loader() {
+			public byte[] load() throws IOException {
+				m_loads++;
+				return new byte[size];
+			}
+		};
+	}
+
+}
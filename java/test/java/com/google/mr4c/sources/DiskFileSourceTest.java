@@ -76,6 +76,11 @@ public class DiskFileSourceTest {
 		m_recurseTester.testFileExists(m_recurseSrc);
 	}
 
+	@Test public void testFileNames() throws Exception {
+		m_flatTester.testFileNames(m_flatSrc);
+		m_recurseTester.testFileNames(m_recurseSrc);
+	}
+
 	@Test public void testGetSourceOnlyIfExists() throws Exception {
 		m_flatTester.testGetSourceOnlyIfExists(m_flatSrc);
 		m_recurseTester.testGetSourceOnlyIfExists(m_recurseSrc);
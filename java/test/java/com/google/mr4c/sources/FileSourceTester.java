@@ -96,6 +96,14 @@ public class FileSourceTester {
 		assertNull(src.getFileSourceOnlyIfExists("some_other_file"));
 	}
 
+	public void testFileNames(FileSource src) throws IOException {
+		addAllTestData(src);
+		checkFileName(src, m_file1);
+		checkFileName(src, m_file2);
+		checkFileName(src, m_file3);
+		assertTrue(src.getFileNames("some_other_dir").isEmpty());
+	}
+
 	public void testFileList(FileSource src) throws IOException {
 		// get extra files that we aren't going to add anyway
 		List<String> start = src.getAllFileNames();
@@ -167,6 +175,12 @@ public class FileSourceTester {
 		assertByteArrayEquals(expected, actual);
 	}
 
+	private void checkFileName(FileSource src, String name) throws IOException {
+		List<String> names = src.getFileNames(SourceUtils.getDirectoryName(name));
+		assertTrue("Check [" + name + "] is listed", names.contains(name));
+		assertFalse(names.contains("some_other_file"));
+	}
+
 	private void checkSize(FileSource src, String name, int expected) throws IOException {
 		DataFileSource fileSrc = src.getFileSource(name);
 		assertEquals(expected, fileSrc.getFileSize());
@@ -19,6 +19,7 @@ package com.google.mr4c.sources;
 import com.google.mr4c.config.ConfigDescriptor;
 import com.google.mr4c.dataset.DataFile;
 import com.google.mr4c.dataset.Dataset;
+import com.google.mr4c.keys.BasicDataKeyFilter;
 import com.google.mr4c.keys.DataKey;
 import com.google.mr4c.keys.DataKeyDimension;
 import com.google.mr4c.keys.DataKeyElement;
@@ -71,6 +72,19 @@ public class FilesDatasetSourceTest {
 		assertEquals("Check size of a file", 518371, bytes.length);
 	}
 
+	@Test public void testLoadFiltered() throws Exception {
+		DataKey key1 = buildKey("1","2455874.21556848", "MS");
+		DataKey key2 = buildKey("1","2455874.21556848", "PAN");
+		DataKey key3 = buildKey("1","blah_blah", "MS");
+		BasicDataKeyFilter filter = new BasicDataKeyFilter();
+		filter.addKeys(key1, key2, key3);
+		Dataset dataset = m_inputSrc.readDataset(filter);
+		assertEquals("Check # of file keys", 2, dataset.getAllFileKeys().size());
+		assertEquals(m_inputSrc.readDataset().slice(filter), dataset);
+		byte[] bytes = dataset.getFile(key1).getBytes();
+		assertEquals("Check size of a file", 518371, bytes.length);
+	}
+
 	@Test public void testFindFile() throws Exception {
 		DataKey key = buildKey("1","2455874.21556848", "MS");
 		DataFile file = m_inputSrc.findDataFile(key);
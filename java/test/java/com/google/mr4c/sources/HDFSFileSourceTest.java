@@ -81,6 +81,11 @@ public class HDFSFileSourceTest {
 		m_recurseTester.testFileExists(m_recurseSrc);
 	}
 
+	@Test public void testFileNames() throws Exception {
+		m_flatTester.testFileNames(m_flatSrc);
+		m_recurseTester.testFileNames(m_recurseSrc);
+	}
+
 	@Test public void testGetSourceOnlyIfExists() throws Exception {
 		m_flatTester.testGetSourceOnlyIfExists(m_flatSrc);
 		m_recurseTester.testGetSourceOnlyIfExists(m_recurseSrc);
@@ -45,6 +45,10 @@ public class InMemoryFileSourceTest {
 		m_tester.testFileExists(m_src);
 	}
 
+	@Test public void testFileNames() throws Exception {
+		m_tester.testFileNames(m_src);
+	}
+
 	@Test public void testGetSourceOnlyIfExists() throws Exception {
 		m_tester.testGetSourceOnlyIfExists(m_src);
 	}
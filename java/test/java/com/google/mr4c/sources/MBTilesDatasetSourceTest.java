@@ -16,10 +16,21 @@
 
 package com.google.mr4c.sources;
 
+import com.google.mr4c.dataset.Dataset;
 import com.google.mr4c.hadoop.HadoopTestUtils;
+import com.google.mr4c.keys.BasicDataKeyFilter;
+import com.google.mr4c.keys.BasicElementFilter;
+import com.google.mr4c.keys.DataKey;
+import com.google.mr4c.keys.DataKeyElement;
+import com.google.mr4c.keys.DataKeyFactory;
+import com.google.mr4c.keys.DataKeyFilter;
+import com.google.mr4c.keys.DimensionBasedKeyFilter;
+import com.google.mr4c.keys.IdentityDataKeyFilter;
+import com.google.mr4c.keys.NarrowingFilter;
 import com.google.mr4c.mbtiles.MBTilesFile;
 import com.google.mr4c.mbtiles.MBTilesTestUtil;
 import com.google.mr4c.mbtiles.Tile;
+import com.google.mr4c.mbtiles.TileRange;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -86,6 +97,53 @@ public class MBTilesDatasetSourceTest {
 		SourceTestUtils.testSource(src1, src2);
 	}
 
+	@Test public void testReadWithKeyFilter() throws Exception {
+		BasicDataKeyFilter filter = new BasicDataKeyFilter();
+		filter.addKey(buildKey(2, 4, 8));
+		filter.addKey(buildKey(3, 9, 27));
+		filter.addKey(buildKey(3, 9, 28)); // not there
+		checkFilteredRead(filter, 2);
+		assertEquals(new TileRange(2, 3, 4, 9, 8, 28), MBTilesDatasetSource.toTileRange(filter));
+	}
+
+	@Test public void testReadWithDimensionFilter() throws Exception {
+		DimensionBasedKeyFilter filter = new DimensionBasedKeyFilter(true, true);
+		BasicElementFilter zoomFilter = new BasicElementFilter(MBTilesDatasetSource.ZOOM_DIM);
+		zoomFilter.addElements(
+			new DataKeyElement("1", MBTilesDatasetSource.ZOOM_DIM),
+			new DataKeyElement("3", MBTilesDatasetSource.ZOOM_DIM)
+		);
+		filter.addFilter(zoomFilter);
+		checkFilteredRead(filter, 2);
+		assertEquals(
+			new TileRange(1, 3, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE),
+			MBTilesDatasetSource.toTileRange(filter)
+		);
+	}
+
+	@Test public void testReadWithOtherFilter() throws Exception {
+		checkFilteredRead(new NarrowingFilter(buildKey(2, 4, 8)), 1);
+		assertEquals(TileRange.ALL, MBTilesDatasetSource.toTileRange(IdentityDataKeyFilter.INSTANCE));
+	}
+
+	private void checkFilteredRead(DataKeyFilter filter, int expectedFiles) throws Exception {
+		File file = new File("output/mbtilessource/test_filter.db"); 
+		saveInputFile(file);
+		Dataset expected = new MBTilesDatasetSource(file.toURI()).readDataset().slice(filter);
+		Dataset actual = new MBTilesDatasetSource(file.toURI()).readDataset(filter);
+		assertEquals(expectedFiles, actual.getAllFileKeys().size());
+		assertEquals(expected.getAllFileKeys(), actual.getAllFileKeys());
+		assertEquals(expected.getAllMetadataKeys(), actual.getAllMetadataKeys());
+	}
+
+	private DataKey buildKey(int zoom, int x, int y) {
+		return DataKeyFactory.newKey(
+			new DataKeyElement(Integer.toString(zoom), MBTilesDatasetSource.ZOOM_DIM),
+			new DataKeyElement(Integer.toString(x), MBTilesDatasetSource.X_DIM),
+			new DataKeyElement(Integer.toString(y), MBTilesDatasetSource.Y_DIM)
+		);
+	}
+
 	private void saveInputFile(File file) throws Exception {
 		MBTilesFile mbtiles = MBTilesFile.create(file, MBTilesFile.FileMode.REPLACE);
 		m_cleanup.add(mbtiles);
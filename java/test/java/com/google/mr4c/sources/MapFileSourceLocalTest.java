@@ -18,11 +18,20 @@ package com.google.mr4c.sources;
 
 import com.google.mr4c.hadoop.HadoopTestUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.MapFile;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
 
 import org.junit.*;
 import static org.junit.Assert.*;
@@ -32,9 +41,11 @@ public class MapFileSourceLocalTest {
 	private ArchiveSource m_src;
 	private ArchiveSourceTester m_tester;
 	private Path m_dir = new Path("output/data/sources/map");
+	private FileSystem m_fs;
 
 	@Before public void setUp() throws Exception {
 		FileSystem fs = FileSystem.getLocal(new Configuration());
+		m_fs = fs;
 		m_src = new MapFileSource(fs, new Path(fs.getWorkingDirectory(),m_dir));
 		m_tester = new ArchiveSourceTester();
 	}
@@ -96,6 +107,113 @@ public class MapFileSourceLocalTest {
 		m_tester.testClearAndExists(m_src);
 	}
 
+	/**
+	  * Enough entries that sync markers land in front of some records
+	*/
+	@Test public void testManyFiles() throws Exception {
+		m_src.clear();
+		m_src.startWrite();
+		try {
+			for ( int i=0; i<500; i++ ) {
+				m_src.getFileSink(toName(i)).writeFile(toContent(i));
+			}
+		} finally {
+			m_src.finishWrite();
+		}
+		assertEquals(500, m_src.getAllFileNames().size());
+		for ( int i=0; i<500; i++ ) {
+			String name = toName(i);
+			assertTrue(m_src.fileExists(name));
+			DataFileSource src = m_src.getFileSource(name);
+			assertEquals(toContent(i).length, src.getFileSize());
+			assertArrayEquals(toContent(i), readStream(src));
+			assertArrayEquals(toContent(i), src.getFileBytes());
+		}
+		assertFalse(m_src.fileExists("file_9999"));
+	}
+
+	@Test public void testLargeStreamedFile() throws Exception {
+		byte[] data = new byte[3 * 1024 * 1024 + 17];
+		for ( int i=0; i<data.length; i++ ) {
+			data[i] = (byte) (i * 31);
+		}
+		m_src.clear();
+		m_src.startWrite();
+		try {
+			m_src.getFileSink("big").writeFile(new ByteArrayInputStream(data));
+			m_src.getFileSink("small").writeFile(new byte[] {1, 2, 3});
+		} finally {
+			m_src.finishWrite();
+		}
+		DataFileSource src = m_src.getFileSource("big");
+		assertEquals(data.length, src.getFileSize());
+		assertArrayEquals(data, readStream(src));
+		assertArrayEquals(new byte[] {1, 2, 3}, m_src.getFileSource("small").getFileBytes());
+	}
+
+	@Test public void testReadRecordCompressed() throws Exception {
+		writeWithMapFileWriter(SequenceFile.CompressionType.RECORD);
+		assertEquals(200, m_src.getAllFileNames().size());
+		checkMapFileWriterContent();
+	}
+
+	/**
+	  * Only the first key of each block is indexed
+	*/
+	@Test public void testReadBlockCompressed() throws Exception {
+		writeWithMapFileWriter(SequenceFile.CompressionType.BLOCK);
+		checkMapFileWriterContent();
+	}
+
+	private void writeWithMapFileWriter(SequenceFile.CompressionType type) throws Exception {
+		m_src.clear();
+		Path dir = new Path(m_fs.getWorkingDirectory(), m_dir);
+		MapFile.Writer writer = new MapFile.Writer(
+			m_fs.getConf(),
+			dir,
+			MapFile.Writer.keyClass(Text.class),
+			MapFile.Writer.valueClass(BytesWritable.class),
+			MapFile.Writer.compression(type)
+		);
+		writer.setIndexInterval(1);
+		try {
+			for ( int i=0; i<200; i++ ) {
+				writer.append(new Text(toName(i)), new BytesWritable(toContent(i)));
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	private void checkMapFileWriterContent() throws Exception {
+		for ( String name : m_src.getAllFileNames() ) {
+			int i = Integer.parseInt(name.substring(5));
+			DataFileSource src = m_src.getFileSource(name);
+			assertEquals(toContent(i).length, src.getFileSize());
+			assertArrayEquals(toContent(i), readStream(src));
+			assertArrayEquals(toContent(i), src.getFileBytes());
+		}
+	}
+
+	private String toName(int i) {
+		return String.format("file_%04d", i);
+	}
+
+	private byte[] toContent(int i) {
+		byte[] content = new byte[i * 3 + 1];
+		Arrays.fill(content, (byte) i);
+		return content;
+	}
+
+	private byte[] readStream(DataFileSource src) throws Exception {
+		InputStream in = src.getFileInputStream();
+		try {
+			return IOUtils.toByteArray(in);
+		} finally {
+			in.close();
+		}
+	}
+
 	@After public void tearDown() throws Exception {
 		if ( m_src!=null ) {
 			m_src.close();
@@ -0,0 +1,286 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.sources;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.FileSystem;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class PackFileSourceLocalTest {
+
+	private FileSystem m_fs;
+	private Path m_dir;
+	private PackFileSource m_src;
+	private ArchiveSourceTester m_tester;
+
+	@Before public void setUp() throws Exception {
+		m_fs = FileSystem.getLocal(new Configuration());
+		m_dir = new Path(m_fs.getWorkingDirectory(), "output/data/sources/pack");
+		m_src = new PackFileSource(m_fs, m_dir);
+		m_tester = new ArchiveSourceTester();
+	}
+
+	@Test public void testFileList() throws Exception {
+		m_tester.testFileList(m_src);
+	}
+
+	@Test public void testMetadataFileList() throws Exception {
+		m_tester.testMetadataFileList(m_src);
+	}
+
+	@Test public void testGetFileBytes() throws Exception {
+		m_tester.testGetFileBytes(m_src);
+	}
+
+	@Test public void testGetFileSize() throws Exception {
+		m_tester.testGetFileSize(m_src);
+	}
+
+	@Test public void testFileExists() throws Exception {
+		m_tester.testFileExists(m_src);
+	}
+
+	@Test public void testGetSourceOnlyIfExists() throws Exception {
+		m_tester.testGetSourceOnlyIfExists(m_src);
+	}
+
+	@Test public void testGetMetadataBytes() throws Exception {
+		m_tester.testGetMetadataBytes(m_src);
+	}
+
+	@Test public void testGetFileByInputStream() throws Exception {
+		m_tester.testGetFileByInputStream(m_src);
+	}
+
+	@Test public void testGetMetadataFileByInputStream() throws Exception {
+		m_tester.testGetMetadataFileByInputStream(m_src);
+	}
+
+	@Test public void testAddFileByInputStream() throws Exception {
+		m_tester.testAddFileByInputStream(m_src);
+	}
+
+	@Test public void testAddMetadataFileByInputStream() throws Exception {
+		m_tester.testAddMetadataFileByInputStream(m_src);
+	}
+
+	@Test public void testAddFileByOutputStream() throws Exception {
+		m_tester.testAddFileByOutputStream(m_src);
+	}
+
+	@Test public void testAddMetadataFileByOutputStream() throws Exception {
+		m_tester.testAddMetadataFileByOutputStream(m_src);
+	}
+
+	@Test public void testClearAndExists() throws Exception {
+		m_tester.testClearAndExists(m_src);
+	}
+
+	@Test public void testShards() throws Exception {
+		checkShards(m_fs, m_dir);
+	}
+
+	@Test public void testByteBuffer() throws Exception {
+		writeFiles(m_src, 0, 10);
+		for ( int i=0; i<10; i++ ) {
+			DataFileSource src = m_src.getFileSource(toName(i));
+			ByteBuffer direct = ByteBuffer.allocateDirect((int) src.getFileSize());
+			src.getFileBytes(direct);
+			direct.flip();
+			byte[] bytes = new byte[direct.remaining()];
+			direct.get(bytes);
+			assertArrayEquals(toContent(i), bytes);
+			ByteBuffer heap = ByteBuffer.allocate((int) src.getFileSize() + 3);
+			heap.position(3);
+			src.getFileBytes(heap);
+			assertFalse(heap.hasRemaining());
+			assertArrayEquals(toContent(i), Arrays.copyOfRange(heap.array(), 3, heap.capacity()));
+		}
+	}
+
+	@Test(expected=BufferOverflowException.class)
+	public void testByteBufferTooSmall() throws Exception {
+		writeFiles(m_src, 0, 1);
+		DataFileSource src = m_src.getFileSource(toName(0));
+		src.getFileBytes(ByteBuffer.allocate((int) src.getFileSize() - 1));
+	}
+
+	@Test public void testStreamWaitsForOtherStream() throws Exception {
+		m_src.clear();
+		m_src.startWrite();
+		OutputStream out = m_src.getFileSink(toName(0)).getFileOutputStream();
+		out.write(toContent(0));
+		final Exception[] failure = new Exception[1];
+		Thread other = new Thread() {
+			public void run() {
+				try {
+					OutputStream out = m_src.getFileSink(toName(1)).getFileOutputStream();
+					out.write(toContent(1));
+					out.close();
+				} catch ( Exception e ) {
+					failure[0] = e;
+				}
+			}
+		};
+		other.start();
+		other.join(200);
+		assertTrue(other.isAlive());
+		out.close();
+		other.join(10000);
+		assertFalse(other.isAlive());
+		assertNull(failure[0]);
+		m_src.finishWrite();
+		checkFiles(m_src, 2);
+	}
+
+	@Test public void testSecondStreamSameThread() throws Exception {
+		m_src.clear();
+		m_src.startWrite();
+		OutputStream out = m_src.getFileSink(toName(0)).getFileOutputStream();
+		try {
+			m_src.getFileSink(toName(1)).writeFile(toContent(1));
+			fail("Second write from the same thread should fail");
+		} catch ( IOException ioe ) {
+			// expected
+		}
+		out.write(toContent(0));
+		out.close();
+		m_src.finishWrite();
+		checkFiles(m_src, 1);
+	}
+
+	@Test(expected=IOException.class)
+	public void testChecksumMismatch() throws Exception {
+		writeFiles(m_src, 0, 3);
+		m_src.close();
+		corruptShard();
+		m_src.getFileSource(toName(0)).getFileBytes();
+	}
+
+	@Test public void testChecksumMismatchDirectBuffer() throws Exception {
+		writeFiles(m_src, 0, 3);
+		m_src.close();
+		corruptShard();
+		// so the local file system doesn't catch it first
+		new File(m_dir.toUri().getPath(), "." + PackFileSource.DEFAULT_SHARD + PackFileSource.SHARD_SUFFIX + ".crc").delete();
+		DataFileSource src = m_src.getFileSource(toName(0));
+		ByteBuffer direct = ByteBuffer.allocateDirect((int) src.getFileSize());
+		try {
+			src.getFileBytes(direct);
+			fail("Expected checksum mismatch");
+		} catch ( IOException ioe ) {
+			assertEquals(0, direct.position());
+		}
+	}
+
+	private void corruptShard() throws Exception {
+		File shard = new File(m_dir.toUri().getPath(), PackFileSource.DEFAULT_SHARD + PackFileSource.SHARD_SUFFIX);
+		RandomAccessFile raf = new RandomAccessFile(shard, "rw");
+		try {
+			int b = raf.read();
+			raf.seek(0);
+			raf.write(b + 1);
+		} finally {
+			raf.close();
+		}
+	}
+
+	@Test(expected=IOException.class)
+	public void testDuplicateAcrossShards() throws Exception {
+		m_src.clear();
+		writeFiles(new PackFileSource(m_fs, m_dir, "part-00000"), 0, 5);
+		writeFiles(new PackFileSource(m_fs, m_dir, "part-00001"), 4, 8);
+		m_src.getAllFileNames();
+	}
+
+	/**
+	  * Writes shards with separate sources, then reads them back both from
+	  * the shard footers and from the merged index
+	*/
+	static void checkShards(FileSystem fs, Path dir) throws Exception {
+		PackFileSource src = new PackFileSource(fs, dir);
+		src.clear();
+		writeFiles(new PackFileSource(fs, dir, "part-00000"), 0, 40);
+		writeFiles(new PackFileSource(fs, dir, "part-00002"), 80, 120);
+		writeFiles(new PackFileSource(fs, dir, "part-00001"), 40, 80);
+		checkFiles(src, 120);
+		src.mergeShards();
+		checkFiles(src, 120);
+		src.close();
+		checkFiles(new PackFileSource(fs, dir), 120);
+	}
+
+	private static void checkFiles(PackFileSource src, int count) throws Exception {
+		assertEquals(count, src.getAllFileNames().size());
+		for ( int i=0; i<count; i++ ) {
+			String name = toName(i);
+			assertEquals(name, src.getAllFileNames().get(i));
+			assertTrue(src.fileExists(name));
+			DataFileSource fileSrc = src.getFileSource(name);
+			assertEquals(toContent(i).length, fileSrc.getFileSize());
+			InputStream in = fileSrc.getFileInputStream();
+			try {
+				assertArrayEquals(toContent(i), IOUtils.toByteArray(in));
+			} finally {
+				in.close();
+			}
+			assertArrayEquals(toContent(i), fileSrc.getFileBytes());
+		}
+		assertFalse(src.fileExists(toName(count)));
+	}
+
+	private static void writeFiles(PackFileSource src, int start, int end) throws Exception {
+		src.startWrite();
+		try {
+			for ( int i=start; i<end; i++ ) {
+				src.getFileSink(toName(i)).writeFile(toContent(i));
+			}
+		} finally {
+			src.finishWrite();
+		}
+	}
+
+	private static String toName(int i) {
+		return String.format("tile_%04d", i);
+	}
+
+	private static byte[] toContent(int i) {
+		byte[] content = new byte[i * 5 + 1];
+		Arrays.fill(content, (byte) i);
+		return content;
+	}
+
+	@After public void tearDown() throws Exception {
+		if ( m_src!=null ) {
+			m_src.close();
+		}
+	}
+}
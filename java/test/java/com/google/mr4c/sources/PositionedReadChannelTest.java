@@ -0,0 +1,106 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.sources;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class PositionedReadChannelTest {
+
+	private byte[] m_data;
+	private FSDataInputStream m_input;
+
+	@Before public void setUp() throws Exception {
+		m_data = new byte[1000];
+		for ( int i=0; i<m_data.length; i++ ) {
+			m_data[i] = (byte) i;
+		}
+		File file = new File("output/positioned/test.bin");
+		URIDataFileSink sink = new URIDataFileSink(file.toURI());
+		sink.writeFile(m_data);
+		FileSystem fs = FileSystem.getLocal(new Configuration());
+		m_input = fs.open(new Path(file.getAbsolutePath()));
+	}
+
+	@After public void tearDown() throws Exception {
+		m_input.close();
+	}
+
+	@Test public void testReadAll() throws Exception {
+		PositionedReadChannel chan = new PositionedReadChannel(m_input, m_data.length, 64, 4);
+		ByteBuffer buf = ByteBuffer.allocate(2000);
+		assertEquals(1000, chan.read(buf));
+		assertEquals(-1, chan.read(buf));
+		assertEquals(1000, chan.getPosition());
+		assertTrue(Arrays.equals(m_data, Arrays.copyOf(buf.array(), 1000)));
+	}
+
+	@Test public void testReadAcrossBlocks() throws Exception {
+		PositionedReadChannel chan = new PositionedReadChannel(m_input, m_data.length, 64, 4);
+		chan.setPosition(60);
+		ByteBuffer buf = ByteBuffer.allocate(10);
+		assertEquals(10, chan.read(buf));
+		assertTrue(Arrays.equals(Arrays.copyOfRange(m_data, 60, 70), buf.array()));
+		assertEquals(128, chan.getBytesFetched());
+	}
+
+	@Test public void testFetchesOnlyTouchedBlocks() throws Exception {
+		PositionedReadChannel chan = new PositionedReadChannel(m_input, m_data.length, 100, 4);
+		readAt(chan, 10, 5);
+		readAt(chan, 950, 20);
+		readAt(chan, 20, 5);
+		assertEquals(200, chan.getBytesFetched());
+	}
+
+	@Test public void testEviction() throws Exception {
+		PositionedReadChannel chan = new PositionedReadChannel(m_input, m_data.length, 100, 2);
+		readAt(chan, 0, 1);
+		readAt(chan, 100, 1);
+		readAt(chan, 200, 1);
+		readAt(chan, 0, 1);
+		assertEquals(400, chan.getBytesFetched());
+	}
+
+	@Test public void testLastBlockShort() throws Exception {
+		PositionedReadChannel chan = new PositionedReadChannel(m_input, m_data.length, 300, 4);
+		assertTrue(Arrays.equals(Arrays.copyOfRange(m_data, 990, 1000), readAt(chan, 990, 10)));
+		assertEquals(100, chan.getBytesFetched());
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void testWrite() throws Exception {
+		PositionedReadChannel chan = new PositionedReadChannel(m_input, m_data.length, 64, 4);
+		chan.write(ByteBuffer.allocate(1));
+	}
+
+	private byte[] readAt(PositionedReadChannel chan, long position, int num) throws Exception {
+		chan.setPosition(position);
+		ByteBuffer buf = ByteBuffer.allocate(num);
+		assertEquals(num, chan.read(buf));
+		return buf.array();
+	}
+
+}
@@ -16,9 +16,12 @@
 
 package com.google.mr4c.sources;
 
+import com.google.mr4c.hadoop.HadoopTestUtils;
+
 import java.io.File;
 import java.io.RandomAccessFile;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import org.junit.*;
@@ -42,6 +45,31 @@ public class RandomAccessFileSourceTest {
 		doTest(src, true);
 	}
 
+	@Test public void testPositionedRead() throws Exception {
+		URI uri = HadoopTestUtils.toTestDFSURI("/test/sources/RandomAccessFileSourceTest/test3.bin");
+		new URIDataFileSink(uri).writeFile(m_data);
+		RandomAccessFileSource rafSrc = new RandomAccessFileSource(new URIDataFileSource(uri));
+		RandomAccessChannel chan = rafSrc.getChannel();
+		assertTrue("positioned", rafSrc.isPositionedRead());
+		assertFalse("staged", rafSrc.isStaged());
+		assertEquals(m_data.length, chan.getSize());
+		chan.setPosition(2);
+		ByteBuffer buf = ByteBuffer.allocate(10);
+		assertEquals(2, chan.read(buf));
+		assertEquals(-1, chan.read(buf));
+		rafSrc.close();
+		assertTrue("data", Arrays.equals(Arrays.copyOfRange(m_data, 2, 4), Arrays.copyOf(buf.array(), 2)));
+	}
+
+	@Test public void testStagedChannel() throws Exception {
+		RandomAccessFileSource rafSrc = new RandomAccessFileSource(new BytesDataFileSource(m_data));
+		RandomAccessChannel chan = rafSrc.getChannel();
+		assertFalse("positioned", rafSrc.isPositionedRead());
+		assertTrue("staged", rafSrc.isStaged());
+		assertEquals(m_data.length, chan.getSize());
+		rafSrc.close();
+	}
+
 	private void doTest(DataFileSource src, boolean staged) throws Exception {
 		RandomAccessFileSource rafSrc = new RandomAccessFileSource(src);
 		RandomAccessFile raf = rafSrc.getRandomAccess();
@@ -16,14 +16,20 @@
 
 package com.google.mr4c.sources;
 
+import com.google.mr4c.hadoop.HadoopTestUtils;
 import com.google.mr4c.sources.DatasetSource.SourceType;
 
+import java.io.File;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
 import org.junit.*;
 import static org.junit.Assert.*;
 
@@ -83,6 +89,74 @@ public class SourceUtilsTest {
 		SourceTestUtils.compareSources(m_archSrc, m_fileDest);
 	}
  
+	@Test public void testCommitSourceByCopy() throws Exception {
+		SourceUtils.commitSource(m_fileSrc, m_fileDest);
+		SourceTestUtils.compareSources(m_fileSrc, m_fileDest);
+	}
+
+	@Test public void testCommitDiskSourceToEmpty() throws Exception {
+		DiskFileSource stage = prepareDiskSource("output/data/sources/commit/stage1");
+		DiskFileSource dest = prepareDiskSource("output/data/sources/commit/dest1");
+		SourceTestUtils.populateSource(stage);
+		SourceUtils.commitSource(stage, dest);
+		SourceTestUtils.compareSources(m_fileSrc, dest);
+		assertFalse(stage.getDirectory().exists());
+	}
+
+	@Test public void testCommitDiskSourceToNonEmpty() throws Exception {
+		DiskFileSource stage = prepareDiskSource("output/data/sources/commit/stage2");
+		DiskFileSource dest = prepareDiskSource("output/data/sources/commit/dest2");
+		SourceTestUtils.populateSource(stage);
+		SourceTestUtils.writeFile(dest, "file1", new byte[] {1,2,3});
+		SourceUtils.commitSource(stage, dest);
+		SourceTestUtils.compareSources(m_fileSrc, dest);
+		assertEquals(Collections.emptyList(), stage.getAllFileNames());
+	}
+
+	@Test public void testCommitByRenameClosesSources() throws Exception {
+		ClosingDiskSource stage = new ClosingDiskSource("output/data/sources/commit/stage3");
+		ClosingDiskSource dest = new ClosingDiskSource("output/data/sources/commit/dest3");
+		stage.ensureExists();
+		stage.clear();
+		dest.ensureExists();
+		dest.clear();
+		SourceTestUtils.populateSource(stage);
+		SourceUtils.commitSource(stage, dest);
+		assertFalse(stage.getDirectory().exists());
+		assertEquals(1, stage.m_closed);
+		assertEquals(1, dest.m_closed);
+	}
+
+	private static class ClosingDiskSource extends DiskFileSource {
+		private int m_closed;
+		private ClosingDiskSource(String dir) {
+			super(new File(dir));
+		}
+		public void close() {
+			m_closed++;
+		}
+	}
+
+	@Test public void testCommitHDFSSource() throws Exception {
+		FileSystem fs = HadoopTestUtils.getTestDFS();
+		HDFSFileSource stage = HDFSFileSource.create(fs, new Path("/test/sources/SourceUtilsTest/stage"), true);
+		HDFSFileSource dest = HDFSFileSource.create(fs, new Path("/test/sources/SourceUtilsTest/dest"), true);
+		stage.ensureExists();
+		stage.clear();
+		fs.delete(dest.getDirectory(), true);
+		SourceTestUtils.populateSource(stage);
+		SourceUtils.commitSource(stage, dest);
+		SourceTestUtils.compareSources(m_fileSrc, dest);
+		assertFalse(fs.exists(stage.getDirectory()));
+	}
+
+	private DiskFileSource prepareDiskSource(String dir) throws Exception {
+		DiskFileSource src = new DiskFileSource(new File(dir));
+		src.ensureExists();
+		src.clear();
+		return src;
+	}
+
 	@Test public void testSortSourceNamesByType() {
 		Map<String,DatasetSource> srcMap = new HashMap<String,DatasetSource>();
 		srcMap.put("out1", new NullDatasetSource());
@@ -17,15 +17,21 @@
 package com.google.mr4c.sources;
 
 import com.google.mr4c.config.ConfigDescriptor;
+import com.google.mr4c.config.execution.DatasetConfig;
 import com.google.mr4c.dataset.DataFile;
 import com.google.mr4c.dataset.Dataset;
 import com.google.mr4c.keys.DataKey;
 import com.google.mr4c.keys.DataKeyDimension;
 import com.google.mr4c.keys.DataKeyElement;
 import com.google.mr4c.keys.DataKeyFactory;
+import com.google.mr4c.serialize.DatasetSerializer;
+import com.google.mr4c.serialize.SerializerFactories;
 
+import java.io.StringWriter;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.junit.*;
 import static org.junit.Assert.*;
@@ -74,4 +80,34 @@ public class StagedDatasetSourceTest {
 		SourceTestUtils.compareSources(m_inputSrc, m_outputSrc);
 	}
 
+	@Test public void testDirectoryScheme() throws Exception {
+		DatasetConfig config = new DatasetConfig("directory", m_actualDir);
+		config.setSourceConfig(new ConfigDescriptor(m_configURI));
+		assertTrue(DatasetSources.getDatasetSource(config) instanceof FilesDatasetSource);
+		config.setStageLocation(m_stageDir);
+		DatasetSource outputSrc = DatasetSources.getDatasetSource(config);
+		assertTrue(outputSrc instanceof StagedDatasetSource);
+		Dataset dataset = m_inputSrc.readDataset();
+		outputSrc.writeDataset(dataset);
+		SourceTestUtils.compareSources(m_inputSrc, m_stageSrc);
+		outputSrc.copyToFinal();
+		SourceTestUtils.compareSources(m_inputSrc, m_actualSrc);
+	}
+
+	@Test public void testMergeParts() throws Exception {
+		MergeableDatasetSource output = (MergeableDatasetSource) m_outputSrc;
+		assertTrue(output.canWriteParts());
+		Dataset dataset = m_inputSrc.readDataset();
+		m_outputSrc.writeDataset(dataset, DatasetSource.WriteMode.FILES_ONLY);
+		output.writePart(dataset, "part-00000");
+		DatasetSerializer serializer = SerializerFactories.getSerializerFactory("application/json").createDatasetSerializer();
+		StringWriter writer = new StringWriter();
+		serializer.serializeDataset(dataset.toMetadataOnly(), writer);
+		List<DataFileSource> parts = new ArrayList<DataFileSource>();
+		parts.add(new BytesDataFileSource(writer.toString().getBytes()));
+		parts.add(new BytesDataFileSource("{}".getBytes()));
+		output.mergeParts(parts);
+		SourceTestUtils.compareSources(m_inputSrc, m_actualSrc);
+	}
+
 }
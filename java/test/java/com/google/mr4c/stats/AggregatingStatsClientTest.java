@@ -0,0 +1,161 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.stats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class AggregatingStatsClientTest {
+
+	private LocalStatsdServer m_server;
+	private StatsdClient m_statsd;
+	private AggregatingStatsClient m_client;
+
+	@Before public void setUp() throws Exception {
+		m_server = new LocalStatsdServer();
+		m_statsd = new StatsdClient("localhost", m_server.getPort());
+		m_statsd.enableMultiMetrics(true);
+	}
+
+	@After public void tearDown() throws Exception {
+		if ( m_client!=null ) {
+			m_client.close();
+		}
+		m_server.close();
+	}
+
+	@Test public void testAggregate() throws Exception {
+		m_client = new AggregatingStatsClient(m_statsd, 0);
+		for ( int i=1; i<=100; i++ ) {
+			m_client.increment("files.read");
+			m_client.timing("file.read.ms", i);
+		}
+		m_client.decrement("files.pending", 3);
+		m_client.gauge("queue.size", 1.5);
+		m_client.gauge("queue.size", 7);
+		assertTrue(m_client.flush());
+		Map<String,String> stats = toMap(m_server.takeLines(9, 5000));
+		assertEquals("100|c", stats.get("files.read"));
+		assertEquals("-3|c", stats.get("files.pending"));
+		assertEquals("7.0|g", stats.get("queue.size"));
+		assertEquals("100|c", stats.get("file.read.ms.count"));
+		assertEquals("50.5|g", stats.get("file.read.ms.mean"));
+		assertEquals("50.0|g", stats.get("file.read.ms.p50"));
+		assertEquals("95.0|g", stats.get("file.read.ms.p95"));
+		assertEquals("99.0|g", stats.get("file.read.ms.p99"));
+		assertEquals("100.0|g", stats.get("file.read.ms.max"));
+		assertTrue("stats should be batched", m_server.getPacketCount()<9);
+	}
+
+	@Test public void testFlushStartsOver() throws Exception {
+		m_client = new AggregatingStatsClient(m_statsd, 0);
+		m_client.increment("count", 5);
+		m_client.gauge("gauge", 2);
+		m_client.flush();
+		m_server.takeLines(2, 5000);
+		assertFalse("nothing new to send", m_client.flush());
+		m_client.increment("count", 2);
+		m_client.flush();
+		Map<String,String> stats = toMap(m_server.takeLines(1, 5000));
+		assertEquals("2|c", stats.get("count"));
+		assertNull(stats.get("gauge"));
+	}
+
+	@Test public void testConcurrentCounts() throws Exception {
+		m_client = new AggregatingStatsClient(m_statsd, 0);
+		List<Thread> threads = new ArrayList<Thread>();
+		for ( int t=0; t<8; t++ ) {
+			threads.add(new Thread() {
+				public void run() {
+					for ( int i=0; i<10000; i++ ) {
+						m_client.increment("count");
+						m_client.timing("time", i % 100);
+					}
+				}
+			});
+		}
+		for ( Thread thread : threads ) {
+			thread.start();
+		}
+		for ( Thread thread : threads ) {
+			thread.join();
+		}
+		m_client.flush();
+		Map<String,String> stats = toMap(m_server.takeLines(7, 5000));
+		assertEquals("80000|c", stats.get("count"));
+		assertEquals("80000|c", stats.get("time.count"));
+	}
+
+	@Test public void testNoTimingLostDuringFlush() throws Exception {
+		final AtomicLong sent = new AtomicLong();
+		StatsClient target = new NoOpStatsClient() {
+			public boolean increment(String key, int magnitude) {
+				if ( key.equals("time.count") ) {
+					sent.addAndGet(magnitude);
+				}
+				return true;
+			}
+		};
+		m_client = new AggregatingStatsClient(target, 0);
+		List<Thread> threads = new ArrayList<Thread>();
+		for ( int t=0; t<4; t++ ) {
+			threads.add(new Thread() {
+				public void run() {
+					for ( int i=0; i<20000; i++ ) {
+						m_client.timing("time", i % 100);
+					}
+				}
+			});
+		}
+		for ( Thread thread : threads ) {
+			thread.start();
+		}
+		boolean running = true;
+		while ( running ) {
+			m_client.flush();
+			running = false;
+			for ( Thread thread : threads ) {
+				running |= thread.isAlive();
+			}
+		}
+		m_client.flush();
+		assertEquals(80000, sent.get());
+	}
+
+	@Test public void testBackgroundFlush() throws Exception {
+		m_client = new AggregatingStatsClient(m_statsd, 50);
+		m_client.increment("count", 4);
+		Map<String,String> stats = toMap(m_server.takeLines(1, 5000));
+		assertEquals("4|c", stats.get("count"));
+	}
+
+	private Map<String,String> toMap(List<String> lines) {
+		Map<String,String> map = new HashMap<String,String>();
+		for ( String line : lines ) {
+			int index = line.indexOf(':');
+			map.put(line.substring(0, index), line.substring(index+1));
+		}
+		return map;
+	}
+
+}
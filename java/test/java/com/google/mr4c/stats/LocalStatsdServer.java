@@ -0,0 +1,102 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.stats;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+  * Local stand-in for a statsd server.  Listens on a free UDP port and
+  * collects every metric line it receives.
+*/
+public class LocalStatsdServer {
+
+	private DatagramSocket m_socket;
+	private BlockingQueue<String> m_lines = new LinkedBlockingQueue<String>();
+	private volatile int m_packets;
+	private Thread m_thread;
+
+	public LocalStatsdServer() throws IOException {
+		m_socket = new DatagramSocket(0, InetAddress.getByName("localhost"));
+		m_thread = new Thread("local-statsd") {
+			public void run() {
+				receive();
+			}
+		};
+		m_thread.setDaemon(true);
+		m_thread.start();
+	}
+
+	public int getPort() {
+		return m_socket.getLocalPort();
+	}
+
+	public int getPacketCount() {
+		return m_packets;
+	}
+
+	/**
+	  * Waits until the given number of lines have arrived, or the timeout
+	  * passes, and returns the lines received so far
+	*/
+	public List<String> takeLines(int count, long timeoutMillis) throws InterruptedException {
+		List<String> lines = new ArrayList<String>();
+		long end = System.currentTimeMillis() + timeoutMillis;
+		while ( lines.size()<count ) {
+			long wait = end - System.currentTimeMillis();
+			String line = m_lines.poll(Math.max(0, wait), TimeUnit.MILLISECONDS);
+			if ( line==null ) {
+				break;
+			}
+			lines.add(line);
+		}
+		m_lines.drainTo(lines);
+		return lines;
+	}
+
+	public void close() {
+		m_socket.close();
+	}
+
+	private void receive() {
+		byte[] buf = new byte[65536];
+		while ( !m_socket.isClosed() ) {
+			DatagramPacket packet = new DatagramPacket(buf, buf.length);
+			try {
+				m_socket.receive(packet);
+			} catch ( SocketException se ) {
+				return; // closed
+			} catch ( IOException ioe ) {
+				throw new IllegalStateException(ioe);
+			}
+			m_packets++;
+			String text = new String(packet.getData(), 0, packet.getLength());
+			for ( String line : text.split("\n") ) {
+				m_lines.add(line);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.stats;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class StatsHistogramTest {
+
+	@Test public void testExactValues() {
+		StatsHistogram hist = new StatsHistogram();
+		for ( int i=1; i<=100; i++ ) {
+			hist.record(i);
+		}
+		assertEquals(100, hist.getCount());
+		assertEquals(50.5, hist.getMean(), 0.0001);
+		assertEquals(1, hist.getMin());
+		assertEquals(100, hist.getMax());
+		assertEquals(50, hist.getPercentile(0.50));
+		assertEquals(95, hist.getPercentile(0.95));
+		assertEquals(99, hist.getPercentile(0.99));
+	}
+
+	@Test public void testLargeValues() {
+		StatsHistogram hist = new StatsHistogram();
+		for ( int i=1; i<=1000; i++ ) {
+			hist.record(i * 100);
+		}
+		assertWithin(50000, hist.getPercentile(0.50));
+		assertWithin(95000, hist.getPercentile(0.95));
+		assertWithin(99000, hist.getPercentile(0.99));
+		assertEquals(100000, hist.getPercentile(1.0));
+	}
+
+	@Test public void testBuckets() {
+		int[] values = {0, 1, 127, 128, 129, 255, 256, 1000, 65535, 1 << 20, Integer.MAX_VALUE};
+		for ( int value : values ) {
+			int bucket = StatsHistogram.toBucket(value);
+			assertTrue(value + " above its bucket", value<=StatsHistogram.toUpperValue(bucket));
+			if ( bucket>0 ) {
+				assertTrue(value + " below its bucket", value>StatsHistogram.toUpperValue(bucket-1));
+			}
+		}
+	}
+
+	@Test public void testEmpty() {
+		StatsHistogram hist = new StatsHistogram();
+		assertEquals(0, hist.getPercentile(0.5));
+		assertEquals(0, hist.getMax());
+		assertEquals(0, hist.getMean(), 0);
+	}
+
+	private void assertWithin(long expected, long actual) {
+		assertTrue(String.format("expected %s but got %s", expected, actual), Math.abs(expected - actual) <= expected * 0.07);
+	}
+
+}
@@ -0,0 +1,115 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+package com.google.mr4c.stats;
+
+import com.google.mr4c.sources.BytesDataFileSource;
+import com.google.mr4c.sources.NullDataFileSink;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class TaskStatsTest {
+
+	private TaskStats m_stats = TaskStats.instance();
+
+	@Before public void setUp() {
+		m_stats.clear();
+	}
+
+	@Test public void testByteCounters() {
+		TaskStats.ByteCounter reads = m_stats.reads(new BytesDataFileSource(new byte[0]));
+		reads.add(100);
+		reads.add(20);
+		m_stats.writes(new NullDataFileSink()).add(7);
+		assertEquals(120, m_stats.get(TaskStats.BYTES_READ));
+		assertEquals(120, m_stats.get(TaskStats.BYTES_READ + ".BytesDataFileSource"));
+		assertEquals(7, m_stats.get(TaskStats.BYTES_WRITTEN));
+		assertEquals(7, m_stats.get(TaskStats.BYTES_WRITTEN + ".NullDataFileSink"));
+	}
+
+	@Test public void testAnonymousTypeName() {
+		Object src = new BytesDataFileSource(new byte[0]) {};
+		m_stats.reads(src).add(5);
+		assertEquals(5, m_stats.get(TaskStats.BYTES_READ + ".BytesDataFileSource"));
+	}
+
+	@Test public void testPhase() {
+		m_stats.startPhase("load").done(true);
+		m_stats.startPhase("load").done(false);
+		assertEquals(2, m_stats.get("phase.load.count"));
+		assertTrue(m_stats.getCounters().containsKey("phase.load.millis"));
+	}
+
+	@Test public void testCallback() {
+		long start = System.nanoTime();
+		m_stats.callback(start);
+		m_stats.callback(start);
+		assertEquals(2, m_stats.get(TaskStats.CALLBACKS));
+		assertTrue(m_stats.get(TaskStats.CALLBACK_NANOS)>=0);
+	}
+
+	@Test public void testDeltas() {
+		TaskStats.Deltas deltas = m_stats.newDeltas();
+		m_stats.add("a", 5);
+		m_stats.add("b", 1);
+		Map<String,Long> first = deltas.next();
+		assertEquals(Long.valueOf(5), first.get("a"));
+		assertEquals(Long.valueOf(1), first.get("b"));
+		m_stats.add("a", 3);
+		Map<String,Long> second = deltas.next();
+		assertEquals(1, second.size());
+		assertEquals(Long.valueOf(3), second.get("a"));
+		assertTrue(deltas.next().isEmpty());
+	}
+
+	@Test public void testDeltasAfterClear() {
+		TaskStats.Deltas deltas = m_stats.newDeltas();
+		m_stats.add("a", 5);
+		deltas.next();
+		m_stats.clear();
+		m_stats.add("a", 2);
+		assertEquals(Long.valueOf(2), deltas.next().get("a"));
+	}
+
+	@Test public void testPublish() throws Exception {
+		LocalStatsdServer server = new LocalStatsdServer();
+		try {
+			StatsdClient client = new StatsdClient("localhost", server.getPort());
+			m_stats.publish(client); // skip anything left from before
+			m_stats.add(TaskStats.FILES_READ, 3);
+			m_stats.add(TaskStats.BYTES_READ, 3L*Integer.MAX_VALUE);
+			m_stats.publish(client);
+			List<String> lines = server.takeLines(4, 5000);
+			Map<String,Long> sums = new HashMap<String,Long>();
+			for ( String line : lines ) {
+				String name = line.substring(0, line.indexOf(':'));
+				long value = Long.parseLong(line.substring(line.indexOf(':')+1, line.indexOf('|')));
+				Long sum = sums.get(name);
+				sums.put(name, sum==null ? value : sum+value);
+			}
+			assertEquals(Long.valueOf(3), sums.get("mr4c.task.files.read"));
+			assertEquals(Long.valueOf(3L*Integer.MAX_VALUE), sums.get("mr4c.task.bytes.read"));
+		} finally {
+			server.close();
+		}
+	}
+
+}
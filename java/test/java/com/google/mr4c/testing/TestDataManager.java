@@ -71,6 +71,7 @@ public class TestDataManager {
 	private Map<String,OutputDatasetSource> m_outputs = new HashMap<String,OutputDatasetSource>();
 	private Keyspace m_keyspace = new Keyspace();
 	private Set<DataKey> m_keys;
+	private int m_cleanups;
 	private CustomExecutionSource m_exeSrc;
 
 	// for each key, can derive ALL associated data as follows:
@@ -147,6 +148,10 @@ public class TestDataManager {
 		m_outputs.get(name).assertFileContentCorrect();
 	}
 
+	public int getCleanupCount() {
+		return m_cleanups;
+	}
+
 	public boolean copyToFinalCalled(String name) {
 		return m_outputs.get(name).m_copy;
 	}
@@ -362,7 +367,9 @@ public class TestDataManager {
 			setAlgorithmSchema(schema);
 		}
 
-		public void cleanup() {}
+		public void cleanup() {
+			m_cleanups++;
+		}
 
 		public void execute(AlgorithmData data, AlgorithmContext context) throws IOException {
 			for ( String name : m_outputs.keySet() ) {
@@ -75,6 +75,46 @@ public class CollectionUtilsTest {
 		CollectionUtils.partition(input,0);
 	}
 
+	@Test public void testPartitionByWeight() {
+		List<Integer> input = Arrays.asList(1,2,3,4,5,6);
+		List<Double> weights = Arrays.asList(10.0, 1.0, 1.0, 1.0, 1.0, 6.0);
+		List<List<Integer>> result = CollectionUtils.partitionByWeight(input,weights,3);
+		List<List<Integer>> expected = Arrays.asList(
+			Arrays.asList(1),
+			Arrays.asList(2,3,4,5),
+			Arrays.asList(6)
+		);
+		assertEquals(expected,result);
+	}
+
+	@Test public void testPartitionByWeightEven() {
+		List<Integer> input = Arrays.asList(1,2,3,4,5,6,7);
+		List<Double> weights = Arrays.asList(1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0);
+		List<List<Integer>> result = CollectionUtils.partitionByWeight(input,weights,3);
+		assertEquals(3, result.size());
+		assertEquals(input, CollectionUtils.concatenate(result));
+	}
+
+	@Test public void testPartitionByWeightAllZero() {
+		List<Integer> input = Arrays.asList(1,2,3,4,5,6,7);
+		List<Double> weights = Arrays.asList(0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0);
+		List<List<Integer>> result = CollectionUtils.partitionByWeight(input,weights,3);
+		assertEquals(CollectionUtils.partition(input,3),result);
+	}
+
+	@Test public void testPartitionByWeightNotEnoughElements() {
+		List<Integer> input = Arrays.asList(1,2,3,4);
+		List<Double> weights = Arrays.asList(5.0, 0.0, 0.0, 1.0);
+		List<List<Integer>> result = CollectionUtils.partitionByWeight(input,weights,6);
+		List<List<Integer>> expected = Arrays.asList(
+			Arrays.asList(1),
+			Arrays.asList(2),
+			Arrays.asList(3),
+			Arrays.asList(4)
+		);
+		assertEquals(expected,result);
+	}
+
 	@Test public void testPartitionBySizeExactFit() {
 		List<Integer> input = Arrays.asList(1,2,3,4,5,6);
 		List<List<Integer>> result = CollectionUtils.partitionBySize(input,2);
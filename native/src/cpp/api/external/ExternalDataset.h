@@ -18,6 +18,7 @@
 #define __MR4C_EXTERNAL_DATASET_H__
 
 #include "ExternalDataFile.h"
+#include "metadata/metadata_api.h"
 
 namespace MR4C {
 
@@ -50,6 +51,13 @@ class ExternalDataset {
 	
 		bool hasDataFile(const char* serializedKey) const;
 
+		/**
+		  * Numeric metadata arrays referred to by the serialized dataset
+		*/
+		MetadataBuffers& getMetadataBuffers();
+
+		const MetadataBuffers& getMetadataBuffers() const;
+
 		~ExternalDataset();
 
 	private:
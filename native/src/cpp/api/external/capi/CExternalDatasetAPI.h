@@ -115,6 +115,32 @@ CExternalDataFilePtr CExternalDataset_getDataFile(
 
 size_t CExternalDataset_getFileCount(CExternalDatasetPtr datasetHandle);
 
+/**
+  * Adds a block of numeric metadata array values, referred to from the
+  * serialized dataset by its index.  The bytes are copied.
+  * Returns the index of the block
+*/
+size_t CExternalDataset_addMetadataBuffer(
+	CExternalDatasetPtr datasetHandle,
+	const void* data,
+	size_t bytes
+);
+
+/**
+  * Returns the block at the index; owned by the dataset
+*/
+const void* CExternalDataset_getMetadataBuffer(
+	CExternalDatasetPtr datasetHandle,
+	size_t index
+);
+
+size_t CExternalDataset_getMetadataBufferSize(
+	CExternalDatasetPtr datasetHandle,
+	size_t index
+);
+
+size_t CExternalDataset_getMetadataBufferCount(CExternalDatasetPtr datasetHandle);
+
 #ifdef __cplusplus
 }
 #endif 
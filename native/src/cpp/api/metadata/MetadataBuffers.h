@@ -0,0 +1,87 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+#ifndef __MR4C_METADATA_BUFFERS_H__
+#define __MR4C_METADATA_BUFFERS_H__
+
+#include <stddef.h>
+
+#include "MetadataArray.h"
+#include "Primitive.h"
+
+namespace MR4C {
+
+class MetadataBuffersImpl;
+
+/**
+  * Contiguous blocks of numeric metadata array values, passed alongside a
+  * serialized dataset so the values don't have to be formatted as text.
+  * Each block holds the values of one array in native byte order:
+  *     - BYTE as 8 bit, INTEGER and FLOAT as 32 bit
+  *     - DOUBLE and SIZE_T as 64 bit
+  *     .
+  * Blocks are referred to by their index, in the order they were added.
+*/
+
+class MetadataBuffers {
+
+	public:
+
+		MetadataBuffers();
+
+		/**
+		  * Returns true if arrays of the type can be passed as a block
+		*/
+		static bool isBufferable(Primitive::Type type);
+
+		/**
+		  * Copies the values of the array into a new block, and returns
+		  * the index of the block
+		*/
+		size_t addArray(const MetadataArray& array);
+
+		/**
+		  * Recovers an array from the block at the index
+		*/
+		MetadataArray getArray(size_t index, Primitive::Type type) const;
+
+		/**
+		  * Copies the bytes into a new block, and returns the index of the block
+		*/
+		size_t addBuffer(const void* data, size_t bytes);
+
+		const void* getBuffer(size_t index) const;
+
+		size_t getBufferSize(size_t index) const;
+
+		size_t getBufferCount() const;
+
+		void clear();
+
+		~MetadataBuffers();
+
+	private:
+
+		MetadataBuffersImpl* m_impl;
+
+		// prevent calling these
+		MetadataBuffers(const MetadataBuffers& buffers);
+		MetadataBuffers& operator=(const MetadataBuffers& buffers);
+
+};
+
+}
+#endif
@@ -18,6 +18,7 @@
 #define __MR4C_METADATA_API_H__
 
 #include "MetadataArray.h"
+#include "MetadataBuffers.h"
 #include "MetadataElement.h"
 #include "MetadataField.h"
 #include "MetadataKey.h"
@@ -31,8 +31,19 @@ class DatasetSerializer : public Serializer {
 
 		virtual std::string serializeDataset(const Dataset& dataset) const =0;
 
+		/**
+		  * Numeric metadata arrays are added to the buffers rather than
+		  * written out as text
+		*/
+		virtual std::string serializeDataset(const Dataset& dataset, MetadataBuffers& buffers) const =0;
+
 		virtual Dataset* deserializeDataset(const std::string& data) const =0;
 
+		/**
+		  * Resolves metadata arrays that were added to the buffers
+		*/
+		virtual Dataset* deserializeDataset(const std::string& data, const MetadataBuffers& buffers) const =0;
+
 		virtual std::string serializeDataFile(const DataFile& file) const =0;
 
 		virtual DataFile* deserializeDataFile(const std::string& data) const =0;
@@ -36,8 +36,12 @@ class JsonDatasetSerializer : public DatasetSerializer {
 
 		std::string serializeDataset(const Dataset& dataset) const;
 
+		std::string serializeDataset(const Dataset& dataset, MetadataBuffers& buffers) const;
+
 		Dataset* deserializeDataset(const std::string& data) const;
 
+		Dataset* deserializeDataset(const std::string& data, const MetadataBuffers& buffers) const;
+
 		std::string serializeDataFile(const DataFile& file) const;
 
 		DataFile* deserializeDataFile(const std::string& data) const;
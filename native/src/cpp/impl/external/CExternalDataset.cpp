@@ -59,6 +59,32 @@ size_t CExternalDataset_getFileCount(CExternalDatasetPtr datasetHandle) {
 	return datasetHandle->dataset->getFileCount();
 }
 
+size_t CExternalDataset_addMetadataBuffer(
+	CExternalDatasetPtr datasetHandle,
+	const void* data,
+	size_t bytes
+) {
+	return datasetHandle->dataset->getMetadataBuffers().addBuffer(data, bytes);
+}
+
+const void* CExternalDataset_getMetadataBuffer(
+	CExternalDatasetPtr datasetHandle,
+	size_t index
+) {
+	return datasetHandle->dataset->getMetadataBuffers().getBuffer(index);
+}
+
+size_t CExternalDataset_getMetadataBufferSize(
+	CExternalDatasetPtr datasetHandle,
+	size_t index
+) {
+	return datasetHandle->dataset->getMetadataBuffers().getBufferSize(index);
+}
+
+size_t CExternalDataset_getMetadataBufferCount(CExternalDatasetPtr datasetHandle) {
+	return datasetHandle->dataset->getMetadataBuffers().getBufferCount();
+}
+
 CExternalDatasetPtr wrapExternalDataset(MR4C::ExternalDataset* dataset) {
 	if ( dataset==NULL ) {
 		return NULL;
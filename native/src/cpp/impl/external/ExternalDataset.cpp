@@ -32,6 +32,7 @@ class ExternalDatasetImpl {
 		std::vector<ExternalDataFile*> m_files;
 		std::set<std::string> m_serFileKeys;
 		CExternalDatasetCallbacks m_callbacks;
+		MetadataBuffers m_buffers;
 
 		ExternalDatasetImpl(const char* name) {
 			m_name = name;
@@ -85,6 +86,14 @@ class ExternalDatasetImpl {
 			return m_serFileKeys.count(serializedKey)!=0;
 		}
 
+		MetadataBuffers& getMetadataBuffers() {
+			return m_buffers;
+		}
+
+		const MetadataBuffers& getMetadataBuffers() const {
+			return m_buffers;
+		}
+
 };
 
 
@@ -130,6 +139,14 @@ bool ExternalDataset::hasDataFile(const char* serializedKey) const {
 	return m_impl->hasDataFile(serializedKey);
 }
 
+MetadataBuffers& ExternalDataset::getMetadataBuffers() {
+	return m_impl->getMetadataBuffers();
+}
+
+const MetadataBuffers& ExternalDataset::getMetadataBuffers() const {
+	return m_impl->getMetadataBuffers();
+}
+
 ExternalDataset::~ExternalDataset() {
 	delete m_impl;
 }
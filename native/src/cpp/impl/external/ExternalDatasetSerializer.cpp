@@ -58,7 +58,9 @@ class ExternalDatasetSerializerImpl {
 			std::set<DataKey> fileKeys = dataset.getAllFileKeys();
 			std::set<DataKey> metaKeys = dataset.getAllMetadataKeys();
 			LOG4CXX_INFO(m_logger, "Serializing " << fileKeys.size() << " file keys and " << metaKeys.size() << " metadata keys");
-			std::string serDataset = m_serializer->serializeDataset(dataset);
+			MetadataBuffers& buffers = extDataset->getMetadataBuffers();
+			buffers.clear();
+			std::string serDataset = m_serializer->serializeDataset(dataset, buffers);
 			extDataset->setSerializedDataset(serDataset.c_str());
 			for ( std::set<DataKey>::iterator iter = fileKeys.begin(); iter!=fileKeys.end(); iter++ ) {
 				DataKey key(*iter);
@@ -91,7 +93,7 @@ class ExternalDatasetSerializerImpl {
 		}
 
 		Dataset* deserializeDataset(const ExternalDataset& extDataset, bool output) {
-			Dataset* dataset = m_serializer->deserializeDataset(extDataset.getSerializedDataset());
+			Dataset* dataset = m_serializer->deserializeDataset(extDataset.getSerializedDataset(), extDataset.getMetadataBuffers());
 			std::set<DataKey> fileKeys = dataset->getAllFileKeys();
 			std::set<DataKey> metaKeys = dataset->getAllMetadataKeys();
 			LOG4CXX_INFO(m_logger, "Deserialized " << fileKeys.size() << " file keys and " << metaKeys.size() << " metadata keys");
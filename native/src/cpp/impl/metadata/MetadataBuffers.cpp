@@ -0,0 +1,190 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+
+#include <stdexcept>
+#include <stdint.h>
+#include <string.h>
+#include <vector>
+#include "metadata/metadata_api.h"
+#include "util/util_api.h"
+
+namespace MR4C {
+
+class MetadataBuffersImpl {
+
+	friend class MetadataBuffers;
+
+	private:
+
+		std::vector<std::vector<char> > m_buffers;
+
+		static bool isBufferable(Primitive::Type type) {
+			switch ( type ) {
+				case Primitive::BYTE:
+				case Primitive::INTEGER:
+				case Primitive::FLOAT:
+				case Primitive::DOUBLE:
+				case Primitive::SIZE_T:
+					return true;
+				default:
+					return false;
+			}
+		}
+
+		size_t addArray(const MetadataArray& array) {
+			size_t size = array.getSize();
+			switch ( array.getPrimitiveType() ) {
+				case Primitive::BYTE:
+					return addValues<char>(array.getByteValue(), size);
+				case Primitive::INTEGER:
+					return addValues<int>(array.getIntegerValue(), size);
+				case Primitive::FLOAT:
+					return addValues<float>(array.getFloatValue(), size);
+				case Primitive::DOUBLE:
+					return addValues<double>(array.getDoubleValue(), size);
+				case Primitive::SIZE_T:
+					return addSize_t(array.getSize_tValue(), size);
+				default:
+					MR4C_THROW(std::invalid_argument, "Can't buffer array of type [" << Primitive::enumToString(array.getPrimitiveType()) << "]");
+			}
+		}
+
+		template<typename T> size_t addValues(T* vals, size_t size) {
+			size_t index = addBuffer(vals, size*sizeof(T));
+			delete[] vals;
+			return index;
+		}
+
+		size_t addSize_t(size_t* vals, size_t size) {
+			std::vector<uint64_t> vals64(vals, vals+size);
+			delete[] vals;
+			return addBuffer(vals64.data(), size*sizeof(uint64_t));
+		}
+
+		MetadataArray getArray(size_t index, Primitive::Type type) const {
+			switch ( type ) {
+				case Primitive::BYTE: {
+					std::vector<char> vals = getValues<char>(index);
+					return MetadataArray::createByte(vals.data(), vals.size());
+				}
+				case Primitive::INTEGER: {
+					std::vector<int> vals = getValues<int>(index);
+					return MetadataArray::createInteger(vals.data(), vals.size());
+				}
+				case Primitive::FLOAT: {
+					std::vector<float> vals = getValues<float>(index);
+					return MetadataArray::createFloat(vals.data(), vals.size());
+				}
+				case Primitive::DOUBLE: {
+					std::vector<double> vals = getValues<double>(index);
+					return MetadataArray::createDouble(vals.data(), vals.size());
+				}
+				case Primitive::SIZE_T: {
+					std::vector<uint64_t> vals64 = getValues<uint64_t>(index);
+					std::vector<size_t> vals(vals64.begin(), vals64.end());
+					return MetadataArray::createSize_t(vals.data(), vals.size());
+				}
+				default:
+					MR4C_THROW(std::invalid_argument, "Can't buffer array of type [" << Primitive::enumToString(type) << "]");
+			}
+		}
+
+		template<typename T> std::vector<T> getValues(size_t index) const {
+			const std::vector<char>& buf = getBufferVector(index);
+			if ( buf.size() % sizeof(T)!=0 ) {
+				MR4C_THROW(std::logic_error, "Metadata buffer " << index << " has " << buf.size() << " bytes, not a whole number of " << sizeof(T) << " byte values");
+			}
+			std::vector<T> vals(buf.size()/sizeof(T));
+			if ( !buf.empty() ) {
+				memcpy(vals.data(), buf.data(), buf.size());
+			}
+			return vals;
+		}
+
+		size_t addBuffer(const void* data, size_t bytes) {
+			const char* start = static_cast<const char*>(data);
+			m_buffers.push_back(std::vector<char>(start, start+bytes));
+			return m_buffers.size()-1;
+		}
+
+		const std::vector<char>& getBufferVector(size_t index) const {
+			if ( index>=m_buffers.size() ) {
+				MR4C_THROW(std::out_of_range, "No metadata buffer " << index << "; there are " << m_buffers.size());
+			}
+			return m_buffers[index];
+		}
+
+		const void* getBuffer(size_t index) const {
+			return getBufferVector(index).data();
+		}
+
+		size_t getBufferSize(size_t index) const {
+			return getBufferVector(index).size();
+		}
+
+		size_t getBufferCount() const {
+			return m_buffers.size();
+		}
+
+		void clear() {
+			m_buffers.clear();
+		}
+
+};
+
+
+MetadataBuffers::MetadataBuffers() {
+	m_impl = new MetadataBuffersImpl();
+}
+
+bool MetadataBuffers::isBufferable(Primitive::Type type) {
+	return MetadataBuffersImpl::isBufferable(type);
+}
+
+size_t MetadataBuffers::addArray(const MetadataArray& array) {
+	return m_impl->addArray(array);
+}
+
+MetadataArray MetadataBuffers::getArray(size_t index, Primitive::Type type) const {
+	return m_impl->getArray(index, type);
+}
+
+size_t MetadataBuffers::addBuffer(const void* data, size_t bytes) {
+	return m_impl->addBuffer(data, bytes);
+}
+
+const void* MetadataBuffers::getBuffer(size_t index) const {
+	return m_impl->getBuffer(index);
+}
+
+size_t MetadataBuffers::getBufferSize(size_t index) const {
+	return m_impl->getBufferSize(index);
+}
+
+size_t MetadataBuffers::getBufferCount() const {
+	return m_impl->getBufferCount();
+}
+
+void MetadataBuffers::clear() {
+	m_impl->clear();
+}
+
+MetadataBuffers::~MetadataBuffers() {
+	delete m_impl;
+}
+
+}
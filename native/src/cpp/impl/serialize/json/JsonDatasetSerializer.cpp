@@ -35,9 +35,9 @@ class JsonDatasetSerializerImpl {
 
 	private:
 
-		std::string serializeDataset(const Dataset& dataset) const {
+		std::string serializeDataset(const Dataset& dataset, MetadataBuffers* buffers) const {
 			json_t* jsonFiles = allFilesToJson(dataset);
-			json_t* jsonMeta = allMetadataToJson(dataset);
+			json_t* jsonMeta = allMetadataToJson(dataset, buffers);
 			json_t* jsonDataset = json_object();
 			json_object_set_new(jsonDataset, "files", jsonFiles);
 			json_object_set_new(jsonDataset, "metadata", jsonMeta);
@@ -45,14 +45,14 @@ class JsonDatasetSerializerImpl {
 			return toStringAndFree(jsonDataset);
 		}
 
-		Dataset* deserializeDataset(const std::string& json) const {
+		Dataset* deserializeDataset(const std::string& json, const MetadataBuffers* buffers) const {
 			
 			json_t* jsonDataset = fromString(json);
 			json_t* jsonFiles = json_object_get(jsonDataset, "files");
 			json_t* jsonMetas = json_object_get(jsonDataset, "metadata");
 			Dataset* dataset = new Dataset();
 			addAllFilesFromJson(dataset,jsonFiles);
-			addAllMetadataFromJson(dataset,jsonMetas);
+			addAllMetadataFromJson(dataset,jsonMetas,buffers);
 			json_decref(jsonDataset);
 			return dataset;
 		}
@@ -137,12 +137,12 @@ class JsonDatasetSerializerImpl {
 			}
 		}
 
-		json_t* allMetadataToJson(const Dataset& dataset) const {
+		json_t* allMetadataToJson(const Dataset& dataset, MetadataBuffers* buffers) const {
 			std::set<DataKey> keys = dataset.getAllMetadataKeys();
 			json_t* jsonMetas = json_array();
 			for ( std::set<DataKey>::iterator iter = keys.begin(); iter!=keys.end(); iter++ ) {
 				MetadataMap* meta = dataset.getMetadata(*iter);
-				json_array_append_new(jsonMetas, keyAndMetadataToJson(*iter,*meta));
+				json_array_append_new(jsonMetas, keyAndMetadataToJson(*iter,*meta,buffers));
 			}
 			return jsonMetas;
 
@@ -153,17 +153,17 @@ class JsonDatasetSerializerImpl {
 			for ( std::map<DataKey,MetadataMap*>::const_iterator iter = metas.begin(); iter!=metas.end(); iter++ ) {
 				DataKey key = iter->first;
 				MetadataMap* meta = iter->second;
-				json_array_append_new(jsonMetas, keyAndMetadataToJson(key,*meta));
+				json_array_append_new(jsonMetas, keyAndMetadataToJson(key,*meta,NULL));
 			}
 			return jsonMetas;
 		}
 
-		void addAllMetadataFromJson(Dataset* dataset, const json_t* jsonMetas) const {
+		void addAllMetadataFromJson(Dataset* dataset, const json_t* jsonMetas, const MetadataBuffers* buffers) const {
 			JanssonUtil::assertJsonType(jsonMetas, JSON_ARRAY);
 			size_t size = json_array_size(jsonMetas);
 			for (size_t i=0; i<size; i++ ) {
 				json_t* jsonKeyAndMeta = json_array_get(jsonMetas,i);
-				std::pair<DataKey,MetadataMap*> pair = jsonToKeyAndMetadata(jsonKeyAndMeta);
+				std::pair<DataKey,MetadataMap*> pair = jsonToKeyAndMetadata(jsonKeyAndMeta,buffers);
 				dataset->addMetadata(pair.first,pair.second);
 			}
 		}
@@ -174,7 +174,7 @@ class JsonDatasetSerializerImpl {
 			std::map<DataKey,MetadataMap*> metas;
 			for (size_t i=0; i<size; i++ ) {
 				json_t* jsonKeyAndMeta = json_array_get(jsonMetas,i);
-				std::pair<DataKey,MetadataMap*> pair = jsonToKeyAndMetadata(jsonKeyAndMeta);
+				std::pair<DataKey,MetadataMap*> pair = jsonToKeyAndMetadata(jsonKeyAndMeta,NULL);
 				metas[pair.first] = pair.second;
 			}
 			return metas;
@@ -228,7 +228,7 @@ class JsonDatasetSerializerImpl {
 			return jsonKeyAndFile;
 		}
 
-		json_t* metadataElementToJson(const MetadataElement& element) const {
+		json_t* metadataElementToJson(const MetadataElement& element, MetadataBuffers* buffers) const {
 			MetadataElement::Type type = element.getMetadataElementType();
 			json_t* jsonElement;
 			switch ( type ) {
@@ -236,14 +236,14 @@ class JsonDatasetSerializerImpl {
 					jsonElement = metaFieldToJson(MetadataField::castToField(element));
 					break;
 				case MetadataElement::ARRAY:
-					jsonElement = metaArrayToJson(MetadataArray::castToArray(element));
+					jsonElement = metaArrayToJson(MetadataArray::castToArray(element), buffers);
 
 					break;
 				case MetadataElement::LIST:
-					jsonElement = metaListToJson(MetadataList::castToList(element));
+					jsonElement = metaListToJson(MetadataList::castToList(element), buffers);
 					break;
 				case MetadataElement::MAP:
-					jsonElement = metaMapToJson(MetadataMap::castToMap(element));
+					jsonElement = metaMapToJson(MetadataMap::castToMap(element), buffers);
 					break;
 				case MetadataElement::KEY:
 					jsonElement = metaKeyToJson(MetadataKey::castToKey(element));
@@ -257,7 +257,7 @@ class JsonDatasetSerializerImpl {
 			return jsonEntry;
 		}
 
-		MetadataElement* jsonToMetadataElement(const json_t* jsonMeta) const {
+		MetadataElement* jsonToMetadataElement(const json_t* jsonMeta, const MetadataBuffers* buffers) const {
 			JanssonUtil::assertJsonType(jsonMeta, JSON_OBJECT);
 			json_t* jsonElement = json_object_get(jsonMeta, "element");
 			json_t* jsonType = json_object_get(jsonMeta, "elementType");
@@ -269,13 +269,13 @@ class JsonDatasetSerializerImpl {
 					element = new MetadataField(jsonToMetaField(jsonElement));
 					break;
 				case MetadataElement::ARRAY:
-					element = new MetadataArray(jsonToMetaArray(jsonElement));
+					element = new MetadataArray(jsonToMetaArray(jsonElement, buffers));
 					break;
 				case MetadataElement::LIST:
-					element = jsonToMetaList(jsonElement);
+					element = jsonToMetaList(jsonElement, buffers);
 					break;
 				case MetadataElement::MAP:
-					element = jsonToMetaMap(jsonElement);
+					element = jsonToMetaMap(jsonElement, buffers);
 					break;
 				case MetadataElement::KEY:
 					element = jsonToMetaKey(jsonElement);
@@ -305,10 +305,20 @@ class JsonDatasetSerializerImpl {
 			return MetadataField::parseField(strVal, primitiveType);
 		}
 
-		json_t* metaArrayToJson(const MetadataArray& array) const {
+		/**
+		  * Numeric arrays are passed as a reference to a block in the
+		  * buffers when there are any, instead of as strings
+		*/
+		json_t* metaArrayToJson(const MetadataArray& array, MetadataBuffers* buffers) const {
 			json_t* jsonArray = json_object();
-			json_t* jsonValues = json_array();
 			json_t* jsonPrimitiveType = toJsonString(Primitive::enumToString(array.getPrimitiveType()));
+			if ( buffers!=NULL && MetadataBuffers::isBufferable(array.getPrimitiveType()) ) {
+				size_t index = buffers->addArray(array);
+				json_object_set_new(jsonArray, "buffer", json_integer(index));
+				json_object_set_new(jsonArray, "primitiveType", jsonPrimitiveType);
+				return jsonArray;
+			}
+			json_t* jsonValues = json_array();
 			std::vector<std::string> strVals(array.getSize());
 			array.toString(strVals.data());
 			for ( size_t i=0; i<array.getSize(); i++ ) {
@@ -319,10 +329,20 @@ class JsonDatasetSerializerImpl {
 			return jsonArray;
 		}
 
-		MetadataArray jsonToMetaArray(const json_t* jsonArray) const {
+		MetadataArray jsonToMetaArray(const json_t* jsonArray, const MetadataBuffers* buffers) const {
 			JanssonUtil::assertJsonType(jsonArray, JSON_OBJECT);
-			json_t* jsonValues = json_object_get(jsonArray, "values");
 			json_t* jsonPrimitiveType = json_object_get(jsonArray, "primitiveType");
+			json_t* jsonBuffer = json_object_get(jsonArray, "buffer");
+			if ( jsonBuffer!=NULL ) {
+				JanssonUtil::assertJsonType(jsonBuffer, JSON_INTEGER);
+				if ( buffers==NULL ) {
+					MR4C_THROW(std::runtime_error, "Metadata array refers to buffer " << json_integer_value(jsonBuffer) << " but no buffers were passed");
+				}
+				std::string strType = fromJsonString(jsonPrimitiveType);
+				Primitive::Type primitiveType = Primitive::enumFromString(strType);
+				return buffers->getArray(json_integer_value(jsonBuffer), primitiveType);
+			}
+			json_t* jsonValues = json_object_get(jsonArray, "values");
 			JanssonUtil::assertJsonType(jsonValues, JSON_ARRAY);
 			size_t size = json_array_size(jsonValues);
 			std::vector<std::string> strVals(size);
@@ -336,17 +356,17 @@ class JsonDatasetSerializerImpl {
 			return array;
 		}
 
-		json_t* metaListToJson(const MetadataList& list) const {
+		json_t* metaListToJson(const MetadataList& list, MetadataBuffers* buffers) const {
 			json_t* jsonList = json_object();
 			json_t* jsonEntries = json_array();
 			for ( size_t i=0; i<list.getSize(); i++ ) {
-				json_array_append_new(jsonEntries, metadataElementToJson(*(list.getElement(i))));
+				json_array_append_new(jsonEntries, metadataElementToJson(*(list.getElement(i)), buffers));
 			}
 			json_object_set_new(jsonList, "entries", jsonEntries);
 			return jsonList;
 		}
 
-		MetadataList* jsonToMetaList(const json_t* jsonList) const {
+		MetadataList* jsonToMetaList(const json_t* jsonList, const MetadataBuffers* buffers) const {
 			JanssonUtil::assertJsonType(jsonList, JSON_OBJECT);
 			json_t* jsonEntries = json_object_get(jsonList, "entries");
 			JanssonUtil::assertJsonType(jsonEntries, JSON_ARRAY);
@@ -354,25 +374,25 @@ class JsonDatasetSerializerImpl {
 			MetadataList* list = new MetadataList();
 			for ( size_t i=0; i<size; i++ ) {
 				json_t* jsonEntry = json_array_get(jsonEntries, i);
-				MetadataElement* element = jsonToMetadataElement(jsonEntry);
+				MetadataElement* element = jsonToMetadataElement(jsonEntry, buffers);
 				list->addElement(element);
 			}
 			return list;
 		}
 
-		json_t* metaMapToJson(const MetadataMap& map) const {
+		json_t* metaMapToJson(const MetadataMap& map, MetadataBuffers* buffers) const {
 			std::set<std::string> names = map.getAllNames();
 			json_t* jsonMap = json_object();
 			json_t* jsonEntries = json_object();
 			for ( std::set<std::string>::iterator iter = names.begin(); iter!=names.end(); iter++ ) {
 				MetadataElement* element = map.getElement(*iter);
-				json_object_set_new(jsonEntries, iter->c_str(), metadataElementToJson(*element));
+				json_object_set_new(jsonEntries, iter->c_str(), metadataElementToJson(*element, buffers));
 			}
 			json_object_set_new(jsonMap, "entries", jsonEntries);
 			return jsonMap;
 		}
 
-		MetadataMap* jsonToMetaMap(const json_t* jsonMap) const {
+		MetadataMap* jsonToMetaMap(const json_t* jsonMap, const MetadataBuffers* buffers) const {
 			JanssonUtil::assertJsonType(jsonMap, JSON_OBJECT);
 			MetadataMap* map = new MetadataMap();
 			json_t* jsonEntries = json_object_get(jsonMap, "entries");
@@ -381,7 +401,7 @@ class JsonDatasetSerializerImpl {
 			while (iter) {
 				std::string key = std::string(json_object_iter_key(iter));
 				json_t* jsonElement = json_object_iter_value(iter);
-				MetadataElement* element = jsonToMetadataElement(jsonElement);
+				MetadataElement* element = jsonToMetadataElement(jsonElement, buffers);
 				map->putElement(key, element);
 				iter = json_object_iter_next(jsonEntries,iter);
 			}
@@ -402,22 +422,22 @@ class JsonDatasetSerializerImpl {
 			return new MetadataKey(key);
 		}
 
-		json_t* keyAndMetadataToJson(const DataKey& key, const MetadataMap& element)const {
+		json_t* keyAndMetadataToJson(const DataKey& key, const MetadataMap& element, MetadataBuffers* buffers) const {
 			json_t* jsonKeyAndMeta = json_object();
 			json_t* jsonKey = keyToJson(key);
-			json_t* jsonMeta = metadataElementToJson(element);
+			json_t* jsonMeta = metadataElementToJson(element, buffers);
 			json_object_set_new(jsonKeyAndMeta, "key", jsonKey);
 			json_object_set_new(jsonKeyAndMeta, "metadata", jsonMeta);
 			return jsonKeyAndMeta;
 
 		}
 
-		std::pair<DataKey,MetadataMap*> jsonToKeyAndMetadata(const json_t* jsonKeyAndMeta) const {
+		std::pair<DataKey,MetadataMap*> jsonToKeyAndMetadata(const json_t* jsonKeyAndMeta, const MetadataBuffers* buffers) const {
 			JanssonUtil::assertJsonType(jsonKeyAndMeta, JSON_OBJECT);
 			json_t* jsonKey = json_object_get(jsonKeyAndMeta, "key");
 			json_t* jsonMeta = json_object_get(jsonKeyAndMeta, "metadata");
 			DataKey key = jsonToKey(jsonKey);
-			MetadataElement* meta = jsonToMetadataElement(jsonMeta);
+			MetadataElement* meta = jsonToMetadataElement(jsonMeta, buffers);
 			MetadataMap* map = MetadataMap::castToMap(meta);
 			return std::make_pair(key, map);
 		}
@@ -435,11 +455,19 @@ JsonDatasetSerializer::~JsonDatasetSerializer() {
 }
 
 std::string JsonDatasetSerializer::serializeDataset(const Dataset& dataset) const {
-	return m_impl->serializeDataset(dataset);
+	return m_impl->serializeDataset(dataset, NULL);
+}
+
+std::string JsonDatasetSerializer::serializeDataset(const Dataset& dataset, MetadataBuffers& buffers) const {
+	return m_impl->serializeDataset(dataset, &buffers);
 }
 
 Dataset* JsonDatasetSerializer::deserializeDataset(const std::string& json) const {
-	return m_impl->deserializeDataset(json);
+	return m_impl->deserializeDataset(json, NULL);
+}
+
+Dataset* JsonDatasetSerializer::deserializeDataset(const std::string& json, const MetadataBuffers& buffers) const {
+	return m_impl->deserializeDataset(json, &buffers);
 }
 
 std::string JsonDatasetSerializer::serializeDataFile(const DataFile& file) const {
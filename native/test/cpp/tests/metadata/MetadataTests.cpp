@@ -18,6 +18,7 @@
 #include <cppunit/extensions/HelperMacros.h>
 
 CPPUNIT_REGISTRY_ADD("TestMetadataArray", "MetadataTests");
+CPPUNIT_REGISTRY_ADD("TestMetadataBuffers", "MetadataTests");
 CPPUNIT_REGISTRY_ADD("TestMetadataField", "MetadataTests");
 CPPUNIT_REGISTRY_ADD("TestMetadataKey", "MetadataTests");
 CPPUNIT_REGISTRY_ADD("TestMetadataList", "MetadataTests");
@@ -0,0 +1,131 @@
+/**
+  * Copyright 2014 Google Inc. All rights reserved.
+  * 
+  * Licensed under the Apache License, Version 2.0 (the "License");
+  * you may not use this file except in compliance with the License.
+  * You may obtain a copy of the License at
+  * 
+  *     http://www.apache.org/licenses/LICENSE-2.0
+  * 
+  * Unless required by applicable law or agreed to in writing, software
+  * distributed under the License is distributed on an "AS IS" BASIS,
+  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  * See the License for the specific language governing permissions and
+  * limitations under the License.
+*/
+
+
+#include <cppunit/TestFixture.h>
+#include <cppunit/extensions/HelperMacros.h>
+#include <stdexcept>
+#include <stdint.h>
+#include "metadata/metadata_api.h"
+#include "util/util_api.h"
+
+namespace MR4C {
+
+class TestMetadataBuffers : public CPPUNIT_NS::TestFixture {
+
+	CPPUNIT_TEST_SUITE(TestMetadataBuffers);
+	CPPUNIT_TEST(testInteger);
+	CPPUNIT_TEST(testByte);
+	CPPUNIT_TEST(testFloat);
+	CPPUNIT_TEST(testDouble);
+	CPPUNIT_TEST(testSize_t);
+	CPPUNIT_TEST(testEmpty);
+	CPPUNIT_TEST(testIndexes);
+	CPPUNIT_TEST(testBufferable);
+	CPPUNIT_TEST_EXCEPTION(testString, std::invalid_argument);
+	CPPUNIT_TEST_EXCEPTION(testWrongSize, std::logic_error);
+	CPPUNIT_TEST_EXCEPTION(testNoBuffer, std::out_of_range);
+	CPPUNIT_TEST_SUITE_END();
+
+	private:
+
+		MetadataBuffers* m_buffers;
+
+		void assertRoundTrip(const MetadataArray& array, size_t bytes) {
+			size_t index = m_buffers->addArray(array);
+			CPPUNIT_ASSERT_EQUAL(bytes, m_buffers->getBufferSize(index));
+			MetadataArray array2 = m_buffers->getArray(index, array.getPrimitiveType());
+			CPPUNIT_ASSERT(array==array2);
+		}
+
+	public:
+
+		void setUp() {
+			m_buffers = new MetadataBuffers();
+		}
+
+		void tearDown() {
+			delete m_buffers;
+		}
+
+		void testInteger() {
+			int vals[] = {3, -7, 22, 0};
+			assertRoundTrip(MetadataArray::createInteger(vals, 4), 16);
+		}
+
+		void testByte() {
+			char vals[] = {3, -7, 22};
+			assertRoundTrip(MetadataArray::createByte(vals, 3), 3);
+		}
+
+		void testFloat() {
+			float vals[] = {3.5f, -7.25f};
+			assertRoundTrip(MetadataArray::createFloat(vals, 2), 8);
+		}
+
+		void testDouble() {
+			double vals[] = {3.5, -7.123456789012, 1e300};
+			assertRoundTrip(MetadataArray::createDouble(vals, 3), 24);
+		}
+
+		void testSize_t() {
+			size_t vals[] = {3, 77777, 0};
+			assertRoundTrip(MetadataArray::createSize_t(vals, 3), 24);
+		}
+
+		void testEmpty() {
+			double vals[] = {1.5};
+			assertRoundTrip(MetadataArray::createDouble(vals, 0), 0);
+		}
+
+		void testIndexes() {
+			int vals[] = {1, 2};
+			double dvals[] = {1.5};
+			CPPUNIT_ASSERT_EQUAL((size_t)0, m_buffers->addArray(MetadataArray::createInteger(vals, 2)));
+			CPPUNIT_ASSERT_EQUAL((size_t)1, m_buffers->addArray(MetadataArray::createDouble(dvals, 1)));
+			CPPUNIT_ASSERT_EQUAL((size_t)2, m_buffers->getBufferCount());
+			m_buffers->clear();
+			CPPUNIT_ASSERT_EQUAL((size_t)0, m_buffers->getBufferCount());
+		}
+
+		void testBufferable() {
+			CPPUNIT_ASSERT(MetadataBuffers::isBufferable(Primitive::DOUBLE));
+			CPPUNIT_ASSERT(MetadataBuffers::isBufferable(Primitive::SIZE_T));
+			CPPUNIT_ASSERT(!MetadataBuffers::isBufferable(Primitive::STRING));
+			CPPUNIT_ASSERT(!MetadataBuffers::isBufferable(Primitive::BOOLEAN));
+			CPPUNIT_ASSERT(!MetadataBuffers::isBufferable(Primitive::LONG_DOUBLE));
+		}
+
+		void testString() {
+			std::string vals[] = {"a", "b"};
+			m_buffers->addArray(MetadataArray::createString(vals, 2));
+		}
+
+		void testWrongSize() {
+			char bytes[] = {1, 2, 3};
+			size_t index = m_buffers->addBuffer(bytes, 3);
+			m_buffers->getArray(index, Primitive::INTEGER);
+		}
+
+		void testNoBuffer() {
+			m_buffers->getBuffer(0);
+		}
+
+};
+
+CPPUNIT_TEST_SUITE_NAMED_REGISTRATION(TestMetadataBuffers, "TestMetadataBuffers");
+
+}
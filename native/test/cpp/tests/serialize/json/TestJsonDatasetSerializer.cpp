@@ -29,6 +29,7 @@ class TestJsonDatasetSerializer : public CPPUNIT_NS::TestFixture {
 
 	CPPUNIT_TEST_SUITE(TestJsonDatasetSerializer);
 	CPPUNIT_TEST(testDataset);
+	CPPUNIT_TEST(testDatasetBuffers);
 	CPPUNIT_TEST(testMetadata);
 	CPPUNIT_TEST_SUITE_END();
 
@@ -61,6 +62,16 @@ class TestJsonDatasetSerializer : public CPPUNIT_NS::TestFixture {
 			delete dataset2;
 		}
 		
+		void testDatasetBuffers() {
+			MetadataBuffers buffers;
+			std::string json = m_serializer->serializeDataset(*m_dataset, buffers);
+			CPPUNIT_ASSERT_EQUAL((size_t)1, buffers.getBufferCount());
+			CPPUNIT_ASSERT(json.find("\"buffer\"")!=std::string::npos);
+			Dataset* dataset2 = m_serializer->deserializeDataset(json, buffers);
+			CPPUNIT_ASSERT(*m_dataset==*dataset2);
+			delete dataset2;
+		}
+
 		void testMetadata() {
 
 			std::string json = m_serializer->serializeMetadata(m_meta);